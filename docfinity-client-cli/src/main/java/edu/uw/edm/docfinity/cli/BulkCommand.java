@@ -0,0 +1,172 @@
+package edu.uw.edm.docfinity.cli;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.uw.edm.docfinity.BulkIndexer;
+import edu.uw.edm.docfinity.BulkItem;
+import edu.uw.edm.docfinity.BulkItemResult;
+import edu.uw.edm.docfinity.BulkJournal;
+import edu.uw.edm.docfinity.BulkSummary;
+import edu.uw.edm.docfinity.DocFinityClient;
+import edu.uw.edm.docfinity.DocFinityServiceImpl;
+import edu.uw.edm.docfinity.DocFinityServiceOptions;
+import edu.uw.edm.docfinity.DocumentField;
+import edu.uw.edm.docfinity.FileIndexDocumentArgs;
+import edu.uw.edm.docfinity.UploadThroughputMeter;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Runs the bulk mode of the CLI: creates the documents of a directory, glob or manifest with a pool
+* of workers that share one client, logs the progress and writes the result of each entry to a CSV
+* file.
+*/
+@Slf4j
+public class BulkCommand {
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+
+    private final DocFinityClientCLI cli;
+    private final List<DocumentField> defaultMetadata;
+    private final AtomicInteger read = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final UploadThroughputMeter uploadMeter = new UploadThroughputMeter();
+
+    public BulkCommand(DocFinityClientCLI cli, List<DocumentField> defaultMetadata) {
+        Preconditions.checkNotNull(cli, "cli is required.");
+        Preconditions.checkNotNull(defaultMetadata, "defaultMetadata is required.");
+        Preconditions.checkArgument(cli.workers > 0, "workers must be greater than 0.");
+
+        this.cli = cli;
+        this.defaultMetadata = defaultMetadata;
+    }
+
+    public void run() throws Exception {
+        // Connections are kept open for every worker so that requests do not pay new handshakes.
+        DocFinityServiceOptions options =
+                DocFinityClientCLI.createServiceOptions(cli)
+                        .withMaxIdleConnections(cli.workers)
+                        .withUploadThroughputMeter(uploadMeter);
+        DocFinityClient client =
+                new DocFinityClient(
+                        new DocFinityServiceImpl(cli.url, cli.apiKey, cli.auditUser, options),
+                        DocFinityClientCLI.createClientOptions(cli));
+        BulkJournal journal =
+                cli.journalFile == null ? null : new BulkJournal(Paths.get(cli.journalFile));
+        if (journal != null && journal.size() > 0) {
+            log.info("Resuming from journal '{}' with {} entries.", cli.journalFile, journal.size());
+        }
+        BulkIndexer indexer = new BulkIndexer(client, cli.workers, journal);
+
+        ScheduledExecutorService progress =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("bulk-progress").build());
+        long start = System.nanoTime();
+        progress.scheduleAtFixedRate(
+                () -> logProgress(start),
+                PROGRESS_INTERVAL_SECONDS,
+                PROGRESS_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+
+        BulkSummary summary;
+        try (Stream<BulkManifestEntry> entries =
+                        new BulkManifestReader(cli.category, cli.documentType, defaultMetadata)
+                                .read(cli.bulkSource);
+                BulkResultWriter writer = new BulkResultWriter(Paths.get(cli.resultFile))) {
+            // Entries are read as workers become available and dropped when their result is written,
+            // so only the entries in flight are kept in memory.
+            Map<String, BulkManifestEntry> entriesByKey = new ConcurrentHashMap<>();
+            Iterator<BulkManifestEntry> source = entries.iterator();
+
+            Iterator<BulkItem<FileIndexDocumentArgs>> items =
+                    new AbstractIterator<BulkItem<FileIndexDocumentArgs>>() {
+                        @Override
+                        protected BulkItem<FileIndexDocumentArgs> computeNext() {
+                            while (source.hasNext()) {
+                                BulkManifestEntry entry = source.next();
+                                read.incrementAndGet();
+
+                                if (entry.getError() == null) {
+                                    try {
+                                        FileIndexDocumentArgs args = toArgs(entry);
+                                        Preconditions.checkArgument(
+                                                entriesByKey.putIfAbsent(entry.getKey(), entry) == null,
+                                                "File '%s' is already being created by another entry.",
+                                                entry.getKey());
+                                        return new BulkItem<>(entry.getKey(), args);
+                                    } catch (RuntimeException e) {
+                                        entry.setError(e);
+                                    }
+                                }
+
+                                // Invalid entries (ie. bad metadata json or duplicate fields) are
+                                // reported without stopping the run.
+                                onResult(
+                                        writer,
+                                        entry,
+                                        new BulkItemResult(entry.getKey(), null, entry.getError(), 0));
+                            }
+                            return endOfData();
+                        }
+                    };
+
+            summary =
+                    indexer.uploadIndexAndCommitDocuments(
+                            items, result -> onResult(writer, entriesByKey.remove(result.getKey()), result));
+        } finally {
+            progress.shutdownNow();
+            if (journal != null) {
+                journal.close();
+            }
+        }
+
+        log.info(
+                "Completed {} documents in {}s: {} succeeded, {} failed, {} skipped, {} docs/sec, {} MB/s uploaded. Results written to '{}'.",
+                completed.get(),
+                String.format("%.1f", summary.getElapsedNanos() / 1e9),
+                completed.get() - failed.get() - summary.getSkipped(),
+                failed.get(),
+                summary.getSkipped(),
+                String.format("%.1f", summary.getDocumentsPerSecond()),
+                String.format("%.2f", uploadMeter.getBytesPerSecond() / 1e6),
+                cli.resultFile);
+    }
+
+    private void onResult(BulkResultWriter writer, BulkManifestEntry entry, BulkItemResult result) {
+        writer.write(entry, result);
+        completed.incrementAndGet();
+
+        if (!result.isSuccess()) {
+            failed.incrementAndGet();
+        }
+    }
+
+    private void logProgress(long start) {
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        log.info(
+                "Progress: {}/{} documents read from '{}' ({} failed), {} docs/sec, {} MB/s uploaded by all workers.",
+                completed.get(),
+                read.get(),
+                cli.bulkSource,
+                failed.get(),
+                String.format("%.1f", completed.get() / elapsedSeconds),
+                String.format("%.2f", uploadMeter.getBytesPerSecond() / 1e6));
+    }
+
+    private static FileIndexDocumentArgs toArgs(BulkManifestEntry entry) {
+        return new FileIndexDocumentArgs()
+                .withFile(entry.getFile())
+                .withDocumentType(entry.getCategory(), entry.getDocumentType())
+                .withMetadata(entry.getMetadata());
+    }
+}
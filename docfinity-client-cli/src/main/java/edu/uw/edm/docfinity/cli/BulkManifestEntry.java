@@ -0,0 +1,28 @@
+package edu.uw.edm.docfinity.cli;
+
+import edu.uw.edm.docfinity.DocumentField;
+import java.io.File;
+import java.util.List;
+import lombok.Data;
+
+/** Represents a document to create in bulk mode, read from a directory, glob or manifest row. */
+@Data
+public class BulkManifestEntry {
+    /** Absolute path of the file, or row number in the manifest for rows that could not be read. */
+    private final String key;
+
+    /** File to upload. */
+    private final File file;
+
+    /** Category name to index document. */
+    private final String category;
+
+    /** Document type name to index document. */
+    private final String documentType;
+
+    /** Metadata values to index document. */
+    private final List<DocumentField> metadata;
+
+    /** Error reading the entry, entries with an error are reported as failed without uploading. */
+    private Exception error;
+}
@@ -0,0 +1,308 @@
+package edu.uw.edm.docfinity.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Streams;
+import edu.uw.edm.docfinity.DocumentField;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+* Reads the documents to create in bulk mode from a directory, a glob pattern or a manifest file.
+*
+* <p>Manifests are CSV files with a header row, or JSON Lines files, with the columns 'path',
+* 'category', 'documentType' and 'metadata'. The metadata is a json array with the same format as
+* the '--metadataJson' argument. Relative paths are resolved from the folder of the manifest, and
+* empty columns fall back to the values given in the command line.
+*
+* <p>Entries are identified by the absolute path of their file, so that a journal of a run can be
+* resumed after rows are added or reordered, or with the files listed by a different source.
+*/
+public class BulkManifestReader {
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    private final String defaultCategory;
+    private final String defaultDocumentType;
+    private final List<DocumentField> defaultMetadata;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public BulkManifestReader(
+            String defaultCategory, String defaultDocumentType, List<DocumentField> defaultMetadata) {
+        Preconditions.checkNotNull(defaultMetadata, "defaultMetadata is required.");
+
+        this.defaultCategory = defaultCategory;
+        this.defaultDocumentType = defaultDocumentType;
+        this.defaultMetadata = defaultMetadata;
+    }
+
+    /**
+    * Reads the entries of a source. Entries are read as the stream is consumed, so large manifests
+    * are not loaded in memory, and the stream must be closed to close the manifest. Rows that can
+    * not be read (ie. invalid metadata json) are returned as entries with an error, so they are
+    * reported without stopping the run.
+    *
+    * @param source Path of a directory, a glob pattern (ie. 'scans/*.pdf') or a manifest file with
+    *     '.csv' or '.jsonl' extension.
+    */
+    public Stream<BulkManifestEntry> read(String source) throws IOException {
+        Preconditions.checkNotNull(source, "source is required.");
+
+        if (source.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0)) {
+            return readGlob(source);
+        }
+
+        Path path = Paths.get(source);
+        String fileName = path.getFileName().toString().toLowerCase();
+
+        if (Files.isDirectory(path)) {
+            return readDirectory(path);
+        } else if (fileName.endsWith(".csv")) {
+            return readCsv(path);
+        } else if (fileName.endsWith(".jsonl") || fileName.endsWith(".ndjson")) {
+            return readJsonLines(path);
+        } else {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Bulk source '%s' must be a directory, a glob pattern, or a .csv or .jsonl manifest.",
+                            source));
+        }
+    }
+
+    private Stream<BulkManifestEntry> readDirectory(Path directory) throws IOException {
+        return toEntries(Files.list(directory).filter(Files::isRegularFile).sorted());
+    }
+
+    private Stream<BulkManifestEntry> readGlob(String pattern) throws IOException {
+        // Walk from the deepest folder of the pattern that has no glob characters.
+        String prefix = pattern.substring(0, firstGlobIndex(pattern));
+        int separator = Math.max(prefix.lastIndexOf('/'), prefix.lastIndexOf(File.separatorChar));
+        Path root = Paths.get(separator < 0 ? "." : prefix.substring(0, separator + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+
+        return toEntries(
+                Files.walk(root)
+                        .filter(Files::isRegularFile)
+                        .filter(f -> matcher.matches(separator < 0 ? root.relativize(f) : f))
+                        .sorted());
+    }
+
+    private Stream<BulkManifestEntry> toEntries(Stream<Path> files) {
+        return files.map(
+                f ->
+                        new BulkManifestEntry(
+                                f.toAbsolutePath().normalize().toString(),
+                                f.toFile(),
+                                defaultCategory,
+                                defaultDocumentType,
+                                defaultMetadata));
+    }
+
+    private Stream<BulkManifestEntry> readCsv(Path manifest) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8);
+        Map<String, Integer> columns = new HashMap<>();
+
+        try {
+            String headerLine = reader.readLine();
+            Preconditions.checkArgument(headerLine != null, "Manifest '%s' is empty.", manifest);
+
+            List<String> header = parseCsvLine(headerLine);
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim(), i);
+            }
+
+            Preconditions.checkArgument(
+                    columns.containsKey("path"), "Manifest '%s' is missing the 'path' column.", manifest);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+
+        return readRows(
+                manifest,
+                reader,
+                1,
+                (row, line) -> {
+                    List<String> values = parseCsvLine(line);
+                    return toEntry(
+                            manifest,
+                            row,
+                            getColumn(values, columns, "path"),
+                            getColumn(values, columns, "category"),
+                            getColumn(values, columns, "documentType"),
+                            getColumn(values, columns, "metadata"));
+                });
+    }
+
+    private Stream<BulkManifestEntry> readJsonLines(Path manifest) throws IOException {
+        return readRows(
+                manifest,
+                Files.newBufferedReader(manifest, StandardCharsets.UTF_8),
+                0,
+                (row, line) -> {
+                    JsonNode node = mapper.readTree(line);
+                    JsonNode metadata = node.get("metadata");
+                    return toEntry(
+                            manifest,
+                            row,
+                            node.path("path").asText(null),
+                            node.path("category").asText(null),
+                            node.path("documentType").asText(null),
+                            metadata == null || metadata.isNull() ? null : metadata.toString());
+                });
+    }
+
+    /**
+    * Returns the entries of the rows of a manifest as they are read, skipping empty lines.
+    *
+    * @param firstRow Number of the last row read before the reader (ie. 1 after the CSV header).
+    */
+    private Stream<BulkManifestEntry> readRows(
+            Path manifest, BufferedReader reader, int firstRow, RowParser parser) {
+        Iterator<BulkManifestEntry> rows =
+                new AbstractIterator<BulkManifestEntry>() {
+                    private int row = firstRow;
+
+                    @Override
+                    protected BulkManifestEntry computeNext() {
+                        String line;
+                        try {
+                            do {
+                                line = reader.readLine();
+                                row++;
+                            } while (line != null && line.trim().isEmpty());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+
+                        if (line == null) {
+                            return endOfData();
+                        }
+
+                        try {
+                            return parser.parse(row, line);
+                        } catch (IOException | RuntimeException e) {
+                            BulkManifestEntry entry =
+                                    new BulkManifestEntry(
+                                            String.valueOf(row),
+                                            manifest.toFile(),
+                                            defaultCategory,
+                                            defaultDocumentType,
+                                            defaultMetadata);
+                            entry.setError(
+                                    new IllegalArgumentException(
+                                            String.format(
+                                                    "Row %d of manifest '%s' is invalid: %s",
+                                                    row, manifest, e.getMessage()),
+                                            e));
+                            return entry;
+                        }
+                    }
+                };
+
+        return Streams.stream(rows)
+                .onClose(
+                        () -> {
+                            try {
+                                reader.close();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+    }
+
+    private BulkManifestEntry toEntry(
+            Path manifest,
+            int row,
+            String path,
+            String category,
+            String documentType,
+            String metadataJson)
+            throws IOException {
+        if (Strings.isNullOrEmpty(path)) {
+            throw new IllegalArgumentException("the path is missing.");
+        }
+
+        Path file = manifest.toAbsolutePath().getParent().resolve(path).normalize();
+
+        List<DocumentField> metadata =
+                Strings.isNullOrEmpty(metadataJson)
+                        ? defaultMetadata
+                        : Arrays.asList(mapper.readValue(metadataJson, DocumentField[].class));
+
+        return new BulkManifestEntry(
+                file.toString(),
+                file.toFile(),
+                Strings.isNullOrEmpty(category) ? defaultCategory : category,
+                Strings.isNullOrEmpty(documentType) ? defaultDocumentType : documentType,
+                metadata);
+    }
+
+    private static String getColumn(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= values.size() ? null : values.get(index);
+    }
+
+    private static int firstGlobIndex(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    /** Reads the entry of a manifest row. */
+    private interface RowParser {
+        BulkManifestEntry parse(int row, String line) throws IOException;
+    }
+
+    /** Parses a CSV line where values can be quoted, and quotes in values are escaped as "". */
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+
+        values.add(value.toString());
+        return values;
+    }
+}
@@ -0,0 +1,54 @@
+package edu.uw.edm.docfinity.cli;
+
+import edu.uw.edm.docfinity.BulkItemResult;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Writes the result of each bulk entry as a CSV row, can be called from multiple threads. */
+public class BulkResultWriter implements Closeable {
+    private final BufferedWriter writer;
+
+    public BulkResultWriter(Path resultFile) throws IOException {
+        this.writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8);
+        writer.write("key,path,documentId,status,elapsedMs,error");
+        writer.newLine();
+    }
+
+    /** Writes the row of a completed entry. */
+    public synchronized void write(BulkManifestEntry entry, BulkItemResult result) {
+        String error = result.getError() == null ? "" : String.valueOf(result.getError().getMessage());
+
+        try {
+            writer.write(
+                    String.join(
+                            ",",
+                            escape(entry.getKey()),
+                            escape(entry.getFile().getPath()),
+                            escape(result.getDocumentId() == null ? "" : result.getDocumentId()),
+                            result.isSkipped() ? "SKIPPED" : result.isSuccess() ? "OK" : "FAILED",
+                            String.valueOf(TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos())),
+                            escape(error)));
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private static String escape(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"").replace("\n", " ") + "\"";
+        }
+        return value;
+    }
+}
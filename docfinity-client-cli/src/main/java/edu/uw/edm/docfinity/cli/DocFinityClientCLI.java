@@ -5,8 +5,11 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
+import edu.uw.edm.docfinity.DeduplicationIndex;
 import edu.uw.edm.docfinity.DocFinityClient;
+import edu.uw.edm.docfinity.DocFinityClientOptions;
 import edu.uw.edm.docfinity.DocFinityServiceImpl;
+import edu.uw.edm.docfinity.DocFinityServiceOptions;
 import edu.uw.edm.docfinity.DocumentField;
 import edu.uw.edm.docfinity.FileIndexDocumentArgs;
 import edu.uw.edm.docfinity.IndexDocumentArgs;
@@ -17,12 +20,16 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.LoggerFactory;
 
 /**
 * The entry point of command line runner that can parse arguments and invoke the DocFinity client.
 */
 public class DocFinityClientCLI {
+    /** Time that document types and metadata definitions are cached when a snapshot is used. */
+    private static final long CACHE_EXPIRATION_MINUTES = 5;
+
     @Parameter(
             names = {"--url", "-u"},
             required = true,
@@ -43,14 +50,14 @@ public class DocFinityClientCLI {
 
     @Parameter(
             names = {"--category", "-c"},
-            required = true,
-            description = "Name of document category to use when creating a new document.")
+            description =
+                    "Name of document category to use when creating a new document. Required unless all bulk manifest rows have it.")
     String category;
 
     @Parameter(
             names = {"--documentType", "-d"},
-            required = true,
-            description = "Name of document type to use when creating a new document.")
+            description =
+                    "Name of document type to use when creating a new document. Required unless all bulk manifest rows have it.")
     String documentType;
 
     @Parameter(
@@ -74,6 +81,71 @@ public class DocFinityClientCLI {
             description = "File path with with metadata values as Json to use when indexing.")
     String metadataFilePath;
 
+    @Parameter(
+            names = {"--bulk", "-b"},
+            description =
+                    "Directory, glob pattern (ie. 'scans/*.pdf') or manifest file (.csv or .jsonl with columns path, category, documentType and metadata) of documents to create in bulk.")
+    String bulkSource;
+
+    @Parameter(
+            names = {"--workers", "-w"},
+            description = "Number of documents created at the same time in bulk and watch modes.")
+    int workers = 4;
+
+    @Parameter(
+            names = {"--watch"},
+            description =
+                    "Folder to watch for new files to create until the process is stopped. Metadata of each file can be given in a sidecar '<file name>.json' file.")
+    String watchFolder;
+
+    @Parameter(
+            names = {"--doneFolder"},
+            description = "Folder where created files are moved in watch mode, defaults to 'done'.")
+    String doneFolder;
+
+    @Parameter(
+            names = {"--errorFolder"},
+            description = "Folder where failed files are moved in watch mode, defaults to 'error'.")
+    String errorFolder;
+
+    @Parameter(
+            names = {"--stableSeconds"},
+            description =
+                    "Seconds that the size of a file must not change before it is created in watch mode.")
+    int stableSeconds = 5;
+
+    @Parameter(
+            names = {"--resultFile", "-r"},
+            description = "Path of CSV file to write the document id or error of each bulk entry.")
+    String resultFile = "bulk-results.csv";
+
+    @Parameter(
+            names = {"--journal"},
+            description =
+                    "Path of journal file to resume a bulk run, run again with the same journal and source to skip committed entries.")
+    String journalFile;
+
+    @Parameter(
+            names = {"--dedupIndex"},
+            description =
+                    "Path of index file of uploaded content, files that were already uploaded are not uploaded again and the existing document is reindexed.")
+    String deduplicationIndexFile;
+
+    /** Index opened from deduplicationIndexFile for the run, closed when the run completes. */
+    DeduplicationIndex deduplicationIndex;
+
+    @Parameter(
+            names = {"--cacheSnapshot"},
+            description =
+                    "Path of file where document types and metadata definitions are saved, so that the next runs do not request them before the first document.")
+    String cacheSnapshotFile;
+
+    @Parameter(
+            names = {"--chunkSize"},
+            description =
+                    "Size in bytes of the chunks that larger files are uploaded in, so that a failed request only sends one chunk again. 0 to upload files in a single request.")
+    long uploadChunkSizeBytes = 0;
+
     @Parameter(names = "--trace", description = "Enable request tracing to console.")
     boolean trace;
 
@@ -98,24 +170,53 @@ public class DocFinityClientCLI {
             return;
         }
 
-        // Load the file to upload.
-        File file = getFile(cli);
-
         // Load metadata from json
         List<DocumentField> metadata = loadMetadata(cli);
 
         // Setup logging for request/responses.
         setupRequestTracing(cli);
 
+        try (DeduplicationIndex deduplicationIndex =
+                cli.deduplicationIndexFile == null
+                        ? null
+                        : new DeduplicationIndex(Paths.get(cli.deduplicationIndexFile))) {
+            cli.deduplicationIndex = deduplicationIndex;
+            run(cli, metadata, cliLogger);
+        }
+    }
+
+    private static void run(DocFinityClientCLI cli, List<DocumentField> metadata, Logger cliLogger)
+            throws Exception {
+        if (cli.bulkSource != null) {
+            Preconditions.checkArgument(
+                    cli.action == ActionEnum.create, "Bulk mode only supports the 'create' action.");
+            new BulkCommand(cli, metadata).run();
+            return;
+        }
+
+        if (cli.watchFolder != null) {
+            Preconditions.checkArgument(
+                    cli.action == ActionEnum.create, "Watch mode only supports the 'create' action.");
+            new HotFolderCommand(cli, metadata).run();
+            return;
+        }
+
+        Preconditions.checkNotNull(cli.category, "category is required.");
+        Preconditions.checkNotNull(cli.documentType, "documentType is required.");
+
         // Run the client.
-        DocFinityClient client = new DocFinityClient(cli.url, cli.apiKey, cli.auditUser);
+        DocFinityClient client =
+                new DocFinityClient(
+                        new DocFinityServiceImpl(
+                                cli.url, cli.apiKey, cli.auditUser, createServiceOptions(cli)),
+                        createClientOptions(cli));
         ObjectMapper mapper = new ObjectMapper();
         cliLogger.info("Starting");
 
         if (cli.action == ActionEnum.create) {
             FileIndexDocumentArgs args =
                     new FileIndexDocumentArgs()
-                            .withFile(file)
+                            .withFile(getFile(cli))
                             .withDocumentType(cli.category, cli.documentType)
                             .withMetadata(metadata);
             IndexDocumentResult result = client.uploadIndexAndCommitDocument(args);
@@ -140,6 +241,22 @@ public class DocFinityClientCLI {
         }
     }
 
+    static DocFinityServiceOptions createServiceOptions(DocFinityClientCLI cli) {
+        return new DocFinityServiceOptions().withUploadChunkSize(cli.uploadChunkSizeBytes);
+    }
+
+    static DocFinityClientOptions createClientOptions(DocFinityClientCLI cli) {
+        DocFinityClientOptions options = new DocFinityClientOptions();
+        if (cli.deduplicationIndex != null) {
+            options.withDeduplicationIndex(cli.deduplicationIndex);
+        }
+        if (cli.cacheSnapshotFile != null) {
+            options.withCacheExpiration(CACHE_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+                    .withCacheSnapshot(Paths.get(cli.cacheSnapshotFile));
+        }
+        return options;
+    }
+
     private static File getFile(DocFinityClientCLI cli) throws Exception {
         Preconditions.checkNotNull(cli.filePath, "file is required.");
         File file = new File(cli.filePath);
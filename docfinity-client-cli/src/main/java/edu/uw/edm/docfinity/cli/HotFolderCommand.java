@@ -0,0 +1,441 @@
+package edu.uw.edm.docfinity.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.uw.edm.docfinity.DocFinityClient;
+import edu.uw.edm.docfinity.DocFinityServiceImpl;
+import edu.uw.edm.docfinity.DocFinityServiceOptions;
+import edu.uw.edm.docfinity.DocumentField;
+import edu.uw.edm.docfinity.FileIndexDocumentArgs;
+import edu.uw.edm.docfinity.IndexDocumentResult;
+import edu.uw.edm.docfinity.UploadThroughputMeter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Runs the hot folder mode of the CLI: watches a folder for new files and creates a document for
+* each of them with one long-lived client, until the process is stopped. Files are created once
+* their size and modification time stop changing, so files still being copied are not uploaded,
+* and are then moved to the done or error folder.
+*
+* <p>Metadata of a file can be given in a sidecar file with the same name and a '.json' extension
+* (ie. 'scan.pdf.json'), either a json array with the same format as '--metadataJson' or an object
+* with 'category', 'documentType' and 'metadata'. Sidecars must be written before the file is
+* stable, values missing from it fall back to the command line.
+*/
+@Slf4j
+public class HotFolderCommand {
+    private static final String SIDECAR_EXTENSION = ".json";
+    private static final String ERROR_EXTENSION = ".error.txt";
+    private static final long POLL_INTERVAL_MILLIS = 500;
+    private static final long METRICS_INTERVAL_SECONDS = 30;
+
+    private final DocFinityClientCLI cli;
+    private final List<DocumentField> defaultMetadata;
+    private final Path folder;
+    private final Path doneFolder;
+    private final Path errorFolder;
+    private final long stableMillis;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // Files seen in the folder and not submitted yet, only used by the watching thread.
+    private final Map<Path, FileState> pendingFiles = new LinkedHashMap<>();
+
+    // Files submitted and not moved yet.
+    private final Set<Path> inProgressFiles = ConcurrentHashMap.newKeySet();
+
+    // Files created in DocFinity that could not be moved to the done folder. They are left in the
+    // folder and never submitted again, so that they do not create duplicate documents.
+    private final Set<Path> createdFiles = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final UploadThroughputMeter uploadMeter = new UploadThroughputMeter();
+
+    private volatile boolean running = true;
+
+    public HotFolderCommand(DocFinityClientCLI cli, List<DocumentField> defaultMetadata) {
+        Preconditions.checkNotNull(cli, "cli is required.");
+        Preconditions.checkNotNull(defaultMetadata, "defaultMetadata is required.");
+        Preconditions.checkArgument(cli.workers > 0, "workers must be greater than 0.");
+        Preconditions.checkArgument(cli.stableSeconds >= 0, "stableSeconds must not be negative.");
+
+        this.cli = cli;
+        this.defaultMetadata = defaultMetadata;
+        this.folder = Paths.get(cli.watchFolder).toAbsolutePath();
+        this.doneFolder =
+                cli.doneFolder != null ? Paths.get(cli.doneFolder) : folder.resolve("done");
+        this.errorFolder =
+                cli.errorFolder != null ? Paths.get(cli.errorFolder) : folder.resolve("error");
+        this.stableMillis = TimeUnit.SECONDS.toMillis(cli.stableSeconds);
+    }
+
+    public void run() throws Exception {
+        Preconditions.checkArgument(
+                Files.isDirectory(folder), "Watch folder '%s' does not exist.", folder);
+        Files.createDirectories(doneFolder);
+        Files.createDirectories(errorFolder);
+
+        // Connections are kept open for every worker so that requests do not pay new handshakes.
+        DocFinityServiceOptions options =
+                DocFinityClientCLI.createServiceOptions(cli)
+                        .withMaxIdleConnections(cli.workers)
+                        .withUploadThroughputMeter(uploadMeter);
+        DocFinityClient client =
+                new DocFinityClient(
+                        new DocFinityServiceImpl(cli.url, cli.apiKey, cli.auditUser, options),
+                        DocFinityClientCLI.createClientOptions(cli));
+
+        ExecutorService workers = Executors.newFixedThreadPool(cli.workers);
+        ScheduledExecutorService metrics =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setDaemon(true)
+                                .setNameFormat("hot-folder-metrics")
+                                .build());
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        CountDownLatch stopped = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        // Stopping the process (ie. Ctrl+C or a service stop) lets documents in progress complete.
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(
+                                () -> {
+                                    running = false;
+                                    awaitQuietly(stopped);
+                                }));
+
+        metrics.scheduleAtFixedRate(
+                new MetricsLogger(),
+                METRICS_INTERVAL_SECONDS,
+                METRICS_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+
+        try {
+            folder.register(
+                    watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            log.info(
+                    "Watching '{}' with {} workers, processed files are moved to '{}' and '{}'.",
+                    folder,
+                    cli.workers,
+                    doneFolder,
+                    errorFolder);
+
+            // Files copied while the daemon was not running do not raise events.
+            scanFolder();
+            watch(watcher, client, workers);
+        } finally {
+            watcher.close();
+            metrics.shutdownNow();
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+            log.info(
+                    "Stopped watching '{}' after {}s: {} succeeded, {} failed, {} files not processed.",
+                    folder,
+                    String.format("%.1f", (System.nanoTime() - start) / 1e9),
+                    succeeded.get(),
+                    failed.get(),
+                    pendingFiles.size());
+            stopped.countDown();
+        }
+    }
+
+    private void watch(WatchService watcher, DocFinityClient client, ExecutorService workers)
+            throws IOException {
+        while (running) {
+            WatchKey key;
+            try {
+                key = watcher.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            if (key != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scanFolder();
+                    } else {
+                        track(folder.resolve((Path) event.context()));
+                    }
+                }
+                key.reset();
+            }
+
+            submitStableFiles(client, workers);
+        }
+    }
+
+    private void scanFolder() throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            files.sorted().forEach(this::track);
+        }
+    }
+
+    private void track(Path file) {
+        String name = file.getFileName().toString();
+
+        // Sidecars are read with their file, hidden and partial files are still being written.
+        boolean ignored =
+                name.endsWith(SIDECAR_EXTENSION)
+                        || name.startsWith(".")
+                        || name.endsWith(".tmp")
+                        || name.endsWith(".part");
+
+        if (!ignored
+                && !pendingFiles.containsKey(file)
+                && !inProgressFiles.contains(file)
+                && !createdFiles.contains(file)
+                && Files.isRegularFile(file)) {
+            pendingFiles.put(file, new FileState());
+        }
+    }
+
+    private void submitStableFiles(DocFinityClient client, ExecutorService workers) {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, FileState>> iterator = pendingFiles.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<Path, FileState> entry = iterator.next();
+            Path file = entry.getKey();
+            FileState state = entry.getValue();
+
+            String signature;
+            try {
+                signature = getSignature(file);
+            } catch (NoSuchFileException e) {
+                iterator.remove();
+                continue;
+            } catch (IOException e) {
+                log.warn(
+                        "Failed to read attributes of '{}'. Error Message: {}", file, e.getMessage());
+                continue;
+            }
+
+            if (!signature.equals(state.signature)) {
+                state.signature = signature;
+                state.stableSince = now;
+            } else if (now - state.stableSince >= stableMillis) {
+                iterator.remove();
+                inProgressFiles.add(file);
+                workers.execute(() -> ingest(client, file));
+            }
+        }
+    }
+
+    /** Returns the size and modification time of a file and its sidecar, to detect changes. */
+    private String getSignature(Path file) throws IOException {
+        String signature = Files.size(file) + "@" + Files.getLastModifiedTime(file).toMillis();
+        Path sidecar = getSidecar(file);
+
+        if (Files.exists(sidecar)) {
+            signature +=
+                    "," + Files.size(sidecar) + "@" + Files.getLastModifiedTime(sidecar).toMillis();
+        }
+        return signature;
+    }
+
+    private void ingest(DocFinityClient client, Path file) {
+        long start = System.nanoTime();
+
+        try {
+            IndexDocumentResult result;
+            try {
+                result = client.uploadIndexAndCommitDocument(toArgs(file));
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.warn(
+                        "Failed to create document from '{}'. Error Message: {}",
+                        file,
+                        e.getMessage());
+                moveToErrorFolder(file, e);
+                return;
+            }
+
+            latencyNanos.addAndGet(System.nanoTime() - start);
+            succeeded.incrementAndGet();
+            log.info("Created document '{}' from '{}'.", result.getId(), file.getFileName());
+            moveToDoneFolder(file, result.getId());
+        } finally {
+            inProgressFiles.remove(file);
+        }
+    }
+
+    /**
+    * Moves a file whose document was created. A failed move does not fail the file, which is kept
+    * in the folder and never submitted again by this process.
+    */
+    private void moveToDoneFolder(Path file, String documentId) {
+        try {
+            moveWithSidecar(file, doneFolder);
+        } catch (IOException e) {
+            createdFiles.add(file);
+            log.error(
+                    "Created document '{}' from '{}' but failed to move it to done folder, it will not be submitted again. Error Message: {}",
+                    documentId,
+                    file,
+                    e.getMessage());
+        }
+    }
+
+    private FileIndexDocumentArgs toArgs(Path file) throws IOException {
+        String category = cli.category;
+        String documentType = cli.documentType;
+        List<DocumentField> metadata = defaultMetadata;
+        Path sidecar = getSidecar(file);
+
+        if (Files.exists(sidecar)) {
+            JsonNode node = mapper.readTree(sidecar.toFile());
+            JsonNode metadataNode = node.isArray() ? node : node.get("metadata");
+
+            if (node.isObject()) {
+                category = node.path("category").asText(category);
+                documentType = node.path("documentType").asText(documentType);
+            }
+            if (metadataNode != null && !metadataNode.isNull()) {
+                metadata = Arrays.asList(mapper.treeToValue(metadataNode, DocumentField[].class));
+            }
+        }
+
+        Preconditions.checkNotNull(category, "category is required.");
+        Preconditions.checkNotNull(documentType, "documentType is required.");
+
+        return new FileIndexDocumentArgs()
+                .withFile(file.toFile())
+                .withDocumentType(category, documentType)
+                .withMetadata(metadata);
+    }
+
+    private void moveToErrorFolder(Path file, Exception error) {
+        try {
+            Path target = moveWithSidecar(file, errorFolder);
+            String message = error.getClass().getName() + ": " + error.getMessage();
+            Files.write(
+                    target.resolveSibling(target.getFileName() + ERROR_EXTENSION),
+                    message.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            log.error(
+                    "Failed to move '{}' to error folder. Error Message: {}", file, e.getMessage());
+        }
+    }
+
+    /** Moves a file and its sidecar, renaming them if the target folder has a file with the name. */
+    private Path moveWithSidecar(Path file, Path targetFolder) throws IOException {
+        String name = file.getFileName().toString();
+        Path target = targetFolder.resolve(name);
+
+        if (Files.exists(target)) {
+            target = targetFolder.resolve(System.currentTimeMillis() + "-" + name);
+        }
+
+        move(file, target);
+
+        Path sidecar = getSidecar(file);
+        if (Files.exists(sidecar)) {
+            move(sidecar, getSidecar(target));
+        }
+        return target;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Folders on different volumes.
+            Files.move(source, target);
+        }
+    }
+
+    private static Path getSidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + SIDECAR_EXTENSION);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Last observed size and modification time of a pending file. */
+    private static class FileState {
+        private String signature;
+        private long stableSince;
+    }
+
+    /** Logs the throughput of the last interval and the state of the folder. */
+    private class MetricsLogger implements Runnable {
+        private long lastSucceeded;
+        private long lastFailed;
+        private long lastLatencyNanos;
+        private long lastBytesSent;
+
+        @Override
+        public void run() {
+            long currentSucceeded = succeeded.get();
+            long currentFailed = failed.get();
+            long currentLatencyNanos = latencyNanos.get();
+            long currentBytesSent = uploadMeter.getBytesSent();
+            long intervalSucceeded = currentSucceeded - lastSucceeded;
+            long intervalFailed = currentFailed - lastFailed;
+            double averageMillis =
+                    intervalSucceeded == 0
+                            ? 0
+                            : (currentLatencyNanos - lastLatencyNanos) / 1e6 / intervalSucceeded;
+
+            log.info(
+                    "Last {}s: {} succeeded, {} failed, {} docs/sec, {} ms average, {} MB/s uploaded. {} in progress. Total: {} succeeded, {} failed.",
+                    METRICS_INTERVAL_SECONDS,
+                    intervalSucceeded,
+                    intervalFailed,
+                    String.format(
+                            "%.1f",
+                            (intervalSucceeded + intervalFailed) / (double) METRICS_INTERVAL_SECONDS),
+                    String.format("%.0f", averageMillis),
+                    String.format(
+                            "%.2f", (currentBytesSent - lastBytesSent) / 1e6 / METRICS_INTERVAL_SECONDS),
+                    inProgressFiles.size(),
+                    currentSucceeded,
+                    currentFailed);
+
+            lastSucceeded = currentSucceeded;
+            lastFailed = currentFailed;
+            lastLatencyNanos = currentLatencyNanos;
+            lastBytesSent = currentBytesSent;
+        }
+    }
+}
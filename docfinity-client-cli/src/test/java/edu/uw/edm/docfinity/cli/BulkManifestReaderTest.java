@@ -0,0 +1,165 @@
+package edu.uw.edm.docfinity.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import edu.uw.edm.docfinity.DocumentField;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BulkManifestReaderTest {
+    private static final List<DocumentField> DEFAULT_METADATA =
+            Collections.singletonList(DocumentField.fromSingleValue("Default", "value"));
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BulkManifestReader reader =
+            new BulkManifestReader("Category", "Document Type", DEFAULT_METADATA);
+
+    @Test
+    public void parseCsvLine_shouldReadQuotedValues() {
+        // act
+        List<String> values =
+                BulkManifestReader.parseCsvLine("a.pdf,\"b, c\",\"say \"\"hi\"\"\",,\"\"");
+
+        // assert
+        assertEquals(Arrays.asList("a.pdf", "b, c", "say \"hi\"", "", ""), values);
+    }
+
+    @Test
+    public void onReadCsv_shouldKeyEntriesByResolvedPathAndUseDefaults() throws Exception {
+        // arrange
+        Path manifest =
+                write(
+                        "manifest.csv",
+                        "path,category,documentType,metadata",
+                        "./scans/../scans/1.pdf,Other,Other Type,\"[{\"\"name\"\": \"\"Field\"\", \"\"values\"\": [\"\"1\"\"]}]\"",
+                        "",
+                        "scans/2.pdf,,,");
+
+        // act
+        List<BulkManifestEntry> entries = read(manifest.toString());
+
+        // assert
+        assertEquals(2, entries.size());
+
+        BulkManifestEntry first = entries.get(0);
+        Path file = folder.getRoot().toPath().resolve("scans/1.pdf");
+        assertEquals(file.toString(), first.getKey());
+        assertEquals(file.toFile(), first.getFile());
+        assertEquals("Other", first.getCategory());
+        assertEquals("Other Type", first.getDocumentType());
+        assertEquals("Field", first.getMetadata().get(0).getName());
+        assertEquals(Collections.singletonList("1"), first.getMetadata().get(0).getValues());
+
+        BulkManifestEntry second = entries.get(1);
+        assertEquals(folder.getRoot().toPath().resolve("scans/2.pdf").toString(), second.getKey());
+        assertEquals("Category", second.getCategory());
+        assertEquals("Document Type", second.getDocumentType());
+        assertEquals(DEFAULT_METADATA, second.getMetadata());
+        assertNull(second.getError());
+    }
+
+    @Test
+    public void onReadCsv_shouldReportInvalidRowsWithoutStoppingTheRun() throws Exception {
+        // arrange
+        Path manifest =
+                write(
+                        "manifest.csv",
+                        "path,metadata",
+                        "1.pdf,not json",
+                        ",",
+                        "3.pdf,");
+
+        // act
+        List<BulkManifestEntry> entries = read(manifest.toString());
+
+        // assert
+        assertEquals(3, entries.size());
+        assertNotNull(entries.get(0).getError());
+        assertTrue(entries.get(0).getError().getMessage().startsWith("Row 2 of manifest"));
+        assertNotNull(entries.get(1).getError());
+        assertTrue(entries.get(1).getError().getMessage().endsWith("the path is missing."));
+        assertNull(entries.get(2).getError());
+        assertEquals(folder.getRoot().toPath().resolve("3.pdf").toString(), entries.get(2).getKey());
+    }
+
+    @Test
+    public void onReadJsonLines_shouldReportInvalidLinesWithoutStoppingTheRun() throws Exception {
+        // arrange
+        Path manifest =
+                write(
+                        "manifest.jsonl",
+                        "{\"path\": \"1.pdf\", \"documentType\": \"Other Type\"}",
+                        "{\"path\": ",
+                        "{\"path\": \"3.pdf\", \"metadata\": [{\"name\": \"Field\", \"values\": [\"3\"]}]}");
+
+        // act
+        List<BulkManifestEntry> entries = read(manifest.toString());
+
+        // assert
+        assertEquals(3, entries.size());
+        assertEquals("Other Type", entries.get(0).getDocumentType());
+        assertEquals("Category", entries.get(0).getCategory());
+        assertNotNull(entries.get(1).getError());
+        assertEquals("Field", entries.get(2).getMetadata().get(0).getName());
+    }
+
+    @Test
+    public void onReadGlob_shouldReadMatchingFilesInOrder() throws Exception {
+        // arrange
+        write("scans/b.pdf", "b");
+        write("scans/a.pdf", "a");
+        write("scans/c.txt", "c");
+        write("scans/nested/d.pdf", "d");
+        String root = folder.getRoot().toPath().toString();
+
+        // act
+        List<BulkManifestEntry> entries = read(root + "/scans/*.pdf");
+
+        // assert
+        assertEquals(
+                Arrays.asList(root + "/scans/a.pdf", root + "/scans/b.pdf"),
+                entries.stream().map(BulkManifestEntry::getKey).collect(Collectors.toList()));
+        assertEquals(DEFAULT_METADATA, entries.get(0).getMetadata());
+    }
+
+    @Test
+    public void onReadGlob_shouldReadNestedFolders() throws Exception {
+        // arrange
+        write("scans/a.pdf", "a");
+        write("scans/nested/b.pdf", "b");
+        write("scans/nested/deeper/c.pdf", "c");
+        String root = folder.getRoot().toPath().toString();
+
+        // act
+        List<BulkManifestEntry> entries = read(root + "/scans/**.pdf");
+
+        // assert
+        assertEquals(3, entries.size());
+    }
+
+    private List<BulkManifestEntry> read(String source) throws Exception {
+        try (Stream<BulkManifestEntry> entries = reader.read(source)) {
+            return entries.collect(Collectors.toList());
+        }
+    }
+
+    private Path write(String name, String... lines) throws Exception {
+        Path path = folder.getRoot().toPath().resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return path;
+    }
+}
@@ -0,0 +1,108 @@
+package edu.uw.edm.docfinity.jdkhttp;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import edu.uw.edm.docfinity.DocFinityClient;
+import edu.uw.edm.docfinity.DocFinityServiceImpl;
+import edu.uw.edm.docfinity.DocFinityServiceOptions;
+import edu.uw.edm.docfinity.DocFinityTransport;
+import edu.uw.edm.docfinity.OkHttpTransport;
+import edu.uw.edm.docfinity.loadtest.LoadGenerator;
+import edu.uw.edm.docfinity.loadtest.LoadOperationEnum;
+import edu.uw.edm.docfinity.loadtest.LoadTestResult;
+import edu.uw.edm.docfinity.loadtest.StandInDocFinityServer;
+import edu.uw.edm.docfinity.loadtest.StandInDocumentType;
+import edu.uw.edm.docfinity.loadtest.StandInServerOptions;
+import java.net.http.HttpClient;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Compares the throughput, latency and connections opened by the OkHttp and JDK transports, creating
+* documents on the stand-in server at increasing concurrency levels. Each transport uses its own
+* server, so connections are counted separately.
+*/
+@Slf4j
+public class TransportBenchmark {
+    @Parameter(names = "--concurrency", description = "Comma separated list of concurrency levels.")
+    List<Integer> concurrencyLevels = Arrays.asList(1, 4, 16, 64);
+
+    @Parameter(names = "--documents", description = "Number of documents per concurrency level.")
+    int documents = 500;
+
+    @Parameter(names = "--warmup", description = "Number of documents to send before measuring.")
+    int warmupDocuments = 100;
+
+    @Parameter(names = "--payloadBytes", description = "Size of the content of each document.")
+    int payloadBytes = 16 * 1024;
+
+    @Parameter(
+            names = "--jdkVersion",
+            description = "HTTP version preferred by the JDK transport, HTTP_1_1 or HTTP_2.")
+    HttpClient.Version jdkVersion = HttpClient.Version.HTTP_2;
+
+    @Parameter(names = "--latency", description = "Stand-in server: latency per request in ms.")
+    long latencyMillis = 5;
+
+    @Parameter(names = "--help", help = true)
+    private boolean help = false;
+
+    public static void main(String... argv) throws Exception {
+        TransportBenchmark benchmark = new TransportBenchmark();
+
+        JCommander jCommander = JCommander.newBuilder().addObject(benchmark).build();
+        jCommander.parse(argv);
+
+        if (benchmark.help) {
+            jCommander.usage();
+            return;
+        }
+
+        // Idle connections are kept for the highest concurrency level so that they are re-used.
+        int maxConcurrency = Collections.max(benchmark.concurrencyLevels);
+        benchmark.run("okhttp", new OkHttpTransport(maxConcurrency));
+        benchmark.run(
+                "jdk", new JdkHttpTransport(HttpClient.newBuilder().version(benchmark.jdkVersion).build()));
+    }
+
+    private void run(String name, DocFinityTransport transport) throws Exception {
+        try (StandInDocFinityServer server =
+                new StandInDocFinityServer(
+                                new StandInServerOptions().withLatency(latencyMillis, 0))
+                        .start()) {
+            DocFinityClient client =
+                    new DocFinityClient(
+                            new DocFinityServiceImpl(
+                                    server.getUrl(),
+                                    "benchmark",
+                                    null,
+                                    new DocFinityServiceOptions().withTransport(transport)));
+            LoadGenerator generator =
+                    new LoadGenerator(
+                            client,
+                            StandInDocumentType.DEFAULT_CATEGORY,
+                            StandInDocumentType.DEFAULT_NAME,
+                            payloadBytes,
+                            LoadGenerator::createDefaultMetadata);
+
+            generator.run(LoadOperationEnum.CREATE, concurrencyLevels.get(0), warmupDocuments);
+
+            for (int concurrency : concurrencyLevels) {
+                int connectionsBefore = server.getConnectionCount();
+                LoadTestResult result = generator.run(LoadOperationEnum.CREATE, concurrency, documents);
+
+                log.info(
+                        "transport={} {} new connections={}",
+                        String.format("%-6s", name),
+                        result,
+                        server.getConnectionCount() - connectionsBefore);
+
+                if (result.getFirstError() != null) {
+                    log.info("  first error: {}", result.getFirstError());
+                }
+            }
+        }
+    }
+}
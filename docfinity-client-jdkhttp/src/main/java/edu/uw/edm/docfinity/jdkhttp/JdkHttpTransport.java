@@ -0,0 +1,212 @@
+package edu.uw.edm.docfinity.jdkhttp;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.uw.edm.docfinity.DocFinityTransport;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+* Transport of DocFinityServiceImpl that uses the HTTP client of the JDK (java.net.http). Requests
+* are multiplexed over HTTP/2 connections when the server supports it: negotiated with TLS, or
+* upgraded from HTTP/1.1 for cleartext urls. Other servers are used with HTTP/1.1.
+*
+* <p>Bodies up to 1 MB are converted to a byte array, larger bodies (uploads) are streamed to the
+* client through a pipe from a separate thread. Response bodies are read in memory.
+*/
+@Slf4j
+public class JdkHttpTransport implements DocFinityTransport {
+    private static final long BUFFERED_BODY_MAX_BYTES = 1024 * 1024;
+    private static final int PIPE_BUFFER_BYTES = 64 * 1024;
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+
+    // Headers that are set by the JDK client, requests that include them are rejected.
+    private static final Set<String> RESTRICTED_HEADERS =
+            ImmutableSet.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient client;
+    private final ExecutorService bodyWriters;
+
+    /** Creates a transport that prefers HTTP/2. */
+    public JdkHttpTransport() {
+        this(HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build());
+    }
+
+    /**
+    * Creates a transport with a custom client, ie. restricted to HTTP/1.1 or with a connect timeout.
+    *
+    * @param client Client that sends the requests.
+    */
+    public JdkHttpTransport(HttpClient client) {
+        Preconditions.checkNotNull(client, "client is required.");
+        this.client = client;
+        this.bodyWriters =
+                Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder()
+                                .setDaemon(true)
+                                .setNameFormat("docfinity-body-writer-%d")
+                                .build());
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        try {
+            return toResponse(request, client.send(toHttpRequest(request), BodyHandlers.ofByteArray()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response.");
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        HttpRequest httpRequest;
+        try {
+            httpRequest = toHttpRequest(request);
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        // The errors of the JDK client are wrapped in CompletionException.
+        CompletableFuture<HttpResponse<byte[]>> httpFuture =
+                client.sendAsync(httpRequest, BodyHandlers.ofByteArray());
+        httpFuture.whenComplete(
+                (httpResponse, error) -> {
+                    if (error != null) {
+                        future.completeExceptionally(
+                                error instanceof CompletionException && error.getCause() != null
+                                        ? error.getCause()
+                                        : error);
+                    } else {
+                        future.complete(toResponse(request, httpResponse));
+                    }
+                });
+
+        // Cancelling the future cancels the request (since Java 16).
+        future.whenComplete(
+                (response, error) -> {
+                    if (future.isCancelled()) {
+                        httpFuture.cancel(true);
+                    }
+                });
+        return future;
+    }
+
+    private HttpRequest toHttpRequest(Request request) throws IOException {
+        RequestBody body = request.body();
+        HttpRequest.Builder builder =
+                HttpRequest.newBuilder(request.url().uri())
+                        .method(request.method(), toBodyPublisher(body));
+
+        Headers headers = request.headers();
+        for (int i = 0; i < headers.size(); i++) {
+            if (!RESTRICTED_HEADERS.contains(headers.name(i).toLowerCase(Locale.ROOT))) {
+                builder.header(headers.name(i), headers.value(i));
+            }
+        }
+
+        // OkHttp sends the content type of the body when the request does not have one.
+        if (body != null && body.contentType() != null && request.header(HEADER_CONTENT_TYPE) == null) {
+            builder.header(HEADER_CONTENT_TYPE, body.contentType().toString());
+        }
+
+        return builder.build();
+    }
+
+    private BodyPublisher toBodyPublisher(RequestBody body) throws IOException {
+        if (body == null) {
+            return BodyPublishers.noBody();
+        }
+
+        long contentLength = body.contentLength();
+        if (contentLength >= 0 && contentLength <= BUFFERED_BODY_MAX_BYTES) {
+            Buffer buffer = new Buffer();
+            body.writeTo(buffer);
+            return BodyPublishers.ofByteArray(buffer.readByteArray());
+        }
+
+        BodyPublisher publisher = BodyPublishers.ofInputStream(() -> openPipe(body));
+        return contentLength >= 0 ? BodyPublishers.fromPublisher(publisher, contentLength) : publisher;
+    }
+
+    /** Returns a stream of the content of a body, that is written by a body writer thread. */
+    private InputStream openPipe(RequestBody body) {
+        PipedInputStream input = new PipedInputStream(PIPE_BUFFER_BYTES);
+        PipedOutputStream output;
+        try {
+            output = new PipedOutputStream(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        bodyWriters.execute(
+                () -> {
+                    // A failed write ends the stream early, so the request fails with a length mismatch.
+                    try (BufferedSink sink = Okio.buffer(Okio.sink(output))) {
+                        body.writeTo(sink);
+                    } catch (IOException e) {
+                        log.warn("Failed to write request body. Error Message: {}", e.getMessage());
+                    }
+                });
+        return input;
+    }
+
+    private static Response toResponse(Request request, HttpResponse<byte[]> httpResponse) {
+        Headers.Builder headers = new Headers.Builder();
+        for (Map.Entry<String, List<String>> header : httpResponse.headers().map().entrySet()) {
+            // HTTP/2 pseudo-headers (':status') are not headers for OkHttp.
+            if (!header.getKey().startsWith(":")) {
+                for (String value : header.getValue()) {
+                    headers.add(header.getKey(), value);
+                }
+            }
+        }
+
+        MediaType contentType =
+                httpResponse.headers().firstValue(HEADER_CONTENT_TYPE).map(MediaType::parse).orElse(null);
+
+        return new Response.Builder()
+                .request(request)
+                .protocol(
+                        httpResponse.version() == HttpClient.Version.HTTP_2
+                                ? Protocol.HTTP_2
+                                : Protocol.HTTP_1_1)
+                .code(httpResponse.statusCode())
+                .message("")
+                .headers(headers.build())
+                .body(ResponseBody.create(httpResponse.body(), contentType))
+                .build();
+    }
+}
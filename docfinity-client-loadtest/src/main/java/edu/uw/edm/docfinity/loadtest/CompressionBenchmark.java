@@ -0,0 +1,158 @@
+package edu.uw.edm.docfinity.loadtest;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import edu.uw.edm.docfinity.DocFinityService;
+import edu.uw.edm.docfinity.DocFinityServiceImpl;
+import edu.uw.edm.docfinity.DocFinityServiceOptions;
+import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
+import edu.uw.edm.docfinity.models.DocumentIndexingMetadataDTO;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Compares the request bytes and latency of index and commit calls with and without gzip request
+* compression, for batches of increasing size sent to the stand-in server.
+*/
+@Slf4j
+public class CompressionBenchmark {
+    @Parameter(names = "--batchSizes", description = "Comma separated list of batch sizes.")
+    List<Integer> batchSizes = Arrays.asList(1, 10, 50, 100, 250, 500);
+
+    @Parameter(names = "--iterations", description = "Number of measured calls per batch size.")
+    int iterations = 50;
+
+    @Parameter(names = "--warmup", description = "Number of calls per batch size before measuring.")
+    int warmupIterations = 10;
+
+    @Parameter(names = "--tags", description = "Number of multi-select values per document.")
+    int tagsPerDocument = 20;
+
+    @Parameter(
+            names = "--threshold",
+            description = "Size in bytes from which request bodies are compressed.")
+    int gzipThresholdBytes = new DocFinityServiceOptions().getGzipThresholdBytes();
+
+    @Parameter(names = "--latency", description = "Stand-in server: latency per request in ms.")
+    long latencyMillis = 0;
+
+    @Parameter(names = "--help", help = true)
+    private boolean help = false;
+
+    public static void main(String... argv) throws Exception {
+        CompressionBenchmark benchmark = new CompressionBenchmark();
+
+        JCommander jCommander = JCommander.newBuilder().addObject(benchmark).build();
+        jCommander.parse(argv);
+
+        if (benchmark.help) {
+            jCommander.usage();
+            return;
+        }
+
+        benchmark.run();
+    }
+
+    private void run() throws IOException {
+        try (StandInDocFinityServer server =
+                new StandInDocFinityServer(
+                                new StandInServerOptions().withLatency(latencyMillis, 0))
+                        .start()) {
+            DocFinityService plainService =
+                    new DocFinityServiceImpl(server.getUrl(), "benchmark", null);
+            DocFinityService gzipService =
+                    new DocFinityServiceImpl(
+                            server.getUrl(),
+                            "benchmark",
+                            null,
+                            new DocFinityServiceOptions()
+                                    .withGzipRequests(true)
+                                    .withGzipThreshold(gzipThresholdBytes));
+
+            List<String> documentIds = new ArrayList<>();
+            for (int i = 0; i < batchSizes.stream().max(Integer::compare).orElse(0); i++) {
+                documentIds.add(plainService.uploadDocument(new byte[16], "benchmark.pdf"));
+            }
+
+            log.info(
+                    "Index and commit calls with {} tags per document, gzip threshold {} bytes.",
+                    tagsPerDocument,
+                    gzipThresholdBytes);
+
+            for (int batchSize : batchSizes) {
+                DocumentIndexingDTO[] batch = createBatch(documentIds.subList(0, batchSize));
+                Measurement plain = measure(server, plainService, batch);
+                Measurement gzip = measure(server, gzipService, batch);
+
+                log.info(
+                        String.format(
+                                "batch=%-4d plain=%-9d gzip=%-9d ratio=%-5.2f p50 plain=%.2fms gzip=%.2fms p99 plain=%.2fms gzip=%.2fms",
+                                batchSize,
+                                plain.bytesPerRequest,
+                                gzip.bytesPerRequest,
+                                gzip.bytesPerRequest / (double) plain.bytesPerRequest,
+                                plain.result.getLatencyMillis(50),
+                                gzip.result.getLatencyMillis(50),
+                                plain.result.getLatencyMillis(99),
+                                gzip.result.getLatencyMillis(99)));
+            }
+        }
+    }
+
+    private Measurement measure(
+            StandInDocFinityServer server, DocFinityService service, DocumentIndexingDTO[] batch)
+            throws IOException {
+        for (int i = 0; i < warmupIterations; i++) {
+            service.indexDocuments(batch);
+        }
+
+        // Calls are sent one at a time, so the bytes received by the server are all from this batch.
+        long[] latencies = new long[iterations];
+        long bytesBefore = server.getBytesReceived();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            long callStart = System.nanoTime();
+            service.indexDocuments(batch);
+            latencies[i] = System.nanoTime() - callStart;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long bytesPerRequest = (server.getBytesReceived() - bytesBefore) / iterations;
+        return new Measurement(bytesPerRequest, new LoadTestResult(1, 0, elapsed, latencies, null));
+    }
+
+    /** Creates the indexing data of the default stand-in document type for documents. */
+    private DocumentIndexingDTO[] createBatch(List<String> documentIds) {
+        StandInDocumentType documentType = StandInDocumentType.createDefault();
+        DocumentIndexingDTO[] batch = new DocumentIndexingDTO[documentIds.size()];
+
+        for (int i = 0; i < batch.length; i++) {
+            List<DocumentIndexingMetadataDTO> entries = new ArrayList<>();
+            entries.add(new DocumentIndexingMetadataDTO(null, "M001", "Record Id", "R" + i));
+            entries.add(new DocumentIndexingMetadataDTO(null, "M002", "Record Name", "Record R" + i));
+            entries.add(new DocumentIndexingMetadataDTO(null, "M003", "Department", "Load Test"));
+            entries.add(new DocumentIndexingMetadataDTO(null, "M005", "Page Count", i % 100));
+            for (int tag = 0; tag < tagsPerDocument; tag++) {
+                entries.add(new DocumentIndexingMetadataDTO(null, "M004", "Tags", "Tag " + tag));
+            }
+
+            batch[i] = new DocumentIndexingDTO(documentType.getId(), documentIds.get(i), entries);
+        }
+        return batch;
+    }
+
+    /** Bytes received by the server per request and latency of the calls of a service. */
+    private static class Measurement {
+        private final long bytesPerRequest;
+        private final LoadTestResult result;
+
+        Measurement(long bytesPerRequest, LoadTestResult result) {
+            this.bytesPerRequest = bytesPerRequest;
+            this.result = result;
+        }
+    }
+}
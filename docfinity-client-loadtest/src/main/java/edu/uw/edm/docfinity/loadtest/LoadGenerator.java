@@ -0,0 +1,197 @@
+package edu.uw.edm.docfinity.loadtest;
+
+import com.google.common.base.Preconditions;
+import edu.uw.edm.docfinity.BulkIndexer;
+import edu.uw.edm.docfinity.BulkItem;
+import edu.uw.edm.docfinity.BulkSummary;
+import edu.uw.edm.docfinity.DocFinityClient;
+import edu.uw.edm.docfinity.DocumentField;
+import edu.uw.edm.docfinity.FileIndexDocumentArgs;
+import edu.uw.edm.docfinity.IndexDocumentArgs;
+import edu.uw.edm.docfinity.IndexDocumentResult;
+import edu.uw.edm.docfinity.ThreadModeEnum;
+import edu.uw.edm.docfinity.WorkerExecutors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongFunction;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Sends documents through a DocFinityClient from a number of concurrent workers and measures the
+* throughput and latency of each document.
+*/
+@Slf4j
+public class LoadGenerator {
+    private final DocFinityClient client;
+    private final String category;
+    private final String documentType;
+    private final byte[] content;
+    private final LongFunction<List<DocumentField>> metadataFactory;
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<String> createdDocumentIds = Collections.synchronizedList(new ArrayList<>());
+    private int batchSize = 20;
+    private ThreadModeEnum threadMode = ThreadModeEnum.PLATFORM;
+
+    /**
+    * Creates a new instance of the LoadGenerator.
+    *
+    * @param client Client to send documents with.
+    * @param category Category name to index documents.
+    * @param documentType Document type name to index documents.
+    * @param payloadBytes Size of the content uploaded for each document.
+    * @param metadataFactory Creates the metadata of a document from its sequence number.
+    */
+    public LoadGenerator(
+            DocFinityClient client,
+            String category,
+            String documentType,
+            int payloadBytes,
+            LongFunction<List<DocumentField>> metadataFactory) {
+        Preconditions.checkNotNull(client, "client is required.");
+        Preconditions.checkNotNull(category, "category is required.");
+        Preconditions.checkNotNull(documentType, "documentType is required.");
+        Preconditions.checkNotNull(metadataFactory, "metadataFactory is required.");
+        Preconditions.checkArgument(payloadBytes > 0, "payloadBytes must be greater than 0.");
+
+        this.client = client;
+        this.category = category;
+        this.documentType = documentType;
+        this.content = new byte[payloadBytes];
+        this.metadataFactory = metadataFactory;
+        Arrays.fill(content, (byte) 'x');
+    }
+
+    /** Sets the maximum number of documents per reindex call of the 'bulkReindex' operation. */
+    public LoadGenerator withBatchSize(int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be greater than 0.");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /** Sets the kind of threads of the workers, the 'bulkReindex' operation uses the client's. */
+    public LoadGenerator withThreadMode(ThreadModeEnum threadMode) {
+        Preconditions.checkNotNull(threadMode, "threadMode is required.");
+        this.threadMode = threadMode;
+        return this;
+    }
+
+    /** Creates metadata that matches the default document type of the stand-in server. */
+    public static List<DocumentField> createDefaultMetadata(long sequence) {
+        return Arrays.asList(
+                DocumentField.fromSingleValue("Record Id", "R" + sequence),
+                DocumentField.fromSingleValue("Department", "Load Test"),
+                new DocumentField("Tags", Arrays.asList("Tag A", "Tag B")),
+                DocumentField.fromSingleValue("Page Count", (int) (sequence % 100)));
+    }
+
+    /**
+    * Runs the operation for a number of documents spread over concurrent workers.
+    *
+    * @param operation Client operation to run, reindex operations require a previous 'create' run.
+    * @param concurrency Number of workers.
+    * @param documents Total number of documents to process.
+    */
+    public LoadTestResult run(LoadOperationEnum operation, int concurrency, int documents)
+            throws InterruptedException {
+        Preconditions.checkNotNull(operation, "operation is required.");
+        Preconditions.checkArgument(concurrency > 0, "concurrency must be greater than 0.");
+        Preconditions.checkArgument(documents > 0, "documents must be greater than 0.");
+        Preconditions.checkState(
+                operation == LoadOperationEnum.CREATE || !createdDocumentIds.isEmpty(),
+                "Documents must be created before running a reindex load.");
+
+        if (operation == LoadOperationEnum.BULK_REINDEX) {
+            return runBulkReindex(concurrency, documents);
+        }
+
+        // Latency of each document is stored by index so that workers do not contend, -1 is a failure.
+        long[] latencies = new long[documents];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<String> firstError = new AtomicReference<>();
+        ExecutorService workers = WorkerExecutors.newExecutor(threadMode, concurrency);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(
+                    () -> {
+                        int index;
+                        while ((index = next.getAndIncrement()) < documents) {
+                            long documentStart = System.nanoTime();
+                            try {
+                                runOne(operation, index);
+                                latencies[index] = System.nanoTime() - documentStart;
+                            } catch (Exception e) {
+                                latencies[index] = -1;
+                                failed.incrementAndGet();
+                                firstError.compareAndSet(null, e.toString());
+                            }
+                        }
+                    });
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        long[] succeeded = Arrays.stream(latencies).filter(l -> l >= 0).toArray();
+        return new LoadTestResult(concurrency, failed.get(), elapsed, succeeded, firstError.get());
+    }
+
+    private LoadTestResult runBulkReindex(int concurrency, int documents)
+            throws InterruptedException {
+        List<BulkItem<IndexDocumentArgs>> items = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            items.add(new BulkItem<>(String.valueOf(i), buildReindexArgs(i)));
+        }
+
+        long[] latencies = new long[documents];
+        AtomicReference<String> firstError = new AtomicReference<>();
+        BulkIndexer indexer = new BulkIndexer(client, concurrency);
+
+        BulkSummary summary =
+                indexer.reindexDocuments(
+                        items.iterator(),
+                        batchSize,
+                        result -> {
+                            int index = Integer.parseInt(result.getKey());
+                            latencies[index] = result.isSuccess() ? result.getElapsedNanos() : -1;
+                            if (!result.isSuccess()) {
+                                firstError.compareAndSet(null, result.getError().toString());
+                            }
+                        });
+
+        long[] succeeded = Arrays.stream(latencies).filter(l -> l >= 0).toArray();
+        return new LoadTestResult(
+                concurrency, summary.getFailed(), summary.getElapsedNanos(), succeeded, firstError.get());
+    }
+
+    private IndexDocumentArgs buildReindexArgs(int index) {
+        String documentId = createdDocumentIds.get(index % createdDocumentIds.size());
+        return new IndexDocumentArgs(documentId)
+                .withDocumentType(category, documentType)
+                .withMetadata(metadataFactory.apply(sequence.incrementAndGet()));
+    }
+
+    private void runOne(LoadOperationEnum operation, int index) throws Exception {
+        if (operation == LoadOperationEnum.CREATE) {
+            List<DocumentField> metadata = metadataFactory.apply(sequence.incrementAndGet());
+            FileIndexDocumentArgs args =
+                    new FileIndexDocumentArgs()
+                            .withFileContent(content, "load-test.pdf")
+                            .withDocumentType(category, documentType)
+                            .withMetadata(metadata);
+            IndexDocumentResult result = client.uploadIndexAndCommitDocument(args);
+            createdDocumentIds.add(result.getId());
+        } else {
+            client.reindexDocument(buildReindexArgs(index));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package edu.uw.edm.docfinity.loadtest;
+
+/** Represents the client operations that can be load tested. */
+public enum LoadOperationEnum {
+    CREATE("create"),
+    REINDEX("reindex"),
+    /** Reindex through BulkIndexer, which prefetches documents and batches reindex calls. */
+    BULK_REINDEX("bulkReindex");
+
+    /** Name of the operation in the --operation option of the CLI. */
+    private final String code;
+
+    LoadOperationEnum(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public static LoadOperationEnum fromString(String code) {
+        for (LoadOperationEnum output : LoadOperationEnum.values()) {
+            if (output.code.equalsIgnoreCase(code) || output.name().equalsIgnoreCase(code)) {
+                return output;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,21 @@
+package edu.uw.edm.docfinity.loadtest;
+
+import com.beust.jcommander.IStringConverter;
+import com.beust.jcommander.ParameterException;
+
+public class LoadOperationEnumConverter implements IStringConverter<LoadOperationEnum> {
+
+    @Override
+    public LoadOperationEnum convert(String value) {
+        LoadOperationEnum convertedValue = LoadOperationEnum.fromString(value);
+
+        if (convertedValue == null) {
+            throw new ParameterException(
+                    "Value "
+                            + value
+                            + " can not be converted to LoadOperationEnum. "
+                            + "Available values are: create, reindex, bulkReindex.");
+        }
+        return convertedValue;
+    }
+}
@@ -0,0 +1,277 @@
+package edu.uw.edm.docfinity.loadtest;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.uw.edm.docfinity.ConcurrencyLimitedDocFinityService;
+import edu.uw.edm.docfinity.DocFinityClient;
+import edu.uw.edm.docfinity.DocFinityClientOptions;
+import edu.uw.edm.docfinity.DocFinityEndpointEnum;
+import edu.uw.edm.docfinity.DocFinityService;
+import edu.uw.edm.docfinity.DocFinityServiceImpl;
+import edu.uw.edm.docfinity.DocFinityServiceOptions;
+import edu.uw.edm.docfinity.DocumentField;
+import edu.uw.edm.docfinity.HedgingMetrics;
+import edu.uw.edm.docfinity.ThreadModeEnum;
+import edu.uw.edm.docfinity.WarmUpArgs;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* The entry point of the load test runner. Runs the client against a DocFinity server (or an
+* embedded stand-in server if no url is given) at increasing concurrency levels and reports
+* documents per second and latency percentiles for each level.
+*/
+@Slf4j
+public class LoadTestCLI {
+    @Parameter(
+            names = {"--url", "-u"},
+            description = "DocFinity base url, an embedded stand-in server is started if omitted.")
+    String url;
+
+    @Parameter(
+            names = {"--key", "-k"},
+            description = "User API Key to use when interacting with DocFinity REST API.")
+    String apiKey = "load-test";
+
+    @Parameter(
+            names = {"--category", "-c"},
+            description = "Name of document category to use when creating documents.")
+    String category = StandInDocumentType.DEFAULT_CATEGORY;
+
+    @Parameter(
+            names = {"--documentType", "-d"},
+            description = "Name of document type to use when creating documents.")
+    String documentType = StandInDocumentType.DEFAULT_NAME;
+
+    @Parameter(
+            names = {"--metadataJson", "-j"},
+            description =
+                    "Json array with metadata values to index, defaults to values for the stand-in document type.")
+    String metadataJson;
+
+    @Parameter(
+            names = "--operation",
+            converter = LoadOperationEnumConverter.class,
+            description = "Operation to load test (create, reindex or bulkReindex).")
+    LoadOperationEnum operation = LoadOperationEnum.CREATE;
+
+    @Parameter(
+            names = "--batchSize",
+            description = "Maximum number of documents per reindex call for bulkReindex.")
+    int batchSize = 20;
+
+    @Parameter(
+            names = "--threadMode",
+            description = "Kind of threads of workers and parallel datasources (PLATFORM or VIRTUAL).")
+    ThreadModeEnum threadMode = ThreadModeEnum.PLATFORM;
+
+    @Parameter(
+            names = "--parallelDatasources",
+            description = "Execute the datasources of a document at the same time.")
+    boolean parallelDatasources;
+
+    @Parameter(
+            names = "--maxPerEndpoint",
+            description = "Maximum requests sent to each end-point at the same time, 0 for no limit.")
+    int maxRequestsPerEndpoint = 0;
+
+    @Parameter(
+            names = "--hedge",
+            description = "Hedge the requests for indexing data and controls when responses are late.")
+    boolean hedge;
+
+    @Parameter(names = "--concurrency", description = "Comma separated list of concurrency levels.")
+    List<Integer> concurrencyLevels = Arrays.asList(1, 4, 16, 64);
+
+    @Parameter(names = "--documents", description = "Number of documents per concurrency level.")
+    int documents = 500;
+
+    @Parameter(names = "--warmup", description = "Number of documents to send before measuring.")
+    int warmupDocuments = 100;
+
+    @Parameter(
+            names = "--warmUpCatalog",
+            description =
+                    "Load the document types and controls with DocFinityClient.warmUp before the warm up documents.")
+    boolean warmUpCatalog;
+
+    @Parameter(
+            names = "--warmUpControlsDocumentId",
+            description =
+                    "Id of an existing document used by --warmUpCatalog to load controls, only document type ids are loaded without it.")
+    String warmUpControlsDocumentId;
+
+    @Parameter(
+            names = "--cacheMinutes",
+            description =
+                    "Minutes that document type ids and controls are cached by the client, 0 to request them for every document.")
+    long cacheMinutes = 5;
+
+    @Parameter(names = "--payloadBytes", description = "Size of the content of each document.")
+    int payloadBytes = 64 * 1024;
+
+    @Parameter(
+            names = "--chunkSize",
+            description = "Size of the chunks that larger uploads are sent in, 0 for single requests.")
+    long uploadChunkSizeBytes = 0;
+
+    @Parameter(names = "--latency", description = "Stand-in server: latency per request in ms.")
+    long latencyMillis = 5;
+
+    @Parameter(names = "--jitter", description = "Stand-in server: maximum random latency in ms.")
+    long jitterMillis = 5;
+
+    @Parameter(names = "--errorRate", description = "Stand-in server: probability of a 500 error.")
+    double errorRate = 0;
+
+    @Parameter(names = "--maxRps", description = "Stand-in server: maximum requests per second.")
+    double maxRequestsPerSecond = 0;
+
+    @Parameter(names = "--serverThreads", description = "Stand-in server: number of threads.")
+    int serverThreads = 200;
+
+    @Parameter(
+            names = "--noChunkedUploads",
+            description = "Stand-in server: ignore chunk parameters like servers without support.")
+    boolean noChunkedUploads;
+
+    @Parameter(
+            names = "--maxConcurrent",
+            description = "Stand-in server: maximum requests served at the same time.")
+    int maxConcurrentRequests = 0;
+
+    @Parameter(names = "--help", help = true)
+    private boolean help = false;
+
+    private final HedgingMetrics hedgingMetrics = new HedgingMetrics();
+
+    public static void main(String... argv) throws Exception {
+        LoadTestCLI cli = new LoadTestCLI();
+
+        JCommander jCommander = JCommander.newBuilder().addObject(cli).build();
+        jCommander.parse(argv);
+
+        if (cli.help) {
+            jCommander.usage();
+            return;
+        }
+
+        StandInDocFinityServer server = null;
+        String url = cli.url;
+
+        try {
+            if (url == null) {
+                StandInServerOptions options =
+                        new StandInServerOptions()
+                                .withLatency(cli.latencyMillis, cli.jitterMillis)
+                                .withErrorRate(cli.errorRate)
+                                .withMaxRequestsPerSecond(cli.maxRequestsPerSecond)
+                                .withMaxConcurrentRequests(cli.maxConcurrentRequests)
+                                .withChunkedUploads(!cli.noChunkedUploads)
+                                .withThreads(cli.serverThreads);
+                server = new StandInDocFinityServer(options).start();
+                url = server.getUrl();
+            }
+
+            DocFinityClient client = createClient(cli, url);
+            LoadGenerator generator =
+                    new LoadGenerator(
+                                    client,
+                                    cli.category,
+                                    cli.documentType,
+                                    cli.payloadBytes,
+                                    getMetadataFactory(cli))
+                            .withBatchSize(cli.batchSize)
+                            .withThreadMode(cli.threadMode);
+
+            if (cli.warmUpCatalog) {
+                WarmUpArgs warmUpArgs =
+                        new WarmUpArgs().withParallelism(Collections.max(cli.concurrencyLevels));
+                if (cli.warmUpControlsDocumentId != null) {
+                    warmUpArgs.withControlsDocumentId(cli.warmUpControlsDocumentId);
+                }
+                client.warmUp(warmUpArgs);
+            }
+
+            // Warm up connections, JIT and server state, reindex also needs existing documents.
+            log.info("Warming up with {} documents.", cli.warmupDocuments);
+            LoadTestResult warmup =
+                    generator.run(LoadOperationEnum.CREATE, cli.concurrencyLevels.get(0), cli.warmupDocuments);
+            if (warmup.getFailed() == cli.warmupDocuments) {
+                log.error("All warm up documents failed, first error: {}", warmup.getFirstError());
+                return;
+            }
+
+            log.info(
+                    "Running '{}' with {} documents per level, payload {} bytes.",
+                    cli.operation.getCode(),
+                    cli.documents,
+                    cli.payloadBytes);
+
+            for (int concurrency : cli.concurrencyLevels) {
+                LoadTestResult result = generator.run(cli.operation, concurrency, cli.documents);
+                log.info("{}", result);
+
+                if (cli.hedge) {
+                    log.info(
+                            "  hedged requests={} wins={} (total since start)",
+                            cli.hedgingMetrics.getHedges(),
+                            cli.hedgingMetrics.getHedgeWins());
+                }
+
+                if (result.getFirstError() != null) {
+                    log.info("  first error: {}", result.getFirstError());
+                }
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static DocFinityClient createClient(LoadTestCLI cli, String url) {
+        // Idle connections are kept for the highest concurrency level so that they are re-used.
+        int maxConcurrency = Collections.max(cli.concurrencyLevels);
+        DocFinityServiceOptions serviceOptions =
+                new DocFinityServiceOptions()
+                        .withMaxIdleConnections(maxConcurrency)
+                        .withUploadChunkSize(cli.uploadChunkSizeBytes);
+
+        if (cli.hedge) {
+            serviceOptions
+                    .withHedging(
+                            DocFinityEndpointEnum.INDEXING_DATA, DocFinityEndpointEnum.INDEXING_CONTROLS)
+                    .withHedgingMetrics(cli.hedgingMetrics);
+        }
+
+        DocFinityService service = new DocFinityServiceImpl(url, cli.apiKey, null, serviceOptions);
+
+        if (cli.maxRequestsPerEndpoint > 0) {
+            service = new ConcurrencyLimitedDocFinityService(service, cli.maxRequestsPerEndpoint);
+        }
+
+        return new DocFinityClient(
+                service,
+                new DocFinityClientOptions()
+                        .withCacheExpiration(cli.cacheMinutes, TimeUnit.MINUTES)
+                        .withThreadMode(cli.threadMode)
+                        .withParallelDatasources(cli.parallelDatasources));
+    }
+
+    private static LongFunction<List<DocumentField>> getMetadataFactory(LoadTestCLI cli)
+            throws Exception {
+        if (cli.metadataJson == null) {
+            return LoadGenerator::createDefaultMetadata;
+        }
+
+        List<DocumentField> metadata =
+                Arrays.asList(new ObjectMapper().readValue(cli.metadataJson, DocumentField[].class));
+        return sequence -> metadata;
+    }
+}
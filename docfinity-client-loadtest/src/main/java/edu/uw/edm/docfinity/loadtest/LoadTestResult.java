@@ -0,0 +1,71 @@
+package edu.uw.edm.docfinity.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+
+/** Encapsulates the throughput and latency measured for one concurrency level. */
+@Getter
+public class LoadTestResult {
+    /** Number of workers sending documents at the same time. */
+    private final int concurrency;
+
+    /** Number of documents processed successfully. */
+    private final int succeeded;
+
+    /** Number of documents that failed. */
+    private final int failed;
+
+    /** Wall clock time of the run, in nanoseconds. */
+    private final long elapsedNanos;
+
+    /** Message of the first error, if any. */
+    private final String firstError;
+
+    private final long[] sortedLatencyNanos;
+
+    public LoadTestResult(
+            int concurrency, int failed, long elapsedNanos, long[] latencyNanos, String firstError) {
+        this.concurrency = concurrency;
+        this.succeeded = latencyNanos.length;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.firstError = firstError;
+        this.sortedLatencyNanos = latencyNanos.clone();
+        Arrays.sort(this.sortedLatencyNanos);
+    }
+
+    /** Returns the number of successful documents per second. */
+    public double getDocumentsPerSecond() {
+        return elapsedNanos == 0 ? 0 : succeeded / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+    * Returns the latency of successful documents at a percentile, in milliseconds.
+    *
+    * @param percentile Percentile between 0 and 100.
+    */
+    public double getLatencyMillis(double percentile) {
+        if (sortedLatencyNanos.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(percentile / 100.0 * sortedLatencyNanos.length) - 1;
+        index = Math.max(0, Math.min(sortedLatencyNanos.length - 1, index));
+        return sortedLatencyNanos[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "concurrency=%-4d ok=%-6d failed=%-5d docs/sec=%-9.1f p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                concurrency,
+                succeeded,
+                failed,
+                getDocumentsPerSecond(),
+                getLatencyMillis(50),
+                getLatencyMillis(90),
+                getLatencyMillis(99),
+                getLatencyMillis(100));
+    }
+}
@@ -0,0 +1,625 @@
+package edu.uw.edm.docfinity.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.RateLimiter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
+import edu.uw.edm.docfinity.models.DocumentIndexingMetadataDTO;
+import edu.uw.edm.docfinity.models.DocumentTypeDTO;
+import edu.uw.edm.docfinity.models.DocumentTypeDTOSearchResult;
+import edu.uw.edm.docfinity.models.ExecuteDatasourceResponseDTO;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Embedded HTTP server that behaves like the subset of the DocFinity REST API used by the client,
+* intended for end-to-end load testing. Documents are kept in memory.
+*/
+@Slf4j
+public class StandInDocFinityServer implements Closeable {
+    public static final String UPLOAD = "servlet/upload";
+    public static final String DOCUMENT_TYPES = "webservices/rest/documentType";
+    public static final String CONTROLS = "webservices/rest/indexing/controls";
+    public static final String EXECUTE_DATASOURCE = "webservices/rest/indexing/executeDatasource";
+    public static final String INDEX_COMMIT = "webservices/rest/indexing/index/commit";
+    public static final String REINDEX = "webservices/rest/indexing/reindex";
+    public static final String INDEXING_DATA = "webservices/rest/indexing/data";
+    public static final String DELETE = "webservices/rest/document/delete";
+
+    private static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+    private static final String CONTENT_TYPE_TEXT = "text/plain; charset=utf-8";
+
+    private final StandInServerOptions options;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, EndpointHandler> handlers = new HashMap<>();
+    private final Map<String, StandInDocumentType> documentTypes = new HashMap<>();
+    private final Map<String, StoredDocument> documents = new ConcurrentHashMap<>();
+    private final Map<String, ChunkedUpload> chunkedUploads = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong documentSequence = new AtomicLong();
+    private final AtomicLong entrySequence = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+    private final RateLimiter rateLimiter;
+    private final Semaphore concurrencyLimiter;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /** Functional interface of the endpoint handlers, the returned object is sent as response. */
+    interface EndpointHandler {
+        Object handle(HttpExchange exchange) throws IOException;
+    }
+
+    /** Thrown by handlers to respond with a status code other than 200. */
+    static class StandInException extends RuntimeException {
+        private final int status;
+
+        StandInException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /** Represents the state of an uploaded document. */
+    private static class StoredDocument {
+        private final String id;
+        private final List<DocumentIndexingMetadataDTO> entries = new ArrayList<>();
+        private final long contentLength;
+        private String documentTypeId;
+        private boolean committed;
+        private boolean deleted;
+
+        StoredDocument(String id, long contentLength) {
+            this.id = id;
+            this.contentLength = contentLength;
+        }
+    }
+
+    /** Represents the chunks received of an upload sent in chunks. */
+    private static class ChunkedUpload {
+        private final int chunks;
+        private final Map<Integer, Long> chunkLengths = new HashMap<>();
+
+        ChunkedUpload(int chunks) {
+            this.chunks = chunks;
+        }
+    }
+
+    public StandInDocFinityServer(StandInServerOptions options) {
+        Preconditions.checkNotNull(options, "options is required.");
+        this.options = options;
+
+        List<StandInDocumentType> types = options.getDocumentTypes();
+        if (types.isEmpty()) {
+            types = Arrays.asList(StandInDocumentType.createDefault());
+        }
+
+        for (StandInDocumentType type : types) {
+            documentTypes.put(type.getId(), type);
+        }
+
+        this.rateLimiter =
+                options.getMaxRequestsPerSecond() > 0
+                        ? RateLimiter.create(options.getMaxRequestsPerSecond())
+                        : null;
+        this.concurrencyLimiter =
+                options.getMaxConcurrentRequests() > 0
+                        ? new Semaphore(options.getMaxConcurrentRequests(), true)
+                        : null;
+
+        handlers.put(UPLOAD, this::upload);
+        handlers.put(DOCUMENT_TYPES, this::getDocumentTypes);
+        handlers.put(CONTROLS, this::getControls);
+        handlers.put(EXECUTE_DATASOURCE, this::executeDatasource);
+        handlers.put(INDEX_COMMIT, this::indexAndCommit);
+        handlers.put(REINDEX, this::reindex);
+        handlers.put(INDEXING_DATA, this::getIndexingData);
+        handlers.put(DELETE, this::delete);
+    }
+
+    /** Starts listening on the loopback interface. */
+    public StandInDocFinityServer start() throws IOException {
+        Preconditions.checkState(server == null, "Server already started.");
+
+        InetSocketAddress address =
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), options.getPort());
+        executor = Executors.newFixedThreadPool(options.getThreads());
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::dispatch);
+        server.start();
+
+        log.info("Stand-in DocFinity server listening on {}", getUrl());
+        return this;
+    }
+
+    /** Returns the base url to use in the client, ie. 'http://127.0.0.1:1234/'. */
+    public String getUrl() {
+        Preconditions.checkState(server != null, "Server not started.");
+        InetSocketAddress address = server.getAddress();
+        return String.format("http://%s:%d/", address.getHostString(), address.getPort());
+    }
+
+    /** Returns the number of requests received by an endpoint. */
+    public long getRequestCount(String endpoint) {
+        AtomicLong count = requestCounts.get(endpoint);
+        return count == null ? 0 : count.get();
+    }
+
+    /** Returns the number of request body bytes received by all endpoints, before decoding. */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+    * Returns the number of connections that sent requests, each connection has a different client
+    * address.
+    */
+    public int getConnectionCount() {
+        return clientAddresses.size();
+    }
+
+    /** Returns the number of documents that were uploaded and not deleted. */
+    public long getDocumentCount() {
+        return documents.values().stream().filter(d -> !d.deleted).count();
+    }
+
+    /** Returns the size of the uploaded content of a document, -1 if it does not exist. */
+    public long getDocumentContentLength(String documentId) {
+        StoredDocument document = documents.get(documentId);
+        return document == null ? -1 : document.contentLength;
+    }
+
+    /** Returns the number of documents that were committed and not deleted. */
+    public long getCommittedDocumentCount() {
+        return documents.values().stream().filter(d -> d.committed && !d.deleted).count();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        String endpoint = exchange.getRequestURI().getPath().replaceFirst("^/+", "");
+        requestCounts.computeIfAbsent(endpoint, e -> new AtomicLong()).incrementAndGet();
+        clientAddresses.add(exchange.getRemoteAddress());
+
+        try {
+            if (concurrencyLimiter != null) {
+                concurrencyLimiter.acquireUninterruptibly();
+            }
+
+            try {
+                if (rateLimiter != null) {
+                    rateLimiter.acquire();
+                }
+
+                EndpointHandler handler = handlers.get(endpoint);
+                if (handler == null) {
+                    throw new StandInException(404, "Unknown endpoint: " + endpoint);
+                }
+
+                sleep(getLatency(endpoint));
+
+                if (options.getErrorRate() > 0
+                        && ThreadLocalRandom.current().nextDouble() < options.getErrorRate()) {
+                    throw new StandInException(500, "Injected failure.");
+                }
+
+                Object result = handler.handle(exchange);
+                if (result instanceof String) {
+                    sendResponse(exchange, 200, CONTENT_TYPE_TEXT, (String) result);
+                } else {
+                    sendResponse(exchange, 200, CONTENT_TYPE_JSON, mapper.writeValueAsString(result));
+                }
+            } finally {
+                if (concurrencyLimiter != null) {
+                    concurrencyLimiter.release();
+                }
+            }
+        } catch (StandInException e) {
+            sendResponse(exchange, e.status, CONTENT_TYPE_TEXT, e.getMessage());
+        } catch (Exception e) {
+            log.warn("Stand-in request to '{}' failed.", endpoint, e);
+            sendResponse(exchange, 500, CONTENT_TYPE_TEXT, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private long getLatency(String endpoint) {
+        long latency =
+                options.getEndpointLatencyMillis().getOrDefault(endpoint, options.getLatencyMillis());
+        if (options.getLatencyJitterMillis() > 0) {
+            latency += ThreadLocalRandom.current().nextLong(options.getLatencyJitterMillis() + 1);
+        }
+        return latency;
+    }
+
+    private String upload(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        byte[] body = readBody(exchange);
+
+        // Only the length of the content is kept, the content is read to account for its cost.
+        long contentLength =
+                getFilePartLength(body, exchange.getRequestHeaders().getFirst("Content-Type"));
+
+        if (options.isChunkedUploads() && query.containsKey("uploadId")) {
+            return uploadChunk(query, contentLength);
+        }
+        return createDocument(contentLength);
+    }
+
+    /**
+    * Keeps a chunk of an upload sent with the chunk parameters of the client, responds with an empty
+    * body until the last chunk and then with the id of the document. Chunks sent again replace the
+    * previous ones.
+    */
+    private String uploadChunk(Map<String, String> query, long contentLength) {
+        String uploadId = query.get("uploadId");
+        int chunk = Integer.parseInt(query.getOrDefault("chunk", "0"));
+        int chunks = Integer.parseInt(query.getOrDefault("chunks", "1"));
+
+        if (chunk < 0 || chunk >= chunks) {
+            throw new StandInException(
+                    400, String.format("Chunk %d of upload '%s' is out of range.", chunk, uploadId));
+        }
+
+        ChunkedUpload upload =
+                chunkedUploads.computeIfAbsent(uploadId, id -> new ChunkedUpload(chunks));
+        long uploadLength;
+
+        synchronized (upload) {
+            upload.chunkLengths.put(chunk, contentLength);
+            if (chunk < chunks - 1) {
+                return "";
+            }
+
+            if (upload.chunkLengths.size() != upload.chunks) {
+                throw new StandInException(400, String.format("Upload '%s' is missing chunks.", uploadId));
+            }
+            uploadLength = upload.chunkLengths.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        chunkedUploads.remove(uploadId);
+        return createDocument(uploadLength);
+    }
+
+    private String createDocument(long contentLength) {
+        String documentId = String.format("SD%014d", documentSequence.incrementAndGet());
+        documents.put(documentId, new StoredDocument(documentId, contentLength));
+        return documentId;
+    }
+
+    private DocumentTypeDTOSearchResult getDocumentTypes(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        Map<String, String> filters = new HashMap<>();
+
+        if (query.containsKey("filter")) {
+            for (JsonNode filter : mapper.readTree(query.get("filter")).path("filters")) {
+                filters.put(filter.path("field").asText(), filter.path("value").asText());
+            }
+        }
+
+        List<DocumentTypeDTO> results =
+                documentTypes.values().stream()
+                        .filter(t -> matches(filters.get("name"), t.getName()))
+                        .filter(t -> matches(filters.get("categoryName"), t.getCategory()))
+                        .map(
+                                t -> {
+                                    DocumentTypeDTO dto = new DocumentTypeDTO(t.getId());
+                                    dto.setName(t.getName());
+                                    dto.setCategoryId(t.getCategory());
+                                    dto.setCategoryName(t.getCategory());
+                                    return dto;
+                                })
+                        .sorted(Comparator.comparing(DocumentTypeDTO::getId))
+                        .collect(Collectors.toList());
+
+        // Pages are only returned when requested, like DocFinity does with offset and limit.
+        int offset = Math.min(Integer.parseInt(query.getOrDefault("offset", "0")), results.size());
+        int limit = Integer.parseInt(query.getOrDefault("limit", Integer.toString(results.size())));
+
+        DocumentTypeDTOSearchResult result = new DocumentTypeDTOSearchResult();
+        result.setTotalAvailable(results.size());
+        result.setResults(
+                new ArrayList<>(results.subList(offset, Math.min(results.size(), offset + limit))));
+        return result;
+    }
+
+    private Object getControls(HttpExchange exchange) throws IOException {
+        // Request DTOs have no default constructor so they are read as a json tree.
+        JsonNode request = mapper.readTree(readBody(exchange));
+        String documentTypeId = request.path("documentTypeId").asText();
+        StoredDocument document = getDocument(request.path("documentId").asText());
+        StandInDocumentType documentType = getDocumentType(documentTypeId);
+
+        synchronized (document) {
+            document.documentTypeId = documentTypeId;
+        }
+
+        return documentType.getMetadata();
+    }
+
+    private Object executeDatasource(HttpExchange exchange) throws IOException {
+        JsonNode request = mapper.readTree(readBody(exchange));
+        getDocument(request.path("documentId").asText());
+
+        // The datasource result is derived from the prompt values so it can be verified.
+        List<String> values = new ArrayList<>();
+        for (JsonNode argument : request.path("arguments")) {
+            values.add(argument.path("value").asText());
+        }
+
+        String metadataId = request.path("metadataId").asText();
+        return Arrays.asList(new ExecuteDatasourceResponseDTO(metadataId, String.join(" - ", values)));
+    }
+
+    private Object indexAndCommit(HttpExchange exchange) throws IOException {
+        List<DocumentIndexingDTO> response = new ArrayList<>();
+
+        for (DocumentIndexingDTO request : readJson(exchange, DocumentIndexingDTO[].class)) {
+            StoredDocument document = getDocument(request.getDocumentId());
+            getDocumentType(request.getDocumentTypeId());
+
+            synchronized (document) {
+                document.documentTypeId = request.getDocumentTypeId();
+                document.entries.clear();
+                for (DocumentIndexingMetadataDTO entry : request.getIndexingMetadata()) {
+                    if (!entry.isMarkedForDelete()) {
+                        document.entries.add(copyEntry(entry, nextEntryId()));
+                    }
+                }
+                document.committed = true;
+                response.add(toIndexingDto(document));
+            }
+        }
+
+        return response;
+    }
+
+    private Object reindex(HttpExchange exchange) throws IOException {
+        List<DocumentIndexingDTO> response = new ArrayList<>();
+
+        for (DocumentIndexingDTO request : readJson(exchange, DocumentIndexingDTO[].class)) {
+            StoredDocument document = getDocument(request.getDocumentId());
+
+            synchronized (document) {
+                for (DocumentIndexingMetadataDTO entry : request.getIndexingMetadata()) {
+                    applyReindexEntry(document, entry);
+                }
+                response.add(toIndexingDto(document));
+            }
+        }
+
+        return response;
+    }
+
+    private Object getIndexingData(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        StoredDocument document = getDocument(query.get("documentId"));
+
+        synchronized (document) {
+            return toIndexingDto(document);
+        }
+    }
+
+    private Object delete(HttpExchange exchange) throws IOException {
+        for (String documentId : readJson(exchange, String[].class)) {
+            StoredDocument document = documents.get(documentId);
+            if (document != null) {
+                synchronized (document) {
+                    document.deleted = true;
+                }
+            }
+        }
+
+        return "";
+    }
+
+    private void applyReindexEntry(StoredDocument document, DocumentIndexingMetadataDTO entry) {
+        if (entry.getId() == null) {
+            if (!entry.isMarkedForDelete()) {
+                document.entries.add(copyEntry(entry, nextEntryId()));
+            }
+            return;
+        }
+
+        Iterator<DocumentIndexingMetadataDTO> iterator = document.entries.iterator();
+        while (iterator.hasNext()) {
+            DocumentIndexingMetadataDTO current = iterator.next();
+            if (entry.getId().equals(current.getId())) {
+                if (entry.isMarkedForDelete()) {
+                    iterator.remove();
+                } else {
+                    current.setValue(entry.getValue());
+                }
+                return;
+            }
+        }
+
+        throw new StandInException(
+                400, String.format("Indexing entry '%s' does not exist.", entry.getId()));
+    }
+
+    private DocumentIndexingDTO toIndexingDto(StoredDocument document) {
+        List<DocumentIndexingMetadataDTO> entries =
+                document.entries.stream()
+                        .map(e -> copyEntry(e, e.getId()))
+                        .collect(Collectors.toList());
+        DocumentIndexingDTO dto = new DocumentIndexingDTO();
+        dto.setDocumentId(document.id);
+        dto.setIndexingMetadata(entries);
+        dto.setMetadataLoaded(true);
+
+        if (document.documentTypeId != null) {
+            dto.setDocumentTypeId(document.documentTypeId);
+        }
+        return dto;
+    }
+
+    private DocumentIndexingMetadataDTO copyEntry(DocumentIndexingMetadataDTO entry, String id) {
+        return new DocumentIndexingMetadataDTO(
+                id, entry.getMetadataId(), entry.getMetadataName(), entry.getValue());
+    }
+
+    private String nextEntryId() {
+        return String.format("SE%014d", entrySequence.incrementAndGet());
+    }
+
+    private StoredDocument getDocument(String documentId) {
+        StoredDocument document = documentId == null ? null : documents.get(documentId);
+        if (document == null || document.deleted) {
+            throw new StandInException(
+                    404, String.format("Document '%s' does not exist.", documentId));
+        }
+        return document;
+    }
+
+    private StandInDocumentType getDocumentType(String documentTypeId) {
+        StandInDocumentType documentType = documentTypes.get(documentTypeId);
+        if (documentType == null) {
+            throw new StandInException(
+                    404, String.format("Document type '%s' does not exist.", documentTypeId));
+        }
+        return documentType;
+    }
+
+    private <T> T readJson(HttpExchange exchange, Class<T> type) throws IOException {
+        return mapper.readValue(readBody(exchange), type);
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] content;
+        try (InputStream body = exchange.getRequestBody()) {
+            content = ByteStreams.toByteArray(body);
+        }
+
+        // Received bytes are counted before decoding to measure the bytes sent on the wire.
+        bytesReceived.addAndGet(content.length);
+
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(content))) {
+                content = ByteStreams.toByteArray(body);
+            }
+        }
+        return content;
+    }
+
+    private void sendResponse(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, content.length == 0 ? -1 : content.length);
+
+        if (content.length > 0) {
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(content);
+            }
+        }
+    }
+
+    /** Returns the length of the 'upload_files' part of a multipart body, -1 if it has none. */
+    private static long getFilePartLength(byte[] body, String contentType) {
+        int boundaryIndex = contentType == null ? -1 : contentType.indexOf("boundary=");
+        if (boundaryIndex < 0) {
+            return -1;
+        }
+
+        byte[] delimiter =
+                ("\r\n--" + contentType.substring(boundaryIndex + "boundary=".length()))
+                        .getBytes(StandardCharsets.ISO_8859_1);
+        int partIndex = indexOf(body, "name=\"upload_files\"".getBytes(StandardCharsets.ISO_8859_1), 0);
+        int contentStart = indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1), partIndex);
+        if (partIndex < 0 || contentStart < 0) {
+            return -1;
+        }
+
+        contentStart += 4;
+        int contentEnd = indexOf(body, delimiter, contentStart);
+        return contentEnd < 0 ? -1 : contentEnd - contentStart;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int fromIndex) {
+        if (fromIndex < 0) {
+            return -1;
+        }
+
+        for (int i = fromIndex; i <= data.length - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery)
+            throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            int index = pair.indexOf('=');
+            String name = index < 0 ? pair : pair.substring(0, index);
+            String value = index < 0 ? "" : pair.substring(index + 1);
+            query.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return query;
+    }
+
+    private static boolean matches(String filterValue, String value) {
+        return filterValue == null || filterValue.equals(value);
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package edu.uw.edm.docfinity.loadtest;
+
+import com.google.common.collect.ImmutableList;
+import edu.uw.edm.docfinity.MetadataTypeEnum;
+import edu.uw.edm.docfinity.models.DatasourceArgumentPromptDTO;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Data;
+import lombok.NonNull;
+
+/** Represents a document type definition served by the stand-in DocFinity server. */
+@Data
+public class StandInDocumentType {
+    public static final String DEFAULT_CATEGORY = "Load Test";
+    public static final String DEFAULT_NAME = "Load Test Document";
+
+    private @NonNull String id;
+    private @NonNull String category;
+    private @NonNull String name;
+    private @NonNull List<MetadataDTO> metadata;
+
+    /**
+    * Creates the document type used by default in load tests. It has a required field, a
+    * multi-select field, typed fields and a field populated by a datasource that depends on
+    * 'Record Id', so that every indexing step of the client is exercised.
+    */
+    public static StandInDocumentType createDefault() {
+        MetadataDTO recordId = new MetadataDTO("M001", "Record Id");
+        recordId.setRequired(true);
+        recordId.setResponsibilityMapping(Arrays.asList("Record Name"));
+
+        MetadataDTO recordName = new MetadataDTO("M002", "Record Name");
+        recordName.setRunDatasourceEnabled(true);
+        recordName.setDatasourcePrompts(
+                Arrays.asList(
+                        new DatasourceArgumentPromptDTO("Record Id"),
+                        new DatasourceArgumentPromptDTO("DOCUMENT.documentType")));
+
+        MetadataDTO department = new MetadataDTO("M003", "Department");
+
+        MetadataDTO tags = new MetadataDTO("M004", "Tags");
+        tags.setAllowMultipleValues(true);
+
+        MetadataDTO pageCount = new MetadataDTO("M005", "Page Count");
+        pageCount.setDataType(MetadataTypeEnum.INTEGER);
+
+        MetadataDTO receivedDate = new MetadataDTO("M006", "Received Date");
+        receivedDate.setDataType(MetadataTypeEnum.DATE);
+
+        return new StandInDocumentType(
+                "DT001",
+                DEFAULT_CATEGORY,
+                DEFAULT_NAME,
+                ImmutableList.of(recordId, recordName, department, tags, pageCount, receivedDate));
+    }
+}
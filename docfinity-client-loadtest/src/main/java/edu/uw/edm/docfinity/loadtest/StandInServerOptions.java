@@ -0,0 +1,123 @@
+package edu.uw.edm.docfinity.loadtest;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+/** Encapsulates the latency, fault and capacity settings of the stand-in DocFinity server. */
+@Getter
+public class StandInServerOptions {
+    /** Port to listen on, 0 picks a free port. */
+    private int port = 0;
+
+    /** Number of threads that serve requests. */
+    private int threads = 200;
+
+    /** Latency added to every response, in milliseconds. */
+    private long latencyMillis = 0;
+
+    /** Maximum random latency added on top of the fixed latency, in milliseconds. */
+    private long latencyJitterMillis = 0;
+
+    /** Latency overrides by endpoint path (ie. 'servlet/upload'), in milliseconds. */
+    private final Map<String, Long> endpointLatencyMillis = new HashMap<>();
+
+    /** Probability between 0 and 1 that a request fails with a 500 status code. */
+    private double errorRate = 0;
+
+    /** Maximum number of requests served per second, 0 means unlimited. Excess requests queue. */
+    private double maxRequestsPerSecond = 0;
+
+    /** Maximum number of requests served at the same time, 0 means unlimited. */
+    private int maxConcurrentRequests = 0;
+
+    /**
+    * Whether uploads sent in chunks are assembled, otherwise the chunk parameters are ignored like
+    * servers without chunked upload support do.
+    */
+    private boolean chunkedUploads = true;
+
+    /** Document types available in the server. */
+    private final List<StandInDocumentType> documentTypes = new ArrayList<>();
+
+    /** Sets the port to listen on. */
+    public StandInServerOptions withPort(int port) {
+        Preconditions.checkArgument(port >= 0, "port must be positive.");
+        this.port = port;
+        return this;
+    }
+
+    /** Sets the number of threads that serve requests. */
+    public StandInServerOptions withThreads(int threads) {
+        Preconditions.checkArgument(threads > 0, "threads must be greater than 0.");
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+    * Sets the latency added to every response.
+    *
+    * @param latencyMillis Fixed latency in milliseconds.
+    * @param jitterMillis Maximum random latency added on top of the fixed latency.
+    */
+    public StandInServerOptions withLatency(long latencyMillis, long jitterMillis) {
+        Preconditions.checkArgument(latencyMillis >= 0, "latencyMillis must be positive.");
+        Preconditions.checkArgument(jitterMillis >= 0, "jitterMillis must be positive.");
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+    * Overrides the fixed latency of a single endpoint.
+    *
+    * @param endpoint Path of endpoint, ie. 'webservices/rest/indexing/index/commit'.
+    * @param latencyMillis Fixed latency in milliseconds.
+    */
+    public StandInServerOptions withEndpointLatency(String endpoint, long latencyMillis) {
+        Preconditions.checkNotNull(endpoint, "endpoint is required.");
+        Preconditions.checkArgument(latencyMillis >= 0, "latencyMillis must be positive.");
+        this.endpointLatencyMillis.put(endpoint, latencyMillis);
+        return this;
+    }
+
+    /** Sets the probability between 0 and 1 that a request fails with a 500 status code. */
+    public StandInServerOptions withErrorRate(double errorRate) {
+        Preconditions.checkArgument(
+                errorRate >= 0 && errorRate <= 1, "errorRate must be between 0 and 1.");
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /** Sets the maximum number of requests served per second, 0 means unlimited. */
+    public StandInServerOptions withMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        Preconditions.checkArgument(
+                maxRequestsPerSecond >= 0, "maxRequestsPerSecond must be positive.");
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        return this;
+    }
+
+    /** Sets the maximum number of requests served at the same time, 0 means unlimited. */
+    public StandInServerOptions withMaxConcurrentRequests(int maxConcurrentRequests) {
+        Preconditions.checkArgument(
+                maxConcurrentRequests >= 0, "maxConcurrentRequests must be positive.");
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    /** Sets whether uploads sent in chunks are assembled. */
+    public StandInServerOptions withChunkedUploads(boolean chunkedUploads) {
+        this.chunkedUploads = chunkedUploads;
+        return this;
+    }
+
+    /** Adds a document type to the server, if none is added the default type is served. */
+    public StandInServerOptions withDocumentType(StandInDocumentType documentType) {
+        Preconditions.checkNotNull(documentType, "documentType is required.");
+        this.documentTypes.add(documentType);
+        return this;
+    }
+}
@@ -0,0 +1,61 @@
+package edu.uw.edm.docfinity;
+
+import edu.uw.edm.docfinity.models.DocumentIndexingMetadataDTO;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Measures adding datasource results one field at a time, the way the client adds them, with a new
+* builder for each document. Run with '-PjmhProfilers=gc' to report the allocation rate.
+*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AddValueBenchmark {
+    /** Number of metadata objects of the document type, all of them are set by datasources. */
+    @Param({"20", "150"})
+    int fieldCount;
+
+    private Map<String, MetadataDTO> metadataMap;
+    private List<DocumentField> fields;
+
+    @Setup
+    public void setup() {
+        metadataMap = new HashMap<>();
+        fields = new ArrayList<>();
+
+        for (int i = 0; i < fieldCount; i++) {
+            MetadataDTO metadata = new MetadataDTO("M" + i, "Field " + i);
+            metadata.setAllowMultipleValues(i % 5 == 0);
+            metadataMap.put(metadata.getName(), metadata);
+            fields.add(DocumentField.fromSingleValue(metadata.getName(), "Value " + i));
+        }
+    }
+
+    @Benchmark
+    public List<DocumentIndexingMetadataDTO> newBuilder() {
+        IndexingMetadataBuilder builder =
+                new IndexingMetadataBuilder("Benchmark", metadataMap, Collections.emptyList());
+        fields.forEach(builder::addValue);
+        return builder.build();
+    }
+}
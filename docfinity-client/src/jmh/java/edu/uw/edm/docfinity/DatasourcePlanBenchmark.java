@@ -0,0 +1,152 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+import edu.uw.edm.docfinity.models.DatasourceArgumentDTO;
+import edu.uw.edm.docfinity.models.DatasourceArgumentPromptDTO;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Measures finding the datasources of a document and building their arguments, with the plan
+* compiled for the document type, with a plan compiled for every document (the cost of compiling
+* the plan, that is saved by keeping it with the indexed definitions of the type) and with the
+* lookups in the metadata definitions that were done for every document before plans, for document
+* types with many datasources and prompts.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DatasourcePlanBenchmark {
+    private static final Map<String, Function<ExecuteDatasourceArgs, Object>> DEFAULT_PROMPTS =
+            ImmutableMap.of(
+                    "DOCUMENT.documentType", ExecuteDatasourceArgs::getDocumentTypeName,
+                    "DOCUMENT.category", ExecuteDatasourceArgs::getCategory,
+                    "DOCUMENT.id", ExecuteDatasourceArgs::getDocumentId);
+
+    /** Number of datasource fields, each one triggered by its own client field. */
+    @Param({"10", "100"})
+    int datasourceCount;
+
+    /** Number of prompts of each datasource, the three default prompts and client fields. */
+    @Param({"4", "32"})
+    int promptCount;
+
+    private Map<String, MetadataDTO> metadataMap;
+    private ExecuteDatasourceArgs args;
+    private DatasourcePlan plan;
+
+    @Setup
+    public void setup() {
+        metadataMap = new HashMap<>();
+        Multimap<String, Object> clientFields = ArrayListMultimap.create();
+
+        List<DatasourceArgumentPromptDTO> prompts = new ArrayList<>();
+        for (String defaultPrompt : DEFAULT_PROMPTS.keySet()) {
+            prompts.add(new DatasourceArgumentPromptDTO(defaultPrompt));
+        }
+        for (int i = 0; prompts.size() < promptCount; i++) {
+            MetadataDTO prompt = new MetadataDTO("P" + i, "Prompt " + i);
+            metadataMap.put(prompt.getName(), prompt);
+            clientFields.put(prompt.getName(), "Value " + i);
+            prompts.add(new DatasourceArgumentPromptDTO(prompt.getName()));
+        }
+
+        for (int i = 0; i < datasourceCount; i++) {
+            MetadataDTO datasource = new MetadataDTO("D" + i, "Datasource " + i);
+            datasource.setDatasourcePrompts(prompts);
+            metadataMap.put(datasource.getName(), datasource);
+
+            MetadataDTO trigger = new MetadataDTO("T" + i, "Trigger " + i);
+            trigger.setResponsibilityMapping(Collections.singletonList(datasource.getName()));
+            metadataMap.put(trigger.getName(), trigger);
+            clientFields.put(trigger.getName(), "Value " + i);
+        }
+
+        args = new ExecuteDatasourceArgs();
+        args.setDocumentId("documentId");
+        args.setDocumentTypeId("documentTypeId");
+        args.setDocumentTypeName("Benchmark");
+        args.setCategory("Category");
+        args.setClientFields(clientFields);
+        args.setMetadataMap(metadataMap);
+        plan = DatasourcePlan.compile(metadataMap);
+    }
+
+    private List<List<DatasourceArgumentDTO>> bindArguments(DatasourcePlan plan) {
+        List<List<DatasourceArgumentDTO>> arguments = new ArrayList<>();
+        for (DatasourcePlan.DatasourceField field : plan.getDatasourcesToRun(args.getClientFields())) {
+            arguments.add(field.bindArguments(args));
+        }
+        return arguments;
+    }
+
+    @Benchmark
+    public List<List<DatasourceArgumentDTO>> compiledPlan() {
+        return bindArguments(plan);
+    }
+
+    @Benchmark
+    public List<List<DatasourceArgumentDTO>> planCompiledPerDocument() {
+        return bindArguments(DatasourcePlan.compile(metadataMap));
+    }
+
+    @Benchmark
+    public List<List<DatasourceArgumentDTO>> perDocumentLookups() {
+        Multimap<String, Object> clientFields = args.getClientFields();
+        Map<String, MetadataDTO> metadataMap = args.getMetadataMap();
+
+        List<String> fieldsToRun =
+                clientFields.entries().stream()
+                        .map(field -> metadataMap.get(field.getKey()))
+                        .filter(
+                                metadata ->
+                                        metadata.getResponsibilityMapping() != null
+                                                && !metadata.getResponsibilityMapping().isEmpty())
+                        .flatMap(metadata -> metadata.getResponsibilityMapping().stream())
+                        .filter(fieldName -> !clientFields.containsKey(fieldName))
+                        .collect(Collectors.toList());
+
+        List<List<DatasourceArgumentDTO>> arguments = new ArrayList<>();
+        for (String fieldName : fieldsToRun) {
+            List<DatasourceArgumentDTO> fieldArguments = new ArrayList<>();
+            for (DatasourceArgumentPromptDTO prompt : metadataMap.get(fieldName).getDatasourcePrompts()) {
+                String promptName = prompt.getArgumentName();
+                if (DEFAULT_PROMPTS.containsKey(promptName)) {
+                    Object promptValue = DEFAULT_PROMPTS.get(promptName).apply(args);
+                    fieldArguments.add(
+                            new DatasourceArgumentDTO(promptName, promptValue, MetadataTypeEnum.STRING));
+                } else {
+                    MetadataDTO promptMetadata = metadataMap.get(promptName);
+                    Object promptValue = clientFields.get(promptName).stream().findFirst().get();
+                    fieldArguments.add(
+                            new DatasourceArgumentDTO(promptName, promptValue, promptMetadata.getDataType()));
+                }
+            }
+            arguments.add(fieldArguments);
+        }
+        return arguments;
+    }
+}
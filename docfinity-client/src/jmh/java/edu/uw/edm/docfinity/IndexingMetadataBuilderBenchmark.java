@@ -0,0 +1,72 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import edu.uw.edm.docfinity.models.DocumentIndexingMetadataDTO;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Measures building and validating the indexing metadata of a document, for document types with
+* many fields and multi-select fields with many values.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IndexingMetadataBuilderBenchmark {
+    /** Number of metadata objects of the document type, all of them have values. */
+    @Param({"20", "150", "300"})
+    int fieldCount;
+
+    /** Number of values of each multi-select field, one in every five fields is multi-select. */
+    @Param({"1", "50"})
+    int multiSelectValues;
+
+    private Map<String, MetadataDTO> metadataMap;
+    private Multimap<String, Object> values;
+
+    @Setup
+    public void setup() {
+        metadataMap = new HashMap<>();
+        values = ArrayListMultimap.create();
+
+        for (int i = 0; i < fieldCount; i++) {
+            MetadataDTO metadata = new MetadataDTO("M" + i, "Field " + i);
+            metadata.setRequired(i % 2 == 0);
+            metadata.setAllowMultipleValues(i % 5 == 0);
+            metadataMap.put(metadata.getName(), metadata);
+
+            int valueCount = metadata.isAllowMultipleValues() ? multiSelectValues : 1;
+            for (int v = 0; v < valueCount; v++) {
+                values.put(metadata.getName(), "Value " + v);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<DocumentIndexingMetadataDTO> buildAndValidateAll() {
+        IndexingMetadataBuilder builder =
+                new IndexingMetadataBuilder("Benchmark", metadataMap, Collections.emptyList())
+                        .addValues(values);
+        builder.validateAllRequiredFieldsHaveValue();
+        return builder.build();
+    }
+}
@@ -0,0 +1,134 @@
+package edu.uw.edm.docfinity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
+import edu.uw.edm.docfinity.models.DocumentIndexingMetadataDTO;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Compares writing the json body of batch commits by serializing it to a String and then to bytes,
+* and by streaming it into the sink with JsonRequestBody. Run with the GC profiler to compare the
+* bytes allocated per body.
+*
+* <p>The reindex benchmark measures the whole request path of a batch commit in
+* DocFinityServiceImpl (building the request, logging and sending it) with a transport that writes
+* the body to the sink and answers with an empty list.
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JsonRequestBodyBenchmark {
+    private static final MediaType MEDIA_TYPE_JSON =
+            MediaType.parse("application/json; charset=utf-8");
+
+    /** Number of documents of the batch. */
+    @Param({"1", "100", "1000"})
+    int batchSize;
+
+    /** Number of multi-select values of each document. */
+    @Param({"20"})
+    int tagsPerDocument;
+
+    private DocumentIndexingDTO[] batch;
+    private BufferedSink sink;
+    private DocFinityServiceImpl service;
+
+    @Setup
+    public void setup() {
+        batch = new DocumentIndexingDTO[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            List<DocumentIndexingMetadataDTO> entries = new ArrayList<>();
+            entries.add(new DocumentIndexingMetadataDTO(null, "M001", "Record Id", "R" + i));
+            entries.add(new DocumentIndexingMetadataDTO(null, "M002", "Record Name", "Record R" + i));
+            entries.add(new DocumentIndexingMetadataDTO(null, "M003", "Department", "Benchmark"));
+            for (int tag = 0; tag < tagsPerDocument; tag++) {
+                entries.add(new DocumentIndexingMetadataDTO(null, "M004", "Tags", "Tag " + tag));
+            }
+            batch[i] = new DocumentIndexingDTO("DT001", "D" + i, entries);
+        }
+
+        sink = Okio.buffer(Okio.blackhole());
+        service =
+                new DocFinityServiceImpl(
+                        "http://docfinity.test/docfinity/",
+                        "apiKey",
+                        null,
+                        new DocFinityServiceOptions().withTransport(new SinkTransport()));
+    }
+
+    @Benchmark
+    public long stringBody() throws IOException {
+        String json = new ObjectMapper().writeValueAsString(batch);
+        RequestBody body = RequestBody.create(json.getBytes(StandardCharsets.UTF_8), MEDIA_TYPE_JSON);
+        body.writeTo(sink);
+        sink.flush();
+        return body.contentLength();
+    }
+
+    @Benchmark
+    public long streamingBody() throws IOException {
+        RequestBody body = new JsonRequestBody(batch, MEDIA_TYPE_JSON);
+        body.writeTo(sink);
+        sink.flush();
+        return body.contentLength();
+    }
+
+    @Benchmark
+    public int reindex() throws IOException {
+        return service.reindexDocuments(batch).size();
+    }
+
+    /** Writes the request bodies to the sink, and answers them with an empty list. */
+    private class SinkTransport implements DocFinityTransport {
+        @Override
+        public Response execute(Request request) throws IOException {
+            request.body().writeTo(sink);
+            sink.flush();
+            return new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(200)
+                    .message("OK")
+                    .body(ResponseBody.create("[]", MEDIA_TYPE_JSON))
+                    .build();
+        }
+
+        @Override
+        public CompletableFuture<Response> executeAsync(Request request) {
+            CompletableFuture<Response> future = new CompletableFuture<>();
+            try {
+                future.complete(execute(request));
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+    }
+}
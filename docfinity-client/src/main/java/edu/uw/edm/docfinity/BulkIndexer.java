@@ -0,0 +1,277 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Runs client operations for many documents concurrently over a single DocFinityClient, so that
+* connections and cached lookups are shared by all documents.
+*/
+@Slf4j
+public class BulkIndexer {
+    private final DocFinityClient client;
+    private final int workers;
+    private final BulkJournal journal;
+
+    /**
+    * Creates a new instance of the BulkIndexer.
+    *
+    * @param client Client used by all workers.
+    * @param workers Number of documents processed at the same time.
+    */
+    public BulkIndexer(DocFinityClient client, int workers) {
+        this(client, workers, null);
+    }
+
+    /**
+    * Creates a new instance of the BulkIndexer that records the state of each item in a journal.
+    * Items committed by a previous run with the same journal are skipped, and items that were
+    * uploaded but not committed are indexed without uploading them again. The journal records the
+    * size and modification time of the file of each item, items whose file changed since the
+    * previous run fail instead of resuming with the document of the old file.
+    *
+    * @param client Client used by all workers.
+    * @param workers Number of documents processed at the same time.
+    * @param journal Journal of the run, item keys must identify the same documents across runs.
+    */
+    public BulkIndexer(DocFinityClient client, int workers, BulkJournal journal) {
+        Preconditions.checkNotNull(client, "client is required.");
+        Preconditions.checkArgument(workers > 0, "workers must be greater than 0.");
+
+        this.client = client;
+        this.workers = workers;
+        this.journal = journal;
+    }
+
+    /**
+    * Uploads, indexes and commits documents. Items are read from the iterator as workers become
+    * available, so the iterator can be backed by a large manifest without loading it in memory.
+    *
+    * @param items Documents to upload.
+    * @param resultListener Receives the result of each item as it completes, it is called from the
+    *     worker threads so it must be thread-safe.
+    */
+    public BulkSummary uploadIndexAndCommitDocuments(
+            Iterator<BulkItem<FileIndexDocumentArgs>> items, Consumer<BulkItemResult> resultListener)
+            throws InterruptedException {
+        Preconditions.checkNotNull(items, "items is required.");
+        Preconditions.checkNotNull(resultListener, "resultListener is required.");
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+
+        // Items are handed to the pool only when a worker is free, which keeps the reading of the
+        // iterator a small step ahead of the uploads.
+        Semaphore available = new Semaphore(workers);
+        ExecutorService executor = WorkerExecutors.newExecutor(client.getThreadMode(), workers);
+        long start = System.nanoTime();
+
+        try {
+            while (items.hasNext()) {
+                BulkItem<FileIndexDocumentArgs> item = items.next();
+                available.acquire();
+
+                executor.execute(
+                        () -> {
+                            try {
+                                BulkItemResult result = uploadIndexAndCommitDocument(item);
+                                if (result.isSkipped()) {
+                                    skipped.incrementAndGet();
+                                } else {
+                                    (result.isSuccess() ? succeeded : failed).incrementAndGet();
+                                }
+                                notifyListener(resultListener, result);
+                            } finally {
+                                available.release();
+                            }
+                        });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            flushJournal();
+        }
+
+        return new BulkSummary(
+                succeeded.get(), failed.get(), skipped.get(), System.nanoTime() - start);
+    }
+
+    /**
+    * Reindexes documents. The workers read the controls, indexing data and datasources of upcoming
+    * documents while the reindex requests of earlier documents are sent, and requests are sent
+    * together in calls of up to batchSize documents, so throughput depends on the number of workers
+    * instead of the latency of each call. If a batch fails its documents are prepared again from
+    * their current indexing data and sent one by one.
+    *
+    * @param items Documents to reindex.
+    * @param batchSize Maximum number of documents sent in a single reindex call.
+    * @param resultListener Receives the result of each item as it completes, it is called from the
+    *     worker threads so it must be thread-safe.
+    */
+    public BulkSummary reindexDocuments(
+            Iterator<BulkItem<IndexDocumentArgs>> items,
+            int batchSize,
+            Consumer<BulkItemResult> resultListener)
+            throws InterruptedException {
+        Preconditions.checkNotNull(items, "items is required.");
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be greater than 0.");
+        Preconditions.checkNotNull(resultListener, "resultListener is required.");
+
+        return new BulkReindexPipeline(
+                        client,
+                        workers,
+                        batchSize,
+                        BulkReindexPipeline.DEFAULT_BATCH_DELAY_MILLIS,
+                        resultListener)
+                .run(items);
+    }
+
+    private BulkItemResult uploadIndexAndCommitDocument(BulkItem<FileIndexDocumentArgs> item) {
+        long start = System.nanoTime();
+        BulkJournalEntry entry = journal == null ? null : journal.get(item.getKey());
+
+        // Bulk uploads have LOW priority, unless the args of the document set one.
+        try (RequestPriorityContext.Scope scope =
+                RequestPriorityContext.enter(RequestPriorityEnum.LOW)) {
+            String fingerprint = journal == null ? null : fingerprint(item.getArgs());
+            IndexDocumentResult result;
+            if (entry == null || !isResumable(entry)) {
+                result =
+                        client.uploadIndexAndCommitDocument(
+                                item.getArgs(), journalListener(item, fingerprint));
+            } else if (entry.getFingerprint() != null
+                    && !entry.getFingerprint().equals(fingerprint)) {
+                throw new IllegalStateException(
+                        String.format(
+                                "File of '%s' changed since a previous run %s it as document '%s'.",
+                                item.getKey(),
+                                entry.getState() == JournalStateEnum.UPLOADED ? "uploaded" : "committed",
+                                entry.getDocumentId()));
+            } else if (entry.getState() == JournalStateEnum.UPLOADED) {
+                log.info("Resuming document '{}', id: {}", item.getKey(), entry.getDocumentId());
+                result =
+                        client.indexAndCommitUploadedDocument(
+                                item.getArgs(),
+                                entry.getDocumentId(),
+                                journalListener(item, fingerprint));
+            } else {
+                BulkItemResult skipped =
+                        new BulkItemResult(item.getKey(), entry.getDocumentId(), null, 0);
+                skipped.setSkipped(true);
+                return skipped;
+            }
+
+            return new BulkItemResult(item.getKey(), result.getId(), null, System.nanoTime() - start);
+        } catch (Exception e) {
+            log.warn("Failed to upload document '{}'. Error Message: {}", item.getKey(), e.getMessage());
+            return new BulkItemResult(item.getKey(), null, e, System.nanoTime() - start);
+        }
+    }
+
+    /**
+    * Returns whether the document of a journal entry can be resumed or skipped. Documents that were
+    * deleted, or that are queued in the orphan reaper, are uploaded again: resuming a queued one
+    * would race with its deletion. The reaper is checked as well as the state, because the state is
+    * written after the document is queued.
+    */
+    private boolean isResumable(BulkJournalEntry entry) {
+        if (entry.getState() == JournalStateEnum.DELETED
+                || entry.getState() == JournalStateEnum.QUEUED_FOR_DELETION) {
+            return false;
+        }
+
+        OrphanReaper orphanReaper = client.getOrphanReaper();
+        return entry.getState() != JournalStateEnum.UPLOADED
+                || orphanReaper == null
+                || !orphanReaper.isQueued(entry.getDocumentId());
+    }
+
+    /**
+    * Returns the size and modification time of the file of a document, or the size of its content,
+    * so that a resumed run can tell whether the file changed.
+    */
+    private static String fingerprint(FileIndexDocumentArgs args) {
+        if (args.getFile() != null) {
+            return args.getFile().length() + ":" + args.getFile().lastModified();
+        }
+        return args.getFileContent() == null ? null : String.valueOf(args.getFileContent().length);
+    }
+
+    private DocumentLifecycleListener journalListener(BulkItem<?> item, String fingerprint) {
+        if (journal == null) {
+            return DocumentLifecycleListener.NONE;
+        }
+
+        return new DocumentLifecycleListener() {
+            @Override
+            public void onUploaded(String documentId) throws IOException {
+                // The upload must be on disk before indexing, otherwise a crash leaves an orphan that
+                // the next run does not know about.
+                journal.appendDurably(
+                        item.getKey(), JournalStateEnum.UPLOADED, documentId, fingerprint);
+            }
+
+            @Override
+            public void onCommitted(String documentId) {
+                // If this record is lost the next run finds the document committed and skips it.
+                appendToJournal(item, JournalStateEnum.COMMITTED, documentId, fingerprint, false);
+            }
+
+            @Override
+            public void onDeleted(String documentId) {
+                // Deletes only happen on errors, so they are written durably as well.
+                appendToJournal(item, JournalStateEnum.DELETED, documentId, fingerprint, true);
+            }
+
+            @Override
+            public void onQueuedForDeletion(String documentId) {
+                appendToJournal(
+                        item, JournalStateEnum.QUEUED_FOR_DELETION, documentId, fingerprint, true);
+            }
+        };
+    }
+
+    private void appendToJournal(
+            BulkItem<?> item,
+            JournalStateEnum state,
+            String documentId,
+            String fingerprint,
+            boolean durable) {
+        try {
+            if (durable) {
+                journal.appendDurably(item.getKey(), state, documentId, fingerprint);
+            } else {
+                journal.append(item.getKey(), state, documentId, fingerprint);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Deletes can be reported by the orphan reaper after the journal is closed.
+            log.error("Failed to journal document '{}' as {}.", item.getKey(), state, e);
+        }
+    }
+
+    private void flushJournal() {
+        if (journal != null) {
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                log.error("Failed to flush bulk journal.", e);
+            }
+        }
+    }
+
+    private void notifyListener(Consumer<BulkItemResult> resultListener, BulkItemResult result) {
+        try {
+            resultListener.accept(result);
+        } catch (RuntimeException e) {
+            log.error("Result listener failed for item '{}'.", result.getKey(), e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package edu.uw.edm.docfinity;
+
+import lombok.Data;
+import lombok.NonNull;
+
+/** Represents one document of a bulk operation, with a key to correlate it with its result. */
+@Data
+public class BulkItem<T extends IndexDocumentArgsBase<T>> {
+    /** Caller defined key of the item, ie. a row number or file path. */
+    private final @NonNull String key;
+
+    /** Arguments of the operation for the item. */
+    private final @NonNull T args;
+}
@@ -0,0 +1,26 @@
+package edu.uw.edm.docfinity;
+
+import lombok.Data;
+
+/** Encapsulates the outcome of one document of a bulk operation. */
+@Data
+public class BulkItemResult {
+    /** Key of the item as given by the caller. */
+    private final String key;
+
+    /** Identifier of the document, null if the operation failed before it was known. */
+    private final String documentId;
+
+    /** Error that made the operation fail, null if it succeeded. */
+    private final Exception error;
+
+    /** Time spent processing the item, in nanoseconds. */
+    private final long elapsedNanos;
+
+    /** Whether the item was skipped because a previous run committed it. */
+    private boolean skipped;
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
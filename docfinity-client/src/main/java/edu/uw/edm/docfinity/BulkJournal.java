@@ -0,0 +1,349 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Append-only local journal of the state transitions of bulk items, used to resume a bulk run that
+* stopped: committed items are skipped and uploaded items are indexed without uploading them again.
+*
+* <p>Each record is a line with the state, document id, item key and the fingerprint of the file of
+* the item (if there is one) separated by tabs, the fingerprint tells whether the file changed since
+* the record was written. Records are buffered and written by a background thread that syncs the
+* file once per batch, so the cost of the sync is shared by all the records written during the
+* flush interval.
+*/
+@Slf4j
+public class BulkJournal implements Closeable {
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long flushIntervalMillis;
+    private final Map<String, BulkJournalEntry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingAvailable = lock.newCondition();
+    private final Condition batchFlushed = lock.newCondition();
+    private final Thread flusher;
+
+    // Guarded by lock.
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSequence;
+    private long flushedSequence;
+    private IOException flushError;
+    private boolean closed;
+
+    /**
+    * Opens a journal, loading the records of previous runs if the file exists.
+    *
+    * @param path Path of the journal file.
+    */
+    public BulkJournal(Path path) throws IOException {
+        this(path, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+    * Opens a journal, loading the records of previous runs if the file exists.
+    *
+    * @param path Path of the journal file.
+    * @param flushIntervalMillis Time that records are buffered before they are written and synced.
+    */
+    public BulkJournal(Path path, long flushIntervalMillis) throws IOException {
+        Preconditions.checkNotNull(path, "path is required.");
+        Preconditions.checkArgument(flushIntervalMillis >= 0, "flushIntervalMillis must be positive.");
+
+        this.path = path;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.channel =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+
+        load();
+
+        this.flusher = new Thread(this::flushLoop, "bulk-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /** Returns the last state recorded for an item, or null if there is none. */
+    public BulkJournalEntry get(String key) {
+        return entries.get(key);
+    }
+
+    /** Returns the number of items with records in the journal. */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+    * Appends a record without waiting for it to be written, it will be written in the next batch.
+    *
+    * @param key Key of the bulk item.
+    * @param state New state of the item.
+    * @param documentId Id of the document of the item.
+    */
+    public void append(String key, JournalStateEnum state, String documentId) throws IOException {
+        appendInternal(key, state, documentId, null);
+    }
+
+    /**
+    * Appends a record without waiting for it to be written, it will be written in the next batch.
+    *
+    * @param key Key of the bulk item.
+    * @param state New state of the item.
+    * @param documentId Id of the document of the item.
+    * @param fingerprint Fingerprint of the file of the item (ie. its size and modification time).
+    */
+    public void append(String key, JournalStateEnum state, String documentId, String fingerprint)
+            throws IOException {
+        appendInternal(key, state, documentId, fingerprint);
+    }
+
+    /**
+    * Appends a record and waits until the batch that contains it is written and synced to disk.
+    *
+    * @param key Key of the bulk item.
+    * @param state New state of the item.
+    * @param documentId Id of the document of the item.
+    */
+    public void appendDurably(String key, JournalStateEnum state, String documentId)
+            throws IOException {
+        appendDurably(key, state, documentId, null);
+    }
+
+    /**
+    * Appends a record and waits until the batch that contains it is written and synced to disk.
+    *
+    * @param key Key of the bulk item.
+    * @param state New state of the item.
+    * @param documentId Id of the document of the item.
+    * @param fingerprint Fingerprint of the file of the item (ie. its size and modification time).
+    */
+    public void appendDurably(
+            String key, JournalStateEnum state, String documentId, String fingerprint)
+            throws IOException {
+        long sequence = appendInternal(key, state, documentId, fingerprint);
+        awaitFlushed(sequence);
+    }
+
+    /** Waits until all records appended so far are written and synced to disk. */
+    public void flush() throws IOException {
+        long sequence;
+        lock.lock();
+        try {
+            sequence = appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+        awaitFlushed(sequence);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            lock.lock();
+            try {
+                closed = true;
+                pendingAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    private long appendInternal(
+            String key, JournalStateEnum state, String documentId, String fingerprint)
+            throws IOException {
+        Preconditions.checkNotNull(key, "key is required.");
+        Preconditions.checkNotNull(state, "state is required.");
+        Preconditions.checkNotNull(documentId, "documentId is required.");
+
+        String line = String.join("\t", state.name(), escape(documentId), escape(key));
+        if (fingerprint != null) {
+            line = line + "\t" + escape(fingerprint);
+        }
+        byte[] record = line.concat("\n").getBytes(StandardCharsets.UTF_8);
+
+        lock.lock();
+        try {
+            throwIfFailedOrClosed();
+            pending.write(record, 0, record.length);
+            entries.put(key, new BulkJournalEntry(state, documentId, fingerprint));
+            pendingAvailable.signal();
+            return ++appendedSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitFlushed(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (flushedSequence < sequence) {
+                throwIfFailedOrClosed();
+                batchFlushed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for journal flush.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (pending.size() == 0 && !closed) {
+                    pendingAvailable.awaitUninterruptibly();
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // Wait for more records so that a single sync covers all of them.
+            sleepUninterruptibly(flushIntervalMillis);
+
+            byte[] batch;
+            long batchSequence;
+            lock.lock();
+            try {
+                batch = pending.toByteArray();
+                batchSequence = appendedSequence;
+                pending = new ByteArrayOutputStream(batch.length);
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                log.error("Failed to write bulk journal '{}'.", path, e);
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    flushError = error;
+                } else {
+                    flushedSequence = batchSequence;
+                }
+                batchFlushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        byte[] content = Files.readAllBytes(path);
+
+        // A record without the line terminator was torn by a crash, it is dropped from the file so
+        // that the next record starts on a new line.
+        int validLength = 0;
+        for (int i = content.length - 1; i >= 0; i--) {
+            if (content[i] == '\n') {
+                validLength = i + 1;
+                break;
+            }
+        }
+
+        if (validLength < content.length) {
+            log.warn("Dropping incomplete record at the end of bulk journal '{}'.", path);
+            channel.truncate(validLength);
+        }
+
+        String text = new String(content, 0, validLength, StandardCharsets.UTF_8);
+        for (String line : text.split("\n")) {
+            // Tabs in values are escaped, and records of older versions have no fingerprint.
+            String[] parts = line.split("\t", 4);
+            if (parts.length >= 3) {
+                JournalStateEnum state = JournalStateEnum.valueOf(parts[0]);
+                String fingerprint = parts.length == 4 ? unescape(parts[3]) : null;
+                entries.put(
+                        unescape(parts[2]),
+                        new BulkJournalEntry(state, unescape(parts[1]), fingerprint));
+            }
+        }
+
+        channel.position(validLength);
+    }
+
+    private void throwIfFailedOrClosed() throws IOException {
+        if (flushError != null) {
+            throw new IOException("Bulk journal failed to write to disk.", flushError);
+        }
+        if (closed) {
+            throw new IllegalStateException("Bulk journal is closed.");
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static void sleepUninterruptibly(long millis) {
+        if (millis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package edu.uw.edm.docfinity;
+
+import lombok.Data;
+
+/** Represents the last state recorded in a BulkJournal for a bulk item. */
+@Data
+public class BulkJournalEntry {
+    private final JournalStateEnum state;
+    private final String documentId;
+
+    /** Fingerprint of the file of the item when it was recorded, null if none was recorded. */
+    private final String fingerprint;
+
+    public BulkJournalEntry(JournalStateEnum state, String documentId) {
+        this(state, documentId, null);
+    }
+
+    public BulkJournalEntry(JournalStateEnum state, String documentId, String fingerprint) {
+        this.state = state;
+        this.documentId = documentId;
+        this.fingerprint = fingerprint;
+    }
+}
@@ -0,0 +1,238 @@
+package edu.uw.edm.docfinity;
+
+import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Reindexes documents in two stages: workers prepare each document (controls, indexing data and
+* datasources) while the reindex requests of prepared documents are sent together in batches, so
+* that the reads of upcoming documents overlap with the reindex calls of earlier ones.
+*
+* <p>A failed batch may have been applied in part, so its documents are not sent again as they
+* were prepared: each one is prepared again from its current indexing data and sent alone.
+*/
+@Slf4j
+class BulkReindexPipeline {
+    /** Default maximum time a prepared document waits for its batch to fill up. */
+    static final long DEFAULT_BATCH_DELAY_MILLIS = 20;
+
+    private final DocFinityClient client;
+    private final int workers;
+    private final int batchSize;
+    private final long batchDelayMillis;
+    private final Consumer<BulkItemResult> resultListener;
+    private final Semaphore available;
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    // Guarded by this.
+    private List<PendingReindex> batch = new ArrayList<>();
+
+    private ExecutorService reindexExecutor;
+
+    BulkReindexPipeline(
+            DocFinityClient client,
+            int workers,
+            int batchSize,
+            long batchDelayMillis,
+            Consumer<BulkItemResult> resultListener) {
+        this.client = client;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.batchDelayMillis = batchDelayMillis;
+        this.resultListener = resultListener;
+
+        // Limits the documents in flight, enough to keep the workers busy and fill a batch.
+        this.available = new Semaphore(workers + batchSize);
+    }
+
+    BulkSummary run(Iterator<BulkItem<IndexDocumentArgs>> items) throws InterruptedException {
+        ExecutorService prepareExecutor = WorkerExecutors.newExecutor(client.getThreadMode(), workers);
+        ScheduledExecutorService batchTimer = Executors.newSingleThreadScheduledExecutor();
+        reindexExecutor = WorkerExecutors.newExecutor(client.getThreadMode(), workers);
+        long start = System.nanoTime();
+
+        batchTimer.scheduleWithFixedDelay(
+                this::sendBatch, batchDelayMillis, batchDelayMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            while (items.hasNext()) {
+                BulkItem<IndexDocumentArgs> item = items.next();
+                available.acquire();
+                prepareExecutor.execute(() -> prepare(item));
+            }
+        } finally {
+            prepareExecutor.shutdown();
+            prepareExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            batchTimer.shutdownNow();
+            batchTimer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            sendBatch();
+            reindexExecutor.shutdown();
+            reindexExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        return new BulkSummary(succeeded.get(), failed.get(), 0, System.nanoTime() - start);
+    }
+
+    private void prepare(BulkItem<IndexDocumentArgs> item) {
+        long start = System.nanoTime();
+        PendingReindex pending;
+
+        try (RequestPriorityContext.Scope scope = enterPriority(item.getArgs())) {
+            pending = new PendingReindex(item.getKey(), client.prepareReindex(item.getArgs()), start);
+        } catch (Exception e) {
+            complete(item.getKey(), null, e, start);
+            return;
+        }
+
+        if (pending.getPrepared().isUnchanged()) {
+            complete(pending, pending.getPrepared().getCurrentIndexingData());
+            return;
+        }
+
+        List<PendingReindex> fullBatch = null;
+        synchronized (this) {
+            batch.add(pending);
+            if (batch.size() >= batchSize) {
+                fullBatch = batch;
+                batch = new ArrayList<>();
+            }
+        }
+
+        if (fullBatch != null) {
+            submit(fullBatch);
+        }
+    }
+
+    private void sendBatch() {
+        List<PendingReindex> partialBatch;
+        synchronized (this) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            partialBatch = batch;
+            batch = new ArrayList<>();
+        }
+
+        submit(partialBatch);
+    }
+
+    private void submit(List<PendingReindex> pendingBatch) {
+        reindexExecutor.execute(() -> reindex(pendingBatch));
+    }
+
+    private void reindex(List<PendingReindex> pendingBatch) {
+        List<PreparedReindex> prepared = new ArrayList<>();
+        pendingBatch.forEach(pending -> prepared.add(pending.getPrepared()));
+
+        Map<String, DocumentIndexingDTO> indexedDtos = new HashMap<>();
+        try (RequestPriorityContext.Scope scope = enterPriority(prepared.get(0).getArgs())) {
+            for (DocumentIndexingDTO indexedDto : client.reindexPrepared(prepared)) {
+                indexedDtos.put(indexedDto.getDocumentId(), indexedDto);
+            }
+        } catch (Exception e) {
+            if (pendingBatch.size() > 1) {
+                // Send the documents one by one, so that only the invalid ones fail.
+                log.warn(
+                        "Failed to reindex batch of {} documents, retrying them one by one. Error Message: {}",
+                        pendingBatch.size(),
+                        e.getMessage());
+                pendingBatch.forEach(this::reindexAlone);
+            } else {
+                PendingReindex pending = pendingBatch.get(0);
+                complete(pending.getKey(), null, e, pending.getStart());
+            }
+            return;
+        }
+
+        for (PendingReindex pending : pendingBatch) {
+            String documentId = pending.getPrepared().getArgs().getDocumentId();
+            DocumentIndexingDTO indexedDto = indexedDtos.get(documentId);
+
+            if (indexedDto != null) {
+                complete(pending, indexedDto);
+            } else {
+                String message =
+                        String.format("Reindex response is missing document '%s'.", documentId);
+                complete(pending.getKey(), null, new IllegalStateException(message), pending.getStart());
+            }
+        }
+    }
+
+    /**
+    * Prepares a document of a failed batch again and sends it alone. The batch may have indexed
+    * the document before it failed, so the request is built again from its current indexing data.
+    */
+    private void reindexAlone(PendingReindex failed) {
+        IndexDocumentArgs args = failed.getPrepared().getArgs();
+        PendingReindex pending;
+
+        try (RequestPriorityContext.Scope scope = enterPriority(args)) {
+            pending =
+                    new PendingReindex(failed.getKey(), client.prepareReindex(args), failed.getStart());
+        } catch (Exception e) {
+            complete(failed.getKey(), null, e, failed.getStart());
+            return;
+        }
+
+        if (pending.getPrepared().isUnchanged()) {
+            complete(pending, pending.getPrepared().getCurrentIndexingData());
+        } else {
+            reindex(Collections.singletonList(pending));
+        }
+    }
+
+    /** Bulk reindexes have LOW priority, unless the args of the document set one. */
+    private static RequestPriorityContext.Scope enterPriority(IndexDocumentArgs args) {
+        return RequestPriorityContext.enter(
+                args.getPriority() != null ? args.getPriority() : RequestPriorityEnum.LOW);
+    }
+
+    private void complete(PendingReindex pending, DocumentIndexingDTO indexedDto) {
+        try {
+            IndexDocumentResult result = client.completeReindex(pending.getPrepared(), indexedDto);
+            complete(pending.getKey(), result.getId(), null, pending.getStart());
+        } catch (RuntimeException e) {
+            complete(pending.getKey(), null, e, pending.getStart());
+        }
+    }
+
+    private void complete(String key, String documentId, Exception error, long start) {
+        try {
+            if (error != null) {
+                log.warn("Failed to reindex document '{}'. Error Message: {}", key, error.getMessage());
+                failed.incrementAndGet();
+            } else {
+                succeeded.incrementAndGet();
+            }
+
+            resultListener.accept(new BulkItemResult(key, documentId, error, System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            log.error("Result listener failed for item '{}'.", key, e);
+        } finally {
+            available.release();
+        }
+    }
+
+    /** A prepared document waiting to be sent in a batch. */
+    @Data
+    private static class PendingReindex {
+        private final String key;
+        private final PreparedReindex prepared;
+        private final long start;
+    }
+}
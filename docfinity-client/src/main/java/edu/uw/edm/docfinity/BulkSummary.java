@@ -0,0 +1,31 @@
+package edu.uw.edm.docfinity;
+
+import java.util.concurrent.TimeUnit;
+import lombok.Data;
+
+/** Encapsulates the totals of a bulk operation. */
+@Data
+public class BulkSummary {
+    /** Number of documents that succeeded. */
+    private final int succeeded;
+
+    /** Number of documents that failed. */
+    private final int failed;
+
+    /** Number of documents skipped because a previous run committed them. */
+    private final int skipped;
+
+    /** Wall clock time of the operation, in nanoseconds. */
+    private final long elapsedNanos;
+
+    public int getTotal() {
+        return succeeded + failed + skipped;
+    }
+
+    /** Returns the number of documents processed per second, not including skipped documents. */
+    public double getDocumentsPerSecond() {
+        return elapsedNanos == 0
+                ? 0
+                : (succeeded + failed) / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,148 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
+import edu.uw.edm.docfinity.models.DocumentTypeDTOSearchResult;
+import edu.uw.edm.docfinity.models.ExecuteDatasourceRequestDTO;
+import edu.uw.edm.docfinity.models.ExecuteDatasourceResponseDTO;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+* Wraps a DocFinityService to limit the number of requests sent to each end-point at the same time.
+* With virtual threads the number of concurrent documents is no longer limited by a thread pool, so
+* the limits protect DocFinity (and the connection pool) from bursts of requests; callers over the
+* limit wait for a permit.
+*/
+public class ConcurrencyLimitedDocFinityService implements DocFinityService {
+    private final DocFinityService service;
+    private final Map<DocFinityEndpointEnum, Semaphore> permits =
+            new EnumMap<>(DocFinityEndpointEnum.class);
+
+    /**
+    * Creates a new instance of the service.
+    *
+    * @param service Service that sends the requests.
+    * @param maxConcurrentRequests Maximum requests sent to each end-point at the same time.
+    */
+    public ConcurrencyLimitedDocFinityService(DocFinityService service, int maxConcurrentRequests) {
+        Preconditions.checkNotNull(service, "service is required.");
+        Preconditions.checkArgument(
+                maxConcurrentRequests > 0, "maxConcurrentRequests must be greater than 0.");
+
+        this.service = service;
+        for (DocFinityEndpointEnum endpoint : DocFinityEndpointEnum.values()) {
+            permits.put(endpoint, new Semaphore(maxConcurrentRequests, true));
+        }
+    }
+
+    /**
+    * Sets the maximum requests sent to an end-point at the same time. Must be called before the
+    * service is used.
+    */
+    public ConcurrencyLimitedDocFinityService withLimit(
+            DocFinityEndpointEnum endpoint, int maxConcurrentRequests) {
+        Preconditions.checkNotNull(endpoint, "endpoint is required.");
+        Preconditions.checkArgument(
+                maxConcurrentRequests > 0, "maxConcurrentRequests must be greater than 0.");
+        permits.put(endpoint, new Semaphore(maxConcurrentRequests, true));
+        return this;
+    }
+
+    @Override
+    public DocumentTypeDTOSearchResult getDocumentTypes(String categoryName, String documentTypeName)
+            throws IOException {
+        return call(
+                DocFinityEndpointEnum.DOCUMENT_TYPES,
+                () -> service.getDocumentTypes(categoryName, documentTypeName));
+    }
+
+    @Override
+    public DocumentTypeDTOSearchResult listDocumentTypes(String categoryName, int offset, int limit)
+            throws IOException {
+        return call(
+                DocFinityEndpointEnum.DOCUMENT_TYPES,
+                () -> service.listDocumentTypes(categoryName, offset, limit));
+    }
+
+    @Override
+    public String uploadDocument(File file) throws IOException {
+        return call(DocFinityEndpointEnum.UPLOAD, () -> service.uploadDocument(file));
+    }
+
+    @Override
+    public String uploadDocument(byte[] content, String name) throws IOException {
+        return call(DocFinityEndpointEnum.UPLOAD, () -> service.uploadDocument(content, name));
+    }
+
+    @Override
+    public DocumentIndexingDTO getDocumentIndexingData(String documentId) throws IOException {
+        return call(
+                DocFinityEndpointEnum.INDEXING_DATA, () -> service.getDocumentIndexingData(documentId));
+    }
+
+    @Override
+    public List<MetadataDTO> getDocumentMetadata(String documentTypeId, String documentId)
+            throws IOException {
+        return call(
+                DocFinityEndpointEnum.INDEXING_CONTROLS,
+                () -> service.getDocumentMetadata(documentTypeId, documentId));
+    }
+
+    @Override
+    public List<ExecuteDatasourceResponseDTO> executeDatasource(ExecuteDatasourceRequestDTO request)
+            throws IOException {
+        return call(DocFinityEndpointEnum.EXECUTE_DATASOURCE, () -> service.executeDatasource(request));
+    }
+
+    @Override
+    public List<DocumentIndexingDTO> indexDocuments(DocumentIndexingDTO... documents)
+            throws IOException {
+        return call(DocFinityEndpointEnum.INDEX, () -> service.indexDocuments(documents));
+    }
+
+    @Override
+    public List<DocumentIndexingDTO> reindexDocuments(DocumentIndexingDTO... documents)
+            throws IOException {
+        return call(DocFinityEndpointEnum.REINDEX, () -> service.reindexDocuments(documents));
+    }
+
+    @Override
+    public void deleteDocuments(String... documentIds) throws IOException {
+        call(
+                DocFinityEndpointEnum.DELETE,
+                () -> {
+                    service.deleteDocuments(documentIds);
+                    return null;
+                });
+    }
+
+    private <T> T call(DocFinityEndpointEnum endpoint, ServiceCall<T> call) throws IOException {
+        Semaphore semaphore = permits.get(endpoint);
+
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    String.format("Interrupted while waiting to call end-point %s.", endpoint));
+        }
+
+        try {
+            return call.call();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /** A request to DocFinity. */
+    private interface ServiceCall<T> {
+        T call() throws IOException;
+    }
+}
@@ -0,0 +1,62 @@
+package edu.uw.edm.docfinity;
+
+import java.io.IOException;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+* RequestBody that reports the number of bytes written by a wrapped body as they are sent. The count
+* starts again from zero if the body is written again (ie. when OkHttp retries the request).
+*/
+class CountingRequestBody extends RequestBody {
+    private final RequestBody delegate;
+    private final Listener listener;
+
+    CountingRequestBody(RequestBody delegate, Listener listener) {
+        this.delegate = delegate;
+        this.listener = listener;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        BufferedSink countingSink =
+                Okio.buffer(
+                        new ForwardingSink(sink) {
+                            private long bytesWritten;
+
+                            @Override
+                            public void write(Buffer source, long byteCount) throws IOException {
+                                super.write(source, byteCount);
+                                bytesWritten += byteCount;
+                                listener.onWrite(bytesWritten, byteCount);
+                            }
+                        });
+        delegate.writeTo(countingSink);
+        countingSink.flush();
+    }
+
+    /** Receives the writes of the body. */
+    interface Listener {
+        /**
+        * Called after bytes of the body are written.
+        *
+        * @param bytesWritten Bytes written since the body started to be written.
+        * @param byteCount Bytes of this write.
+        */
+        void onWrite(long bytesWritten, long byteCount);
+    }
+}
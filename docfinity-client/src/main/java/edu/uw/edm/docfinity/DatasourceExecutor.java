@@ -1,34 +1,39 @@
 package edu.uw.edm.docfinity;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Multimap;
 import edu.uw.edm.docfinity.models.DatasourceArgumentDTO;
-import edu.uw.edm.docfinity.models.DatasourceArgumentPromptDTO;
 import edu.uw.edm.docfinity.models.ExecuteDatasourceRequestDTO;
 import edu.uw.edm.docfinity.models.ExecuteDatasourceResponseDTO;
 import edu.uw.edm.docfinity.models.MetadataDTO;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.function.Function;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /** Helper class to handle gathering prompt values and executing datasources for fields. */
 public class DatasourceExecutor {
     private final DocFinityService service;
-    private final Map<String, Function<ExecuteDatasourceArgs, Object>> defaultPrompts;
+    private final ExecutorService executor;
 
     public DatasourceExecutor(DocFinityService service) {
+        this(service, null);
+    }
+
+    /**
+    * Creates a new instance that executes the datasources of a document at the same time.
+    *
+    * @param service Service used to execute datasources.
+    * @param executor Executor of the datasource calls, null to execute them one after the other.
+    */
+    public DatasourceExecutor(DocFinityService service, ExecutorService executor) {
         Preconditions.checkNotNull(service, "service is required.");
 
         this.service = service;
-        this.defaultPrompts = new HashMap<>();
-        defaultPrompts.put("DOCUMENT.documentType", args -> args.getDocumentTypeName());
-        defaultPrompts.put("DOCUMENT.category", args -> args.getCategory());
-        defaultPrompts.put("DOCUMENT.id", args -> args.getDocumentId());
+        this.executor = executor;
     }
 
     /**
@@ -38,91 +43,95 @@ public class DatasourceExecutor {
     public List<DocumentField> executeDatasources(ExecuteDatasourceArgs executeArgs)
             throws IOException {
         Preconditions.checkNotNull(executeArgs, "executeArgs is required.");
+        return executeDatasources(executeArgs, DatasourcePlan.compile(executeArgs.getMetadataMap()));
+    }
+
+    /**
+    * Executes datasources with the plan compiled for the document type, ie. the plan cached with
+    * its DocumentTypeMetadata.
+    */
+    List<DocumentField> executeDatasources(ExecuteDatasourceArgs executeArgs, DatasourcePlan plan)
+            throws IOException {
+        Preconditions.checkNotNull(executeArgs, "executeArgs is required.");
+        Preconditions.checkNotNull(plan, "plan is required.");
 
         List<DocumentField> result = new ArrayList<>();
-        Multimap<String, Object> clientFields = executeArgs.getClientFields();
-        Map<String, MetadataDTO> metadataMap = executeArgs.getMetadataMap();
-
-        List<String> fieldsToRun =
-                clientFields.entries().stream()
-                        .map(field -> metadataMap.get(field.getKey()))
-                        .filter(metadata -> !isNullOrEmpty(metadata.getResponsibilityMapping()))
-                        .flatMap(metadata -> metadata.getResponsibilityMapping().stream())
-                        .filter(fieldName -> !clientFields.containsKey(fieldName))
-                        .collect(Collectors.toList());
-
-        for (String fieldName : fieldsToRun) {
-            MetadataDTO fieldMetadata = metadataMap.get(fieldName);
-            List<DatasourceArgumentDTO> arguments =
-                    buildDatasourceArgumentsForField(executeArgs, fieldMetadata);
-
-            ExecuteDatasourceRequestDTO datasourceRequest = new ExecuteDatasourceRequestDTO();
-            datasourceRequest.setDocumentId(executeArgs.getDocumentId());
-            datasourceRequest.setDocumentTypeId(executeArgs.getDocumentTypeId());
-            datasourceRequest.setMetadataId(fieldMetadata.getId());
-            datasourceRequest.setArguments(arguments);
-
-            List<ExecuteDatasourceResponseDTO> responses =
-                    this.service.executeDatasource(datasourceRequest);
-
-            if (responses.size() > 1) {
-                throwInvalidDatasourceResultValueException(
-                        fieldName, responses, executeArgs.getDocumentTypeName());
+        List<DatasourcePlan.DatasourceField> fieldsToRun =
+                plan.getDatasourcesToRun(executeArgs.getClientFields());
+
+        if (executor == null || fieldsToRun.size() < 2) {
+            for (DatasourcePlan.DatasourceField field : fieldsToRun) {
+                result.add(executeDatasource(executeArgs, field));
             }
+            return result;
+        }
 
-            List<Object> fieldValues =
-                    responses.stream().map(r -> r.getValue()).collect(Collectors.toList());
+        // Datasources only depend on client values, so they are independent of each other.
+        RequestPriorityEnum priority = RequestPriorityContext.current();
+        List<Future<DocumentField>> futures = new ArrayList<>(fieldsToRun.size());
+        for (DatasourcePlan.DatasourceField field : fieldsToRun) {
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                try (RequestPriorityContext.Scope scope = RequestPriorityContext.enter(priority)) {
+                                    return executeDatasource(executeArgs, field);
+                                }
+                            }));
+        }
 
-            result.add(new DocumentField(fieldMetadata.getName(), fieldValues));
+        try {
+            for (Future<DocumentField> future : futures) {
+                result.add(getDatasourceResult(future));
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
         }
 
         return result;
     }
 
-    private List<DatasourceArgumentDTO> buildDatasourceArgumentsForField(
-            ExecuteDatasourceArgs args, MetadataDTO fieldMetadata) {
-
-        List<DatasourceArgumentDTO> arguments = new ArrayList<>();
-        for (DatasourceArgumentPromptDTO prompt : fieldMetadata.getDatasourcePrompts()) {
-            String promptName = prompt.getArgumentName();
-
-            if (defaultPrompts.containsKey(promptName)) {
-                Object promptValue = defaultPrompts.get(promptName).apply(args);
-                arguments.add(new DatasourceArgumentDTO(promptName, promptValue, MetadataTypeEnum.STRING));
-            } else {
-                MetadataDTO promptMetadata = args.getMetadataMap().get(promptName);
-                MetadataTypeEnum promptDataType = promptMetadata.getDataType();
-                Optional<Object> promptValue = args.getClientFields().get(promptName).stream().findFirst();
-
-                if (promptMetadata.isAllowMultipleValues()) {
-                    throwMultiSelectDatasourcePromptNotSupportedException(
-                            fieldMetadata.getName(), promptMetadata.getName(), args.getDocumentTypeName());
-                } else if (!promptValue.isPresent()) {
-                    throwMissingDatasourcePromptValueException(
-                            fieldMetadata.getName(), promptMetadata.getName(), args.getDocumentTypeName());
-                }
-
-                arguments.add(new DatasourceArgumentDTO(promptName, promptValue.get(), promptDataType));
-            }
+    private DocumentField executeDatasource(
+            ExecuteDatasourceArgs executeArgs, DatasourcePlan.DatasourceField field) throws IOException {
+        List<DatasourceArgumentDTO> arguments = field.bindArguments(executeArgs);
+        MetadataDTO fieldMetadata = field.getMetadata();
+
+        ExecuteDatasourceRequestDTO datasourceRequest = new ExecuteDatasourceRequestDTO();
+        datasourceRequest.setDocumentId(executeArgs.getDocumentId());
+        datasourceRequest.setDocumentTypeId(executeArgs.getDocumentTypeId());
+        datasourceRequest.setMetadataId(fieldMetadata.getId());
+        datasourceRequest.setArguments(arguments);
+
+        List<ExecuteDatasourceResponseDTO> responses =
+                this.service.executeDatasource(datasourceRequest);
+
+        if (responses.size() > 1) {
+            throwInvalidDatasourceResultValueException(
+                    field.getName(), responses, executeArgs.getDocumentTypeName());
         }
 
-        return arguments;
-    }
+        List<Object> fieldValues =
+                responses.stream().map(r -> r.getValue()).collect(Collectors.toList());
 
-    private void throwMultiSelectDatasourcePromptNotSupportedException(
-            String datasourceField, String datasourcePrompt, String documentTypeName) {
-        throw new IllegalStateException(
-                String.format(
-                        "Multi-select fields for datasource prompts are not supported. Datasource field: '%s', prompt field: '%s', document type: '%s'.",
-                        datasourceField, datasourcePrompt, documentTypeName));
+        return new DocumentField(fieldMetadata.getName(), fieldValues);
     }
 
-    private void throwMissingDatasourcePromptValueException(
-            String datasourceField, String datasourcePrompt, String documentTypeName) {
-        throw new IllegalStateException(
-                String.format(
-                        "Datasource prompt '%s' for field '%s' in document type '%s' is missing in client metadata.",
-                        datasourcePrompt, datasourceField, documentTypeName));
+    private DocumentField getDatasourceResult(Future<DocumentField> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while executing datasources.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
     }
 
     private void throwInvalidDatasourceResultValueException(
@@ -141,8 +150,4 @@ public class DatasourceExecutor {
                         "Returning lists from datasources is not supported. Field '%s' in document type '%s'. Returned values: %s.",
                         datasourceField, documentTypeName, datasourceValues));
     }
-
-    private <T> boolean isNullOrEmpty(List<T> list) {
-        return list == null || list.isEmpty();
-    }
 }
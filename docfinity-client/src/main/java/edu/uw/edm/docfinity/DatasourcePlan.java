@@ -0,0 +1,186 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+import edu.uw.edm.docfinity.models.DatasourceArgumentDTO;
+import edu.uw.edm.docfinity.models.DatasourceArgumentPromptDTO;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import lombok.Getter;
+
+/**
+* Datasources of a document type compiled from its metadata definitions: the datasource fields that
+* each field triggers, and how the prompts of each datasource are read from a document. A plan is
+* compiled with the indexed metadata of a document type, which is only indexed again when the
+* definitions change even if the cache is disabled, so executing the datasources of a document
+* only reads its values. Plans are shared between threads, so they are immutable.
+*/
+final class DatasourcePlan {
+    private static final Map<String, Function<ExecuteDatasourceArgs, Object>> DEFAULT_PROMPTS =
+            ImmutableMap.of(
+                    "DOCUMENT.documentType", ExecuteDatasourceArgs::getDocumentTypeName,
+                    "DOCUMENT.category", ExecuteDatasourceArgs::getCategory,
+                    "DOCUMENT.id", ExecuteDatasourceArgs::getDocumentId);
+
+    // Datasource fields triggered by each field, in the order of its responsibility mapping.
+    private final Map<String, List<DatasourceField>> datasourcesByTrigger;
+
+    private DatasourcePlan(Map<String, List<DatasourceField>> datasourcesByTrigger) {
+        this.datasourcesByTrigger = datasourcesByTrigger;
+    }
+
+    /**
+    * Compiles the plan of a document type. Errors in the definitions (ie. a prompt that is not a
+    * field of the document type) fail the documents that run the datasource, not the compilation.
+    *
+    * @param metadataMap Metadata definitions of the document type by name.
+    */
+    static DatasourcePlan compile(Map<String, MetadataDTO> metadataMap) {
+        Map<String, DatasourceField> datasources = new HashMap<>();
+        ImmutableMap.Builder<String, List<DatasourceField>> datasourcesByTrigger =
+                ImmutableMap.builder();
+
+        for (Map.Entry<String, MetadataDTO> entry : metadataMap.entrySet()) {
+            List<String> responsibilityMapping = entry.getValue().getResponsibilityMapping();
+            if (responsibilityMapping == null || responsibilityMapping.isEmpty()) {
+                continue;
+            }
+
+            ImmutableList.Builder<DatasourceField> triggered = ImmutableList.builder();
+            for (String fieldName : responsibilityMapping) {
+                triggered.add(
+                        datasources.computeIfAbsent(
+                                fieldName, name -> compileDatasource(name, metadataMap)));
+            }
+            datasourcesByTrigger.put(entry.getKey(), triggered.build());
+        }
+
+        return new DatasourcePlan(datasourcesByTrigger.build());
+    }
+
+    /**
+    * Returns the datasource fields triggered by the values of a document, except those that have a
+    * value in the document.
+    */
+    List<DatasourceField> getDatasourcesToRun(Multimap<String, Object> clientFields) {
+        List<DatasourceField> datasources = new ArrayList<>();
+        for (Map.Entry<String, Object> field : clientFields.entries()) {
+            List<DatasourceField> triggered = datasourcesByTrigger.get(field.getKey());
+            if (triggered == null) {
+                continue;
+            }
+
+            for (DatasourceField datasource : triggered) {
+                if (!clientFields.containsKey(datasource.getName())) {
+                    datasources.add(datasource);
+                }
+            }
+        }
+        return datasources;
+    }
+
+    private static DatasourceField compileDatasource(
+            String fieldName, Map<String, MetadataDTO> metadataMap) {
+        MetadataDTO fieldMetadata = metadataMap.get(fieldName);
+        if (fieldMetadata == null) {
+            return new DatasourceField(
+                    fieldName,
+                    null,
+                    ImmutableList.of(
+                            args -> {
+                                throw new IllegalStateException(
+                                        String.format(
+                                                "Datasource field '%s' is not a metadata object of document type '%s'.",
+                                                fieldName, args.getDocumentTypeName()));
+                            }));
+        }
+
+        ImmutableList.Builder<PromptBinder> binders = ImmutableList.builder();
+        if (fieldMetadata.getDatasourcePrompts() != null) {
+            for (DatasourceArgumentPromptDTO prompt : fieldMetadata.getDatasourcePrompts()) {
+                binders.add(compilePrompt(fieldName, prompt.getArgumentName(), metadataMap));
+            }
+        }
+
+        return new DatasourceField(fieldName, fieldMetadata, binders.build());
+    }
+
+    private static PromptBinder compilePrompt(
+            String fieldName, String promptName, Map<String, MetadataDTO> metadataMap) {
+        Function<ExecuteDatasourceArgs, Object> defaultPrompt = DEFAULT_PROMPTS.get(promptName);
+        if (defaultPrompt != null) {
+            return args ->
+                    new DatasourceArgumentDTO(
+                            promptName, defaultPrompt.apply(args), MetadataTypeEnum.STRING);
+        }
+
+        MetadataDTO promptMetadata = metadataMap.get(promptName);
+        if (promptMetadata == null) {
+            return args -> {
+                throw new IllegalStateException(
+                        String.format(
+                                "Datasource prompt '%s' for field '%s' in document type '%s' is not a metadata object of the document type.",
+                                promptName, fieldName, args.getDocumentTypeName()));
+            };
+        }
+
+        if (promptMetadata.isAllowMultipleValues()) {
+            return args -> {
+                throw new IllegalStateException(
+                        String.format(
+                                "Multi-select fields for datasource prompts are not supported. Datasource field: '%s', prompt field: '%s', document type: '%s'.",
+                                fieldName, promptName, args.getDocumentTypeName()));
+            };
+        }
+
+        MetadataTypeEnum dataType = promptMetadata.getDataType();
+        return args -> {
+            Collection<Object> values = args.getClientFields().get(promptName);
+            if (values.isEmpty()) {
+                throw new IllegalStateException(
+                        String.format(
+                                "Datasource prompt '%s' for field '%s' in document type '%s' is missing in client metadata.",
+                                promptName, fieldName, args.getDocumentTypeName()));
+            }
+
+            return new DatasourceArgumentDTO(promptName, values.iterator().next(), dataType);
+        };
+    }
+
+    /** A datasource field, with the binders of its prompts. */
+    static final class DatasourceField {
+        /** Name of the field. */
+        @Getter private final String name;
+
+        /** Metadata definition of the field, null if it is not a field of the document type. */
+        @Getter private final MetadataDTO metadata;
+
+        private final List<PromptBinder> prompts;
+
+        private DatasourceField(String name, MetadataDTO metadata, List<PromptBinder> prompts) {
+            this.name = name;
+            this.metadata = metadata;
+            this.prompts = prompts;
+        }
+
+        /** Returns the arguments of the datasource, with the values of a document. */
+        List<DatasourceArgumentDTO> bindArguments(ExecuteDatasourceArgs args) {
+            List<DatasourceArgumentDTO> arguments = new ArrayList<>(prompts.size());
+            for (PromptBinder prompt : prompts) {
+                arguments.add(prompt.bind(args));
+            }
+            return arguments;
+        }
+    }
+
+    /** Reads the argument of a datasource prompt from the values of a document. */
+    private interface PromptBinder {
+        DatasourceArgumentDTO bind(ExecuteDatasourceArgs args);
+    }
+}
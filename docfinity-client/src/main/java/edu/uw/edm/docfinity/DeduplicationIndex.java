@@ -0,0 +1,186 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Local persistent index of the SHA-256 hash of uploaded content to the id of the document created
+* for it, used by DocFinityClient to avoid uploading the same file more than once. The client keys
+* the index by the content and the document type (see key), so the same file uploaded as two
+* document types creates a document of each.
+*
+* <p>The index is an append-only file with a line per hash, that is loaded in memory when opened. A
+* line with an empty document id removes the hash.
+*/
+@Slf4j
+public class DeduplicationIndex implements Closeable {
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final Map<String, String> documentIds = new ConcurrentHashMap<>();
+
+    /**
+    * Opens an index, loading the hashes recorded by previous runs if the file exists.
+    *
+    * @param path Path of the index file.
+    */
+    public DeduplicationIndex(Path path) throws IOException {
+        Preconditions.checkNotNull(path, "path is required.");
+
+        this.path = path;
+        this.channel =
+                FileChannel.open(
+                        path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+        load();
+    }
+
+    /** Returns the id of the document created for a content hash, or null if there is none. */
+    public String get(String hash) {
+        return documentIds.get(hash);
+    }
+
+    /** Returns the number of hashes in the index. */
+    public int size() {
+        return documentIds.size();
+    }
+
+    /**
+    * Records the document created for a content hash.
+    *
+    * @param hash Content hash or key as returned by the hash and key methods.
+    * @param documentId Id of the document created for the content.
+    */
+    public void put(String hash, String documentId) throws IOException {
+        Preconditions.checkNotNull(hash, "hash is required.");
+        Preconditions.checkArgument(
+                documentId != null && !documentId.isEmpty(), "documentId is required.");
+
+        write(hash, documentId);
+        documentIds.put(hash, documentId);
+    }
+
+    /**
+    * Removes a content hash, ie. when its document was deleted from DocFinity and the content must be
+    * uploaded again.
+    */
+    public void remove(String hash) throws IOException {
+        Preconditions.checkNotNull(hash, "hash is required.");
+
+        if (documentIds.remove(hash) != null) {
+            write(hash, "");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** Computes the content hash of a file, reading it as a stream. */
+    public static String hash(File file) throws IOException {
+        Preconditions.checkNotNull(file, "file is required.");
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        return BaseEncoding.base16().lowerCase().encode(digest.digest());
+    }
+
+    /** Computes the content hash of a byte array. */
+    public static String hash(byte[] content) {
+        Preconditions.checkNotNull(content, "content is required.");
+        return BaseEncoding.base16().lowerCase().encode(newDigest().digest(content));
+    }
+
+    /**
+    * Computes the key of content uploaded as a document type.
+    *
+    * @param contentHash Content hash as returned by the hash methods.
+    * @param category Category name of the document type.
+    * @param documentType Document type name.
+    */
+    public static String key(String contentHash, String category, String documentType) {
+        Preconditions.checkNotNull(contentHash, "contentHash is required.");
+        Preconditions.checkNotNull(category, "category is required.");
+        Preconditions.checkNotNull(documentType, "documentType is required.");
+
+        return hash(
+                String.join("\n", contentHash, category, documentType)
+                        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    private synchronized void write(String hash, String documentId) throws IOException {
+        // Records are not synced to disk, losing the last ones only causes a duplicate upload.
+        ByteBuffer buffer =
+                ByteBuffer.wrap((hash + "\t" + documentId + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void load() throws IOException {
+        byte[] content = Files.readAllBytes(path);
+
+        // Drop a record without the line terminator, it was not completely written.
+        int validLength = content.length;
+        while (validLength > 0 && content[validLength - 1] != '\n') {
+            validLength--;
+        }
+
+        if (validLength < content.length) {
+            log.warn("Dropping incomplete record at the end of deduplication index '{}'.", path);
+            channel.truncate(validLength);
+        }
+
+        String text = new String(content, 0, validLength, StandardCharsets.UTF_8);
+        for (String line : text.split("\n")) {
+            int separator = line.indexOf('\t');
+            if (separator > 0) {
+                String hash = line.substring(0, separator);
+                String documentId = line.substring(separator + 1);
+                if (documentId.isEmpty()) {
+                    documentIds.remove(hash);
+                } else {
+                    documentIds.put(hash, documentId);
+                }
+            }
+        }
+
+        channel.position(validLength);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(
+                    String.format("Hash algorithm '%s' is not available.", HASH_ALGORITHM), e);
+        }
+    }
+}
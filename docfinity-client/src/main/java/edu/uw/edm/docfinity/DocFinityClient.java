@@ -4,22 +4,35 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
 import edu.uw.edm.docfinity.models.DocumentIndexingMetadataDTO;
+import edu.uw.edm.docfinity.models.DocumentTypeDTO;
 import edu.uw.edm.docfinity.models.DocumentTypeDTOSearchResult;
 import edu.uw.edm.docfinity.models.MetadataDTO;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 /** Abstracts the create and update operations for DocFinity documents. */
 public class DocFinityClient {
+
     private final DocFinityService service;
+    private final DocFinityClientOptions options;
+    private final DocumentTypeCache documentTypeCache;
+    private final ExecutorService datasourceExecutor;
 
     /**
     * Creates a new instance of the DocFinityClient.
@@ -28,7 +41,7 @@ public class DocFinityClient {
     * @param apiKey The API key to use to interact with DocFinity.
     */
     public DocFinityClient(String url, String apiKey) {
-        this.service = new DocFinityServiceImpl(url, apiKey, null);
+        this(new DocFinityServiceImpl(url, apiKey, null));
     }
 
     /**
@@ -39,16 +52,46 @@ public class DocFinityClient {
     * @param auditUser DocFinity account username to use for auditing calls and document history.
     */
     public DocFinityClient(String url, String apiKey, String auditUser) {
-        this.service = new DocFinityServiceImpl(url, apiKey, auditUser);
+        this(new DocFinityServiceImpl(url, apiKey, auditUser));
     }
 
     /**
-    * Creates a new instance of the DocFinityClient, intended for testing purposes.
+    * Creates a new instance of the DocFinityClient with a custom service, ie. a DocFinityServiceImpl
+    * created with non-default options, or a mock for testing purposes.
     *
     * @param service An implementation of the DocFinityService.
     */
     public DocFinityClient(DocFinityService service) {
+        this(service, new DocFinityClientOptions());
+    }
+
+    /**
+    * Creates a new instance of the DocFinityClient with a custom service and optional settings.
+    *
+    * @param service An implementation of the DocFinityService.
+    * @param options Optional settings of the client.
+    */
+    public DocFinityClient(DocFinityService service, DocFinityClientOptions options) {
+        Preconditions.checkNotNull(options, "options is required.");
+        Preconditions.checkArgument(
+                options.getCacheSnapshotPath() == null || options.getCacheExpirationMillis() > 0,
+                "Cache snapshot requires the cache, set it with withCacheExpiration.");
         this.service = service;
+        this.options = options;
+        this.documentTypeCache =
+                new DocumentTypeCache(
+                        options.getCacheExpirationMillis(),
+                        TimeUnit.MILLISECONDS,
+                        options.getCacheSnapshotPath() != null
+                                ? new DocumentTypeSnapshot(
+                                        options.getCacheSnapshotPath(),
+                                        options.getCacheSnapshotMaxAgeMillis())
+                                : null);
+        this.datasourceExecutor =
+                options.isParallelDatasources()
+                        ? WorkerExecutors.newUnboundedExecutor(
+                                options.getThreadMode(), "docfinity-datasource-%d")
+                        : null;
     }
 
     /**
@@ -58,29 +101,161 @@ public class DocFinityClient {
     */
     public IndexDocumentResult uploadIndexAndCommitDocument(FileIndexDocumentArgs args)
             throws Exception {
-        Preconditions.checkNotNull(args, "args is required.");
-        args.validate();
+        return uploadIndexAndCommitDocument(args, DocumentLifecycleListener.NONE);
+    }
+
+    /**
+    * Uploads, indexes and commits a document to DocFinity.
+    *
+    * @param args Class that encapsulates arguments for create document operation.
+    * @param listener Receives the state transitions of the document.
+    */
+    public IndexDocumentResult uploadIndexAndCommitDocument(
+            FileIndexDocumentArgs args, DocumentLifecycleListener listener) throws Exception {
+        try (RequestPriorityContext.Scope scope = RequestPriorityContext.enter(priorityOf(args))) {
+            Preconditions.checkNotNull(args, "args is required.");
+            Preconditions.checkNotNull(listener, "listener is required.");
+            args.validate();
+
+            // Skip the upload if the same content was already uploaded as the same document type.
+            DeduplicationIndex deduplicationIndex = options.getDeduplicationIndex();
+            String contentKey = null;
+            if (deduplicationIndex != null) {
+                contentKey = contentKey(args);
+                String existingId = deduplicationIndex.get(contentKey);
+                if (existingId != null) {
+                    log.info("File was already uploaded, document id: {}", existingId);
+                    try {
+                        return indexDuplicateDocument(args, existingId);
+                    } catch (IOException e) {
+                        // The document was deleted or can no longer be read, upload the file again.
+                        log.warn(
+                                "Failed to reuse document '{}', uploading file again. Error Message: {}",
+                                existingId,
+                                e.getMessage());
+                        removeFromDeduplicationIndex(deduplicationIndex, contentKey, existingId);
+                    }
+                }
+            }
+
+            // 1. Get the document type id from the category and document names.
+            String documentTypeId = getDocumentTypeId(args.getCategory(), args.getDocumentType());
+            log.info("Retrieved document type id: {}", documentTypeId);
 
-        // 1. Get the document type id from the category and document names.
-        String documentTypeId = getDocumentTypeId(args.getCategory(), args.getDocumentType());
-        log.info("Retrieved document type id: {}", documentTypeId);
+            // 2. Upload file.
+            String documentId = uploadFile(args);
+            log.info("File uploaded, document id: {}", documentId);
 
-        // 2. Upload file.
-        String documentId = uploadFile(args);
-        log.info("File uploaded, document id: {}", documentId);
+            IndexDocumentResult result =
+                    indexAndCommitUploadedDocument(documentTypeId, documentId, args, listener, true);
+
+            if (contentKey != null) {
+                try {
+                    deduplicationIndex.put(contentKey, documentId);
+                } catch (IOException e) {
+                    // The document is committed, the next upload of the same content is not skipped.
+                    log.error("Failed to add document '{}' to deduplication index.", documentId, e);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    private IndexDocumentResult indexDuplicateDocument(FileIndexDocumentArgs args, String documentId)
+            throws Exception {
+        IndexDocumentResult result;
+
+        if (options.isReindexDuplicates()) {
+            IndexDocumentArgs reindexArgs =
+                    new IndexDocumentArgs(documentId)
+                            .withDocumentType(args.getCategory(), args.getDocumentType());
+            reindexArgs.setMetadata(args.getMetadata());
+            result = reindexDocument(reindexArgs);
+        } else {
+            String documentTypeId = getDocumentTypeId(args.getCategory(), args.getDocumentType());
+            DocumentTypeMetadata metadata = getDocumentTypeMetadata(documentTypeId, documentId);
+            DocumentIndexingDTO indexingData = service.getDocumentIndexingData(documentId);
+            result = buildIndexResult(args, metadata, indexingData);
+        }
+
+        result.setDuplicate(true);
+        return result;
+    }
+
+    /**
+    * Indexes and commits a document that was uploaded by a previous call to
+    * uploadIndexAndCommitDocument that did not complete, ie. because the process stopped. As with
+    * the original call, the document is deleted if it cannot be indexed. If the document already
+    * has indexed values the previous call committed it, and it is not indexed again.
+    *
+    * @param args Class that encapsulates arguments of the original create document operation.
+    * @param documentId Id of the document reported by DocumentLifecycleListener.onUploaded.
+    * @param listener Receives the state transitions of the document.
+    */
+    public IndexDocumentResult indexAndCommitUploadedDocument(
+            FileIndexDocumentArgs args, String documentId, DocumentLifecycleListener listener)
+            throws Exception {
+        try (RequestPriorityContext.Scope scope = RequestPriorityContext.enter(priorityOf(args))) {
+            Preconditions.checkNotNull(args, "args is required.");
+            Preconditions.checkNotNull(documentId, "documentId is required.");
+            Preconditions.checkNotNull(listener, "listener is required.");
+
+            // Errors before the state of the document is known must not delete it, it could be committed.
+            DocumentIndexingDTO indexingData = service.getDocumentIndexingData(documentId);
+            boolean committed =
+                    indexingData.getIndexingMetadata() != null
+                            && !indexingData.getIndexingMetadata().isEmpty();
+
+            String documentTypeId;
+            try {
+                documentTypeId = getDocumentTypeId(args.getCategory(), args.getDocumentType());
+            } catch (Exception e) {
+                if (!committed) {
+                    this.tryDeleteDocument(documentId, listener);
+                }
+                throw e;
+            }
+
+            if (committed) {
+                log.info("Document was committed by a previous call, id: {}", documentId);
+                DocumentTypeMetadata metadata = getDocumentTypeMetadata(documentTypeId, documentId);
+                listener.onCommitted(documentId);
+                return buildIndexResult(args, metadata, indexingData);
+            }
+
+            return indexAndCommitUploadedDocument(documentTypeId, documentId, args, listener, false);
+        }
+    }
+
+    private IndexDocumentResult indexAndCommitUploadedDocument(
+            String documentTypeId,
+            String documentId,
+            FileIndexDocumentArgs args,
+            DocumentLifecycleListener listener,
+            boolean notifyUploaded)
+            throws Exception {
+        IndexDocumentResult result;
 
         try {
+            if (notifyUploaded) {
+                listener.onUploaded(documentId);
+            }
+
             IndexDocumentArgs updateArgs =
                     new IndexDocumentArgs(documentId)
                             .withDocumentType(args.getCategory(), args.getDocumentType());
             updateArgs.setMetadata(args.getMetadata());
 
-            return this.indexAndCommitInternal(documentTypeId, updateArgs);
+            result = this.indexAndCommitInternal(documentTypeId, updateArgs);
         } catch (Exception e) {
             // 6. If there is an error after the file has been upload it, need to delete it from server.
-            this.tryDeleteDocument(documentId);
+            this.tryDeleteDocument(documentId, listener);
             throw e;
         }
+
+        listener.onCommitted(documentId);
+        return result;
     }
 
     /**
@@ -89,14 +264,16 @@ public class DocFinityClient {
     * @param args Class that encapsulates arguments for index document operation.
     */
     public IndexDocumentResult indexAndCommitDocument(IndexDocumentArgs args) throws Exception {
-        Preconditions.checkNotNull(args, "args is required.");
-        args.validate();
+        try (RequestPriorityContext.Scope scope = RequestPriorityContext.enter(priorityOf(args))) {
+            Preconditions.checkNotNull(args, "args is required.");
+            args.validate();
 
-        // Get the document type id from the category and document names.
-        String documentTypeId = getDocumentTypeId(args.getCategory(), args.getDocumentType());
-        log.info("Retrieved document type id: {}", documentTypeId);
+            // Get the document type id from the category and document names.
+            String documentTypeId = getDocumentTypeId(args.getCategory(), args.getDocumentType());
+            log.info("Retrieved document type id: {}", documentTypeId);
 
-        return indexAndCommitInternal(documentTypeId, args);
+            return indexAndCommitInternal(documentTypeId, args);
+        }
     }
 
     private IndexDocumentResult indexAndCommitInternal(String documentTypeId, IndexDocumentArgs args)
@@ -107,21 +284,23 @@ public class DocFinityClient {
         String documentId = args.getDocumentId();
 
         // 1. Get all metadata prompts and validate inputs
-        Map<String, MetadataDTO> metadata = getDocumentMetadataMap(documentTypeId, documentId);
+        DocumentTypeMetadata metadata = getDocumentTypeMetadata(documentTypeId, documentId);
         IndexingMetadataBuilder builder =
-                new IndexingMetadataBuilder(args.getDocumentType(), metadata, Arrays.asList())
+                new IndexingMetadataBuilder(
+                                args.getDocumentType(), metadata.getMetadataByName(), Arrays.asList())
                         .addValues(args.getMetadata());
 
         // 2. Execute datasources.
-        DatasourceExecutor executor = new DatasourceExecutor(this.service);
+        DatasourceExecutor executor = new DatasourceExecutor(this.service, datasourceExecutor);
         ExecuteDatasourceArgs executeArgs = new ExecuteDatasourceArgs();
         executeArgs.setDocumentId(documentId);
         executeArgs.setDocumentTypeId(documentTypeId);
         executeArgs.setDocumentTypeName(args.getDocumentType());
         executeArgs.setCategory(args.getCategory());
         executeArgs.setClientFields(args.getMetadata());
-        executeArgs.setMetadataMap(metadata);
-        executor.executeDatasources(executeArgs).stream().forEach(field -> builder.addValue(field));
+        executeArgs.setMetadataMap(metadata.getMetadataByName());
+        executor.executeDatasources(executeArgs, metadata.getDatasourcePlan())
+                .forEach(field -> builder.addValue(field));
 
         // 3. Index and commit the document using the calculated values from datasources.
         builder.validateAllRequiredFieldsHaveValue();
@@ -131,7 +310,7 @@ public class DocFinityClient {
 
         DocumentIndexingDTO indexedDto =
                 this.service.indexDocuments(indexingDto).stream().findFirst().get();
-        return buildIndexResult(args, metadata.values(), indexedDto);
+        return buildIndexResult(args, metadata, indexedDto);
     }
 
     /**
@@ -140,92 +319,339 @@ public class DocFinityClient {
     * @param args Class that encapsulates arguments for reindex document operation.
     */
     public IndexDocumentResult reindexDocument(IndexDocumentArgs args) throws Exception {
-        Preconditions.checkNotNull(args, "args is required.");
-        args.validate();
+        try (RequestPriorityContext.Scope scope = RequestPriorityContext.enter(priorityOf(args))) {
+            PreparedReindex prepared = prepareReindex(args);
 
-        String documentId = args.getDocumentId();
+            if (prepared.isUnchanged()) {
+                return completeReindex(prepared, prepared.getCurrentIndexingData());
+            }
 
-        // 1. Get the document type id from the category and document names.
-        String documentTypeId = getDocumentTypeId(args.getCategory(), args.getDocumentType());
-        log.info("Retrieved document type id: {}", documentTypeId);
+            DocumentIndexingDTO indexedDTO =
+                    this.service.reindexDocuments(prepared.getIndexingDto()).stream().findFirst().get();
+            return completeReindex(prepared, indexedDTO);
+        }
+    }
 
-        // 2. Get all metadata prompts and validate inputs
-        Map<String, MetadataDTO> metadata = getDocumentMetadataMap(documentTypeId, documentId);
-        DocumentIndexingDTO indexingData = service.getDocumentIndexingData(documentId);
+    /**
+    * Runs the steps of a reindex that read from DocFinity, up to building the reindex request. Used
+    * by BulkIndexer to send the requests of many documents together.
+    */
+    PreparedReindex prepareReindex(IndexDocumentArgs args) throws Exception {
+        try (RequestPriorityContext.Scope scope = RequestPriorityContext.enter(priorityOf(args))) {
+            Preconditions.checkNotNull(args, "args is required.");
+            args.validate();
+
+            String documentId = args.getDocumentId();
+
+            // 1. Get the document type id from the category and document names.
+            String documentTypeId = getDocumentTypeId(args.getCategory(), args.getDocumentType());
+            log.info("Retrieved document type id: {}", documentTypeId);
+
+            // 2. Get all metadata prompts and validate inputs
+            DocumentTypeMetadata metadata = getDocumentTypeMetadata(documentTypeId, documentId);
+            DocumentIndexingDTO indexingData = service.getDocumentIndexingData(documentId);
+
+            IndexingMetadataBuilder builder =
+                    new IndexingMetadataBuilder(
+                                    args.getDocumentType(),
+                                    metadata.getMetadataByName(),
+                                    indexingData.getIndexingMetadata())
+                            .addValues(args.getMetadata());
+
+            // 3. Execute datasources.
+            DatasourceExecutor executor = new DatasourceExecutor(this.service, datasourceExecutor);
+            ExecuteDatasourceArgs executeArgs = new ExecuteDatasourceArgs();
+            executeArgs.setDocumentId(documentId);
+            executeArgs.setDocumentTypeId(documentTypeId);
+            executeArgs.setDocumentTypeName(args.getDocumentType());
+            executeArgs.setCategory(args.getCategory());
+            executeArgs.setClientFields(args.getMetadata());
+            executeArgs.setMetadataMap(metadata.getMetadataByName());
+            executor.executeDatasources(executeArgs, metadata.getDatasourcePlan())
+                    .forEach(field -> builder.addValue(field));
+
+            // 4. Reindex the document using the calculated values from datasources.
+            builder.validateRequiredFieldsPresentHaveValue();
+            List<DocumentIndexingMetadataDTO> indexingDtos =
+                    options.isReindexChangesOnly() ? builder.buildChanges() : builder.build();
+
+            if (indexingDtos.isEmpty()) {
+                log.info("Metadata is unchanged, skipping reindex of document id: {}", documentId);
+                return new PreparedReindex(args, metadata, indexingData, null);
+            }
 
-        IndexingMetadataBuilder builder =
-                new IndexingMetadataBuilder(
-                                args.getDocumentType(), metadata, indexingData.getIndexingMetadata())
-                        .addValues(args.getMetadata());
+            DocumentIndexingDTO indexingDto =
+                    new DocumentIndexingDTO(documentTypeId, documentId, indexingDtos);
+            indexingDto.setMetadataLoaded(true); // treat this as a partial reindex
 
-        // 3. Execute datasources.
-        DatasourceExecutor executor = new DatasourceExecutor(this.service);
-        ExecuteDatasourceArgs executeArgs = new ExecuteDatasourceArgs();
-        executeArgs.setDocumentId(documentId);
-        executeArgs.setDocumentTypeId(documentTypeId);
-        executeArgs.setDocumentTypeName(args.getDocumentType());
-        executeArgs.setCategory(args.getCategory());
-        executeArgs.setClientFields(args.getMetadata());
-        executeArgs.setMetadataMap(metadata);
-        executor.executeDatasources(executeArgs).stream().forEach(field -> builder.addValue(field));
+            return new PreparedReindex(args, metadata, indexingData, indexingDto);
+        }
+    }
 
-        // 4. Reindex the document using the calculated values from datasources.
-        builder.validateRequiredFieldsPresentHaveValue();
-        List<DocumentIndexingMetadataDTO> indexingDtos = builder.build();
-        DocumentIndexingDTO indexingDto =
-                new DocumentIndexingDTO(documentTypeId, documentId, indexingDtos);
-        indexingDto.setMetadataLoaded(true); // treat this as a partial reindex
+    /** Sends the reindex requests of many prepared documents in a single call. */
+    List<DocumentIndexingDTO> reindexPrepared(List<PreparedReindex> prepared) throws IOException {
+        DocumentIndexingDTO[] indexingDtos =
+                prepared.stream()
+                        .map(PreparedReindex::getIndexingDto)
+                        .toArray(DocumentIndexingDTO[]::new);
+        return this.service.reindexDocuments(indexingDtos);
+    }
+
+    /** Builds the result of a prepared reindex from the response of DocFinity. */
+    IndexDocumentResult completeReindex(PreparedReindex prepared, DocumentIndexingDTO indexedDto) {
+        return buildIndexResult(prepared.getArgs(), prepared.getMetadata(), indexedDto);
+    }
+
+    /** Returns the priority of an operation, null to keep the priority of the calling operation. */
+    private static RequestPriorityEnum priorityOf(IndexDocumentArgsBase<?> args) {
+        return args != null ? args.getPriority() : null;
+    }
+
+    /** Returns the kind of threads used by bulk workers. */
+    ThreadModeEnum getThreadMode() {
+        return options.getThreadMode();
+    }
+
+    /** Returns the reaper that deletes documents that could not be indexed, null if there is none. */
+    OrphanReaper getOrphanReaper() {
+        return options.getOrphanReaper();
+    }
+
+    /** Waits until the cache snapshot is saved, ie. before another client loads it. */
+    void flushCacheSnapshot() throws InterruptedException {
+        documentTypeCache.flushSnapshot();
+    }
+
+    /**
+    * Removes the cached document type ids and metadata definitions, ie. after document types are
+    * changed in DocFinity. Entries of the cache snapshot are removed as well.
+    */
+    public void clearCache() {
+        documentTypeCache.invalidateAll();
+    }
 
-        DocumentIndexingDTO indexedDTO =
-                this.service.reindexDocuments(indexingDto).stream().findFirst().get();
-        return buildIndexResult(args, metadata.values(), indexedDTO);
+    /**
+    * Loads the document type ids and metadata definitions of the catalog, or of some categories,
+    * into the cache before the first document. Pages and controls are requested at the same time,
+    * which also opens the connections of the service. Document types whose category and name are
+    * not unique are not cached, so their documents fail as they would without the warm-up. Requires
+    * a service that implements DocFinityService.listDocumentTypes.
+    *
+    * @param args Class that encapsulates arguments for the warm-up.
+    * @return The number of document types cached.
+    */
+    public int warmUp(WarmUpArgs args) throws IOException {
+        Preconditions.checkNotNull(args, "args is required.");
+        Preconditions.checkState(
+                options.getCacheExpirationMillis() > 0,
+                "Warm-up requires the cache, set it with DocFinityClientOptions.withCacheExpiration.");
+        long start = System.nanoTime();
+        ExecutorService executor =
+                WorkerExecutors.newExecutor(options.getThreadMode(), args.getParallelism());
+
+        try {
+            // 1. Page through the document types of each category.
+            Map<List<String>, String> documentTypeIds = new HashMap<>();
+            Set<List<String>> duplicates = new HashSet<>();
+            for (DocumentTypeDTO documentType : listDocumentTypes(args, executor)) {
+                if (documentType.getCategoryName() != null && documentType.getName() != null) {
+                    List<String> key =
+                            Arrays.asList(documentType.getCategoryName(), documentType.getName());
+                    if (documentTypeIds.put(key, documentType.getId()) != null) {
+                        duplicates.add(key);
+                    }
+                }
+            }
+            documentTypeIds.keySet().removeAll(duplicates);
+
+            // 2. Load the controls of each document type, which DocFinity returns for a document.
+            Map<String, DocumentTypeMetadata> definitions = Collections.emptyMap();
+            if (args.isLoadControls() && args.getControlsDocumentId() != null) {
+                definitions =
+                        loadControls(
+                                args.getControlsDocumentId(), documentTypeIds.values(), executor);
+            } else if (args.isLoadControls()) {
+                log.info("Warm-up has no controls document id, controls are loaded by documents.");
+            }
+
+            documentTypeCache.putAll(documentTypeIds, definitions);
+            log.info(
+                    "Warm-up loaded {} document types and {} metadata definitions in {} ms.",
+                    documentTypeIds.size(),
+                    definitions.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return documentTypeIds.size();
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     // TODO: Write tests for this.
     private IndexDocumentResult buildIndexResult(
             IndexDocumentArgsBase<?> args,
-            Collection<MetadataDTO> metadataDtos,
+            DocumentTypeMetadata metadata,
             DocumentIndexingDTO documentDto) {
         IndexDocumentResult result = new IndexDocumentResult(documentDto.getDocumentId());
         result.setCategory(args.getCategory());
         result.setDocumentType(args.getDocumentType());
         result.setIndexingDto(documentDto);
 
+        if (options.isLazyResultMetadata()) {
+            result.setMetadataLoader(() -> buildResultMetadata(metadata, documentDto));
+        } else {
+            result.setMetadata(buildResultMetadata(metadata, documentDto));
+        }
+
+        return result;
+    }
+
+    private static List<DocumentField> buildResultMetadata(
+            DocumentTypeMetadata metadata, DocumentIndexingDTO documentDto) {
         // Note: After indexing/reindex operation, DocFinity response contains the index data for each
         // metadata object, however, the response does NOT contain the metadata names. The metadata
         // names need to be cross-referenced from the metadataDto by the metadata id.
-        Map<String, MetadataDTO> metadataMap = Maps.uniqueIndex(metadataDtos, MetadataDTO::getId);
-        Map<String, DocumentField> fieldsMap = new HashMap<>();
+        Map<String, String> metadataNames = metadata.getMetadataNamesById();
+        Map<String, DocumentField> fieldsMap = Maps.newHashMapWithExpectedSize(metadataNames.size());
 
         for (DocumentIndexingMetadataDTO indexingDto : documentDto.getIndexingMetadata()) {
-            MetadataDTO metadataDTO = metadataMap.get(indexingDto.getMetadataId());
-            if (metadataDTO != null) {
-                String fieldName = metadataDTO.getName();
+            String fieldName = metadataNames.get(indexingDto.getMetadataId());
+            Object fieldValue = indexingDto.getValue();
+
+            if (fieldName != null && fieldValue != null) {
                 DocumentField field = fieldsMap.get(fieldName);
-                Object fieldValue = indexingDto.getValue();
-
-                if (fieldValue != null) {
-                    if (field != null) {
-                        field.getValues().add(indexingDto.getValue());
-                    } else {
-                        field = DocumentField.fromSingleValue(fieldName, indexingDto.getValue());
-                        fieldsMap.put(fieldName, field);
-                    }
+
+                if (field != null) {
+                    field.getValues().add(fieldValue);
+                } else {
+                    field = DocumentField.fromSingleValue(fieldName, fieldValue);
+                    fieldsMap.put(fieldName, field);
                 }
             }
         }
 
-        result.setMetadata(new ArrayList<>(fieldsMap.values()));
+        return new ArrayList<>(fieldsMap.values());
+    }
 
-        return result;
+    private DocumentTypeMetadata getDocumentTypeMetadata(String documentTypeId, String documentId)
+            throws IOException {
+
+        // Controls are requested for a document but are the same for all documents of the type.
+        return documentTypeCache.getMetadata(
+                documentTypeId, () -> service.getDocumentMetadata(documentTypeId, documentId));
     }
 
-    private Map<String, MetadataDTO> getDocumentMetadataMap(String documentTypeId, String documentId)
+    private List<DocumentTypeDTO> listDocumentTypes(WarmUpArgs args, ExecutorService executor)
             throws IOException {
+        List<String> categories =
+                args.getCategories().isEmpty()
+                        ? Collections.singletonList(null)
+                        : args.getCategories();
+        int pageSize = args.getPageSize();
+
+        List<Future<DocumentTypeDTOSearchResult>> firstPages = new ArrayList<>();
+        for (String category : categories) {
+            firstPages.add(executor.submit(() -> service.listDocumentTypes(category, 0, pageSize)));
+        }
+
+        // The first page has the number of document types of the category, the other pages are
+        // requested at the same time. Pages are as long as the first one in case the server limits
+        // their size.
+        Map<String, DocumentTypeDTO> documentTypes = new LinkedHashMap<>();
+        List<Future<DocumentTypeDTOSearchResult>> pages = new ArrayList<>();
+        for (int i = 0; i < categories.size(); i++) {
+            String category = categories.get(i);
+            DocumentTypeDTOSearchResult firstPage = await(firstPages.get(i));
+            int returned = firstPage.getResults().size();
+            addDocumentTypes(documentTypes, firstPage);
+
+            for (int offset = returned;
+                    returned > 0 && offset < firstPage.getTotalAvailable();
+                    offset += returned) {
+                int pageOffset = offset;
+                int pageLength = returned;
+                pages.add(
+                        executor.submit(
+                                () -> service.listDocumentTypes(category, pageOffset, pageLength)));
+            }
+        }
+
+        for (Future<DocumentTypeDTOSearchResult> page : pages) {
+            addDocumentTypes(documentTypes, await(page));
+        }
+        return new ArrayList<>(documentTypes.values());
+    }
+
+    private static void addDocumentTypes(
+            Map<String, DocumentTypeDTO> documentTypes, DocumentTypeDTOSearchResult page) {
+        for (DocumentTypeDTO documentType : page.getResults()) {
+            documentTypes.put(documentType.getId(), documentType);
+        }
+    }
+
+    private Map<String, DocumentTypeMetadata> loadControls(
+            String controlsDocumentId, Collection<String> documentTypeIds, ExecutorService executor)
+            throws IOException {
+        // Controls are requested for a document, any document can be used for every type.
+        Map<String, Future<List<MetadataDTO>>> futures = new LinkedHashMap<>();
+        for (String documentTypeId : documentTypeIds) {
+            futures.put(
+                    documentTypeId,
+                    executor.submit(
+                            () -> service.getDocumentMetadata(documentTypeId, controlsDocumentId)));
+        }
 
-        List<MetadataDTO> metadata = service.getDocumentMetadata(documentTypeId, documentId);
+        // A document type whose controls fail is loaded when its first document is created.
+        Map<String, DocumentTypeMetadata> definitions = new HashMap<>();
+        for (Map.Entry<String, Future<List<MetadataDTO>>> future : futures.entrySet()) {
+            try {
+                definitions.put(
+                        future.getKey(),
+                        documentTypeCache.index(future.getKey(), await(future.getValue())));
+            } catch (IOException | RuntimeException e) {
+                log.warn(
+                        "Failed to load controls of document type '{}'. Error Message: {}",
+                        future.getKey(),
+                        e.getMessage());
+            }
+        }
+        return definitions;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while warming up.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
 
-        return metadata.stream().collect(Collectors.toMap(MetadataDTO::getName, m -> m));
+    private static String contentKey(FileIndexDocumentArgs args) throws IOException {
+        String contentHash =
+                args.getFile() != null
+                        ? DeduplicationIndex.hash(args.getFile())
+                        : DeduplicationIndex.hash(args.getFileContent());
+        return DeduplicationIndex.key(contentHash, args.getCategory(), args.getDocumentType());
+    }
+
+    private static void removeFromDeduplicationIndex(
+            DeduplicationIndex deduplicationIndex, String contentKey, String documentId) {
+        try {
+            deduplicationIndex.remove(contentKey);
+        } catch (IOException e) {
+            // The new document replaces the entry when it is committed.
+            log.error("Failed to remove document '{}' from deduplication index.", documentId, e);
+        }
     }
 
     private String uploadFile(FileIndexDocumentArgs args) throws IOException {
@@ -238,17 +664,41 @@ public class DocFinityClient {
         return documentId;
     }
 
-    private void tryDeleteDocument(String documentId) {
+    private void tryDeleteDocument(String documentId, DocumentLifecycleListener listener) {
+        OrphanReaper orphanReaper = options.getOrphanReaper();
+        if (orphanReaper != null) {
+            try {
+                orphanReaper.enqueue(documentId, listener);
+                log.info("Document queued for deletion due to indexing error, id: {}", documentId);
+                listener.onQueuedForDeletion(documentId);
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn(
+                        "Failed to queue document '{}' for deletion. Error Message: {}",
+                        documentId,
+                        e.getMessage());
+            }
+        }
+
         try {
             this.service.deleteDocuments(documentId);
             log.info("Document deleted due to indexing error, id: {}", documentId);
+            listener.onDeleted(documentId);
         } catch (IOException e) {
-            log.error("Failed to delete document '%s'. Error Message: ", documentId, e.getMessage());
+            log.error("Failed to delete document '{}'. Error Message: {}", documentId, e.getMessage());
         }
     }
 
     private String getDocumentTypeId(String categoryName, String documentTypeName)
             throws IOException {
+        return documentTypeCache.getDocumentTypeId(
+                categoryName,
+                documentTypeName,
+                () -> getDocumentTypeIdFromServer(categoryName, documentTypeName));
+    }
+
+    private String getDocumentTypeIdFromServer(String categoryName, String documentTypeName)
+            throws IOException {
         DocumentTypeDTOSearchResult documentTypes =
                 this.service.getDocumentTypes(categoryName, documentTypeName);
 
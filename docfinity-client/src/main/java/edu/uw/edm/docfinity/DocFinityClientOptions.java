@@ -0,0 +1,148 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+
+/** Encapsulates the optional settings of DocFinityClient. */
+@Getter
+public class DocFinityClientOptions {
+    /**
+    * Index of uploaded content used to skip uploading files that were already uploaded, null to
+    * upload every file.
+    */
+    private DeduplicationIndex deduplicationIndex;
+
+    /**
+    * Reaper that deletes documents that could not be indexed from a background thread, null to
+    * delete them before the failed operation returns.
+    */
+    private OrphanReaper orphanReaper;
+
+    /**
+    * Whether the metadata of the existing document is reindexed when a duplicate file is found,
+    * otherwise the existing document is returned without changes.
+    */
+    private boolean reindexDuplicates = true;
+
+    /**
+    * Whether reindex operations only send the values that are different from the current indexing
+    * data of the document, and skip the reindex if there are none. Otherwise all requested values
+    * are sent, and multi-select values are always deleted and added again. Off by default, since
+    * it changes the requests sent to DocFinity (ie. unchanged values are not indexed again).
+    */
+    private boolean reindexChangesOnly;
+
+    /**
+    * Whether the metadata fields of IndexDocumentResult are built when first requested instead of
+    * after each operation, for callers that only use the document id.
+    */
+    private boolean lazyResultMetadata;
+
+    /**
+    * Time that document type ids and metadata definitions are cached, in milliseconds. Zero (the
+    * default) to request them from DocFinity for every document, so changes to document types are
+    * used right away. Either way, definitions are only indexed (and their datasources compiled) again
+    * when they change.
+    */
+    private long cacheExpirationMillis;
+
+    /**
+    * File where document type ids and metadata definitions are saved, so that new processes start
+    * with them instead of requesting them before the first document. Null to only cache in memory.
+    * The file can be shared by processes that use the same DocFinity instance. Requires the cache
+    * (see withCacheExpiration).
+    */
+    private Path cacheSnapshotPath;
+
+    /** Time after which the entries of the cache snapshot are ignored, in milliseconds. */
+    private long cacheSnapshotMaxAgeMillis = TimeUnit.DAYS.toMillis(1);
+
+    /**
+    * Kind of threads used by BulkIndexer workers and parallel datasources. Virtual threads require
+    * Java 21 or newer.
+    */
+    private ThreadModeEnum threadMode = ThreadModeEnum.PLATFORM;
+
+    /** Whether the datasources of a document are executed at the same time. */
+    private boolean parallelDatasources;
+
+    /** Sets the index of uploaded content used to skip uploading duplicate files. */
+    public DocFinityClientOptions withDeduplicationIndex(DeduplicationIndex deduplicationIndex) {
+        Preconditions.checkNotNull(deduplicationIndex, "deduplicationIndex is required.");
+        this.deduplicationIndex = deduplicationIndex;
+        return this;
+    }
+
+    /** Sets the reaper that deletes documents that could not be indexed in the background. */
+    public DocFinityClientOptions withOrphanReaper(OrphanReaper orphanReaper) {
+        Preconditions.checkNotNull(orphanReaper, "orphanReaper is required.");
+        this.orphanReaper = orphanReaper;
+        return this;
+    }
+
+    /** Sets whether the metadata of the existing document is reindexed for duplicate files. */
+    public DocFinityClientOptions withReindexDuplicates(boolean reindexDuplicates) {
+        this.reindexDuplicates = reindexDuplicates;
+        return this;
+    }
+
+    /** Sets whether reindex operations only send values that changed. */
+    public DocFinityClientOptions withReindexChangesOnly(boolean reindexChangesOnly) {
+        this.reindexChangesOnly = reindexChangesOnly;
+        return this;
+    }
+
+    /** Sets whether the metadata fields of results are built when first requested. */
+    public DocFinityClientOptions withLazyResultMetadata(boolean lazyResultMetadata) {
+        this.lazyResultMetadata = lazyResultMetadata;
+        return this;
+    }
+
+    /**
+    * Sets the time that document type ids and metadata definitions are cached, zero to disable the
+    * cache. The cache is disabled by default.
+    */
+    public DocFinityClientOptions withCacheExpiration(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "duration must not be negative.");
+        Preconditions.checkNotNull(unit, "unit is required.");
+        this.cacheExpirationMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+    * Sets the file where document type ids and metadata definitions are saved for new processes.
+    * Entries from the file are used by the first documents and are then requested again in the
+    * background.
+    */
+    public DocFinityClientOptions withCacheSnapshot(Path path) {
+        Preconditions.checkNotNull(path, "path is required.");
+        this.cacheSnapshotPath = path;
+        return this;
+    }
+
+    /** Sets the time after which the entries of the cache snapshot are ignored. */
+    public DocFinityClientOptions withCacheSnapshotMaxAge(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration > 0, "duration must be greater than 0.");
+        Preconditions.checkNotNull(unit, "unit is required.");
+        this.cacheSnapshotMaxAgeMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /** Sets the kind of threads used by bulk workers and parallel datasources. */
+    public DocFinityClientOptions withThreadMode(ThreadModeEnum threadMode) {
+        Preconditions.checkNotNull(threadMode, "threadMode is required.");
+        Preconditions.checkArgument(
+                threadMode != ThreadModeEnum.VIRTUAL || WorkerExecutors.isVirtualThreadSupported(),
+                "Virtual threads require Java 21 or newer.");
+        this.threadMode = threadMode;
+        return this;
+    }
+
+    /** Sets whether the datasources of a document are executed at the same time. */
+    public DocFinityClientOptions withParallelDatasources(boolean parallelDatasources) {
+        this.parallelDatasources = parallelDatasources;
+        return this;
+    }
+}
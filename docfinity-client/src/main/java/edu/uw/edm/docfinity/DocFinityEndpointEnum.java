@@ -0,0 +1,21 @@
+package edu.uw.edm.docfinity;
+
+/** Represents the DocFinity REST API end-points used by the client. */
+public enum DocFinityEndpointEnum {
+    /** '/webservices/rest/documentType' to retrieve document types. */
+    DOCUMENT_TYPES,
+    /** '/servlet/upload' to upload files. */
+    UPLOAD,
+    /** '/indexing/data' to retrieve the indexing data of a document. */
+    INDEXING_DATA,
+    /** '/indexing/controls' to retrieve the metadata of a document type. */
+    INDEXING_CONTROLS,
+    /** '/indexing/executeDatasource' to execute datasources. */
+    EXECUTE_DATASOURCE,
+    /** '/indexing/index/commit' to index and commit documents. */
+    INDEX,
+    /** '/indexing/reindex' to reindex documents. */
+    REINDEX,
+    /** '/document/delete' to delete documents. */
+    DELETE
+}
@@ -20,6 +20,23 @@ public interface DocFinityService {
     DocumentTypeDTOSearchResult getDocumentTypes(String categoryName, String documentTypeName)
             throws IOException;
 
+    /**
+    * Represents call to '/webservices/rest/documentType' to retrieve a page of the document types of
+    * a category, or of all categories. Only required by DocFinityClient.warmUp, implementations that
+    * do not support it throw UnsupportedOperationException.
+    *
+    * @param categoryName Category name to use in query filter, null for all categories.
+    * @param offset Index of the first document type to return.
+    * @param limit Maximum number of document types to return.
+    */
+    default DocumentTypeDTOSearchResult listDocumentTypes(
+            String categoryName, int offset, int limit) throws IOException {
+        throw new UnsupportedOperationException(
+                String.format(
+                        "%s does not support listing document types, which is required by warmUp.",
+                        getClass().getName()));
+    }
+
     /**
     * Represents call to '/servlet/upload' to upload file.
     *
@@ -63,7 +80,8 @@ public interface DocFinityService {
     List<DocumentIndexingDTO> reindexDocuments(DocumentIndexingDTO... documents) throws IOException;
 
     /**
-    * Represents call to 'webservices/rest/document/delete' to soft-delete documents from DocFinity
+    * Represents call to 'webservices/rest/document/delete' to soft-delete documents from DocFinity.
+    * Throws DocFinityStatusException if the server responds with an unsuccessful status code.
     */
     void deleteDocuments(String... documentIds) throws IOException;
 }
@@ -1,6 +1,7 @@
 package edu.uw.edm.docfinity;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import edu.uw.edm.docfinity.models.DocumentControlsRequestDTO;
 import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
@@ -10,40 +11,65 @@ import edu.uw.edm.docfinity.models.ExecuteDatasourceResponseDTO;
 import edu.uw.edm.docfinity.models.MetadataDTO;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.HttpUrl;
-import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Request.Builder;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
 
 /**
-* Implementation of DocFinityService that uses OkHttp client (https://square.github.io/okhttp/) to
-* interact with DocFinity REST API.
+* Implementation of DocFinityService that interacts with DocFinity REST API. Requests are sent with
+* the transport of the options, or with OkHttp client (https://square.github.io/okhttp/) by default.
 */
 @Slf4j
 public class DocFinityServiceImpl implements DocFinityService {
-    private final OkHttpClient client;
+    private final DocFinityTransport transport;
+    private final RequestHedger hedger;
+    private final LoadBalancingTransport balancer;
+    private final boolean stickyDocuments;
     private final String apiKey;
     private final String auditUser;
+    private final long uploadChunkSizeBytes;
+    private final int uploadChunkRetries;
+    private final UploadProgressListener uploadProgressListener;
+    private final long uploadProgressIntervalNanos;
+    private final UploadThroughputMeter uploadThroughputMeter;
+    private final UploadMemoryBudget uploadMemoryBudget;
+    private final boolean gzipRequests;
+    private final int gzipThresholdBytes;
     public final HttpUrl docFinityUrl;
 
+    // Whether the server supports chunked uploads, null until the first chunked upload.
+    private volatile Boolean chunkedUploadSupported;
+
     private static final String HEADER_XSRF_TOKEN = "X-XSRF-TOKEN";
     private static final String HEADER_XSRF_TOKEN_VALUE = "edm-token";
     private static final String HEADER_AUDIT_USER = "X-AUDITUSER";
     private static final String HEADER_AUTHORIZATION = "Authorization";
     private static final String HEADER_COOKIE = "Cookie";
     private static final String HEADER_COOKIE_VALUE = "XSRF-TOKEN=edm-token";
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_ENCODING_GZIP = "gzip";
     private static final String LOG_NO_REQUEST_BODY = "[No Request Body]";
     private static final String LOG_NO_RESPONSE_BODY = "[No Response Body]";
+    private static final long CHUNK_RETRY_BACKOFF_MILLIS = 500;
 
     private static final MediaType MEDIA_TYPE_JSON =
             MediaType.parse("application/json; charset=utf-8");
@@ -51,45 +77,125 @@ public class DocFinityServiceImpl implements DocFinityService {
             MediaType.parse("application/octet-stream");
     private static final String DOCUMENT_TYPES_FILTER_FORMAT_STRING =
             "{\"logic\": \"AND\",\"filters\": [{\"field\": \"name\",\"operator\": \"eq\",\"value\": \"%s\"},{\"field\": \"categoryName\",\"operator\": \"eq\",\"value\": \"%s\"}]}";
+    private static final String CATEGORY_FILTER_FORMAT_STRING =
+            "{\"logic\": \"AND\",\"filters\": [{\"field\": \"categoryName\",\"operator\": \"eq\",\"value\": \"%s\"}]}";
 
     public DocFinityServiceImpl(String url, String apikey, String auditUser) {
-        this.docFinityUrl = HttpUrl.parse(url);
+        this(url, apikey, auditUser, new DocFinityServiceOptions());
+    }
+
+    public DocFinityServiceImpl(
+            String url, String apikey, String auditUser, DocFinityServiceOptions options) {
+        this(Collections.singletonList(url), apikey, auditUser, options);
+    }
+
+    /**
+    * Creates a service that balances requests across several DocFinity nodes, with the strategy of
+    * the options.
+    *
+    * @param urls Base urls of the DocFinity nodes, the first one is the url of the service.
+    */
+    public DocFinityServiceImpl(
+            List<String> urls, String apikey, String auditUser, DocFinityServiceOptions options) {
+        Preconditions.checkArgument(urls != null && !urls.isEmpty(), "urls is required.");
+        Preconditions.checkNotNull(options, "options is required.");
+
+        this.docFinityUrl = HttpUrl.parse(urls.get(0));
         this.apiKey = apikey;
         this.auditUser = auditUser;
-        this.client = new OkHttpClient.Builder().addInterceptor(new ApiInterceptor()).build();
+        this.uploadChunkSizeBytes = options.getUploadChunkSizeBytes();
+        this.uploadChunkRetries = options.getUploadChunkRetries();
+        this.uploadProgressListener = options.getUploadProgressListener();
+        this.uploadProgressIntervalNanos =
+                TimeUnit.MILLISECONDS.toNanos(options.getUploadProgressIntervalMillis());
+        this.uploadThroughputMeter = options.getUploadThroughputMeter();
+        this.uploadMemoryBudget = options.getUploadMemoryBudget();
+        this.gzipRequests = options.isGzipRequests();
+        this.gzipThresholdBytes = options.getGzipThresholdBytes();
+        this.stickyDocuments = options.isStickyDocuments();
+
+        DocFinityTransport baseTransport =
+                options.getTransport() != null
+                        ? options.getTransport()
+                        : new OkHttpTransport(options.getMaxIdleConnections());
+
+        if (urls.size() > 1) {
+            List<HttpUrl> nodeUrls = new ArrayList<>();
+            for (String url : urls) {
+                nodeUrls.add(HttpUrl.parse(url));
+            }
+
+            this.balancer =
+                    new LoadBalancingTransport(
+                            baseTransport,
+                            docFinityUrl,
+                            nodeUrls,
+                            options.getLoadBalancingStrategy(),
+                            options.getNodeFailureThreshold(),
+                            options.getNodeEjectionMillis());
+            this.transport = balancer;
+        } else {
+            this.balancer = null;
+            this.transport = baseTransport;
+        }
+
+        this.hedger =
+                options.getHedgedEndpoints().isEmpty()
+                        ? null
+                        : new RequestHedger(
+                                this.transport,
+                                options.getHedgedEndpoints(),
+                                options.getHedgingDelayPercentile(),
+                                options.getHedgingMinDelayMillis(),
+                                options.getHedgingBudgetRatio(),
+                                options.getHedgingMetrics());
     }
 
-    class ApiInterceptor implements Interceptor {
-        @Override
-        public Response intercept(Interceptor.Chain chain) throws IOException {
-            Request originalRequest = chain.request();
+    public String getRawRequest(Request request) throws IOException {
+        try (Response response = send(request)) {
+            return response.body().string();
+        }
+    }
 
-            Builder builder =
-                    originalRequest
-                            .newBuilder()
-                            .header(HEADER_AUTHORIZATION, "Bearer " + apiKey)
-                            .header(HEADER_XSRF_TOKEN, HEADER_XSRF_TOKEN_VALUE)
-                            .header(HEADER_COOKIE, HEADER_COOKIE_VALUE);
+    /** Adds the authentication headers to a request and sends it with the transport. */
+    private Response send(Request originalRequest) throws IOException {
+        return send(null, originalRequest);
+    }
 
-            if (!Strings.isNullOrEmpty(auditUser)) {
-                // Audit user is not required and only needs to be added if supplied.
-                builder = builder.header(HEADER_AUDIT_USER, auditUser);
-            }
+    /**
+    * Adds the authentication headers to a request to an end-point and sends it with the transport,
+    * with hedging if it is enabled for the end-point.
+    */
+    private Response send(DocFinityEndpointEnum endpoint, Request originalRequest)
+            throws IOException {
+        Builder builder =
+                originalRequest
+                        .newBuilder()
+                        .header(HEADER_AUTHORIZATION, "Bearer " + apiKey)
+                        .header(HEADER_XSRF_TOKEN, HEADER_XSRF_TOKEN_VALUE)
+                        .header(HEADER_COOKIE, HEADER_COOKIE_VALUE);
+
+        if (!Strings.isNullOrEmpty(auditUser)) {
+            // Audit user is not required and only needs to be added if supplied.
+            builder = builder.header(HEADER_AUDIT_USER, auditUser);
+        }
 
+        // Logging copies the bodies, only do it when the output is used.
+        boolean trace = log.isTraceEnabled();
+        if (trace) {
             logRequest(originalRequest);
+        }
 
-            Response response = chain.proceed(builder.build());
+        Response response =
+                hedger != null && hedger.isHedged(endpoint)
+                        ? hedger.execute(endpoint, builder.build())
+                        : transport.execute(builder.build());
 
+        if (trace) {
             logResponse(response);
-
-            return response;
         }
-    }
 
-    public String getRawRequest(Request request) throws IOException {
-        try (Response response = client.newCall(request).execute()) {
-            return response.body().string();
-        }
+        return response;
     }
 
     @Override
@@ -108,7 +214,32 @@ public class DocFinityServiceImpl implements DocFinityService {
 
         Request request = new Request.Builder().url(requestUrl).build();
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = send(DocFinityEndpointEnum.DOCUMENT_TYPES, request)) {
+            ObjectMapper objectMapper = new ObjectMapper();
+
+            return objectMapper.readValue(response.body().string(), DocumentTypeDTOSearchResult.class);
+        }
+    }
+
+    @Override
+    public DocumentTypeDTOSearchResult listDocumentTypes(String categoryName, int offset, int limit)
+            throws IOException {
+        HttpUrl.Builder urlBuilder =
+                this.docFinityUrl
+                        .newBuilder()
+                        .addPathSegments("webservices/rest/documentType")
+                        .addQueryParameter("offset", Integer.toString(offset))
+                        .addQueryParameter("limit", Integer.toString(limit))
+                        .addQueryParameter("includeNested", "false");
+
+        if (categoryName != null) {
+            urlBuilder.addQueryParameter(
+                    "filter", String.format(CATEGORY_FILTER_FORMAT_STRING, categoryName));
+        }
+
+        Request request = new Request.Builder().url(urlBuilder.build()).build();
+
+        try (Response response = send(DocFinityEndpointEnum.DOCUMENT_TYPES, request)) {
             ObjectMapper objectMapper = new ObjectMapper();
 
             return objectMapper.readValue(response.body().string(), DocumentTypeDTOSearchResult.class);
@@ -117,17 +248,201 @@ public class DocFinityServiceImpl implements DocFinityService {
 
     @Override
     public String uploadDocument(File file) throws IOException {
-        return uploadDocument(file.getName(), RequestBody.create(file, MEDIA_TYPE_OCTET_STREAM));
+        return uploadDocument(
+                file.getName(),
+                file.length(),
+                (offset, length) ->
+                        new FileRangeRequestBody(file, offset, length, MEDIA_TYPE_OCTET_STREAM));
     }
 
     @Override
     public String uploadDocument(byte[] content, String name) throws IOException {
-        return uploadDocument(name, RequestBody.create(content, MEDIA_TYPE_OCTET_STREAM));
+        return uploadDocument(
+                name,
+                content.length,
+                (offset, length) ->
+                        RequestBody.create(
+                                content, MEDIA_TYPE_OCTET_STREAM, (int) offset, (int) length));
+    }
+
+    private String uploadDocument(String name, long totalBytes, ContentSlicer content)
+            throws IOException {
+        if (uploadMemoryBudget == null) {
+            return uploadWithinBudget(name, totalBytes, content);
+        }
+
+        try (UploadMemoryBudget.Permit permit = uploadMemoryBudget.acquire(name, totalBytes)) {
+            return uploadWithinBudget(name, totalBytes, content);
+        }
+    }
+
+    private String uploadWithinBudget(String name, long totalBytes, ContentSlicer content)
+            throws IOException {
+        UploadProgressTracker progress =
+                new UploadProgressTracker(
+                        name,
+                        totalBytes,
+                        uploadProgressListener,
+                        uploadProgressIntervalNanos,
+                        uploadThroughputMeter);
+        int chunks =
+                uploadChunkSizeBytes == 0
+                        ? 1
+                        : (int) Math.max(1, (totalBytes + uploadChunkSizeBytes - 1) / uploadChunkSizeBytes);
+        String uploadId = UUID.randomUUID().toString();
+        String documentId = null;
+
+        if (chunks > 1 && !Boolean.FALSE.equals(chunkedUploadSupported)) {
+            documentId = uploadChunks(uploadId, name, totalBytes, chunks, content, progress);
+        }
+
+        if (documentId == null) {
+            HttpUrl requestUrl = this.docFinityUrl.newBuilder().addPathSegments("servlet/upload").build();
+            Request request =
+                    newUploadRequest(
+                            requestUrl,
+                            name,
+                            new CountingRequestBody(content.slice(0, totalBytes), progress::update));
+
+            try (Response response = send(withDocumentAffinity(request, uploadId))) {
+                documentId = response.body().string();
+            }
+        }
+
+        if (balancer != null && stickyDocuments) {
+            balancer.linkAffinity(documentId, uploadId);
+        }
+
+        log.debug(
+                "Uploaded '{}' ({} bytes) at {} MB/s.",
+                name,
+                totalBytes,
+                String.format("%.2f", progress.getBytesPerSecond() / 1e6));
+        return documentId;
     }
 
-    private String uploadDocument(String name, RequestBody fileRequestBody) throws IOException {
-        HttpUrl requestUrl = this.docFinityUrl.newBuilder().addPathSegments("servlet/upload").build();
+    /**
+    * Uploads content in chunks with the parameters of the Plupload chunked upload protocol, and
+    * returns the document id sent by the server after the last chunk. A server without chunk support
+    * ignores the parameters and creates a document for the first chunk: the document is deleted and
+    * null is returned so that the content is sent in a single request.
+    *
+    * <p>A chunk that fails is sent again, which requires the server to store each chunk by its
+    * index, so that a chunk received twice (ie. the connection failed after it was stored) is not
+    * appended twice. Chunks that may create a document are not sent again, since a document created
+    * by a failed attempt would be left behind: the last chunk, and the first chunk until the server
+    * is known to support chunked uploads.
+    */
+    private String uploadChunks(
+            String uploadId,
+            String name,
+            long totalBytes,
+            int chunks,
+            ContentSlicer content,
+            UploadProgressTracker progress)
+            throws IOException {
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            long offset = chunk * uploadChunkSizeBytes;
+            long length = Math.min(uploadChunkSizeBytes, totalBytes - offset);
+            HttpUrl requestUrl =
+                    this.docFinityUrl
+                            .newBuilder()
+                            .addPathSegments("servlet/upload")
+                            .addQueryParameter("uploadId", uploadId)
+                            .addQueryParameter("name", name)
+                            .addQueryParameter("chunk", Integer.toString(chunk))
+                            .addQueryParameter("chunks", Integer.toString(chunks))
+                            .build();
+
+            boolean createsDocument =
+                    chunk == chunks - 1 || (chunk == 0 && chunkedUploadSupported == null);
+            String response =
+                    uploadChunk(
+                            requestUrl,
+                            uploadId,
+                            name,
+                            chunk,
+                            chunks,
+                            createsDocument ? 0 : uploadChunkRetries,
+                            () -> content.slice(offset, length),
+                            (written, byteCount) -> progress.update(offset + written, byteCount));
+
+            if (chunk == chunks - 1) {
+                return response;
+            } else if (!response.isEmpty() && chunk == 0) {
+                log.warn("Server does not support chunked uploads, uploads are sent in a single request.");
+                chunkedUploadSupported = false;
+                deleteDocuments(response);
+                return null;
+            } else if (!response.isEmpty()) {
+                throw new IOException(
+                        String.format(
+                                "Unexpected response to chunk %d of %d of '%s': %s",
+                                chunk, chunks, name, response));
+            }
+
+            chunkedUploadSupported = true;
+        }
+
+        throw new IllegalStateException("Chunked upload did not send the last chunk.");
+    }
+
+    private String uploadChunk(
+            HttpUrl requestUrl,
+            String uploadId,
+            String name,
+            int chunk,
+            int chunks,
+            int retries,
+            Supplier<RequestBody> content,
+            CountingRequestBody.Listener listener)
+            throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            // The chunks are assembled by the node that receives them.
+            Request request =
+                    withAffinity(
+                            newUploadRequest(
+                                    requestUrl, name, new CountingRequestBody(content.get(), listener)),
+                            uploadId);
+            IOException error;
+
+            try (Response response = send(request)) {
+                if (response.isSuccessful()) {
+                    return response.body().string();
+                }
+                error = new DocFinityStatusException(response.code());
+            } catch (IOException e) {
+                error = e;
+            }
+
+            if (attempt > retries) {
+                throw new IOException(
+                        String.format(
+                                "Failed to upload chunk %d of %d of '%s' after %d attempts.",
+                                chunk, chunks, name, attempt),
+                        error);
+            }
+
+            long backoffMillis = CHUNK_RETRY_BACKOFF_MILLIS << (attempt - 1);
+            log.warn(
+                    "Failed to upload chunk {} of {} of '{}', retrying in {} ms. Error Message: {}",
+                    chunk,
+                    chunks,
+                    name,
+                    backoffMillis,
+                    error.getMessage());
+
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry upload chunk.");
+            }
+        }
+    }
 
+    private static Request newUploadRequest(
+            HttpUrl requestUrl, String name, RequestBody fileRequestBody) {
         RequestBody body =
                 new MultipartBody.Builder()
                         .setType(MultipartBody.FORM)
@@ -136,18 +451,12 @@ public class DocFinityServiceImpl implements DocFinityService {
                         .addFormDataPart("upload_files", name, fileRequestBody)
                         .build();
 
-        Request request = new Request.Builder().url(requestUrl).post(body).build();
-
-        try (Response response = client.newCall(request).execute()) {
-            return response.body().string();
-        }
+        return new Request.Builder().url(requestUrl).post(body).build();
     }
 
     @Override
     public List<ExecuteDatasourceResponseDTO> executeDatasource(
             ExecuteDatasourceRequestDTO requestDto) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        String requestJson = mapper.writeValueAsString(requestDto);
         HttpUrl requestUrl =
                 this.docFinityUrl
                         .newBuilder()
@@ -155,12 +464,10 @@ public class DocFinityServiceImpl implements DocFinityService {
                         .build();
 
         Request request =
-                new Request.Builder()
-                        .url(requestUrl)
-                        .post(RequestBody.create(requestJson, MEDIA_TYPE_JSON))
-                        .build();
+                withDocumentAffinity(newJsonRequest(requestUrl, requestDto), requestDto.getDocumentId());
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = send(request)) {
+            ObjectMapper mapper = new ObjectMapper();
             return Arrays.asList(
                     mapper.readValue(response.body().string(), ExecuteDatasourceResponseDTO[].class));
         }
@@ -175,9 +482,10 @@ public class DocFinityServiceImpl implements DocFinityService {
                         .addQueryParameter("documentId", documentId)
                         .build();
 
-        Request request = new Request.Builder().url(requestUrl).build();
+        Request request =
+                withDocumentAffinity(new Request.Builder().url(requestUrl).build(), documentId);
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = send(DocFinityEndpointEnum.INDEXING_DATA, request)) {
             ObjectMapper objectMapper = new ObjectMapper();
 
             return objectMapper.readValue(response.body().string(), DocumentIndexingDTO.class);
@@ -187,22 +495,18 @@ public class DocFinityServiceImpl implements DocFinityService {
     @Override
     public List<MetadataDTO> getDocumentMetadata(String documentTypeId, String documentId)
             throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        String requestJson =
-                mapper.writeValueAsString(new DocumentControlsRequestDTO(documentTypeId, documentId));
         HttpUrl requestUrl =
                 this.docFinityUrl
                         .newBuilder()
                         .addPathSegments("webservices/rest/indexing/controls")
                         .build();
 
-        Request request =
-                new Request.Builder()
-                        .url(requestUrl)
-                        .post(RequestBody.create(requestJson, MEDIA_TYPE_JSON))
-                        .build();
+        DocumentControlsRequestDTO requestDto =
+                new DocumentControlsRequestDTO(documentTypeId, documentId);
+        Request request = withDocumentAffinity(newJsonRequest(requestUrl, requestDto), documentId);
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = send(DocFinityEndpointEnum.INDEXING_CONTROLS, request)) {
+            ObjectMapper mapper = new ObjectMapper();
             return Arrays.asList(mapper.readValue(response.body().string(), MetadataDTO[].class));
         }
     }
@@ -228,34 +532,72 @@ public class DocFinityServiceImpl implements DocFinityService {
 
     private List<DocumentIndexingDTO> indexDocuments(
             HttpUrl requestUrl, DocumentIndexingDTO... documents) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        String requestJson = mapper.writeValueAsString(documents);
-
         Request request =
-                new Request.Builder()
-                        .url(requestUrl)
-                        .post(RequestBody.create(requestJson, MEDIA_TYPE_JSON))
-                        .build();
+                documents.length == 0
+                        ? newJsonRequest(requestUrl, documents)
+                        : withDocumentAffinity(
+                                newJsonRequest(requestUrl, documents), documents[0].getDocumentId());
 
-        try (Response response = client.newCall(request).execute()) {
+        try (Response response = send(request)) {
+            ObjectMapper mapper = new ObjectMapper();
             return Arrays.asList(mapper.readValue(response.body().string(), DocumentIndexingDTO[].class));
         }
     }
 
     @Override
     public void deleteDocuments(String... documentIds) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        String requestJson = mapper.writeValueAsString(documentIds);
         HttpUrl requestUrl =
                 this.docFinityUrl.newBuilder().addPathSegments("webservices/rest/document/delete").build();
 
         Request request =
-                new Request.Builder()
-                        .url(requestUrl)
-                        .post(RequestBody.create(requestJson, MEDIA_TYPE_JSON))
-                        .build();
+                documentIds.length == 0
+                        ? newJsonRequest(requestUrl, documentIds)
+                        : withDocumentAffinity(newJsonRequest(requestUrl, documentIds), documentIds[0]);
+
+        try (Response response = send(request)) {
+            if (!response.isSuccessful()) {
+                throw new DocFinityStatusException(response.code());
+            }
+        }
+    }
+
+    /**
+    * Creates a POST request with a value serialized to json as body. The json is streamed to the
+    * connection, bodies from the gzip threshold are compressed if the server accepts compressed
+    * requests, and only the compressed json is kept in memory.
+    */
+    private Request newJsonRequest(HttpUrl requestUrl, Object value) throws IOException {
+        Request.Builder builder = new Request.Builder().url(requestUrl);
+        RequestBody body = new JsonRequestBody(value, MEDIA_TYPE_JSON);
+
+        if (gzipRequests && body.contentLength() >= gzipThresholdBytes) {
+            Buffer buffer = new Buffer();
+            try (BufferedSink gzipSink = Okio.buffer(new GzipSink(buffer))) {
+                body.writeTo(gzipSink);
+            }
+            body = RequestBody.create(buffer.readByteArray(), MEDIA_TYPE_JSON);
+            builder.header(HEADER_CONTENT_ENCODING, CONTENT_ENCODING_GZIP);
+        }
+
+        return builder.post(body).build();
+    }
+
+    /** Sends a request to the same node as the other requests with the key, with several nodes. */
+    private Request withAffinity(Request request, String key) {
+        return balancer != null ? LoadBalancingTransport.withAffinity(request, key) : request;
+    }
+
+    /**
+    * Sends a request for a document to the node it was uploaded to, with several nodes and sticky
+    * documents. Documents of batches are sent to the node of the first document.
+    */
+    private Request withDocumentAffinity(Request request, String documentId) {
+        return stickyDocuments ? withAffinity(request, documentId) : request;
+    }
 
-        try (Response response = client.newCall(request).execute()) {}
+    /** Creates the body of a range of the uploaded content. */
+    private interface ContentSlicer {
+        RequestBody slice(long offset, long length);
     }
 
     private void logRequest(Request request) throws IOException {
@@ -264,7 +606,10 @@ public class DocFinityServiceImpl implements DocFinityService {
             final Request copy = request.newBuilder().build();
             final Buffer buffer = new Buffer();
             copy.body().writeTo(buffer);
-            body = buffer.readUtf8();
+            body =
+                    CONTENT_ENCODING_GZIP.equals(request.header(HEADER_CONTENT_ENCODING))
+                            ? Okio.buffer(new GzipSource(buffer)).readUtf8()
+                            : buffer.readUtf8();
         }
 
         log.trace("[Request] {}  {}\n{}", request.method(), request.url(), body);
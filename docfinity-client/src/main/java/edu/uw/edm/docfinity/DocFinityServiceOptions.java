@@ -0,0 +1,274 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+
+/** Encapsulates the optional settings of the HTTP interaction with DocFinity REST API. */
+@Getter
+public class DocFinityServiceOptions {
+    /**
+    * Maximum number of idle connections kept open for re-use. Should be at least the number of
+    * threads that use the client at the same time, otherwise connections are closed and opened
+    * again between requests.
+    */
+    private int maxIdleConnections = 5;
+
+    /**
+    * Transport that sends the requests, null for an OkHttpTransport with the maximum idle
+    * connections. The maximum idle connections is not used with a custom transport.
+    */
+    private DocFinityTransport transport;
+
+    /**
+    * Size of the chunks that uploads larger than it are sent in, so that a failed request only sends
+    * one chunk again. Zero to send every upload in a single request. If the server does not support
+    * chunked uploads, the first upload detects it and uploads are sent in a single request.
+    */
+    private long uploadChunkSizeBytes = 0;
+
+    /**
+    * Number of times a failed chunk is sent again before the upload fails. The server must store
+    * chunks by their index, so that a chunk received twice is not appended twice. The last chunk,
+    * which creates the document, is not sent again.
+    */
+    private int uploadChunkRetries = 3;
+
+    /** Listener notified as the content of uploads is sent, null for none. */
+    private UploadProgressListener uploadProgressListener;
+
+    /**
+    * Minimum time between two notifications of the progress listener for the same upload, in
+    * milliseconds. The listener is always notified when an upload completes.
+    */
+    private long uploadProgressIntervalMillis = 500;
+
+    /** Meter that adds up the bytes sent by all uploads, null for none. */
+    private UploadThroughputMeter uploadThroughputMeter;
+
+    /** Budget that bounds the bytes of the uploads in flight, null for no bound. */
+    private UploadMemoryBudget uploadMemoryBudget;
+
+    /**
+    * Whether the server accepts json request bodies compressed with gzip ('Content-Encoding: gzip').
+    * Servers that do not decode them fail the requests, so it is disabled by default.
+    */
+    private boolean gzipRequests;
+
+    /**
+    * Size in bytes from which json request bodies are compressed when the server accepts gzip.
+    * Smaller bodies are sent as is, since compressing them costs more time than it saves.
+    */
+    private int gzipThresholdBytes = 16 * 1024;
+
+    /**
+    * End-points whose requests are hedged: sent again when the response is late, the first response
+    * wins. Empty to disable hedging. Hedged requests are not counted by the limits of a
+    * ConcurrencyLimitedDocFinityService.
+    */
+    private final Set<DocFinityEndpointEnum> hedgedEndpoints =
+            EnumSet.noneOf(DocFinityEndpointEnum.class);
+
+    /**
+    * Percentile (0 to 1) of the recent latencies of an end-point after which a request is hedged.
+    * Requests are not hedged until enough latencies are known.
+    */
+    private double hedgingDelayPercentile = 0.95;
+
+    /** Minimum time before a request is hedged, in milliseconds. */
+    private long hedgingMinDelayMillis = 10;
+
+    /** Maximum ratio (0 to 1) of requests that are hedged, which bounds the extra load sent. */
+    private double hedgingBudgetRatio = 0.1;
+
+    /** Metrics of the hedged requests, null for none. */
+    private HedgingMetrics hedgingMetrics;
+
+    /** How requests are balanced across the nodes of a service with several urls. */
+    private LoadBalancingStrategyEnum loadBalancingStrategy =
+            LoadBalancingStrategyEnum.LEAST_OUTSTANDING_REQUESTS;
+
+    /**
+    * Number of consecutive failed requests (errors or 5xx status codes) after which a node of a
+    * service with several urls is ejected.
+    */
+    private int nodeFailureThreshold = 3;
+
+    /** Time an ejected node receives no requests, in milliseconds. */
+    private long nodeEjectionMillis = 30_000;
+
+    /**
+    * Whether the requests for a document (controls, datasources, index and commit, delete) are sent
+    * to the node it was uploaded to, for services with several urls. The chunks of an upload are
+    * always sent to the same node.
+    */
+    private boolean stickyDocuments;
+
+    // Hedging sends requests twice, so only end-points that do not change anything are allowed.
+    private static final Set<DocFinityEndpointEnum> IDEMPOTENT_ENDPOINTS =
+            ImmutableSet.of(
+                    DocFinityEndpointEnum.DOCUMENT_TYPES,
+                    DocFinityEndpointEnum.INDEXING_DATA,
+                    DocFinityEndpointEnum.INDEXING_CONTROLS);
+
+    /** Sets the maximum number of idle connections kept open for re-use. */
+    public DocFinityServiceOptions withMaxIdleConnections(int maxIdleConnections) {
+        Preconditions.checkArgument(
+                maxIdleConnections > 0, "maxIdleConnections must be greater than 0.");
+        this.maxIdleConnections = maxIdleConnections;
+        return this;
+    }
+
+    /** Sets the transport that sends the requests, ie. a transport on a different HTTP client. */
+    public DocFinityServiceOptions withTransport(DocFinityTransport transport) {
+        Preconditions.checkNotNull(transport, "transport is required.");
+        this.transport = transport;
+        return this;
+    }
+
+    /** Sets the size of the chunks that large uploads are sent in, zero to disable. */
+    public DocFinityServiceOptions withUploadChunkSize(long uploadChunkSizeBytes) {
+        Preconditions.checkArgument(
+                uploadChunkSizeBytes >= 0, "uploadChunkSizeBytes must not be negative.");
+        this.uploadChunkSizeBytes = uploadChunkSizeBytes;
+        return this;
+    }
+
+    /** Sets the number of times a failed chunk is sent again before the upload fails. */
+    public DocFinityServiceOptions withUploadChunkRetries(int uploadChunkRetries) {
+        Preconditions.checkArgument(
+                uploadChunkRetries >= 0, "uploadChunkRetries must not be negative.");
+        this.uploadChunkRetries = uploadChunkRetries;
+        return this;
+    }
+
+    /** Sets the listener notified as the content of uploads is sent. */
+    public DocFinityServiceOptions withUploadProgressListener(
+            UploadProgressListener uploadProgressListener) {
+        Preconditions.checkNotNull(uploadProgressListener, "uploadProgressListener is required.");
+        this.uploadProgressListener = uploadProgressListener;
+        return this;
+    }
+
+    /** Sets the minimum time between two notifications of the progress listener for an upload. */
+    public DocFinityServiceOptions withUploadProgressInterval(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "duration must not be negative.");
+        Preconditions.checkNotNull(unit, "unit is required.");
+        this.uploadProgressIntervalMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /** Sets the meter that adds up the bytes sent by all uploads. */
+    public DocFinityServiceOptions withUploadThroughputMeter(
+            UploadThroughputMeter uploadThroughputMeter) {
+        Preconditions.checkNotNull(uploadThroughputMeter, "uploadThroughputMeter is required.");
+        this.uploadThroughputMeter = uploadThroughputMeter;
+        return this;
+    }
+
+    /**
+    * Sets the budget that bounds the bytes of the uploads in flight. Share it between services to
+    * bound the uploads of all of them.
+    */
+    public DocFinityServiceOptions withUploadMemoryBudget(UploadMemoryBudget uploadMemoryBudget) {
+        Preconditions.checkNotNull(uploadMemoryBudget, "uploadMemoryBudget is required.");
+        this.uploadMemoryBudget = uploadMemoryBudget;
+        return this;
+    }
+
+    /** Sets whether the server accepts json request bodies compressed with gzip. */
+    public DocFinityServiceOptions withGzipRequests(boolean gzipRequests) {
+        this.gzipRequests = gzipRequests;
+        return this;
+    }
+
+    /** Sets the size in bytes from which json request bodies are compressed. */
+    public DocFinityServiceOptions withGzipThreshold(int gzipThresholdBytes) {
+        Preconditions.checkArgument(
+                gzipThresholdBytes >= 0, "gzipThresholdBytes must not be negative.");
+        this.gzipThresholdBytes = gzipThresholdBytes;
+        return this;
+    }
+
+    /**
+    * Sets the end-points whose requests are hedged. Only the read end-points DOCUMENT_TYPES,
+    * INDEXING_DATA and INDEXING_CONTROLS can be hedged.
+    */
+    public DocFinityServiceOptions withHedging(DocFinityEndpointEnum... endpoints) {
+        Preconditions.checkNotNull(endpoints, "endpoints is required.");
+        for (DocFinityEndpointEnum endpoint : endpoints) {
+            Preconditions.checkArgument(
+                    IDEMPOTENT_ENDPOINTS.contains(endpoint),
+                    "End-point %s cannot be hedged, it is not an idempotent read.",
+                    endpoint);
+        }
+        this.hedgedEndpoints.addAll(Arrays.asList(endpoints));
+        return this;
+    }
+
+    /** Sets the percentile of the recent latencies after which a request is hedged. */
+    public DocFinityServiceOptions withHedgingDelayPercentile(double hedgingDelayPercentile) {
+        Preconditions.checkArgument(
+                hedgingDelayPercentile > 0 && hedgingDelayPercentile < 1,
+                "hedgingDelayPercentile must be between 0 and 1.");
+        this.hedgingDelayPercentile = hedgingDelayPercentile;
+        return this;
+    }
+
+    /** Sets the minimum time before a request is hedged. */
+    public DocFinityServiceOptions withHedgingMinDelay(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "duration must not be negative.");
+        Preconditions.checkNotNull(unit, "unit is required.");
+        this.hedgingMinDelayMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /** Sets the maximum ratio of requests that are hedged. */
+    public DocFinityServiceOptions withHedgingBudget(double hedgingBudgetRatio) {
+        Preconditions.checkArgument(
+                hedgingBudgetRatio > 0 && hedgingBudgetRatio <= 1,
+                "hedgingBudgetRatio must be greater than 0 and at most 1.");
+        this.hedgingBudgetRatio = hedgingBudgetRatio;
+        return this;
+    }
+
+    /** Sets the metrics of the hedged requests. */
+    public DocFinityServiceOptions withHedgingMetrics(HedgingMetrics hedgingMetrics) {
+        Preconditions.checkNotNull(hedgingMetrics, "hedgingMetrics is required.");
+        this.hedgingMetrics = hedgingMetrics;
+        return this;
+    }
+
+    /** Sets how requests are balanced across the nodes of a service with several urls. */
+    public DocFinityServiceOptions withLoadBalancingStrategy(
+            LoadBalancingStrategyEnum loadBalancingStrategy) {
+        Preconditions.checkNotNull(loadBalancingStrategy, "loadBalancingStrategy is required.");
+        this.loadBalancingStrategy = loadBalancingStrategy;
+        return this;
+    }
+
+    /**
+    * Sets the number of consecutive failed requests after which a node is ejected, and the time it
+    * receives no requests.
+    */
+    public DocFinityServiceOptions withNodeEjection(
+            int nodeFailureThreshold, long duration, TimeUnit unit) {
+        Preconditions.checkArgument(
+                nodeFailureThreshold > 0, "nodeFailureThreshold must be greater than 0.");
+        Preconditions.checkArgument(duration >= 0, "duration must not be negative.");
+        Preconditions.checkNotNull(unit, "unit is required.");
+        this.nodeFailureThreshold = nodeFailureThreshold;
+        this.nodeEjectionMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /** Sets whether the requests for a document are sent to the node it was uploaded to. */
+    public DocFinityServiceOptions withStickyDocuments(boolean stickyDocuments) {
+        this.stickyDocuments = stickyDocuments;
+        return this;
+    }
+}
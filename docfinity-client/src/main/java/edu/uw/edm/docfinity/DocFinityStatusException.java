@@ -0,0 +1,23 @@
+package edu.uw.edm.docfinity;
+
+import java.io.IOException;
+import lombok.Getter;
+
+/** Thrown when DocFinity responds to a request with an unsuccessful status code. */
+public class DocFinityStatusException extends IOException {
+    /** Status code of the response. */
+    @Getter private final int statusCode;
+
+    public DocFinityStatusException(int statusCode) {
+        super(String.format("Server responded with status code %d.", statusCode));
+        this.statusCode = statusCode;
+    }
+
+    /**
+    * Returns whether DocFinity rejected the request itself, so sending it again fails the same way.
+    * Timeouts (408) and throttling (429) are not, they may succeed later.
+    */
+    public boolean isClientError() {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 408 && statusCode != 429;
+    }
+}
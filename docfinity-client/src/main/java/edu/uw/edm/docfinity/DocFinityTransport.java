@@ -0,0 +1,31 @@
+package edu.uw.edm.docfinity;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+* Sends the HTTP requests of DocFinityServiceImpl. Requests and responses are represented with the
+* OkHttp classes, so that bodies (multipart uploads, compressed json, upload progress) are built the
+* same way for every transport.
+*
+* <p>Requests include the authentication headers, and responses are closed by the caller.
+* Implementations must be safe to use from several threads at the same time.
+*/
+public interface DocFinityTransport {
+    /**
+    * Sends a request and waits for its response.
+    *
+    * @param request Request to send.
+    */
+    Response execute(Request request) throws IOException;
+
+    /**
+    * Sends a request without blocking the calling thread.
+    *
+    * @param request Request to send.
+    * @return Future completed with the response, or with the IOException of the request.
+    */
+    CompletableFuture<Response> executeAsync(Request request);
+}
@@ -0,0 +1,30 @@
+package edu.uw.edm.docfinity;
+
+import java.io.IOException;
+
+/**
+* Receives the state transitions of a document while it is uploaded, indexed and committed, ie. to
+* keep track of documents that were uploaded but not committed if the process stops.
+*/
+public interface DocumentLifecycleListener {
+    /** Listener that ignores all transitions. */
+    DocumentLifecycleListener NONE = new DocumentLifecycleListener() {};
+
+    /**
+    * Called after the file is uploaded and before it is indexed. If it throws, the operation fails
+    * and the uploaded document is deleted.
+    */
+    default void onUploaded(String documentId) throws IOException {}
+
+    /** Called after the document is indexed and committed. */
+    default void onCommitted(String documentId) {}
+
+    /** Called after an uploaded document is deleted because it could not be indexed. */
+    default void onDeleted(String documentId) {}
+
+    /**
+    * Called after an uploaded document that could not be indexed is queued in the OrphanReaper,
+    * onDeleted is called later from the reaper thread if it is deleted before the reaper closes.
+    */
+    default void onQueuedForDeletion(String documentId) {}
+}
@@ -0,0 +1,257 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Caches the document type ids and the metadata definitions (controls) of document types, which
+* are the same for every document of a type and are otherwise requested for each document.
+*
+* <p>With a snapshot, the cache starts with the entries saved by previous processes. An entry from
+* the snapshot is returned the first time it is requested and is then requested again from a
+* background thread, so the first documents do not wait for DocFinity and later ones use the
+* current definitions.
+*
+* <p>The indexes of the metadata definitions are kept by document type even when the cache is
+* disabled: definitions are then requested for each document, and only indexed again when they
+* changed.
+*/
+@Slf4j
+class DocumentTypeCache {
+    private static final int MAX_INDEXED_DOCUMENT_TYPES = 1000;
+
+    private final boolean enabled;
+    private final Cache<List<String>, String> documentTypeIds;
+    private final Cache<String, DocumentTypeMetadata> metadata;
+    private final DocumentTypeSnapshot snapshot;
+    private final Cache<String, DocumentTypeMetadata> indexed =
+            CacheBuilder.newBuilder().maximumSize(MAX_INDEXED_DOCUMENT_TYPES).build();
+    private final ExecutorService refreshExecutor;
+
+    // Keys of document type ids and document type ids of metadata that were loaded from the
+    // snapshot and not requested from DocFinity yet.
+    private final Set<Object> snapshotKeys = ConcurrentHashMap.newKeySet();
+
+    // Loads in progress by key, so that each missing entry is requested once.
+    private final Map<Object, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    /**
+    * Creates a new instance of the cache.
+    *
+    * @param expiration Time that entries are kept, zero to disable the cache.
+    * @param unit Unit of the expiration.
+    */
+    DocumentTypeCache(long expiration, TimeUnit unit) {
+        this(expiration, unit, null);
+    }
+
+    /**
+    * Creates a new instance of the cache, that starts with the entries of a snapshot.
+    *
+    * @param expiration Time that entries are kept, zero to disable the cache and the snapshot.
+    * @param unit Unit of the expiration.
+    * @param snapshot Snapshot that is loaded and updated with the entries requested from DocFinity,
+    *     null to only keep entries in memory.
+    */
+    DocumentTypeCache(long expiration, TimeUnit unit, DocumentTypeSnapshot snapshot) {
+        this.enabled = expiration > 0;
+        this.documentTypeIds = CacheBuilder.newBuilder().expireAfterWrite(expiration, unit).build();
+        this.metadata = CacheBuilder.newBuilder().expireAfterWrite(expiration, unit).build();
+        this.snapshot = enabled ? snapshot : null;
+        this.refreshExecutor =
+                this.snapshot != null
+                        ? WorkerExecutors.newUnboundedExecutor(
+                                ThreadModeEnum.PLATFORM, "docfinity-cache-refresh-%d")
+                        : null;
+
+        if (this.snapshot != null) {
+            this.snapshot.load();
+            for (Map.Entry<List<String>, String> entry : this.snapshot.getDocumentTypeIds().entrySet()) {
+                documentTypeIds.put(entry.getKey(), entry.getValue());
+                snapshotKeys.add(entry.getKey());
+            }
+            for (Map.Entry<String, List<MetadataDTO>> entry : this.snapshot.getMetadata().entrySet()) {
+                metadata.put(entry.getKey(), index(entry.getKey(), entry.getValue()));
+                snapshotKeys.add(entry.getKey());
+            }
+        }
+    }
+
+    /** Returns the id of a document type, calling the loader if it is not cached. */
+    String getDocumentTypeId(String categoryName, String documentTypeName, Callable<String> loader)
+            throws IOException {
+        List<String> key = Arrays.asList(categoryName, documentTypeName);
+        return get(
+                documentTypeIds,
+                key,
+                () -> {
+                    String documentTypeId = loader.call();
+                    if (snapshot != null) {
+                        snapshot.putDocumentTypeId(key, documentTypeId);
+                    }
+                    return documentTypeId;
+                });
+    }
+
+    /**
+    * Returns the indexed metadata definitions of a document type, calling the loader if not cached.
+    */
+    DocumentTypeMetadata getMetadata(String documentTypeId, Callable<List<MetadataDTO>> loader)
+            throws IOException {
+        return get(
+                metadata,
+                documentTypeId,
+                () -> {
+                    DocumentTypeMetadata documentTypeMetadata = index(documentTypeId, loader.call());
+                    if (snapshot != null) {
+                        snapshot.putMetadata(documentTypeId, documentTypeMetadata.getDefinitions());
+                    }
+                    return documentTypeMetadata;
+                });
+    }
+
+    /**
+    * Returns the indexed metadata definitions of a document type, the previous ones if the
+    * definitions did not change.
+    */
+    DocumentTypeMetadata index(String documentTypeId, List<MetadataDTO> definitions) {
+        DocumentTypeMetadata previous = indexed.getIfPresent(documentTypeId);
+        if (previous != null && previous.getDefinitions().equals(definitions)) {
+            return previous;
+        }
+
+        DocumentTypeMetadata documentTypeMetadata = new DocumentTypeMetadata(definitions);
+        indexed.put(documentTypeId, documentTypeMetadata);
+        return documentTypeMetadata;
+    }
+
+    /**
+    * Adds document type ids and metadata definitions loaded ahead of the first document, replacing
+    * the entries loaded from the snapshot.
+    */
+    void putAll(Map<List<String>, String> ids, Map<String, DocumentTypeMetadata> definitions) {
+        if (!enabled) {
+            return;
+        }
+
+        for (Map.Entry<List<String>, String> entry : ids.entrySet()) {
+            documentTypeIds.put(entry.getKey(), entry.getValue());
+            snapshotKeys.remove(entry.getKey());
+        }
+        for (Map.Entry<String, DocumentTypeMetadata> entry : definitions.entrySet()) {
+            metadata.put(entry.getKey(), entry.getValue());
+            snapshotKeys.remove(entry.getKey());
+        }
+        if (snapshot != null) {
+            snapshot.putAll(ids, Maps.transformValues(definitions, DocumentTypeMetadata::getDefinitions));
+        }
+    }
+
+    /** Waits until the entries loaded before the call are saved to the snapshot. */
+    void flushSnapshot() throws InterruptedException {
+        if (snapshot != null) {
+            snapshot.flush();
+        }
+    }
+
+    /** Removes all entries, ie. after document types are changed in DocFinity. */
+    void invalidateAll() {
+        documentTypeIds.invalidateAll();
+        metadata.invalidateAll();
+        snapshotKeys.clear();
+        if (snapshot != null) {
+            snapshot.invalidateAll();
+        }
+    }
+
+    private <K, V> V get(Cache<K, V> cache, K key, Callable<V> loader) throws IOException {
+        try {
+            if (!enabled) {
+                return loader.call();
+            }
+
+            V value = cache.getIfPresent(key);
+            if (value == null) {
+                value = load(cache, key, loader);
+            } else if (snapshotKeys.remove(key)) {
+                refresh(cache, key, loader);
+            }
+            return value;
+        } catch (ExecutionException e) {
+            return rethrow(e.getCause());
+        } catch (Exception e) {
+            return rethrow(e);
+        }
+    }
+
+    /**
+    * Loads a missing entry once for all the threads that request it. Cache.get of Guava runs the
+    * loader inside a synchronized block, which pins virtual threads to their carrier while they wait
+    * for DocFinity, so the other threads wait on a future of the load instead.
+    */
+    @SuppressWarnings("unchecked")
+    private <K, V> V load(Cache<K, V> cache, K key, Callable<V> loader) throws Exception {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> inProgress = loading.putIfAbsent(key, future);
+        if (inProgress != null) {
+            return (V) inProgress.get();
+        }
+
+        try {
+            // Another thread may have finished loading the entry after it was missing.
+            V value = cache.getIfPresent(key);
+            if (value == null) {
+                snapshotKeys.remove(key);
+                value = loader.call();
+                cache.put(key, value);
+            }
+            future.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key);
+        }
+    }
+
+    /** Requests an entry loaded from the snapshot again, the snapshot entry is kept on failure. */
+    private <K, V> void refresh(Cache<K, V> cache, K key, Callable<V> loader) {
+        refreshExecutor.execute(
+                () -> {
+                    try {
+                        cache.put(key, loader.call());
+                    } catch (Exception e) {
+                        log.warn(
+                                "Failed to refresh cached entry '{}', using snapshot. Error Message: {}",
+                                key,
+                                e.getMessage());
+                    }
+                });
+    }
+
+    private static <V> V rethrow(Throwable e) throws IOException {
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new IllegalStateException(e);
+    }
+}
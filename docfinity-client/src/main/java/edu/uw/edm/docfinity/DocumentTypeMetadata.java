@@ -0,0 +1,48 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+* Metadata definitions (controls) of a document type, indexed by name to validate the values of
+* requests and by id to name the values in responses. Instances are cached and shared between
+* threads, so they are immutable.
+*/
+@Getter
+class DocumentTypeMetadata {
+    /** Metadata definitions in the order returned by DocFinity. */
+    private final List<MetadataDTO> definitions;
+
+    /** Metadata definitions by metadata name. */
+    private final Map<String, MetadataDTO> metadataByName;
+
+    /** Metadata names by metadata id. */
+    private final Map<String, String> metadataNamesById;
+
+    /** Datasources of the document type, compiled from the metadata definitions. */
+    private final DatasourcePlan datasourcePlan;
+
+    DocumentTypeMetadata(Collection<MetadataDTO> metadata) {
+        Map<String, MetadataDTO> byName = new HashMap<>();
+        ImmutableMap.Builder<String, String> namesById = ImmutableMap.builder();
+
+        for (MetadataDTO dto : metadata) {
+            if (byName.put(dto.getName(), dto) != null) {
+                throw new IllegalStateException(
+                        String.format("Duplicate metadata object named '%s'.", dto.getName()));
+            }
+            namesById.put(dto.getId(), dto.getName());
+        }
+
+        this.definitions = ImmutableList.copyOf(metadata);
+        this.metadataByName = ImmutableMap.copyOf(byName);
+        this.metadataNamesById = namesById.build();
+        this.datasourcePlan = DatasourcePlan.compile(metadataByName);
+    }
+}
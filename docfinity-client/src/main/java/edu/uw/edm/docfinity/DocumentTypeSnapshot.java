@@ -0,0 +1,330 @@
+package edu.uw.edm.docfinity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Local file with the document type ids and metadata definitions loaded from DocFinity, used by
+* DocumentTypeCache to serve the first documents of a new process without requesting them again.
+*
+* <p>The file is JSON with a format version, and each entry is stamped with the time it was loaded
+* from DocFinity. Saves merge the entries of the file, that may have been saved by another process,
+* keeping the most recently loaded entry of each key and dropping the entries older than the max
+* age. Saves are serialized with a lock file and the file is replaced with an atomic move, so
+* readers never see a partially written file.
+*
+* <p>Entries loaded from DocFinity are saved from a background thread, so that requests do not wait
+* for the file, and the entries loaded while a save runs are saved together by the next one.
+*/
+@Slf4j
+class DocumentTypeSnapshot {
+    private static final int FORMAT_VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long SAVE_THREAD_KEEP_ALIVE_SECONDS = 1;
+
+    // File locks are held by the JVM, so threads of the same process are serialized here.
+    private static final Object SAVE_LOCK = new Object();
+
+    private final Path path;
+    private final long maxAgeMillis;
+
+    // The save thread is not a daemon, so that a pending save completes before the JVM exits, and
+    // it stops when idle so that it does not keep the JVM running.
+    private final ThreadPoolExecutor saveExecutor;
+    private final AtomicBoolean saveScheduled = new AtomicBoolean();
+
+    // Guarded by this.
+    private final Map<List<String>, DocumentTypeEntry> documentTypes = new HashMap<>();
+    private final Map<String, MetadataEntry> metadata = new HashMap<>();
+    private long invalidatedAtMillis;
+
+    /**
+    * Creates a snapshot backed by a file, that is created by the first save.
+    *
+    * @param path Path of the snapshot file.
+    * @param maxAgeMillis Time after which loaded entries are ignored.
+    */
+    DocumentTypeSnapshot(Path path, long maxAgeMillis) {
+        Preconditions.checkNotNull(path, "path is required.");
+        Preconditions.checkArgument(maxAgeMillis > 0, "maxAgeMillis must be greater than 0.");
+        this.path = path;
+        this.maxAgeMillis = maxAgeMillis;
+        this.saveExecutor =
+                new ThreadPoolExecutor(
+                        1,
+                        1,
+                        SAVE_THREAD_KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        new ThreadFactoryBuilder().setNameFormat("docfinity-snapshot-save-%d").build());
+        this.saveExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+    * Reads the entries of the file that are not older than the max age. A missing, unreadable or
+    * unknown version file is treated as empty, the entries are then requested from DocFinity.
+    */
+    synchronized void load() {
+        SnapshotFile file = read();
+        long minLoadedAt = System.currentTimeMillis() - maxAgeMillis;
+
+        for (DocumentTypeEntry entry : file.getDocumentTypes()) {
+            if (entry.getLoadedAt() >= minLoadedAt) {
+                documentTypes.put(entry.key(), entry);
+            }
+        }
+        for (MetadataEntry entry : file.getMetadata()) {
+            if (entry.getLoadedAt() >= minLoadedAt) {
+                metadata.put(entry.getDocumentTypeId(), entry);
+            }
+        }
+
+        if (!documentTypes.isEmpty() || !metadata.isEmpty()) {
+            log.info(
+                    "Loaded {} document types and {} metadata definitions from snapshot '{}'.",
+                    documentTypes.size(),
+                    metadata.size(),
+                    path);
+        }
+    }
+
+    /** Returns the document type ids by category and document type name. */
+    synchronized Map<List<String>, String> getDocumentTypeIds() {
+        Map<List<String>, String> ids = new HashMap<>();
+        for (DocumentTypeEntry entry : documentTypes.values()) {
+            ids.put(entry.key(), entry.getId());
+        }
+        return ids;
+    }
+
+    /** Returns the metadata definitions by document type id. */
+    synchronized Map<String, List<MetadataDTO>> getMetadata() {
+        Map<String, List<MetadataDTO>> definitions = new HashMap<>();
+        for (MetadataEntry entry : metadata.values()) {
+            definitions.put(entry.getDocumentTypeId(), entry.getMetadata());
+        }
+        return definitions;
+    }
+
+    /** Records a document type id loaded from DocFinity and schedules a save. */
+    void putDocumentTypeId(List<String> key, String documentTypeId) {
+        putAll(Collections.singletonMap(key, documentTypeId), Collections.emptyMap());
+    }
+
+    /** Records the metadata definitions loaded from DocFinity and schedules a save. */
+    void putMetadata(String documentTypeId, List<MetadataDTO> definitions) {
+        putAll(Collections.emptyMap(), Collections.singletonMap(documentTypeId, definitions));
+    }
+
+    /** Records document type ids and metadata definitions loaded from DocFinity with one save. */
+    void putAll(Map<List<String>, String> ids, Map<String, List<MetadataDTO>> definitions) {
+        long loadedAt = System.currentTimeMillis();
+
+        synchronized (this) {
+            for (Map.Entry<List<String>, String> id : ids.entrySet()) {
+                List<String> key = id.getKey();
+                documentTypes.put(
+                        key, new DocumentTypeEntry(key.get(0), key.get(1), id.getValue(), loadedAt));
+            }
+            for (Map.Entry<String, List<MetadataDTO>> definition : definitions.entrySet()) {
+                metadata.put(
+                        definition.getKey(),
+                        new MetadataEntry(
+                                definition.getKey(), new ArrayList<>(definition.getValue()), loadedAt));
+            }
+        }
+        scheduleSave();
+    }
+
+    /** Removes all entries, including the entries saved by other processes before now. */
+    void invalidateAll() {
+        synchronized (this) {
+            documentTypes.clear();
+            metadata.clear();
+            invalidatedAtMillis = System.currentTimeMillis();
+        }
+        trySave();
+    }
+
+    /** Waits until the saves scheduled before the call complete. */
+    void flush() throws InterruptedException {
+        try {
+            saveExecutor.submit(() -> {}).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Schedules a save, unless one is scheduled and has not started yet. */
+    private void scheduleSave() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            saveExecutor.execute(
+                    () -> {
+                        saveScheduled.set(false);
+                        trySave();
+                    });
+        }
+    }
+
+    /** Saves the file, a failed save is logged since the entries can be requested again. */
+    private void trySave() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to save snapshot '{}'. Error Message: {}", path, e.getMessage());
+        }
+    }
+
+    private void save() throws IOException {
+        Path lockPath = path.resolveSibling(path.getFileName() + ".lock");
+
+        synchronized (SAVE_LOCK) {
+            try (FileChannel lockChannel =
+                            FileChannel.open(
+                                    lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock ignored = lockChannel.lock()) {
+                SnapshotFile merged = merge(read());
+
+                Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "snapshot", ".tmp");
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(MAPPER.writeValueAsBytes(merged));
+                    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                        channel.force(false);
+                    }
+                    Files.move(
+                            temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        }
+    }
+
+    /**
+    * Merges the entries of this process with the entries of the file, keeping the newest and
+    * dropping the entries older than the max age.
+    */
+    private synchronized SnapshotFile merge(SnapshotFile file) {
+        long minLoadedAt = System.currentTimeMillis() - maxAgeMillis;
+        documentTypes.values().removeIf(entry -> entry.getLoadedAt() < minLoadedAt);
+        metadata.values().removeIf(entry -> entry.getLoadedAt() < minLoadedAt);
+
+        Map<List<String>, DocumentTypeEntry> mergedTypes = new HashMap<>();
+        for (DocumentTypeEntry entry : file.getDocumentTypes()) {
+            if (entry.getLoadedAt() > invalidatedAtMillis && entry.getLoadedAt() >= minLoadedAt) {
+                mergedTypes.merge(entry.key(), entry, DocumentTypeSnapshot::newest);
+            }
+        }
+        for (DocumentTypeEntry entry : documentTypes.values()) {
+            mergedTypes.merge(entry.key(), entry, DocumentTypeSnapshot::newest);
+        }
+
+        Map<String, MetadataEntry> mergedMetadata = new HashMap<>();
+        for (MetadataEntry entry : file.getMetadata()) {
+            if (entry.getLoadedAt() > invalidatedAtMillis && entry.getLoadedAt() >= minLoadedAt) {
+                mergedMetadata.merge(entry.getDocumentTypeId(), entry, DocumentTypeSnapshot::newest);
+            }
+        }
+        for (MetadataEntry entry : metadata.values()) {
+            mergedMetadata.merge(entry.getDocumentTypeId(), entry, DocumentTypeSnapshot::newest);
+        }
+
+        return new SnapshotFile(
+                FORMAT_VERSION,
+                new ArrayList<>(mergedTypes.values()),
+                new ArrayList<>(mergedMetadata.values()));
+    }
+
+    private SnapshotFile read() {
+        SnapshotFile empty = new SnapshotFile(FORMAT_VERSION, new ArrayList<>(), new ArrayList<>());
+        if (!Files.exists(path)) {
+            return empty;
+        }
+
+        try {
+            SnapshotFile file = MAPPER.readValue(Files.readAllBytes(path), SnapshotFile.class);
+            if (file.getVersion() != FORMAT_VERSION) {
+                log.warn(
+                        "Ignoring snapshot '{}' with unsupported version {}.", path, file.getVersion());
+                return empty;
+            }
+            return file;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable snapshot '{}'. Error Message: {}", path, e.getMessage());
+            return empty;
+        }
+    }
+
+    private static <T extends Stamped> T newest(T first, T second) {
+        return second.getLoadedAt() >= first.getLoadedAt() ? second : first;
+    }
+
+    /** Entry stamped with the time it was loaded from DocFinity, in epoch milliseconds. */
+    interface Stamped {
+        long getLoadedAt();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class SnapshotFile {
+        private int version;
+        private List<DocumentTypeEntry> documentTypes = new ArrayList<>();
+        private List<MetadataEntry> metadata = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class DocumentTypeEntry implements Stamped {
+        private String category;
+        private String documentType;
+        private String id;
+        private long loadedAt;
+
+        List<String> key() {
+            return Arrays.asList(category, documentType);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class MetadataEntry implements Stamped {
+        private String documentTypeId;
+        private List<MetadataDTO> metadata;
+        private long loadedAt;
+    }
+}
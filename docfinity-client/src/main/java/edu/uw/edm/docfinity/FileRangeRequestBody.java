@@ -0,0 +1,47 @@
+package edu.uw.edm.docfinity;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/** RequestBody that streams a range of a file, so chunks are not read into memory. */
+class FileRangeRequestBody extends RequestBody {
+    private final File file;
+    private final long offset;
+    private final long length;
+    private final MediaType contentType;
+
+    FileRangeRequestBody(File file, long offset, long length, MediaType contentType) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.position(offset);
+            try (Source source = Okio.source(Channels.newInputStream(channel))) {
+                sink.write(source, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package edu.uw.edm.docfinity;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* Counts the hedged requests of the services that use it, ie. to check that the hedging budget keeps
+* the extra load on DocFinity low and that hedges do win against slow nodes. Safe to share between
+* threads and services.
+*/
+public class HedgingMetrics {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder hedgesOverBudget = new LongAdder();
+
+    void addRequest() {
+        requests.increment();
+    }
+
+    void addHedge() {
+        hedges.increment();
+    }
+
+    void addHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    void addHedgeOverBudget() {
+        hedgesOverBudget.increment();
+    }
+
+    /** Returns the number of requests to hedged end-points, not counting the hedges. */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /** Returns the number of duplicate requests sent because a response was late. */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /** Returns the number of hedges that responded before the original request. */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /** Returns the number of late responses that were not hedged because the budget was spent. */
+    public long getHedgesOverBudget() {
+        return hedgesOverBudget.sum();
+    }
+
+    /** Returns the ratio of requests that were hedged, which is the extra load sent to DocFinity. */
+    public double getHedgeRate() {
+        long requestCount = getRequests();
+        return requestCount == 0 ? 0 : (double) getHedges() / requestCount;
+    }
+
+    /** Returns the ratio of hedges that responded before the original request. */
+    public double getHedgeWinRate() {
+        long hedgeCount = getHedges();
+        return hedgeCount == 0 ? 0 : (double) getHedgeWins() / hedgeCount;
+    }
+}
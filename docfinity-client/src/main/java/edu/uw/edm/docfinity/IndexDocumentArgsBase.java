@@ -26,6 +26,12 @@ public abstract class IndexDocumentArgsBase<T extends IndexDocumentArgsBase<T>>
     */
     private Multimap<String, Object> metadata = ArrayListMultimap.create();
 
+    /**
+    * Priority of the requests of the operation when the service is a PrioritizedDocFinityService,
+    * null for the priority of the calling operation (NORMAL, or LOW in BulkIndexer).
+    */
+    private RequestPriorityEnum priority;
+
     /** Returns a self reference. */
     protected abstract T self();
 
@@ -36,6 +42,13 @@ public abstract class IndexDocumentArgsBase<T extends IndexDocumentArgsBase<T>>
         return self();
     }
 
+    /** Sets the priority of the requests of the operation. */
+    public T withPriority(RequestPriorityEnum priority) {
+        Preconditions.checkNotNull(priority, "priority is required.");
+        this.setPriority(priority);
+        return self();
+    }
+
     /**
     * Loads metadata from a map of single values.
     *
@@ -2,8 +2,14 @@ package edu.uw.edm.docfinity;
 
 import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
 import java.util.List;
+import java.util.function.Supplier;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 /** Encapsulates the result data from indexing operations. */
 @Data
@@ -23,4 +29,35 @@ public class IndexDocumentResult {
 
     /** DocFinity's response to the index operation. */
     private DocumentIndexingDTO indexingDto;
+
+    /** Whether the file was not uploaded because the same content was uploaded before. */
+    private boolean duplicate;
+
+    /** Builds the metadata fields when first requested, null once they are built. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Supplier<List<DocumentField>> metadataLoader;
+
+    /** Metadata fields with values of document indexed. */
+    public synchronized List<DocumentField> getMetadata() {
+        if (metadataLoader != null) {
+            metadata = metadataLoader.get();
+            metadataLoader = null;
+        }
+        return metadata;
+    }
+
+    /** Sets the metadata fields, replacing a pending loader. */
+    public synchronized void setMetadata(List<DocumentField> metadata) {
+        this.metadata = metadata;
+        this.metadataLoader = null;
+    }
+
+    /** Defers building the metadata fields until getMetadata is called. */
+    synchronized void setMetadataLoader(Supplier<List<DocumentField>> metadataLoader) {
+        this.metadata = null;
+        this.metadataLoader = metadataLoader;
+    }
 }
@@ -3,22 +3,33 @@ package edu.uw.edm.docfinity;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import edu.uw.edm.docfinity.models.DocumentIndexingMetadataDTO;
 import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 
 /** Helper class that builds and validates the metadata information for indexing documents. */
 public class IndexingMetadataBuilder {
     private final String documentTypeName;
     private final Map<String, MetadataDTO> metadataMap;
-    private final Multimap<String, DocumentIndexingMetadataDTO> currentIndexingDtos;
     private final List<DocumentIndexingMetadataDTO> indexingDtos;
+    private final List<DocumentIndexingMetadataDTO> changedIndexingDtos;
+
+    /** First entry that is not marked for delete of each metadata id, used to validate values. */
+    private final Map<String, DocumentIndexingMetadataDTO> firstIndexingDtos;
+
+    private final ListMultimap<String, DocumentIndexingMetadataDTO> currentIndexingDtos;
 
     public IndexingMetadataBuilder(
             String documentTypeName,
@@ -28,18 +39,24 @@ public class IndexingMetadataBuilder {
         Preconditions.checkNotNull(metadataMap, "metadataMap is required.");
         Preconditions.checkNotNull(currentIndexingDtos, "currentIndexingDtos is required.");
 
-        indexingDtos = new ArrayList<>();
+        // Collections are sized for one entry per metadata object so they do not grow while adding.
+        indexingDtos = new ArrayList<>(metadataMap.size());
+        changedIndexingDtos = new ArrayList<>(metadataMap.size());
+        firstIndexingDtos = Maps.newHashMapWithExpectedSize(metadataMap.size());
         this.documentTypeName = documentTypeName;
         this.metadataMap = metadataMap;
-        this.currentIndexingDtos =
-                Multimaps.index(currentIndexingDtos, DocumentIndexingMetadataDTO::getMetadataId);
+        this.currentIndexingDtos = indexCurrentIndexingDtos(currentIndexingDtos);
     }
 
     /** Adds an indexing field entry. */
     public IndexingMetadataBuilder addValue(DocumentField field) {
-        Multimap<String, Object> map = ArrayListMultimap.create();
-        map.putAll(field.getName(), field.getValues());
-        return addValues(map);
+        Preconditions.checkNotNull(field, "field is required.");
+
+        // Fields without values add no entries, same as an empty collection in addValues.
+        if (field.getValues() != null && !field.getValues().isEmpty()) {
+            addField(field.getName(), field.getValues());
+        }
+        return this;
     }
 
     /** Adds multiple indexing field entries. */
@@ -47,30 +64,50 @@ public class IndexingMetadataBuilder {
         Preconditions.checkNotNull(fields, "fields is required.");
 
         for (Map.Entry<String, Collection<Object>> entry : fields.asMap().entrySet()) {
-            String metadataName = entry.getKey();
-            List<Object> metadataValues = new ArrayList<>(entry.getValue());
-            MetadataDTO metadataDto = metadataMap.get(metadataName);
+            addField(entry.getKey(), entry.getValue());
+        }
 
-            if (metadataDto == null) {
-                throwMetadataDoesNotExistException(metadataName, metadataMap);
-            }
+        return this;
+    }
 
-            if (!metadataDto.isAllowMultipleValues()) {
-                DocumentIndexingMetadataDTO dto = getSingleValueIndexingDTO(metadataDto, metadataValues);
-                indexingDtos.add(dto);
+    private void addField(String metadataName, Collection<Object> metadataValues) {
+        MetadataDTO metadataDto = metadataMap.get(metadataName);
 
-            } else {
-                List<DocumentIndexingMetadataDTO> dtos =
-                        getMultiValueIndexingDTO(metadataDto, metadataValues);
-                indexingDtos.addAll(dtos);
+        if (metadataDto == null) {
+            throwMetadataDoesNotExistException(metadataName, metadataMap);
+        }
+
+        List<DocumentIndexingMetadataDTO> currentDtos = currentIndexingDtos.get(metadataDto.getId());
+
+        if (!metadataDto.isAllowMultipleValues()) {
+            DocumentIndexingMetadataDTO currentDto = currentDtos.isEmpty() ? null : currentDtos.get(0);
+            DocumentIndexingMetadataDTO dto =
+                    getSingleValueIndexingDTO(metadataDto, metadataValues, currentDto);
+            addIndexingDto(dto);
+
+            if (isSingleValueChanged(currentDto, dto)) {
+                changedIndexingDtos.add(dto);
             }
+        } else {
+            int start = indexingDtos.size();
+            addMultiValueIndexingDTOs(metadataDto, metadataValues, currentDtos);
+            addChangedMultiValueIndexingDTOs(
+                    currentDtos, indexingDtos.subList(start, indexingDtos.size()));
         }
+    }
 
-        return this;
+    private void addIndexingDto(DocumentIndexingMetadataDTO dto) {
+        indexingDtos.add(dto);
+
+        if (!dto.isMarkedForDelete()) {
+            firstIndexingDtos.putIfAbsent(dto.getMetadataId(), dto);
+        }
     }
 
     private DocumentIndexingMetadataDTO getSingleValueIndexingDTO(
-            MetadataDTO metadataDto, List<Object> metadataValues) {
+            MetadataDTO metadataDto,
+            Collection<Object> metadataValues,
+            DocumentIndexingMetadataDTO currentIndexingDto) {
 
         String metadataId = metadataDto.getId();
         String metadataName = metadataDto.getName();
@@ -79,10 +116,9 @@ public class IndexingMetadataBuilder {
             throwInvalidValuesForSingleSelectMetadata(metadataName);
         }
 
-        Object metadataValue = getTypedMetadataValue(metadataValues.get(0), metadataDto);
-        Optional<DocumentIndexingMetadataDTO> currentIndexingDto =
-                currentIndexingDtos.get(metadataDto.getId()).stream().findFirst();
-        String indexingDtoId = currentIndexingDto.isPresent() ? currentIndexingDto.get().getId() : null;
+        Object metadataValue =
+                getTypedMetadataValue(metadataValues.iterator().next(), metadataDto);
+        String indexingDtoId = currentIndexingDto != null ? currentIndexingDto.getId() : null;
         DocumentIndexingMetadataDTO indexingDto =
                 new DocumentIndexingMetadataDTO(indexingDtoId, metadataId, metadataName, metadataValue);
 
@@ -93,20 +129,21 @@ public class IndexingMetadataBuilder {
         return indexingDto;
     }
 
-    private List<DocumentIndexingMetadataDTO> getMultiValueIndexingDTO(
-            MetadataDTO metadataDto, List<Object> metadataValues) {
+    private void addMultiValueIndexingDTOs(
+            MetadataDTO metadataDto,
+            Collection<Object> metadataValues,
+            List<DocumentIndexingMetadataDTO> currentDtos) {
 
-        List<DocumentIndexingMetadataDTO> indexingDtos = new ArrayList<>();
         String metadataId = metadataDto.getId();
         String metadataName = metadataDto.getName();
 
         // Remove the current selections
-        for (DocumentIndexingMetadataDTO dto : currentIndexingDtos.get(metadataDto.getId())) {
+        for (DocumentIndexingMetadataDTO dto : currentDtos) {
             DocumentIndexingMetadataDTO indexingDto =
                     new DocumentIndexingMetadataDTO(
                             dto.getId(), dto.getMetadataId(), metadataName, dto.getValue());
             indexingDto.setMarkedForDelete(true);
-            indexingDtos.add(indexingDto);
+            addIndexingDto(indexingDto);
         }
 
         // Add new selections
@@ -114,10 +151,75 @@ public class IndexingMetadataBuilder {
             Object metadataValue = getTypedMetadataValue(valueObj, metadataDto);
             DocumentIndexingMetadataDTO indexingDto =
                     new DocumentIndexingMetadataDTO(null, metadataId, metadataName, metadataValue);
-            indexingDtos.add(indexingDto);
+            addIndexingDto(indexingDto);
         }
+    }
 
-        return indexingDtos;
+    private boolean isSingleValueChanged(
+            DocumentIndexingMetadataDTO currentIndexingDto, DocumentIndexingMetadataDTO indexingDto) {
+        if (currentIndexingDto == null) {
+            return !isNullOrEmpty(indexingDto.getValue());
+        }
+
+        // Existing entries with no value still need to be removed.
+        return indexingDto.isMarkedForDelete()
+                || !isSameValue(currentIndexingDto.getValue(), indexingDto.getValue());
+    }
+
+    private void addChangedMultiValueIndexingDTOs(
+            List<DocumentIndexingMetadataDTO> currentDtos, List<DocumentIndexingMetadataDTO> dtos) {
+        if (currentDtos.isEmpty()) {
+            // Without current selections every value is added, empty selections are only sent with
+            // other changes since they are used to validate required fields.
+            if (dtos.stream().anyMatch(dto -> !isNullOrEmpty(dto.getValue()))) {
+                changedIndexingDtos.addAll(dtos);
+            }
+            return;
+        }
+
+        // Current selections that are selected again are neither deleted nor added. Current values
+        // are indexed by value so that large multi-selects are matched in linear time.
+        Multimap<String, DocumentIndexingMetadataDTO> unmatchedIndexingDtos =
+                ArrayListMultimap.create();
+        for (DocumentIndexingMetadataDTO current : currentDtos) {
+            unmatchedIndexingDtos.put(getValueKey(current.getValue()), current);
+        }
+
+        Set<String> keptIndexingDtoIds = new HashSet<>();
+        List<DocumentIndexingMetadataDTO> addedIndexingDtos = new ArrayList<>();
+
+        for (DocumentIndexingMetadataDTO dto : dtos) {
+            if (dto.isMarkedForDelete()) {
+                continue;
+            }
+
+            Iterator<DocumentIndexingMetadataDTO> match =
+                    unmatchedIndexingDtos.get(getValueKey(dto.getValue())).iterator();
+
+            if (match.hasNext()) {
+                keptIndexingDtoIds.add(match.next().getId());
+                match.remove();
+            } else {
+                addedIndexingDtos.add(dto);
+            }
+        }
+
+        List<DocumentIndexingMetadataDTO> changedDtos = new ArrayList<>();
+        for (DocumentIndexingMetadataDTO dto : dtos) {
+            if (dto.isMarkedForDelete() && !keptIndexingDtoIds.contains(dto.getId())) {
+                changedDtos.add(dto);
+            }
+        }
+
+        // Empty selections are only sent with other changes, they are used to validate required
+        // fields.
+        boolean hasChanges =
+                !changedDtos.isEmpty()
+                        || addedIndexingDtos.stream().anyMatch(dto -> !isNullOrEmpty(dto.getValue()));
+        if (hasChanges) {
+            changedIndexingDtos.addAll(changedDtos);
+            changedIndexingDtos.addAll(addedIndexingDtos);
+        }
     }
 
     /**
@@ -125,20 +227,12 @@ public class IndexingMetadataBuilder {
     * data. Used for document creates.
     */
     public void validateAllRequiredFieldsHaveValue() {
-        for (MetadataDTO dto : this.metadataMap.values()) {
-            String metadataName = dto.getName();
-            MetadataDTO metadata = metadataMap.get(metadataName);
-            boolean metadataRequired = metadata != null && metadata.isRequired();
-
-            if (metadataRequired) {
-                Optional<DocumentIndexingMetadataDTO> field =
-                        this.indexingDtos.stream()
-                                .filter(f -> metadataName.equals(f.getMetadataName()))
-                                .filter(f -> !f.isMarkedForDelete())
-                                .findFirst();
+        for (MetadataDTO metadata : this.metadataMap.values()) {
+            if (metadata.isRequired()) {
+                DocumentIndexingMetadataDTO field = firstIndexingDtos.get(metadata.getId());
 
-                if (!field.isPresent() || isNullOrEmpty(field.get().getValue())) {
-                    throwMetadataRequiredException(metadataName);
+                if (field == null || isNullOrEmpty(field.getValue())) {
+                    throwMetadataRequiredException(metadata.getName());
                 }
             }
         }
@@ -160,10 +254,45 @@ public class IndexingMetadataBuilder {
         }
     }
 
+    private static ListMultimap<String, DocumentIndexingMetadataDTO> indexCurrentIndexingDtos(
+            List<DocumentIndexingMetadataDTO> currentIndexingDtos) {
+        return currentIndexingDtos.isEmpty()
+                ? ImmutableListMultimap.of()
+                : Multimaps.index(currentIndexingDtos, DocumentIndexingMetadataDTO::getMetadataId);
+    }
+
+    /** Returns the entries to send when indexing the document. */
     public List<DocumentIndexingMetadataDTO> build() {
         return indexingDtos;
     }
 
+    /**
+    * Returns only the entries that change the current indexing data of the document: values equal
+    * to the current ones are left out, and multi-select values that remain selected are not deleted
+    * and added again. Used for partial reindexes.
+    */
+    public List<DocumentIndexingMetadataDTO> buildChanges() {
+        return changedIndexingDtos;
+    }
+
+    private boolean isSameValue(Object currentValue, Object newValue) {
+        return getValueKey(currentValue).equals(getValueKey(newValue));
+    }
+
+    /**
+    * Returns the text used to compare values. Values read from DocFinity can have a different type
+    * than the values from the client, ie. a Long for an Integer, so numbers are compared by value and
+    * other types by text.
+    */
+    private String getValueKey(Object value) {
+        if (isNullOrEmpty(value)) {
+            return "";
+        } else if (value instanceof Number) {
+            return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+        }
+        return value.toString();
+    }
+
     private boolean isNullOrEmpty(Object value) {
         if (value instanceof String) {
             return Strings.isNullOrEmpty((String) value);
@@ -0,0 +1,335 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+* Reactive Streams processor that runs a client operation for each document received from upstream
+* and emits the results downstream. Documents are requested from upstream only while fewer than
+* 'concurrency' documents are running or waiting for downstream demand, so a slow DocFinity or a
+* slow subscriber slows down the source instead of buffering documents in memory.
+*
+* <p>The first failed document terminates the stream: upstream is cancelled and the error is sent
+* downstream. Use FlowAdapters from reactive-streams to use it as a java.util.concurrent.Flow
+* processor on Java 9 or newer.
+*
+* @param <T> Type of the operation arguments.
+*/
+public class IndexingProcessor<T> implements Processor<T, IndexDocumentResult> {
+    private final DocumentOperation<T> operation;
+    private final int concurrency;
+    private final boolean ordered;
+    private final ExecutorService executor;
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    // Guarded by this.
+    private final Deque<Slot> slots = new ArrayDeque<>();
+    private Subscription upstream;
+    private Subscriber<? super IndexDocumentResult> downstream;
+    private long requested;
+    private int outstanding;
+    private boolean upstreamDone;
+    private Throwable upstreamError;
+    private boolean started;
+    private boolean terminated;
+
+    private IndexingProcessor(
+            DocFinityClient client, DocumentOperation<T> operation, int concurrency, boolean ordered) {
+        Preconditions.checkNotNull(client, "client is required.");
+        Preconditions.checkArgument(concurrency > 0, "concurrency must be greater than 0.");
+
+        this.operation = operation;
+        this.concurrency = concurrency;
+        this.ordered = ordered;
+        this.executor = WorkerExecutors.newExecutor(client.getThreadMode(), concurrency);
+    }
+
+    /**
+    * Creates a processor that uploads, indexes and commits documents.
+    *
+    * @param client Client used for all documents.
+    * @param concurrency Maximum number of documents running or waiting to be emitted.
+    * @param ordered Whether results are emitted in the order documents were received, otherwise
+    *     they are emitted as they complete.
+    */
+    public static IndexingProcessor<FileIndexDocumentArgs> uploadIndexAndCommit(
+            DocFinityClient client, int concurrency, boolean ordered) {
+        Preconditions.checkNotNull(client, "client is required.");
+        return new IndexingProcessor<>(
+                client, client::uploadIndexAndCommitDocument, concurrency, ordered);
+    }
+
+    /**
+    * Creates a processor that reindexes documents.
+    *
+    * @param client Client used for all documents.
+    * @param concurrency Maximum number of documents running or waiting to be emitted.
+    * @param ordered Whether results are emitted in the order documents were received, otherwise
+    *     they are emitted as they complete.
+    */
+    public static IndexingProcessor<IndexDocumentArgs> reindex(
+            DocFinityClient client, int concurrency, boolean ordered) {
+        Preconditions.checkNotNull(client, "client is required.");
+        return new IndexingProcessor<>(client, client::reindexDocument, concurrency, ordered);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super IndexDocumentResult> subscriber) {
+        Preconditions.checkNotNull(subscriber, "subscriber is required.");
+
+        boolean accepted;
+        synchronized (this) {
+            accepted = downstream == null;
+            if (accepted) {
+                downstream = subscriber;
+            }
+        }
+
+        if (!accepted) {
+            subscriber.onSubscribe(NoOpSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("Processor allows only one subscriber."));
+            return;
+        }
+
+        subscriber.onSubscribe(new DownstreamSubscription());
+        start();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        Preconditions.checkNotNull(subscription, "subscription is required.");
+
+        synchronized (this) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+
+        start();
+    }
+
+    @Override
+    public void onNext(T args) {
+        Preconditions.checkNotNull(args, "args is required.");
+
+        Slot slot = new Slot();
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            outstanding++;
+            if (ordered) {
+                slots.add(slot);
+            }
+        }
+
+        try {
+            executor.execute(() -> run(args, slot));
+        } catch (RejectedExecutionException e) {
+            // The stream was terminated while the document was received.
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        Preconditions.checkNotNull(error, "error is required.");
+
+        synchronized (this) {
+            upstreamDone = true;
+            upstreamError = error;
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    private void run(T args, Slot slot) {
+        try {
+            slot.result = operation.run(args);
+        } catch (Exception e) {
+            slot.error = e;
+        }
+
+        synchronized (this) {
+            slot.done = true;
+            if (!ordered) {
+                slots.add(slot);
+            }
+        }
+        drain();
+    }
+
+    /** Requests the first documents once both upstream and downstream are subscribed. */
+    private void start() {
+        synchronized (this) {
+            if (upstream == null || downstream == null || started) {
+                return;
+            }
+            started = true;
+        }
+        requestUpstream(concurrency);
+    }
+
+    private void requestUpstream(long n) {
+        Subscription subscription;
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            subscription = upstream;
+        }
+        subscription.request(n);
+    }
+
+    /**
+    * Emits completed results while downstream has demand. Calls to the subscriber must not overlap,
+    * so only one thread drains at a time and other callers make it run once more.
+    */
+    private void drain() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            while (emitNext()) {
+                // Each emitted result frees a spot for another document.
+                requestUpstream(1);
+            }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private boolean emitNext() {
+        Subscriber<? super IndexDocumentResult> subscriber;
+        Slot slot;
+        Throwable error = null;
+
+        synchronized (this) {
+            subscriber = downstream;
+            slot = slots.peek();
+
+            if (terminated || subscriber == null) {
+                return false;
+            } else if (slot != null && slot.done && slot.error != null) {
+                error = slot.error;
+            } else if (slot != null && slot.done && requested > 0) {
+                slots.poll();
+                requested--;
+                outstanding--;
+            } else if (upstreamDone && outstanding == 0) {
+                error = upstreamError;
+                slot = null;
+            } else {
+                return false;
+            }
+
+            if (slot == null || error != null) {
+                terminated = true;
+            }
+        }
+
+        if (error != null) {
+            terminate(true);
+            subscriber.onError(error);
+            return false;
+        } else if (slot == null) {
+            terminate(false);
+            subscriber.onComplete();
+            return false;
+        }
+
+        subscriber.onNext(slot.result);
+        return true;
+    }
+
+    private void terminate(boolean cancelUpstream) {
+        Subscription subscription;
+        synchronized (this) {
+            terminated = true;
+            slots.clear();
+            subscription = upstream;
+        }
+
+        if (cancelUpstream && subscription != null) {
+            subscription.cancel();
+        }
+        executor.shutdown();
+    }
+
+    /** Subscription of the downstream subscriber. */
+    private class DownstreamSubscription implements Subscription {
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                Subscriber<? super IndexDocumentResult> subscriber;
+                synchronized (IndexingProcessor.this) {
+                    if (terminated) {
+                        return;
+                    }
+                    terminated = true;
+                    subscriber = downstream;
+                }
+                terminate(true);
+                subscriber.onError(
+                        new IllegalArgumentException("Requested number of results must be positive."));
+                return;
+            }
+
+            synchronized (IndexingProcessor.this) {
+                requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            boolean alreadyTerminated;
+            synchronized (IndexingProcessor.this) {
+                alreadyTerminated = terminated;
+            }
+
+            if (!alreadyTerminated) {
+                terminate(true);
+            }
+        }
+    }
+
+    /** Result of a document, in the order documents were received when emission is ordered. */
+    private static class Slot {
+        private IndexDocumentResult result;
+        private Exception error;
+        private boolean done;
+    }
+
+    /** Subscription given to rejected subscribers. */
+    private enum NoOpSubscription implements Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+    }
+
+    /** Client operation run for each document. */
+    private interface DocumentOperation<T> {
+        IndexDocumentResult run(T args) throws Exception;
+    }
+}
@@ -0,0 +1,13 @@
+package edu.uw.edm.docfinity;
+
+/** Represents the states of a document recorded in a BulkJournal. */
+public enum JournalStateEnum {
+    /** File was uploaded and the document is not indexed yet. */
+    UPLOADED,
+    /** Document was indexed and committed. */
+    COMMITTED,
+    /** Uploaded document was deleted because it could not be indexed. */
+    DELETED,
+    /** Uploaded document could not be indexed and is queued in the OrphanReaper to be deleted. */
+    QUEUED_FOR_DELETION
+}
@@ -0,0 +1,57 @@
+package edu.uw.edm.docfinity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import java.io.IOException;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+* RequestBody that serializes a value to json directly into the sink, instead of a String and then
+* a byte array, so large batches are sent without copies of their json in the heap. The value is
+* serialized again every time the body is written (ie. when OkHttp retries the request), so it must
+* not change while the request is sent.
+*
+* <p>The length is found by serializing the value once without keeping the output, so requests are
+* sent with a Content-Length header rather than in chunks. Every body is serialized at least twice,
+* and bodies from the gzip threshold a third time into the compressed buffer; that CPU cost is
+* accepted to keep the json out of the heap.
+*/
+class JsonRequestBody extends RequestBody {
+    // Writers are thread-safe and recycle the buffers of their generators, so one is shared by all
+    // requests. The sink is not closed by the generator, OkHttp closes it.
+    private static final ObjectWriter WRITER =
+            new ObjectMapper().configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false).writer();
+
+    private final Object value;
+    private final MediaType contentType;
+    private final long contentLength;
+
+    JsonRequestBody(Object value, MediaType contentType) throws IOException {
+        this.value = value;
+        this.contentType = contentType;
+
+        CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+        WRITER.writeValue(counter, value);
+        this.contentLength = counter.getCount();
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        WRITER.writeValue(sink.outputStream(), value);
+    }
+}
@@ -0,0 +1,12 @@
+package edu.uw.edm.docfinity;
+
+/** Represents how requests are balanced across the DocFinity nodes of a service. */
+public enum LoadBalancingStrategyEnum {
+    /** Send each request to the node with the fewest requests in progress. */
+    LEAST_OUTSTANDING_REQUESTS,
+    /**
+    * Pick two random nodes and send the request to the one with fewer requests in progress, which
+    * avoids sending every request to the same idle node when many start at the same time.
+    */
+    POWER_OF_TWO_CHOICES
+}
@@ -0,0 +1,258 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+* Wraps a transport to balance requests across several DocFinity nodes. Requests are built with the
+* base url of the service, and sent to the url of the chosen node.
+*
+* <p>Nodes are checked passively: a node whose requests fail (errors or 5xx status codes) a number
+* of times in a row is ejected, and receives no requests for some time. After that, a single failure
+* ejects it again and a success brings it back. If every node is ejected, requests are sent to the
+* node that comes back first.
+*
+* <p>Requests with the same affinity key are sent to the same node, ie. the chunks of an upload,
+* which are assembled by the node that received them.
+*/
+@Slf4j
+class LoadBalancingTransport implements DocFinityTransport {
+    private static final int MAX_AFFINITIES = 100_000;
+    private static final long AFFINITY_EXPIRATION_MINUTES = 30;
+
+    private final DocFinityTransport transport;
+    private final String basePath;
+    private final List<Node> nodes = new ArrayList<>();
+    private final LoadBalancingStrategyEnum strategy;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+    private final Cache<String, Node> affinities =
+            CacheBuilder.newBuilder()
+                    .maximumSize(MAX_AFFINITIES)
+                    .expireAfterAccess(AFFINITY_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+                    .build();
+
+    LoadBalancingTransport(
+            DocFinityTransport transport,
+            HttpUrl baseUrl,
+            List<HttpUrl> nodeUrls,
+            LoadBalancingStrategyEnum strategy,
+            int failureThreshold,
+            long ejectionMillis) {
+        this.transport = transport;
+        this.basePath = withoutTrailingSlash(baseUrl.encodedPath());
+        this.strategy = strategy;
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+
+        for (HttpUrl nodeUrl : nodeUrls) {
+            nodes.add(new Node(nodeUrl));
+        }
+    }
+
+    /** Returns a copy of a request that is sent to the same node as other requests with the key. */
+    static Request withAffinity(Request request, String key) {
+        return request.newBuilder().tag(Affinity.class, new Affinity(key)).build();
+    }
+
+    /** Returns a copy of a request that is sent to any node, ie. a hedge of a late request. */
+    static Request withoutAffinity(Request request) {
+        return request.tag(Affinity.class) == null
+                ? request
+                : request.newBuilder().tag(Affinity.class, null).build();
+    }
+
+    /** Sends the requests with a key to the node of the requests with an existing key, if any. */
+    void linkAffinity(String key, String existingKey) {
+        Node node = affinities.getIfPresent(existingKey);
+        if (node != null) {
+            affinities.put(key, node);
+        }
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        Node node = select(request);
+        node.outstandingRequests.incrementAndGet();
+
+        try {
+            Response response = transport.execute(node.resolve(request));
+            record(node, response.code() < 500);
+            return response;
+        } catch (IOException | RuntimeException e) {
+            record(node, false);
+            throw e;
+        } finally {
+            node.outstandingRequests.decrementAndGet();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        Node node = select(request);
+        node.outstandingRequests.incrementAndGet();
+
+        CompletableFuture<Response> future = transport.executeAsync(node.resolve(request));
+        future.whenComplete(
+                (response, error) -> {
+                    node.outstandingRequests.decrementAndGet();
+
+                    // A cancelled request (ie. a hedge that lost) says nothing about the node.
+                    if (!(error instanceof CancellationException)) {
+                        record(node, error == null && response.code() < 500);
+                    }
+                });
+        return future;
+    }
+
+    private Node select(Request request) {
+        Affinity affinity = request.tag(Affinity.class);
+        if (affinity == null) {
+            return choose();
+        }
+
+        Node node = affinities.getIfPresent(affinity.key);
+        if (node == null || !node.isAvailable(System.nanoTime())) {
+            node = choose();
+            affinities.put(affinity.key, node);
+        }
+        return node;
+    }
+
+    private Node choose() {
+        long now = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (strategy == LoadBalancingStrategyEnum.POWER_OF_TWO_CHOICES) {
+            Node first = nodes.get(random.nextInt(nodes.size()));
+            Node second = nodes.get(random.nextInt(nodes.size() - 1));
+            if (second == first) {
+                second = nodes.get(nodes.size() - 1);
+            }
+
+            boolean firstAvailable = first.isAvailable(now);
+            boolean secondAvailable = second.isAvailable(now);
+            if (firstAvailable && secondAvailable) {
+                return first.outstandingRequests.get() <= second.outstandingRequests.get()
+                        ? first
+                        : second;
+            } else if (firstAvailable || secondAvailable) {
+                return firstAvailable ? first : second;
+            }
+        }
+
+        Node best = null;
+        int bestOutstanding = 0;
+        int ties = 0;
+        Node firstBack = null;
+        for (Node node : nodes) {
+            if (node.isAvailable(now)) {
+                int outstanding = node.outstandingRequests.get();
+                if (best == null || outstanding < bestOutstanding) {
+                    best = node;
+                    bestOutstanding = outstanding;
+                    ties = 1;
+                } else if (outstanding == bestOutstanding && random.nextInt(++ties) == 0) {
+                    // Picks one of the tied nodes at random, so they all receive requests.
+                    best = node;
+                }
+            } else if (firstBack == null || node.ejectedUntilNanos - firstBack.ejectedUntilNanos < 0) {
+                firstBack = node;
+            }
+        }
+
+        return best != null ? best : firstBack;
+    }
+
+    private void record(Node node, boolean success) {
+        synchronized (node) {
+            if (success) {
+                if (node.ejected) {
+                    log.info("DocFinity node {} is back.", node.url);
+                }
+                node.consecutiveFailures = 0;
+                node.ejected = false;
+                return;
+            }
+
+            node.consecutiveFailures++;
+            long now = System.nanoTime();
+            if (node.consecutiveFailures >= failureThreshold && node.isAvailable(now)) {
+                log.warn(
+                        "Ejecting DocFinity node {} for {} ms after {} consecutive failures.",
+                        node.url,
+                        TimeUnit.NANOSECONDS.toMillis(ejectionNanos),
+                        node.consecutiveFailures);
+                node.ejected = true;
+                node.ejectedUntilNanos = now + ejectionNanos;
+            }
+        }
+    }
+
+    private static String withoutTrailingSlash(String path) {
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /** Affinity key of a request, as a request tag. */
+    static final class Affinity {
+        private final String key;
+
+        Affinity(String key) {
+            this.key = key;
+        }
+    }
+
+    /** State of a DocFinity node. */
+    private class Node {
+        private final HttpUrl url;
+        private final String path;
+        private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+        // Guarded by the node.
+        private int consecutiveFailures;
+
+        private volatile boolean ejected;
+        private volatile long ejectedUntilNanos;
+
+        Node(HttpUrl url) {
+            this.url = url;
+            this.path = withoutTrailingSlash(url.encodedPath());
+        }
+
+        boolean isAvailable(long now) {
+            return !ejected || now - ejectedUntilNanos >= 0;
+        }
+
+        /** Returns a copy of a request built with the base url, with the url of the node. */
+        Request resolve(Request request) {
+            HttpUrl requestUrl = request.url();
+            String requestPath = requestUrl.encodedPath();
+            String relativePath =
+                    requestPath.startsWith(basePath)
+                            ? requestPath.substring(basePath.length())
+                            : requestPath;
+
+            HttpUrl nodeUrl =
+                    requestUrl
+                            .newBuilder()
+                            .scheme(url.scheme())
+                            .host(url.host())
+                            .port(url.port())
+                            .encodedPath(path + relativePath)
+                            .build();
+            return request.newBuilder().url(nodeUrl).build();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+* Default transport of DocFinityServiceImpl, that uses OkHttp client
+* (https://square.github.io/okhttp/). Connections are HTTP/1.1, or HTTP/2 when negotiated with
+* TLS.
+*/
+public class OkHttpTransport implements DocFinityTransport {
+    private static final long CONNECTION_KEEP_ALIVE_MINUTES = 5;
+
+    private final OkHttpClient client;
+
+    /**
+    * Creates a transport with a pool of connections. Asynchronous requests are not limited per host
+    * (OkHttp sends 5 at most by default), like synchronous requests they are limited by the callers.
+    *
+    * @param maxIdleConnections Maximum number of idle connections kept open for re-use.
+    */
+    public OkHttpTransport(int maxIdleConnections) {
+        this(
+                new OkHttpClient.Builder()
+                        .connectionPool(
+                                new ConnectionPool(
+                                        maxIdleConnections, CONNECTION_KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                        .dispatcher(newUnlimitedDispatcher())
+                        .build());
+    }
+
+    /**
+    * Creates a transport with a custom client, ie. with different timeouts.
+    *
+    * @param client Client that sends the requests.
+    */
+    public OkHttpTransport(OkHttpClient client) {
+        Preconditions.checkNotNull(client, "client is required.");
+        this.client = client;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        return client.newCall(request).execute();
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Call call = client.newCall(request);
+
+        call.enqueue(
+                new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        future.completeExceptionally(e);
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        if (!future.complete(response)) {
+                            response.close();
+                        }
+                    }
+                });
+
+        // Cancelling the future cancels the call.
+        future.whenComplete(
+                (response, error) -> {
+                    if (future.isCancelled()) {
+                        call.cancel();
+                    }
+                });
+        return future;
+    }
+
+    private static Dispatcher newUnlimitedDispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Integer.MAX_VALUE);
+        dispatcher.setMaxRequestsPerHost(Integer.MAX_VALUE);
+        return dispatcher;
+    }
+}
@@ -0,0 +1,414 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+* Deletes documents that were uploaded but could not be indexed from a background thread, so that
+* the cleanup does not add latency to the failed operation and a failed delete is not lost.
+*
+* <p>Document ids are appended to a local queue file and synced before they are accepted, and are
+* deleted in batches with deleteDocuments. The documents of a failed batch are deleted one by one,
+* so that a document that cannot be deleted does not hold back the others: documents rejected with
+* a client error (4xx) are dropped from the queue, and documents that fail alone are moved to the
+* end of the queue and retried with exponential backoff. Documents still queued when the reaper is
+* closed are deleted after it is opened again with the same file.
+*/
+@Slf4j
+public class OrphanReaper implements Closeable {
+    private static final String RECORD_QUEUED = "QUEUED";
+    private static final String RECORD_DELETED = "DELETED";
+    private static final String RECORD_REJECTED = "REJECTED";
+    private static final int DEFAULT_BATCH_SIZE = 50;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final DocFinityService service;
+    private final Path path;
+    private final int batchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queueChanged = lock.newCondition();
+    private final FileChannel channel;
+    private final Thread reaper;
+
+    // Guarded by lock.
+    private final Set<String> queuedIds = new LinkedHashSet<>();
+    private final Map<String, DocumentLifecycleListener> listeners = new HashMap<>();
+    private boolean closed;
+
+    /**
+    * Opens a reaper, loading the documents queued by previous runs if the file exists.
+    *
+    * @param service Service used to delete documents.
+    * @param path Path of the queue file.
+    */
+    public OrphanReaper(DocFinityService service, Path path) throws IOException {
+        this(service, path, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+    * Opens a reaper, loading the documents queued by previous runs if the file exists.
+    *
+    * @param service Service used to delete documents.
+    * @param path Path of the queue file.
+    * @param batchSize Maximum number of documents deleted by a single request.
+    */
+    public OrphanReaper(DocFinityService service, Path path, int batchSize) throws IOException {
+        Preconditions.checkNotNull(service, "service is required.");
+        Preconditions.checkNotNull(path, "path is required.");
+        Preconditions.checkArgument(batchSize > 0, "batchSize must be greater than 0.");
+
+        this.service = service;
+        this.path = path;
+        this.batchSize = batchSize;
+
+        load();
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        this.reaper = new Thread(this::reapLoop, "docfinity-orphan-reaper");
+        this.reaper.setDaemon(true);
+        this.reaper.start();
+    }
+
+    /** Returns the number of documents waiting to be deleted. */
+    public int size() {
+        lock.lock();
+        try {
+            return queuedIds.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns whether a document is queued to be deleted. */
+    public boolean isQueued(String documentId) {
+        lock.lock();
+        try {
+            return queuedIds.contains(documentId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+    * Queues a document to be deleted, returns once the document id is synced to disk.
+    *
+    * @param documentId Id of the document to delete.
+    */
+    public void enqueue(String documentId) throws IOException {
+        enqueue(documentId, DocumentLifecycleListener.NONE);
+    }
+
+    /**
+    * Queues a document to be deleted and notifies the listener from the reaper thread once it is
+    * deleted. Listeners are not kept when the reaper is closed.
+    */
+    void enqueue(String documentId, DocumentLifecycleListener listener) throws IOException {
+        Preconditions.checkArgument(
+                documentId != null && !documentId.isEmpty(), "documentId is required.");
+        Preconditions.checkNotNull(listener, "listener is required.");
+
+        lock.lock();
+        try {
+            Preconditions.checkState(!closed, "Orphan reaper is closed.");
+            write(channel, RECORD_QUEUED, documentId);
+            channel.force(false);
+            queuedIds.add(documentId);
+            listeners.put(documentId, listener);
+            queueChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+    * Waits until all queued documents are deleted.
+    *
+    * @return Whether the queue is empty, false if the timeout elapsed first.
+    */
+    public boolean awaitEmpty(long timeout, TimeUnit unit) throws InterruptedIOException {
+        long remainingNanos = unit.toNanos(timeout);
+
+        lock.lock();
+        try {
+            while (!queuedIds.isEmpty()) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = queueChanged.awaitNanos(remainingNanos);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for orphan reaper.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stops the reaper, documents that are still queued are kept in the file. */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            queueChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            reaper.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private void reapLoop() {
+        long backoffMillis = INITIAL_BACKOFF_MILLIS;
+
+        while (true) {
+            List<String> batch = takeBatch();
+            if (batch == null) {
+                return;
+            }
+
+            Exception error = delete(batch);
+            if (error == null) {
+                backoffMillis = INITIAL_BACKOFF_MILLIS;
+            } else {
+                log.warn(
+                        "Failed to delete documents, retrying in {} ms. Error Message: {}",
+                        backoffMillis,
+                        error.getMessage());
+                awaitClosed(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+    * Deletes a batch, or each of its documents alone if the batch fails. Documents rejected with a
+    * client error are dropped, and documents that fail alone are moved to the end of the queue so
+    * that the next batches start with other documents. The documents are no longer deleted one by
+    * one after a failure that is not specific to the document (ie. DocFinity is down).
+    *
+    * @return Error that left documents in the queue, null if none.
+    */
+    private Exception delete(List<String> batch) {
+        try {
+            service.deleteDocuments(batch.toArray(new String[0]));
+            log.info("Deleted {} documents that could not be indexed.", batch.size());
+            onDeleted(batch);
+            return null;
+        } catch (DocFinityStatusException e) {
+            if (batch.size() == 1 && e.isClientError()) {
+                onRejected(batch.get(0), e);
+                return null;
+            } else if (batch.size() == 1) {
+                moveToEnd(batch.get(0));
+                return e;
+            }
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                moveToEnd(batch.get(0));
+                return e;
+            }
+        }
+
+        log.warn("Failed to delete batch of {} documents, deleting them one by one.", batch.size());
+        Exception firstError = null;
+        for (String documentId : batch) {
+            Exception error = delete(Collections.singletonList(documentId));
+            if (error != null && firstError == null) {
+                firstError = error;
+            }
+
+            // A document failed by DocFinity (ie. a 500 for that document) does not stop the others.
+            if (error != null && isUnavailable(error)) {
+                return error;
+            }
+        }
+        return firstError;
+    }
+
+    /** Waits for queued documents and returns the first batch, null once the reaper is closed. */
+    private List<String> takeBatch() {
+        lock.lock();
+        try {
+            while (queuedIds.isEmpty() && !closed) {
+                queueChanged.awaitUninterruptibly();
+            }
+            if (closed) {
+                return null;
+            }
+
+            List<String> batch = new ArrayList<>(Math.min(batchSize, queuedIds.size()));
+            for (String documentId : queuedIds) {
+                if (batch.size() == batchSize) {
+                    break;
+                }
+                batch.add(documentId);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onDeleted(List<String> batch) {
+        List<DocumentLifecycleListener> batchListeners = new ArrayList<>(batch.size());
+
+        lock.lock();
+        try {
+            for (String documentId : batch) {
+                // The record is not synced, if it is lost the document is deleted again.
+                write(channel, RECORD_DELETED, documentId);
+                queuedIds.remove(documentId);
+                batchListeners.add(listeners.remove(documentId));
+            }
+            queueChanged.signalAll();
+        } catch (IOException e) {
+            log.error("Failed to write orphan reaper queue '{}'.", path, e);
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < batchListeners.size(); i++) {
+            if (batchListeners.get(i) != null) {
+                batchListeners.get(i).onDeleted(batch.get(i));
+            }
+        }
+    }
+
+    /** Returns whether a failure means DocFinity is unavailable, not that a document failed. */
+    private static boolean isUnavailable(Exception error) {
+        if (!(error instanceof DocFinityStatusException)) {
+            return true;
+        }
+
+        int statusCode = ((DocFinityStatusException) error).getStatusCode();
+        return statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    /** Moves a document after the other queued documents, so that it is deleted after them. */
+    private void moveToEnd(String documentId) {
+        lock.lock();
+        try {
+            if (queuedIds.remove(documentId)) {
+                queuedIds.add(documentId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops a document that DocFinity will not delete, so that it is not requested again. */
+    private void onRejected(String documentId, DocFinityStatusException error) {
+        log.error(
+                "DocFinity rejected deleting document '{}', it is dropped from the queue. Error Message: {}",
+                documentId,
+                error.getMessage());
+
+        lock.lock();
+        try {
+            write(channel, RECORD_REJECTED, documentId);
+            queuedIds.remove(documentId);
+            listeners.remove(documentId);
+            queueChanged.signalAll();
+        } catch (IOException e) {
+            log.error("Failed to write orphan reaper queue '{}'.", path, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitClosed(long millis) {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+
+        lock.lock();
+        try {
+            while (!closed && remainingNanos > 0) {
+                remainingNanos = queueChanged.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void write(FileChannel channel, String record, String documentId)
+            throws IOException {
+        ByteBuffer buffer =
+                ByteBuffer.wrap((record + "\t" + documentId + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+    * Loads the documents that are still queued and rewrites the file with only them, so that the
+    * file does not grow with the records of deleted documents.
+    */
+    private void load() throws IOException {
+        if (Files.exists(path)) {
+            String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+
+            // A record without the line terminator was torn by a crash: a queued document was not
+            // accepted, and a deleted one is deleted again.
+            for (String line : text.substring(0, text.lastIndexOf('\n') + 1).split("\n")) {
+                String[] parts = line.split("\t", 2);
+                if (parts.length == 2 && RECORD_QUEUED.equals(parts[0])) {
+                    queuedIds.add(parts[1]);
+                } else if (parts.length == 2
+                        && (RECORD_DELETED.equals(parts[0]) || RECORD_REJECTED.equals(parts[0]))) {
+                    queuedIds.remove(parts[1]);
+                }
+            }
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel output =
+                FileChannel.open(
+                        compacted,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (String documentId : queuedIds) {
+                write(output, RECORD_QUEUED, documentId);
+            }
+            output.force(false);
+        }
+        Files.move(
+                compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (!queuedIds.isEmpty()) {
+            log.info(
+                    "Loaded {} documents to delete from orphan reaper queue '{}'.",
+                    queuedIds.size(),
+                    path);
+        }
+    }
+}
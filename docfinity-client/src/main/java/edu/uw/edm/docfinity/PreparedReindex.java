@@ -0,0 +1,24 @@
+package edu.uw.edm.docfinity;
+
+import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
+import lombok.Data;
+
+/** Encapsulates a reindex that was prepared and is ready to be sent to DocFinity. */
+@Data
+class PreparedReindex {
+    /** Arguments of the reindex operation. */
+    private final IndexDocumentArgs args;
+
+    /** Metadata definitions of the document type. */
+    private final DocumentTypeMetadata metadata;
+
+    /** Indexing data of the document before the reindex. */
+    private final DocumentIndexingDTO currentIndexingData;
+
+    /** Reindex request to send, null if the metadata is unchanged. */
+    private final DocumentIndexingDTO indexingDto;
+
+    public boolean isUnchanged() {
+        return indexingDto == null;
+    }
+}
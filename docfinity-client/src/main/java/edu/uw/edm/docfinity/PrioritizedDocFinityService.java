@@ -0,0 +1,289 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
+import edu.uw.edm.docfinity.models.DocumentTypeDTOSearchResult;
+import edu.uw.edm.docfinity.models.ExecuteDatasourceRequestDTO;
+import edu.uw.edm.docfinity.models.ExecuteDatasourceResponseDTO;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+* Wraps a DocFinityService to schedule requests by the priority of the operation that sends them
+* (see IndexDocumentArgsBase.withPriority), so that bulk jobs do not starve interactive requests.
+*
+* <p>At most maxConcurrentRequests are sent at the same time, and part of them are reserved for HIGH
+* priority requests. When requests wait, the next one is chosen by weighted fair queuing: each
+* priority class receives a share of the requests proportional to its weight, so LOW requests are
+* slowed down but never stopped.
+*/
+public class PrioritizedDocFinityService implements DocFinityService {
+    private final DocFinityService service;
+    private final int maxConcurrentRequests;
+    private int reservedHighPriorityRequests;
+    private final Map<RequestPriorityEnum, PriorityClass> classes =
+            new EnumMap<>(RequestPriorityEnum.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by the lock.
+    private int inFlightRequests;
+    private double virtualTime;
+
+    /**
+    * Creates a new instance of the service. A quarter of the requests are reserved for HIGH priority,
+    * and the weights of HIGH, NORMAL and LOW priorities are 8, 4 and 1.
+    *
+    * @param service Service that sends the requests.
+    * @param maxConcurrentRequests Maximum requests sent at the same time.
+    */
+    public PrioritizedDocFinityService(DocFinityService service, int maxConcurrentRequests) {
+        Preconditions.checkNotNull(service, "service is required.");
+        Preconditions.checkArgument(
+                maxConcurrentRequests > 0, "maxConcurrentRequests must be greater than 0.");
+
+        this.service = service;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.reservedHighPriorityRequests = maxConcurrentRequests / 4;
+        classes.put(RequestPriorityEnum.HIGH, new PriorityClass(8));
+        classes.put(RequestPriorityEnum.NORMAL, new PriorityClass(4));
+        classes.put(RequestPriorityEnum.LOW, new PriorityClass(1));
+    }
+
+    /**
+    * Sets the number of requests that only HIGH priority requests can send. Must be called before
+    * the service is used.
+    */
+    public PrioritizedDocFinityService withReservedCapacity(int reservedHighPriorityRequests) {
+        Preconditions.checkArgument(
+                reservedHighPriorityRequests >= 0
+                        && reservedHighPriorityRequests < maxConcurrentRequests,
+                "reservedHighPriorityRequests must be between 0 and maxConcurrentRequests - 1.");
+        this.reservedHighPriorityRequests = reservedHighPriorityRequests;
+        return this;
+    }
+
+    /**
+    * Sets the share of waiting requests sent for a priority class, relative to the weights of the
+    * other classes. Must be called before the service is used.
+    */
+    public PrioritizedDocFinityService withWeight(RequestPriorityEnum priority, int weight) {
+        Preconditions.checkNotNull(priority, "priority is required.");
+        Preconditions.checkArgument(weight > 0, "weight must be greater than 0.");
+        classes.put(priority, new PriorityClass(weight));
+        return this;
+    }
+
+    /** Returns the number of requests being sent. */
+    public int getInFlightRequests() {
+        lock.lock();
+        try {
+            return inFlightRequests;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the number of requests of a priority class waiting to be sent. */
+    public int getQueuedRequests(RequestPriorityEnum priority) {
+        Preconditions.checkNotNull(priority, "priority is required.");
+        lock.lock();
+        try {
+            return classes.get(priority).waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public DocumentTypeDTOSearchResult getDocumentTypes(String categoryName, String documentTypeName)
+            throws IOException {
+        return call(() -> service.getDocumentTypes(categoryName, documentTypeName));
+    }
+
+    @Override
+    public DocumentTypeDTOSearchResult listDocumentTypes(String categoryName, int offset, int limit)
+            throws IOException {
+        return call(() -> service.listDocumentTypes(categoryName, offset, limit));
+    }
+
+    @Override
+    public String uploadDocument(File file) throws IOException {
+        return call(() -> service.uploadDocument(file));
+    }
+
+    @Override
+    public String uploadDocument(byte[] content, String name) throws IOException {
+        return call(() -> service.uploadDocument(content, name));
+    }
+
+    @Override
+    public DocumentIndexingDTO getDocumentIndexingData(String documentId) throws IOException {
+        return call(() -> service.getDocumentIndexingData(documentId));
+    }
+
+    @Override
+    public List<MetadataDTO> getDocumentMetadata(String documentTypeId, String documentId)
+            throws IOException {
+        return call(() -> service.getDocumentMetadata(documentTypeId, documentId));
+    }
+
+    @Override
+    public List<ExecuteDatasourceResponseDTO> executeDatasource(ExecuteDatasourceRequestDTO request)
+            throws IOException {
+        return call(() -> service.executeDatasource(request));
+    }
+
+    @Override
+    public List<DocumentIndexingDTO> indexDocuments(DocumentIndexingDTO... documents)
+            throws IOException {
+        return call(() -> service.indexDocuments(documents));
+    }
+
+    @Override
+    public List<DocumentIndexingDTO> reindexDocuments(DocumentIndexingDTO... documents)
+            throws IOException {
+        return call(() -> service.reindexDocuments(documents));
+    }
+
+    @Override
+    public void deleteDocuments(String... documentIds) throws IOException {
+        call(
+                () -> {
+                    service.deleteDocuments(documentIds);
+                    return null;
+                });
+    }
+
+    private <T> T call(ServiceCall<T> call) throws IOException {
+        acquire(RequestPriorityContext.current());
+
+        try {
+            return call.call();
+        } finally {
+            release();
+        }
+    }
+
+    private void acquire(RequestPriorityEnum priority) throws IOException {
+        lock.lock();
+        try {
+            PriorityClass queue = classes.get(priority);
+
+            // Requests only wait when there is no capacity for their priority.
+            if (queue.waiters.isEmpty() && hasCapacity(priority)) {
+                inFlightRequests++;
+                return;
+            }
+
+            // A class that was idle starts at the current virtual time, it does not get the turns
+            // it did not use.
+            if (queue.waiters.isEmpty()) {
+                queue.pass = Math.max(queue.pass, virtualTime);
+            }
+
+            Waiter waiter = new Waiter(lock.newCondition());
+            queue.waiters.add(waiter);
+
+            try {
+                while (!waiter.granted) {
+                    waiter.ready.await();
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    inFlightRequests--;
+                    dispatch();
+                } else {
+                    queue.waiters.remove(waiter);
+                }
+
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                        String.format("Interrupted while waiting to send %s priority request.", priority));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlightRequests--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+    * Grants the free capacity to waiting requests. The next request comes from the class with the
+    * lowest pass, which advances by the inverse of its weight for every request.
+    */
+    private void dispatch() {
+        while (true) {
+            PriorityClass next = null;
+            for (Map.Entry<RequestPriorityEnum, PriorityClass> entry : classes.entrySet()) {
+                PriorityClass queue = entry.getValue();
+                if (!queue.waiters.isEmpty()
+                        && hasCapacity(entry.getKey())
+                        && (next == null || queue.pass < next.pass)) {
+                    next = queue;
+                }
+            }
+
+            if (next == null) {
+                return;
+            }
+
+            Waiter waiter = next.waiters.poll();
+            virtualTime = next.pass;
+            next.pass += 1.0 / next.weight;
+            inFlightRequests++;
+            waiter.granted = true;
+            waiter.ready.signal();
+        }
+    }
+
+    private boolean hasCapacity(RequestPriorityEnum priority) {
+        int capacity =
+                priority == RequestPriorityEnum.HIGH
+                        ? maxConcurrentRequests
+                        : maxConcurrentRequests - reservedHighPriorityRequests;
+        return inFlightRequests < capacity;
+    }
+
+    /** Requests of a priority class waiting to be sent. */
+    private static class PriorityClass {
+        private final int weight;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private double pass;
+
+        PriorityClass(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    /** A request waiting to be sent. */
+    private static class Waiter {
+        private final Condition ready;
+        private boolean granted;
+
+        Waiter(Condition ready) {
+            this.ready = ready;
+        }
+    }
+
+    /** A request to DocFinity. */
+    private interface ServiceCall<T> {
+        T call() throws IOException;
+    }
+}
@@ -0,0 +1,232 @@
+package edu.uw.edm.docfinity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+* Sends requests to idempotent end-points with hedging: when the response is later than a percentile
+* of the recent latencies of the end-point, the same request is sent again and the first response
+* wins, the other request is cancelled. A response with an unsuccessful status code loses to the
+* other request, unless both fail. The hedge is sent without the affinity of the request, so that
+* with several nodes it is not sent to the node that is late.
+*
+* <p>The number of hedges is bounded by a budget: every request adds a fraction of a token (the
+* budget ratio) up to a maximum, and every hedge spends a token. So at most that ratio of requests
+* are hedged over time, and a slow DocFinity does not receive twice the load.
+*/
+@Slf4j
+class RequestHedger {
+    private static final int LATENCY_WINDOW_SIZE = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final int DELAY_UPDATE_INTERVAL = 16;
+    private static final double MAX_BUDGET_TOKENS = 10;
+
+    private final DocFinityTransport transport;
+    private final Map<DocFinityEndpointEnum, LatencyWindow> latencies =
+            new EnumMap<>(DocFinityEndpointEnum.class);
+    private final double budgetRatio;
+    private final HedgingMetrics metrics;
+    private double budgetTokens = MAX_BUDGET_TOKENS;
+
+    RequestHedger(
+            DocFinityTransport transport,
+            Set<DocFinityEndpointEnum> endpoints,
+            double delayPercentile,
+            long minDelayMillis,
+            double budgetRatio,
+            HedgingMetrics metrics) {
+        this.transport = transport;
+        this.budgetRatio = budgetRatio;
+        this.metrics = metrics != null ? metrics : new HedgingMetrics();
+
+        for (DocFinityEndpointEnum endpoint : endpoints) {
+            latencies.put(
+                    endpoint,
+                    new LatencyWindow(delayPercentile, TimeUnit.MILLISECONDS.toNanos(minDelayMillis)));
+        }
+    }
+
+    /** Returns whether the requests of an end-point are hedged. */
+    boolean isHedged(DocFinityEndpointEnum endpoint) {
+        return latencies.containsKey(endpoint);
+    }
+
+    /**
+    * Sends a request to a hedged end-point, and returns the first successful response. Fails if both
+    * requests fail, with the error or the unsuccessful response of the last one.
+    */
+    Response execute(DocFinityEndpointEnum endpoint, Request request) throws IOException {
+        LatencyWindow latency = latencies.get(endpoint);
+        long startNanos = System.nanoTime();
+        long delayNanos = latency.getDelayNanos();
+
+        metrics.addRequest();
+        addBudget();
+
+        CompletableFuture<Response> original = transport.executeAsync(request);
+        Response response = null;
+
+        if (delayNanos < 0) {
+            // Not enough samples yet to know what a late response is.
+            response = await(original);
+        } else {
+            try {
+                response = original.get(delayNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                response = tryHedge(endpoint, request, original);
+            } catch (InterruptedException e) {
+                original.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for response.");
+            } catch (ExecutionException e) {
+                throw toIOException(e.getCause());
+            }
+        }
+
+        latency.add(System.nanoTime() - startNanos);
+        return response;
+    }
+
+    private Response tryHedge(
+            DocFinityEndpointEnum endpoint, Request request, CompletableFuture<Response> original)
+            throws IOException {
+        if (!trySpendBudget()) {
+            metrics.addHedgeOverBudget();
+            return await(original);
+        }
+
+        log.debug("Hedging late request to end-point {}: {}", endpoint, request.url());
+        metrics.addHedge();
+
+        CompletableFuture<Response> hedge =
+                transport.executeAsync(LoadBalancingTransport.withoutAffinity(request));
+        CompletableFuture<Response> winner = new CompletableFuture<>();
+        AtomicBoolean hedgeWon = new AtomicBoolean();
+        AtomicInteger failures = new AtomicInteger();
+
+        original.whenComplete((response, error) -> complete(winner, response, error, failures));
+        hedge.whenComplete(
+                (response, error) -> {
+                    if (complete(winner, response, error, failures)) {
+                        hedgeWon.set(true);
+                    }
+                });
+
+        try {
+            Response response = await(winner);
+            if (hedgeWon.get()) {
+                metrics.addHedgeWin();
+            }
+            return response;
+        } finally {
+            // Cancels the request that lost, or both when interrupted.
+            original.cancel(true);
+            hedge.cancel(true);
+        }
+    }
+
+    /**
+    * Completes the winner with a successful response, or with the result of the second request to
+    * fail. Returns whether a successful response won.
+    */
+    private static boolean complete(
+            CompletableFuture<Response> winner,
+            Response response,
+            Throwable error,
+            AtomicInteger failures) {
+        boolean failed = error != null || !response.isSuccessful();
+        if (failed && failures.incrementAndGet() < 2) {
+            if (response != null) {
+                response.close();
+            }
+            return false;
+        }
+
+        if (error != null) {
+            winner.completeExceptionally(error);
+            return false;
+        }
+
+        if (winner.complete(response)) {
+            return !failed;
+        }
+
+        response.close();
+        return false;
+    }
+
+    private synchronized void addBudget() {
+        budgetTokens = Math.min(MAX_BUDGET_TOKENS, budgetTokens + budgetRatio);
+    }
+
+    private synchronized boolean trySpendBudget() {
+        if (budgetTokens < 1) {
+            return false;
+        }
+        budgetTokens -= 1;
+        return true;
+    }
+
+    private static Response await(CompletableFuture<Response> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response.");
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+    }
+
+    private static IOException toIOException(Throwable error) {
+        return error instanceof IOException ? (IOException) error : new IOException(error);
+    }
+
+    /** Keeps the latest latencies of an end-point to find the delay of the hedges. */
+    private static class LatencyWindow {
+        private final long[] samples = new long[LATENCY_WINDOW_SIZE];
+        private final double percentile;
+        private final long minDelayNanos;
+        private int count;
+        private int next;
+
+        // Percentile of the samples, updated every few samples since it sorts the window.
+        private volatile long delayNanos = -1;
+
+        LatencyWindow(double percentile, long minDelayNanos) {
+            this.percentile = percentile;
+            this.minDelayNanos = minDelayNanos;
+        }
+
+        long getDelayNanos() {
+            return delayNanos;
+        }
+
+        synchronized void add(long latencyNanos) {
+            samples[next] = latencyNanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+
+            if (count >= MIN_LATENCY_SAMPLES && next % DELAY_UPDATE_INTERVAL == 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile * count) - 1;
+                delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, index)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package edu.uw.edm.docfinity;
+
+/**
+* Holds the priority of the operation running on the current thread, so that a
+* PrioritizedDocFinityService can schedule its requests without a priority argument in every
+* DocFinityService method.
+*/
+final class RequestPriorityContext {
+    private static final ThreadLocal<RequestPriorityEnum> PRIORITY = new ThreadLocal<>();
+
+    private RequestPriorityContext() {}
+
+    /** Returns the priority of the current operation, NORMAL if none was set. */
+    static RequestPriorityEnum current() {
+        RequestPriorityEnum priority = PRIORITY.get();
+        return priority != null ? priority : RequestPriorityEnum.NORMAL;
+    }
+
+    /**
+    * Sets the priority of the current thread until the scope is closed.
+    *
+    * @param priority Priority of the operation, null to keep the priority of the calling operation.
+    */
+    static Scope enter(RequestPriorityEnum priority) {
+        RequestPriorityEnum previous = PRIORITY.get();
+        if (priority != null) {
+            PRIORITY.set(priority);
+        }
+
+        return () -> {
+            if (previous != null) {
+                PRIORITY.set(previous);
+            } else {
+                PRIORITY.remove();
+            }
+        };
+    }
+
+    /** Restores the previous priority when closed. */
+    interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,11 @@
+package edu.uw.edm.docfinity;
+
+/** Represents the priority classes of the requests sent by client operations. */
+public enum RequestPriorityEnum {
+    /** Interactive operations, ie. a user waiting for a single document. */
+    HIGH,
+    /** Default priority of client operations. */
+    NORMAL,
+    /** Background operations, ie. bulk uploads and reindexes. Default of BulkIndexer. */
+    LOW
+}
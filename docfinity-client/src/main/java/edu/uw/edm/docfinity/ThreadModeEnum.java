@@ -0,0 +1,9 @@
+package edu.uw.edm.docfinity;
+
+/** Represents the kind of threads used to run concurrent client operations. */
+public enum ThreadModeEnum {
+    /** Pools with a fixed number of platform threads. */
+    PLATFORM,
+    /** A new virtual thread for each operation, requires Java 21 or newer. */
+    VIRTUAL
+}
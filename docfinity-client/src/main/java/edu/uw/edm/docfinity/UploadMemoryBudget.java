@@ -0,0 +1,137 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* Bounds the bytes of the uploads in flight in the services that use it, so that large documents
+* uploaded at the same time do not exhaust the heap. Each upload takes a share of the budget equal
+* to its size, and uploads that do not fit wait for earlier uploads to complete, in order of
+* arrival. Safe to share between threads and services.
+*
+* <p>A document larger than the whole budget waits until no other upload is in flight, and is then
+* uploaded alone.
+*/
+public class UploadMemoryBudget {
+    // Permits are kilobytes, so that budgets over 2 GB fit in the int permits of a semaphore.
+    private static final int BYTES_PER_PERMIT = 1024;
+
+    private final long maxBytes;
+    private final int maxPermits;
+    private final Semaphore permits;
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final LongAdder rejectedUploads = new LongAdder();
+    private long maxWaitMillis = -1;
+
+    /**
+    * Creates a new budget. Uploads wait as long as needed for their share by default.
+    *
+    * @param maxBytes Maximum bytes of the uploads in flight at the same time.
+    */
+    public UploadMemoryBudget(long maxBytes) {
+        Preconditions.checkArgument(maxBytes > 0, "maxBytes must be greater than 0.");
+        Preconditions.checkArgument(
+                toPermits(maxBytes) <= Integer.MAX_VALUE, "maxBytes must be less than 2 TB.");
+
+        this.maxBytes = maxBytes;
+        this.maxPermits = (int) toPermits(maxBytes);
+        this.permits = new Semaphore(maxPermits, true);
+    }
+
+    /**
+    * Sets the maximum time an upload waits for its share before it fails, zero to fail uploads as
+    * soon as the budget is exhausted. Must be called before the budget is used.
+    */
+    public UploadMemoryBudget withMaxWait(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration >= 0, "duration must not be negative.");
+        Preconditions.checkNotNull(unit, "unit is required.");
+        this.maxWaitMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /** Returns the maximum bytes of the uploads in flight at the same time. */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Returns the bytes of the uploads in flight. */
+    public long getInFlightBytes() {
+        return inFlightBytes.get();
+    }
+
+    /** Returns the number of uploads waiting for their share of the budget. */
+    public int getWaitingUploads() {
+        return permits.getQueueLength();
+    }
+
+    /** Returns the number of uploads that failed because they waited longer than the maximum. */
+    public long getRejectedUploads() {
+        return rejectedUploads.sum();
+    }
+
+    /**
+    * Takes the share of an upload, waiting for it if needed.
+    *
+    * @param name Name of the uploaded document.
+    * @param bytes Size of the uploaded document.
+    * @return Permit that gives the share back when closed.
+    */
+    Permit acquire(String name, long bytes) throws IOException {
+        int count = (int) Math.min(maxPermits, toPermits(bytes));
+        boolean acquired;
+
+        try {
+            if (maxWaitMillis < 0) {
+                permits.acquire(count);
+                acquired = true;
+            } else {
+                acquired = permits.tryAcquire(count, maxWaitMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                    String.format("Interrupted while waiting for the memory budget to upload '%s'.", name));
+        }
+
+        if (!acquired) {
+            rejectedUploads.increment();
+            throw new IOException(
+                    String.format(
+                            "Upload of '%s' (%d bytes) rejected, the upload memory budget of %d bytes is exhausted.",
+                            name, bytes, maxBytes));
+        }
+
+        inFlightBytes.addAndGet(bytes);
+        return new Permit(count, bytes);
+    }
+
+    private static long toPermits(long bytes) {
+        return (bytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT;
+    }
+
+    /** Share of the budget taken by an upload, given back when closed. */
+    final class Permit implements AutoCloseable {
+        private final int count;
+        private final long bytes;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(int count, long bytes) {
+            this.count = count;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                inFlightBytes.addAndGet(-bytes);
+                permits.release(count);
+            }
+        }
+    }
+}
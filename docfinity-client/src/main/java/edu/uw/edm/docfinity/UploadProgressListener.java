@@ -0,0 +1,19 @@
+package edu.uw.edm.docfinity;
+
+/**
+* Receives the progress of document uploads as their content is sent, ie. to show progress or to
+* measure the bandwidth used by uploads.
+*/
+public interface UploadProgressListener {
+    /**
+    * Called as the content of an upload is sent, from the thread that uploads it. Called at most
+    * once per progress interval of the upload and when it completes. Bytes of chunks that are sent
+    * again after a failure are not counted twice.
+    *
+    * @param name Name of the uploaded file.
+    * @param bytesWritten Bytes of content sent so far.
+    * @param totalBytes Size of the content.
+    * @param bytesPerSecond Average rate since the upload started.
+    */
+    void onProgress(String name, long bytesWritten, long totalBytes, double bytesPerSecond);
+}
@@ -0,0 +1,57 @@
+package edu.uw.edm.docfinity;
+
+/**
+* Keeps track of the bytes sent by an upload, adds them to an UploadThroughputMeter and reports them
+* to an UploadProgressListener at most once per interval and when the upload completes.
+*/
+class UploadProgressTracker {
+    private final String name;
+    private final long totalBytes;
+    private final UploadProgressListener listener;
+    private final long intervalNanos;
+    private final UploadThroughputMeter meter;
+    private final long startNanos = System.nanoTime();
+    private long lastNotifiedNanos = startNanos;
+    private long bytesWritten;
+
+    UploadProgressTracker(
+            String name,
+            long totalBytes,
+            UploadProgressListener listener,
+            long intervalNanos,
+            UploadThroughputMeter meter) {
+        this.name = name;
+        this.totalBytes = totalBytes;
+        this.listener = listener;
+        this.intervalNanos = intervalNanos;
+        this.meter = meter;
+    }
+
+    /**
+    * Sets the number of bytes of content sent so far, after a write of the content.
+    *
+    * @param bytesWritten Position of the upload, lower than before when a chunk is sent again.
+    * @param byteCount Bytes of the write, the meter counts chunks sent again as they use bandwidth.
+    */
+    void update(long bytesWritten, long byteCount) {
+        this.bytesWritten = bytesWritten;
+
+        if (meter != null) {
+            meter.add(byteCount);
+        }
+
+        if (listener != null) {
+            long now = System.nanoTime();
+            if (bytesWritten == totalBytes || now - lastNotifiedNanos >= intervalNanos) {
+                lastNotifiedNanos = now;
+                listener.onProgress(name, bytesWritten, totalBytes, getBytesPerSecond());
+            }
+        }
+    }
+
+    /** Returns the average rate since the upload started. */
+    double getBytesPerSecond() {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return elapsedNanos == 0 ? 0 : bytesWritten * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,29 @@
+package edu.uw.edm.docfinity;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+* Adds up the bytes sent by all the uploads of the services that use it, ie. to report the bandwidth
+* used by all bulk workers and size worker pools against the available uplink. Safe to share between
+* threads and services.
+*/
+public class UploadThroughputMeter {
+    private final LongAdder bytesSent = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    /** Adds bytes sent by an upload. */
+    void add(long byteCount) {
+        bytesSent.add(byteCount);
+    }
+
+    /** Returns the bytes sent since the meter was created, including chunks that were sent again. */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /** Returns the average rate since the meter was created. */
+    public double getBytesPerSecond() {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        return elapsedNanos == 0 ? 0 : getBytesSent() * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,72 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+
+/** Encapsulates arguments for loading the document type catalog before the first document. */
+@Getter
+public class WarmUpArgs {
+    /** Categories whose document types are loaded, empty to load the whole catalog. */
+    private final List<String> categories = new ArrayList<>();
+
+    /**
+    * Number of requests sent at the same time, which is also the number of connections left open in
+    * the connection pool of the service (up to its maximum idle connections).
+    */
+    private int parallelism = 4;
+
+    /** Number of document types requested per page. */
+    private int pageSize = 100;
+
+    /**
+    * Whether the metadata definitions (controls) of each document type are loaded, which also
+    * requires a controls document id.
+    */
+    private boolean loadControls = true;
+
+    /**
+    * Id of an existing document used to request controls, which DocFinity returns for a document.
+    * Null to only load the document type ids, controls are then loaded by the first document of each
+    * type.
+    */
+    private String controlsDocumentId;
+
+    /** Sets the categories whose document types are loaded. */
+    public WarmUpArgs withCategories(String... categories) {
+        Preconditions.checkNotNull(categories, "categories is required.");
+        this.categories.addAll(Arrays.asList(categories));
+        return this;
+    }
+
+    /** Sets the number of requests sent at the same time. */
+    public WarmUpArgs withParallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be greater than 0.");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /** Sets the number of document types requested per page. */
+    public WarmUpArgs withPageSize(int pageSize) {
+        Preconditions.checkArgument(pageSize > 0, "pageSize must be greater than 0.");
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /** Sets whether the metadata definitions of each document type are loaded. */
+    public WarmUpArgs withLoadControls(boolean loadControls) {
+        this.loadControls = loadControls;
+        return this;
+    }
+
+    /** Sets the id of an existing document used to request controls. */
+    public WarmUpArgs withControlsDocumentId(String controlsDocumentId) {
+        Preconditions.checkArgument(
+                controlsDocumentId != null && !controlsDocumentId.isEmpty(),
+                "controlsDocumentId is required.");
+        this.controlsDocumentId = controlsDocumentId;
+        return this;
+    }
+}
@@ -0,0 +1,75 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+* Creates the executors of concurrent client operations for a ThreadModeEnum. The library targets
+* Java 8, so virtual threads are created through reflection when running on Java 21 or newer.
+*/
+public final class WorkerExecutors {
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR =
+            findNewVirtualThreadPerTaskExecutor();
+
+    private WorkerExecutors() {}
+
+    /** Returns whether the running JVM supports virtual threads. */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+    * Creates an executor for a number of workers: a fixed pool of platform threads, or an executor
+    * that starts a virtual thread for each task. With virtual threads the callers limit how many
+    * tasks run at the same time.
+    *
+    * @param mode Kind of threads to use.
+    * @param workers Number of platform threads of the pool.
+    */
+    public static ExecutorService newExecutor(ThreadModeEnum mode, int workers) {
+        Preconditions.checkNotNull(mode, "mode is required.");
+        Preconditions.checkArgument(workers > 0, "workers must be greater than 0.");
+
+        return mode == ThreadModeEnum.VIRTUAL
+                ? newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(workers);
+    }
+
+    /**
+    * Creates an executor for short tasks started by other workers, ie. the datasources of a
+    * document. Platform threads are daemon threads that are re-used and stopped when idle, so the
+    * executor does not need to be shut down.
+    *
+    * @param mode Kind of threads to use.
+    * @param name Name format of platform threads.
+    */
+    static ExecutorService newUnboundedExecutor(ThreadModeEnum mode, String name) {
+        return mode == ThreadModeEnum.VIRTUAL
+                ? newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat(name).build());
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Preconditions.checkState(
+                isVirtualThreadSupported(), "Virtual threads require Java 21 or newer.");
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Failed to create virtual thread executor.", e);
+        }
+    }
+
+    private static Method findNewVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
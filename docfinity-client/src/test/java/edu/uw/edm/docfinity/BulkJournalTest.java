@@ -0,0 +1,79 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BulkJournalTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void onOpen_shouldLoadLastStateOfEachKey() throws Exception {
+        // arrange
+        Path path = folder.getRoot().toPath().resolve("journal.log");
+        try (BulkJournal journal = new BulkJournal(path)) {
+            journal.appendDurably("key1", JournalStateEnum.UPLOADED, "doc1");
+            journal.append("key1", JournalStateEnum.COMMITTED, "doc1");
+            journal.appendDurably("key\t2", JournalStateEnum.UPLOADED, "doc2");
+        }
+
+        // act
+        try (BulkJournal journal = new BulkJournal(path)) {
+            // assert
+            assertEquals(2, journal.size());
+            assertEquals(
+                    new BulkJournalEntry(JournalStateEnum.COMMITTED, "doc1"), journal.get("key1"));
+            assertEquals(
+                    new BulkJournalEntry(JournalStateEnum.UPLOADED, "doc2"), journal.get("key\t2"));
+        }
+    }
+
+    @Test
+    public void onOpen_shouldLoadFingerprintOfRecords() throws Exception {
+        // arrange
+        Path path = folder.getRoot().toPath().resolve("journal.log");
+        Files.write(path, "UPLOADED\tdoc1\tkey1\n".getBytes(StandardCharsets.UTF_8));
+        try (BulkJournal journal = new BulkJournal(path)) {
+            journal.appendDurably("key2", JournalStateEnum.UPLOADED, "doc2", "10:20");
+        }
+
+        // act
+        try (BulkJournal journal = new BulkJournal(path)) {
+            // assert
+            assertNull(journal.get("key1").getFingerprint());
+            assertEquals("doc1", journal.get("key1").getDocumentId());
+            assertEquals("10:20", journal.get("key2").getFingerprint());
+            assertEquals("doc2", journal.get("key2").getDocumentId());
+        }
+    }
+
+    @Test
+    public void onOpen_shouldDropIncompleteLastRecord() throws Exception {
+        // arrange
+        Path path = folder.getRoot().toPath().resolve("journal.log");
+        try (BulkJournal journal = new BulkJournal(path)) {
+            journal.appendDurably("key1", JournalStateEnum.UPLOADED, "doc1");
+        }
+        Files.write(
+                path, "COMMITTED\tdoc".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        // act
+        try (BulkJournal journal = new BulkJournal(path)) {
+            journal.appendDurably("key2", JournalStateEnum.UPLOADED, "doc2");
+        }
+
+        // assert
+        try (BulkJournal journal = new BulkJournal(path)) {
+            assertEquals(JournalStateEnum.UPLOADED, journal.get("key1").getState());
+            assertEquals("doc2", journal.get("key2").getDocumentId());
+            assertNull(journal.get("doc"));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import edu.uw.edm.docfinity.models.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkReindexPipelineTest {
+    private static final String testDocumentTypeId = "documentType123";
+
+    private DocFinityService mockService;
+    private DocFinityClient client;
+    private Map<String, BulkItemResult> results;
+
+    @Before
+    public void setupDependencies() throws Exception {
+        mockService = mock(DocFinityService.class);
+        client = new DocFinityClient(mockService);
+        results = new ConcurrentHashMap<>();
+
+        when(mockService.getDocumentTypes(any(), any()))
+                .thenReturn(DocumentTypeDTOSearchResult.from(testDocumentTypeId));
+        when(mockService.getDocumentMetadata(anyString(), anyString()))
+                .thenReturn(Arrays.asList(new MetadataDTO("111", "Field1")));
+        when(mockService.getDocumentIndexingData(anyString())).thenReturn(new DocumentIndexingDTO());
+
+        // Return the same indexingDtos that were passed in.
+        when(mockService.reindexDocuments(any())).thenAnswer(i -> Arrays.asList(i.getArguments()));
+    }
+
+    private static List<BulkItem<IndexDocumentArgs>> buildItems(int count) {
+        List<BulkItem<IndexDocumentArgs>> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            IndexDocumentArgs args =
+                    new IndexDocumentArgs("document" + i)
+                            .withDocumentType("category", "documentType")
+                            .withMetadata(
+                                    Arrays.asList(DocumentField.fromSingleValue("Field1", "Value" + i)));
+            items.add(new BulkItem<>("item" + i, args));
+        }
+        return items;
+    }
+
+    private BulkSummary run(Iterator<BulkItem<IndexDocumentArgs>> items, int batchSize, long delay)
+            throws Exception {
+        return new BulkReindexPipeline(
+                        client, 1, batchSize, delay, result -> results.put(result.getKey(), result))
+                .run(items);
+    }
+
+    @Test
+    public void onRun_shouldSendPreparedDocumentsInBatches() throws Exception {
+        // arrange
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        when(mockService.reindexDocuments(any()))
+                .thenAnswer(
+                        i -> {
+                            batchSizes.add(i.getArguments().length);
+                            return Arrays.asList(i.getArguments());
+                        });
+
+        // act
+        BulkSummary summary = run(buildItems(5).iterator(), 2, TimeUnit.MINUTES.toMillis(1));
+
+        // assert
+        assertEquals(5, summary.getSucceeded());
+        assertEquals(0, summary.getFailed());
+        assertEquals(Arrays.asList(2, 2, 1), batchSizes);
+        assertEquals("document4", results.get("item4").getDocumentId());
+    }
+
+    @Test
+    public void onRun_shouldSendPartialBatchAfterDelay() throws Exception {
+        // arrange
+        CountDownLatch firstResult = new CountDownLatch(1);
+        AtomicBoolean sentBeforeEnd = new AtomicBoolean();
+        Iterator<BulkItem<IndexDocumentArgs>> source = buildItems(1).iterator();
+        Iterator<BulkItem<IndexDocumentArgs>> items =
+                new Iterator<BulkItem<IndexDocumentArgs>>() {
+                    @Override
+                    public boolean hasNext() {
+                        if (source.hasNext()) {
+                            return true;
+                        }
+
+                        // Hold the end of the items until the timer sends the partial batch.
+                        try {
+                            sentBeforeEnd.set(firstResult.await(5, TimeUnit.SECONDS));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return false;
+                    }
+
+                    @Override
+                    public BulkItem<IndexDocumentArgs> next() {
+                        return source.next();
+                    }
+                };
+
+        // act
+        BulkSummary summary =
+                new BulkReindexPipeline(
+                                client,
+                                1,
+                                10,
+                                10,
+                                result -> {
+                                    results.put(result.getKey(), result);
+                                    firstResult.countDown();
+                                })
+                        .run(items);
+
+        // assert
+        assertTrue(sentBeforeEnd.get());
+        assertEquals(1, summary.getSucceeded());
+    }
+
+    @Test
+    public void onRun_shouldFailDocumentMissingFromResponse() throws Exception {
+        // arrange
+        when(mockService.reindexDocuments(any()))
+                .thenAnswer(i -> Arrays.asList(i.getArguments()[0]));
+
+        // act
+        BulkSummary summary = run(buildItems(2).iterator(), 2, TimeUnit.MINUTES.toMillis(1));
+
+        // assert
+        assertEquals(1, summary.getSucceeded());
+        assertEquals(1, summary.getFailed());
+        assertNull(results.get("item0").getError());
+        assertNotNull(results.get("item1").getError());
+        assertEquals(
+                "Reindex response is missing document 'document1'.",
+                results.get("item1").getError().getMessage());
+    }
+
+    @Test
+    public void onRun_shouldPrepareDocumentsOfFailedBatchAgainAndSendThemAlone() throws Exception {
+        // arrange
+        when(mockService.reindexDocuments(any()))
+                .thenAnswer(
+                        i -> {
+                            if (i.getArguments().length > 1) {
+                                throw new IOException("Batch failed.");
+                            }
+                            return Arrays.asList(i.getArguments());
+                        });
+
+        // act
+        BulkSummary summary = run(buildItems(2).iterator(), 2, TimeUnit.MINUTES.toMillis(1));
+
+        // assert
+        assertEquals(2, summary.getSucceeded());
+        assertEquals(0, summary.getFailed());
+        verify(mockService, times(2)).getDocumentIndexingData("document0");
+        verify(mockService, times(2)).getDocumentIndexingData("document1");
+        verify(mockService, times(3)).reindexDocuments(any());
+    }
+
+    @Test
+    public void onRun_shouldFailDocumentThatFailsAlone() throws Exception {
+        // arrange
+        when(mockService.reindexDocuments(any())).thenThrow(new IOException("Reindex failed."));
+
+        // act
+        BulkSummary summary = run(buildItems(2).iterator(), 2, TimeUnit.MINUTES.toMillis(1));
+
+        // assert
+        assertEquals(0, summary.getSucceeded());
+        assertEquals(2, summary.getFailed());
+        assertEquals("Reindex failed.", results.get("item0").getError().getMessage());
+    }
+}
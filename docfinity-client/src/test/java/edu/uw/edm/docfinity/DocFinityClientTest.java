@@ -6,6 +6,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
@@ -15,11 +16,16 @@ import edu.uw.edm.docfinity.models.*;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class DocFinityClientTest {
     private static final String testDocumentTypeId = "documentType123";
@@ -27,6 +33,8 @@ public class DocFinityClientTest {
     private static final URL resource =
             DocFinityClientTest.class.getClassLoader().getResource("test-file.txt");
 
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
     private File testFile;
     private DocFinityService mockService;
 
@@ -92,6 +100,10 @@ public class DocFinityClientTest {
                 .withMetadata(Arrays.asList(fields));
     }
 
+    private String contentKey(String category, String documentType) throws IOException {
+        return DeduplicationIndex.key(DeduplicationIndex.hash(testFile), category, documentType);
+    }
+
     @Test
     public void onCreate_shouldIndexDocumentWithMultiSelectMetadata() throws Exception {
         // arrange
@@ -121,6 +133,28 @@ public class DocFinityClientTest {
         assertThat(result.getMetadata().get(0).getValues(), is(Arrays.asList("Value1", "Value2")));
     }
 
+    @Test
+    public void onCreate_shouldBuildResultMetadataWhenRequestedIfLazy() throws Exception {
+        // arrange
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withLazyResultMetadata(true));
+        setupDocumentMetadataReturn(
+                new MetadataDTO("111", "Field1"), new MetadataDTO("222", "Field2"));
+
+        // act
+        IndexDocumentResult result =
+                client.uploadIndexAndCommitDocument(
+                        buildCreateArgs(
+                                DocumentField.fromSingleValue("Field1", "Value1"),
+                                DocumentField.fromSingleValue("Field2", "Value2")));
+
+        // assert
+        assertEquals(testDocumentId, result.getId());
+        assertEquals(2, result.getMetadata().size());
+        assertSame(result.getMetadata(), result.getMetadata());
+    }
+
     @Test
     public void onCreate_shouldThrowErrorIfRequiredMultiSelectMetadataValueIsNull() throws Exception {
         // arrange
@@ -214,6 +248,306 @@ public class DocFinityClientTest {
         verify(mockService).deleteDocuments(testDocumentId);
     }
 
+    @Test
+    public void onCreate_shouldDeleteDocumentIfUploadedListenerThrows() throws Exception {
+        // arrange
+        DocFinityClient client = new DocFinityClient(mockService);
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+        DocumentLifecycleListener listener =
+                new DocumentLifecycleListener() {
+                    @Override
+                    public void onUploaded(String documentId) throws IOException {
+                        throw new IOException("Test Error");
+                    }
+                };
+
+        // act
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        assertThrows(IOException.class, () -> client.uploadIndexAndCommitDocument(args, listener));
+
+        // assert
+        verify(mockService, never()).indexDocuments(any());
+        verify(mockService).deleteDocuments(testDocumentId);
+    }
+
+    @Test
+    public void onResume_shouldIndexUploadedDocumentWithoutUploading() throws Exception {
+        // arrange
+        DocFinityClient client = new DocFinityClient(mockService);
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+        DocumentLifecycleListener listener = mock(DocumentLifecycleListener.class);
+
+        // act
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        IndexDocumentResult result =
+                client.indexAndCommitUploadedDocument(args, testDocumentId, listener);
+
+        // assert
+        assertEquals(testDocumentId, result.getId());
+        verify(mockService, never()).uploadDocument(any());
+        verify(mockService).indexDocuments(any());
+        verify(listener, never()).onUploaded(anyString());
+        verify(listener).onCommitted(testDocumentId);
+    }
+
+    @Test
+    public void onResume_shouldNotIndexAgainIfDocumentWasCommitted() throws Exception {
+        // arrange
+        DocFinityClient client = new DocFinityClient(mockService);
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+        setupDocumentIndexingDataReturn(
+                new DocumentIndexingMetadataDTO("1", "111", "Field1", "Value1"));
+        DocumentLifecycleListener listener = mock(DocumentLifecycleListener.class);
+
+        // act
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        IndexDocumentResult result =
+                client.indexAndCommitUploadedDocument(args, testDocumentId, listener);
+
+        // assert
+        assertEquals("Value1", result.getMetadata().get(0).getValues().get(0));
+        verify(mockService, never()).indexDocuments(any());
+        verify(mockService, never()).deleteDocuments(any());
+        verify(listener).onCommitted(testDocumentId);
+    }
+
+    @Test
+    public void onBulkResume_shouldUploadAgainIfDocumentIsQueuedForDeletion() throws Exception {
+        // arrange
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+        DocFinityService failingService = mock(DocFinityService.class);
+        doThrow(new IOException("Test Error")).when(failingService).deleteDocuments(any());
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        List<BulkItemResult> results = new ArrayList<>();
+
+        try (BulkJournal journal = new BulkJournal(folder.getRoot().toPath().resolve("journal.log"));
+                OrphanReaper reaper =
+                        new OrphanReaper(failingService, folder.getRoot().toPath().resolve("orphans.log"))) {
+            journal.appendDurably("key1", JournalStateEnum.UPLOADED, "orphan1");
+            reaper.enqueue("orphan1");
+            DocFinityClient client =
+                    new DocFinityClient(mockService, new DocFinityClientOptions().withOrphanReaper(reaper));
+
+            // act
+            new BulkIndexer(client, 1, journal)
+                    .uploadIndexAndCommitDocuments(
+                            Collections.singletonList(new BulkItem<>("key1", args)).iterator(),
+                            results::add);
+
+            // assert
+            assertTrue(results.get(0).isSuccess());
+            assertEquals(testDocumentId, results.get(0).getDocumentId());
+            assertEquals(JournalStateEnum.COMMITTED, journal.get("key1").getState());
+        }
+        verify(mockService).uploadDocument(testFile);
+        verify(mockService, never()).getDocumentIndexingData("orphan1");
+    }
+
+    @Test
+    public void onBulkResume_shouldFailIfFileChangedSinceUpload() throws Exception {
+        // arrange
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        List<BulkItemResult> results = new ArrayList<>();
+
+        try (BulkJournal journal = new BulkJournal(folder.getRoot().toPath().resolve("journal.log"))) {
+            journal.appendDurably("key1", JournalStateEnum.UPLOADED, "document1", "1:1");
+
+            // act
+            new BulkIndexer(new DocFinityClient(mockService), 1, journal)
+                    .uploadIndexAndCommitDocuments(
+                            Collections.singletonList(new BulkItem<>("key1", args)).iterator(),
+                            results::add);
+        }
+
+        // assert
+        assertFalse(results.get(0).isSuccess());
+        verify(mockService, never()).uploadDocument(any());
+        verify(mockService, never()).getDocumentIndexingData(anyString());
+    }
+
+    @Test
+    public void onCreate_shouldAddUploadedContentToDeduplicationIndex() throws Exception {
+        // arrange
+        DeduplicationIndex index = new DeduplicationIndex(folder.newFile().toPath());
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withDeduplicationIndex(index));
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+
+        // act
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        IndexDocumentResult result = client.uploadIndexAndCommitDocument(args);
+
+        // assert
+        assertFalse(result.isDuplicate());
+        assertEquals(testDocumentId, index.get(contentKey("category", "documentType")));
+    }
+
+    @Test
+    public void onCreate_shouldReindexExistingDocumentIfContentIsDuplicate() throws Exception {
+        // arrange
+        DeduplicationIndex index = new DeduplicationIndex(folder.newFile().toPath());
+        index.put(contentKey("category", "documentType"), "existingDocument");
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withDeduplicationIndex(index));
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+
+        // act
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        IndexDocumentResult result = client.uploadIndexAndCommitDocument(args);
+
+        // assert
+        assertTrue(result.isDuplicate());
+        assertEquals("existingDocument", result.getId());
+        verify(mockService, never()).uploadDocument(any());
+        verify(mockService).reindexDocuments(any());
+    }
+
+    @Test
+    public void onCreate_shouldUploadDuplicateContentOfAnotherDocumentType() throws Exception {
+        // arrange
+        DeduplicationIndex index = new DeduplicationIndex(folder.newFile().toPath());
+        index.put(contentKey("otherCategory", "documentType"), "existingDocument");
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withDeduplicationIndex(index));
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+
+        // act
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        IndexDocumentResult result = client.uploadIndexAndCommitDocument(args);
+
+        // assert
+        assertFalse(result.isDuplicate());
+        assertEquals(testDocumentId, result.getId());
+        verify(mockService).uploadDocument(testFile);
+    }
+
+    @Test
+    public void onCreate_shouldUploadAgainIfDuplicateDocumentCannotBeReused() throws Exception {
+        // arrange
+        DeduplicationIndex index = new DeduplicationIndex(folder.newFile().toPath());
+        index.put(contentKey("category", "documentType"), "deletedDocument");
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withDeduplicationIndex(index));
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+        when(mockService.getDocumentIndexingData("deletedDocument"))
+                .thenThrow(new IOException("Test Error"));
+
+        // act
+        FileIndexDocumentArgs args = buildCreateArgs("Field1", "Value1");
+        IndexDocumentResult result = client.uploadIndexAndCommitDocument(args);
+
+        // assert
+        assertFalse(result.isDuplicate());
+        assertEquals(testDocumentId, result.getId());
+        assertEquals(testDocumentId, index.get(contentKey("category", "documentType")));
+        verify(mockService).uploadDocument(testFile);
+    }
+
+    @Test
+    public void onCreate_shouldUseDocumentTypeFromCacheSnapshotOfPreviousClient() throws Exception {
+        // arrange
+        DocFinityClientOptions options =
+                new DocFinityClientOptions()
+                        .withCacheExpiration(5, TimeUnit.MINUTES)
+                        .withCacheSnapshot(folder.getRoot().toPath().resolve("cache.json"));
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+        DocFinityClient previousClient = new DocFinityClient(mockService, options);
+        previousClient.uploadIndexAndCommitDocument(buildCreateArgs("Field1", "Value1"));
+        previousClient.flushCacheSnapshot();
+
+        when(mockService.getDocumentTypes(any(), any()))
+                .thenReturn(DocumentTypeDTOSearchResult.from("changedDocumentType"));
+        DocFinityClient client = new DocFinityClient(mockService, options);
+
+        // act
+        IndexDocumentResult result =
+                client.uploadIndexAndCommitDocument(buildCreateArgs("Field1", "Value1"));
+
+        // assert
+        assertEquals(testDocumentTypeId, result.getIndexingDto().getDocumentTypeId());
+        verify(mockService, timeout(5000).times(2)).getDocumentTypes(any(), any());
+        verify(mockService, timeout(5000).times(2)).getDocumentMetadata(anyString(), anyString());
+    }
+
+    @Test
+    public void onCreate_shouldUseDocumentTypesLoadedByWarmUp() throws Exception {
+        // arrange
+        DocumentTypeDTO documentType = new DocumentTypeDTO(testDocumentTypeId);
+        documentType.setCategoryName("category");
+        documentType.setName("documentType");
+        DocumentTypeDTOSearchResult page = new DocumentTypeDTOSearchResult();
+        page.setTotalAvailable(1);
+        page.setResults(Arrays.asList(documentType));
+        when(mockService.listDocumentTypes(any(), anyInt(), anyInt())).thenReturn(page);
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService,
+                        new DocFinityClientOptions().withCacheExpiration(5, TimeUnit.MINUTES));
+
+        // act
+        int cached = client.warmUp(new WarmUpArgs().withControlsDocumentId("controlsDocument"));
+        IndexDocumentResult result =
+                client.uploadIndexAndCommitDocument(buildCreateArgs("Field1", "Value1"));
+
+        // assert
+        assertEquals(1, cached);
+        assertEquals(testDocumentTypeId, result.getIndexingDto().getDocumentTypeId());
+        verify(mockService, never()).getDocumentTypes(any(), any());
+        verify(mockService).getDocumentMetadata(testDocumentTypeId, "controlsDocument");
+        verify(mockService, never()).getDocumentMetadata(testDocumentTypeId, testDocumentId);
+    }
+
+    @Test
+    public void onWarmUpWithoutControlsDocument_shouldOnlyLoadDocumentTypeIds() throws Exception {
+        // arrange
+        DocumentTypeDTO documentType = new DocumentTypeDTO(testDocumentTypeId);
+        documentType.setCategoryName("category");
+        documentType.setName("documentType");
+        DocumentTypeDTOSearchResult page = new DocumentTypeDTOSearchResult();
+        page.setTotalAvailable(1);
+        page.setResults(Arrays.asList(documentType));
+        when(mockService.listDocumentTypes(any(), anyInt(), anyInt())).thenReturn(page);
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field1"));
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService,
+                        new DocFinityClientOptions().withCacheExpiration(5, TimeUnit.MINUTES));
+
+        // act
+        int cached = client.warmUp(new WarmUpArgs());
+        client.uploadIndexAndCommitDocument(buildCreateArgs("Field1", "Value1"));
+
+        // assert
+        assertEquals(1, cached);
+        verify(mockService, never()).uploadDocument(any(byte[].class), anyString());
+        verify(mockService, never()).getDocumentTypes(any(), any());
+        verify(mockService).getDocumentMetadata(testDocumentTypeId, testDocumentId);
+    }
+
+    @Test
+    public void onWarmUpWithServiceWithoutListing_shouldThrowUnsupportedOperation() throws Exception {
+        // arrange
+        // A service written before listDocumentTypes only has the default method.
+        DocFinityService service = mock(DocFinityService.class, CALLS_REAL_METHODS);
+        DocFinityClient client =
+                new DocFinityClient(
+                        service, new DocFinityClientOptions().withCacheExpiration(5, TimeUnit.MINUTES));
+
+        // act
+        UnsupportedOperationException error =
+                assertThrows(
+                        UnsupportedOperationException.class,
+                        () -> client.warmUp(new WarmUpArgs()));
+
+        // assert
+        assertTrue(error.getMessage().contains("does not support listing document types"));
+    }
+
     @Test
     public void onUpdate_shouldReplaceMultiSelectMetadata() throws Exception {
         // arrange
@@ -279,6 +613,51 @@ public class DocFinityClientTest {
         assertNull("Expected dto3 to have null value", dto3.getValue());
     }
 
+    @Test
+    public void onUpdate_shouldOnlyAddNewMultiSelectValues() throws Exception {
+        // arrange
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withReindexChangesOnly(true));
+        MetadataDTO field = new MetadataDTO("FieldId", "Field");
+        field.setAllowMultipleValues(true);
+
+        setupDocumentMetadataReturn(field);
+        setupDocumentIndexingDataReturn(
+                new DocumentIndexingMetadataDTO("111", "FieldId", "Field", "FieldValue1"),
+                new DocumentIndexingMetadataDTO("222", "FieldId", "Field", "FieldValue2"));
+
+        // act
+        List<Object> values = Arrays.asList("FieldValue2", "FieldValue1", "NewValue");
+        IndexDocumentArgs args = buildUpdateArgs(new DocumentField("Field", values));
+        DocumentIndexingDTO result = client.reindexDocument(args).getIndexingDto();
+
+        // assert
+        assertEquals(1, result.getIndexingMetadata().size());
+        DocumentIndexingMetadataDTO dto = result.getIndexingMetadata().get(0);
+        assertNull("Expected dto to be added", dto.getId());
+        assertEquals("NewValue", dto.getValue());
+    }
+
+    @Test
+    public void onUpdate_shouldNotReindexIfMetadataIsUnchanged() throws Exception {
+        // arrange
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withReindexChangesOnly(true));
+        setupDocumentMetadataReturn(new MetadataDTO("111", "Field"));
+        setupDocumentIndexingDataReturn(
+                new DocumentIndexingMetadataDTO("testId", "111", "Field", "FieldValue"));
+
+        // act
+        IndexDocumentArgs args = buildUpdateArgs("Field", "FieldValue");
+        IndexDocumentResult result = client.reindexDocument(args);
+
+        // assert
+        verify(mockService, never()).reindexDocuments(any());
+        assertEquals("FieldValue", result.getMetadata().get(0).getValues().get(0));
+    }
+
     /**
     * Setup: Document type with two metadata objects, one has a data source that depends on the
     * other.
@@ -308,6 +687,39 @@ public class DocFinityClientTest {
         assertEquals("DataSource Value", result.getIndexingMetadata().get(1).getValue());
     }
 
+    @Test
+    public void onUpdate_shouldExecuteDatasourceWithValuesOfEachDocument() throws Exception {
+        // arrange
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService,
+                        new DocFinityClientOptions().withCacheExpiration(5, TimeUnit.MINUTES));
+        MetadataDTO parentField = new MetadataDTO("111", "Parent Field");
+        parentField.setResponsibilityMapping(Arrays.asList("Child Field"));
+
+        MetadataDTO childField = new MetadataDTO("222", "Child Field");
+        DatasourceArgumentPromptDTO prompt = new DatasourceArgumentPromptDTO("Parent Field");
+        childField.setDatasourcePrompts(Arrays.asList(prompt));
+
+        setupDocumentMetadataReturn(parentField, childField);
+        List<Object> promptValues = new ArrayList<>();
+        when(mockService.executeDatasource(any()))
+                .thenAnswer(
+                        i -> {
+                            ExecuteDatasourceRequestDTO request = i.getArgument(0);
+                            promptValues.add(request.getArguments().get(0).getValue());
+                            return Arrays.asList(new ExecuteDatasourceResponseDTO("Value"));
+                        });
+
+        // act
+        client.reindexDocument(buildUpdateArgs("Parent Field", "First Value"));
+        client.reindexDocument(buildUpdateArgs("Parent Field", "Second Value"));
+
+        // assert
+        assertEquals(Arrays.asList("First Value", "Second Value"), promptValues);
+        verify(mockService, times(1)).getDocumentMetadata(anyString(), anyString());
+    }
+
     @Test
     public void onUpdate_shouldMarkFieldForDeleteIfValueSetToNull() throws Exception {
         // arrange
@@ -410,6 +822,81 @@ public class DocFinityClientTest {
                 thrown.getMessage());
     }
 
+    @Test
+    public void onUpdate_shouldExecuteDatasourcesInParallelInFieldOrder() throws Exception {
+        // arrange
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withParallelDatasources(true));
+        MetadataDTO parentField = new MetadataDTO("111", "Parent Field");
+        parentField.setResponsibilityMapping(Arrays.asList("Child Field 1", "Child Field 2"));
+
+        DatasourceArgumentPromptDTO prompt = new DatasourceArgumentPromptDTO("Parent Field");
+        MetadataDTO childField1 = new MetadataDTO("222", "Child Field 1");
+        childField1.setDatasourcePrompts(Arrays.asList(prompt));
+        MetadataDTO childField2 = new MetadataDTO("333", "Child Field 2");
+        childField2.setDatasourcePrompts(Arrays.asList(prompt));
+
+        setupDocumentMetadataReturn(parentField, childField1, childField2);
+        when(mockService.executeDatasource(any()))
+                .thenAnswer(
+                        i -> {
+                            ExecuteDatasourceRequestDTO request = i.getArgument(0);
+                            return Arrays.asList(
+                                    new ExecuteDatasourceResponseDTO("Value " + request.getMetadataId()));
+                        });
+
+        // act
+        IndexDocumentArgs args = buildUpdateArgs("Parent Field", "User Value");
+        DocumentIndexingDTO result = client.reindexDocument(args).getIndexingDto();
+
+        // assert
+        assertEquals(3, result.getIndexingMetadata().size());
+        assertEquals("Value 222", result.getIndexingMetadata().get(1).getValue());
+        assertEquals("Value 333", result.getIndexingMetadata().get(2).getValue());
+        verify(mockService, times(2)).executeDatasource(any());
+    }
+
+    @Test
+    public void onUpdate_shouldSendRequestsWithPriorityOfArgs() throws Exception {
+        // arrange
+        DocFinityClient client =
+                new DocFinityClient(
+                        mockService, new DocFinityClientOptions().withParallelDatasources(true));
+        MetadataDTO parentField = new MetadataDTO("111", "Parent Field");
+        parentField.setResponsibilityMapping(Arrays.asList("Child Field 1", "Child Field 2"));
+
+        DatasourceArgumentPromptDTO prompt = new DatasourceArgumentPromptDTO("Parent Field");
+        MetadataDTO childField1 = new MetadataDTO("222", "Child Field 1");
+        childField1.setDatasourcePrompts(Arrays.asList(prompt));
+        MetadataDTO childField2 = new MetadataDTO("333", "Child Field 2");
+        childField2.setDatasourcePrompts(Arrays.asList(prompt));
+
+        setupDocumentMetadataReturn(parentField, childField1, childField2);
+        List<RequestPriorityEnum> priorities = Collections.synchronizedList(new ArrayList<>());
+        when(mockService.executeDatasource(any()))
+                .thenAnswer(
+                        i -> {
+                            priorities.add(RequestPriorityContext.current());
+                            return Arrays.asList(new ExecuteDatasourceResponseDTO("Value"));
+                        });
+        when(mockService.reindexDocuments(any()))
+                .thenAnswer(
+                        i -> {
+                            priorities.add(RequestPriorityContext.current());
+                            return Arrays.asList(i.getArguments()[0]);
+                        });
+
+        // act
+        IndexDocumentArgs args =
+                buildUpdateArgs("Parent Field", "User Value").withPriority(RequestPriorityEnum.HIGH);
+        client.reindexDocument(args);
+
+        // assert
+        assertEquals(Collections.nCopies(3, RequestPriorityEnum.HIGH), priorities);
+        assertEquals(RequestPriorityEnum.NORMAL, RequestPriorityContext.current());
+    }
+
     @Test
     public void shouldNotExecuteDatasourceWhenClientProvidesValue() throws Exception {
         // arrange
@@ -0,0 +1,245 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import okhttp3.Request;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.Test;
+
+public class DocFinityServiceImplTest {
+    private static final String URL = "http://docfinity.test/docfinity/";
+    private static final byte[] CONTENT = "0123456789abcdefg".getBytes(StandardCharsets.UTF_8);
+
+    private static DocFinityServiceImpl buildService(
+            FakeTransport transport, DocFinityServiceOptions options) {
+        return new DocFinityServiceImpl(URL, "apiKey", null, options.withTransport(transport));
+    }
+
+    /** Returns the path and chunk of each request, ie. 'servlet/upload#0'. */
+    private static List<String> describe(List<Request> requests) {
+        return requests.stream()
+                .map(
+                        request -> {
+                            String path = request.url().encodedPath().substring("/docfinity/".length());
+                            String chunk = request.url().queryParameter("chunk");
+                            return chunk != null ? path + "#" + chunk : path;
+                        })
+                .collect(Collectors.toList());
+    }
+
+    /** Returns the json body of a request, inflated if it is compressed. */
+    private static String readJsonBody(Request request) throws IOException {
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        return "gzip".equals(request.header("Content-Encoding"))
+                ? Okio.buffer(new GzipSource(buffer)).readUtf8()
+                : buffer.readUtf8();
+    }
+
+    @Test
+    public void onJsonBodyBelowGzipThreshold_shouldSendPlainBody() throws Exception {
+        // arrange
+        FakeTransport transport = new FakeTransport(request -> FakeTransport.respond(request, 200, ""));
+        DocFinityServiceImpl service =
+                buildService(
+                        transport,
+                        new DocFinityServiceOptions().withGzipRequests(true).withGzipThreshold(64));
+
+        // act
+        service.deleteDocuments("doc1");
+
+        // assert
+        Request request = transport.getRequests().get(0);
+        assertNull(request.header("Content-Encoding"));
+        assertEquals("[\"doc1\"]", readJsonBody(request));
+    }
+
+    @Test
+    public void onJsonBodyAtGzipThreshold_shouldSendCompressedBody() throws Exception {
+        // arrange
+        FakeTransport transport = new FakeTransport(request -> FakeTransport.respond(request, 200, ""));
+        String json = "[\"doc1\"]";
+        DocFinityServiceImpl service =
+                buildService(
+                        transport,
+                        new DocFinityServiceOptions()
+                                .withGzipRequests(true)
+                                .withGzipThreshold(json.length()));
+
+        // act
+        service.deleteDocuments("doc1");
+
+        // assert
+        Request request = transport.getRequests().get(0);
+        assertEquals("gzip", request.header("Content-Encoding"));
+        assertEquals(json, readJsonBody(request));
+    }
+
+    @Test
+    public void onGzipDisabled_shouldSendPlainBodyAboveThreshold() throws Exception {
+        // arrange
+        FakeTransport transport = new FakeTransport(request -> FakeTransport.respond(request, 200, ""));
+        String[] documentIds = new String[100];
+        for (int i = 0; i < documentIds.length; i++) {
+            documentIds[i] = "doc" + i;
+        }
+        DocFinityServiceImpl service =
+                buildService(transport, new DocFinityServiceOptions().withGzipThreshold(0));
+
+        // act
+        service.deleteDocuments(documentIds);
+
+        // assert
+        Request request = transport.getRequests().get(0);
+        assertNull(request.header("Content-Encoding"));
+        assertEquals(
+                Arrays.stream(documentIds)
+                        .map(documentId -> "\"" + documentId + "\"")
+                        .collect(Collectors.joining(",", "[", "]")),
+                readJsonBody(request));
+    }
+
+    @Test
+    public void onChunkedUpload_shouldReturnDocumentIdOfLastChunk() throws Exception {
+        // arrange
+        FakeTransport transport =
+                new FakeTransport(
+                        request ->
+                                FakeTransport.respond(
+                                        request,
+                                        200,
+                                        "2".equals(request.url().queryParameter("chunk"))
+                                                ? "document123"
+                                                : ""));
+        DocFinityServiceImpl service =
+                buildService(transport, new DocFinityServiceOptions().withUploadChunkSize(8));
+
+        // act
+        String documentId = service.uploadDocument(CONTENT, "test-file.txt");
+
+        // assert
+        assertEquals("document123", documentId);
+        assertEquals(
+                Arrays.asList("servlet/upload#0", "servlet/upload#1", "servlet/upload#2"),
+                describe(transport.getRequests()));
+    }
+
+    @Test
+    public void onChunkedUpload_shouldDeleteDocumentOfServerWithoutChunkSupport() throws Exception {
+        // arrange
+        int[] uploads = {0};
+        FakeTransport transport =
+                new FakeTransport(
+                        request -> {
+                            if (request.url().encodedPath().endsWith("servlet/upload")) {
+                                uploads[0]++;
+                                return FakeTransport.respond(request, 200, "document" + uploads[0]);
+                            }
+                            return FakeTransport.respond(request, 200, "");
+                        });
+        DocFinityServiceImpl service =
+                buildService(transport, new DocFinityServiceOptions().withUploadChunkSize(8));
+
+        // act
+        String first = service.uploadDocument(CONTENT, "test-file.txt");
+        String second = service.uploadDocument(CONTENT, "test-file.txt");
+
+        // assert
+        assertEquals("document2", first);
+        assertEquals("document3", second);
+        assertEquals(
+                Arrays.asList(
+                        "servlet/upload#0",
+                        "webservices/rest/document/delete",
+                        "servlet/upload",
+                        "servlet/upload"),
+                describe(transport.getRequests()));
+        assertNull(transport.getRequests().get(3).url().queryParameter("uploadId"));
+    }
+
+    @Test
+    public void onChunkedUpload_shouldRetryFailedChunkButNotLastChunk() throws Exception {
+        // arrange
+        int[] attempts = {0};
+        FakeTransport transport =
+                new FakeTransport(
+                        request -> {
+                            String chunk = request.url().queryParameter("chunk");
+                            if ("1".equals(chunk) && attempts[0]++ == 0) {
+                                throw new IOException("Connection reset.");
+                            }
+                            return FakeTransport.respond(request, "2".equals(chunk) ? 500 : 200, "");
+                        });
+        DocFinityServiceImpl service =
+                buildService(
+                        transport,
+                        new DocFinityServiceOptions()
+                                .withUploadChunkSize(8)
+                                .withUploadChunkRetries(1));
+
+        // act
+        IOException error =
+                assertThrows(IOException.class, () -> service.uploadDocument(CONTENT, "test-file.txt"));
+
+        // assert
+        assertEquals(
+                "Failed to upload chunk 2 of 3 of 'test-file.txt' after 1 attempts.",
+                error.getMessage());
+        assertEquals(
+                Arrays.asList(
+                        "servlet/upload#0",
+                        "servlet/upload#1",
+                        "servlet/upload#1",
+                        "servlet/upload#2"),
+                describe(transport.getRequests()));
+    }
+
+    @Test
+    public void onChunkSentAgain_shouldReportProgressAndMeterBytesSentAgain() throws Exception {
+        // arrange
+        int[] attempts = {0};
+        FakeTransport transport =
+                new FakeTransport(
+                        request -> {
+                            // The body is sent before the connection of the first attempt fails.
+                            request.body().writeTo(new Buffer());
+                            String chunk = request.url().queryParameter("chunk");
+                            if ("1".equals(chunk) && attempts[0]++ == 0) {
+                                throw new IOException("Connection reset.");
+                            }
+                            return FakeTransport.respond(
+                                    request, 200, "2".equals(chunk) ? "document123" : "");
+                        });
+        List<Long> progress = new ArrayList<>();
+        UploadThroughputMeter meter = new UploadThroughputMeter();
+        DocFinityServiceImpl service =
+                buildService(
+                        transport,
+                        new DocFinityServiceOptions()
+                                .withUploadChunkSize(8)
+                                .withUploadChunkRetries(1)
+                                .withUploadProgressInterval(0, TimeUnit.MILLISECONDS)
+                                .withUploadProgressListener(
+                                        (name, bytesWritten, totalBytes, bytesPerSecond) ->
+                                                progress.add(bytesWritten))
+                                .withUploadThroughputMeter(meter));
+
+        // act
+        service.uploadDocument(CONTENT, "test-file.txt");
+
+        // assert
+        assertEquals(Arrays.asList(8L, 16L, 16L, 17L), progress);
+        assertEquals(CONTENT.length + 8, meter.getBytesSent());
+    }
+}
@@ -0,0 +1,121 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class DocumentTypeCacheTest {
+    @Test
+    public void onConcurrentMisses_shouldCallLoaderOnce() throws Exception {
+        // arrange
+        DocumentTypeCache cache = new DocumentTypeCache(5, TimeUnit.MINUTES);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            // act
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(
+                        executor.submit(
+                                () ->
+                                        cache.getDocumentTypeId(
+                                                "category",
+                                                "documentType",
+                                                () -> {
+                                                    calls.incrementAndGet();
+                                                    release.await(5, TimeUnit.SECONDS);
+                                                    return "documentType123";
+                                                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            // assert
+            for (Future<String> result : results) {
+                assertEquals("documentType123", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void onFailedLoad_shouldNotCacheEntry() throws Exception {
+        // arrange
+        DocumentTypeCache cache = new DocumentTypeCache(5, TimeUnit.MINUTES);
+
+        try {
+            cache.getDocumentTypeId(
+                    "category",
+                    "documentType",
+                    () -> {
+                        throw new IOException("Service unavailable.");
+                    });
+            fail("Expected the load to fail.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Service unavailable."));
+        }
+
+        // act
+        String documentTypeId =
+                cache.getDocumentTypeId("category", "documentType", () -> "documentType123");
+
+        // assert
+        assertEquals("documentType123", documentTypeId);
+    }
+
+    @Test
+    public void onDisabledCache_shouldIndexDefinitionsOnlyWhenChanged() throws Exception {
+        // arrange
+        DocumentTypeCache cache = new DocumentTypeCache(0, TimeUnit.MINUTES);
+        AtomicInteger calls = new AtomicInteger();
+        DocumentTypeMetadata first =
+                cache.getMetadata(
+                        "documentType123",
+                        () -> {
+                            calls.incrementAndGet();
+                            return Arrays.asList(new MetadataDTO("111", "Field1"));
+                        });
+
+        // act
+        DocumentTypeMetadata unchanged =
+                cache.getMetadata(
+                        "documentType123",
+                        () -> {
+                            calls.incrementAndGet();
+                            return Arrays.asList(new MetadataDTO("111", "Field1"));
+                        });
+        DocumentTypeMetadata changed =
+                cache.getMetadata(
+                        "documentType123",
+                        () -> {
+                            calls.incrementAndGet();
+                            return Arrays.asList(new MetadataDTO("111", "Field2"));
+                        });
+
+        // assert
+        assertEquals(3, calls.get());
+        assertSame(first, unchanged);
+        assertNotSame(first, changed);
+        assertSame(first.getDatasourcePlan(), unchanged.getDatasourcePlan());
+        assertEquals("Field2", changed.getMetadataNamesById().get("111"));
+    }
+}
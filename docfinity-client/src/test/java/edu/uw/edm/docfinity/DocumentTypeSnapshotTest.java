@@ -0,0 +1,85 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DocumentTypeSnapshotTest {
+    private static final long MAX_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void onSave_shouldKeepEntriesSavedByAnotherProcess() throws Exception {
+        // arrange
+        Path path = folder.getRoot().toPath().resolve("cache.json");
+
+        // Each snapshot has its own entries, like the snapshots of two processes.
+        DocumentTypeSnapshot first = new DocumentTypeSnapshot(path, MAX_AGE_MILLIS);
+        DocumentTypeSnapshot second = new DocumentTypeSnapshot(path, MAX_AGE_MILLIS);
+        first.load();
+        second.load();
+
+        // act
+        first.putDocumentTypeId(Arrays.asList("category", "first"), "documentType1");
+        first.flush();
+        second.putDocumentTypeId(Arrays.asList("category", "second"), "documentType2");
+        second.putMetadata("documentType2", Arrays.asList(new MetadataDTO("111", "Field1")));
+        second.flush();
+
+        // assert
+        DocumentTypeSnapshot next = new DocumentTypeSnapshot(path, MAX_AGE_MILLIS);
+        next.load();
+        assertEquals(2, next.getDocumentTypeIds().size());
+        assertEquals(
+                "documentType1", next.getDocumentTypeIds().get(Arrays.asList("category", "first")));
+        assertEquals(
+                "documentType2", next.getDocumentTypeIds().get(Arrays.asList("category", "second")));
+        assertEquals(Collections.singleton("documentType2"), next.getMetadata().keySet());
+    }
+
+    @Test
+    public void onSave_shouldDropExpiredEntries() throws Exception {
+        // arrange
+        Path path = folder.getRoot().toPath().resolve("cache.json");
+        long expiredAt = System.currentTimeMillis() - 2 * MAX_AGE_MILLIS;
+        DocumentTypeSnapshot.SnapshotFile file =
+                new DocumentTypeSnapshot.SnapshotFile(
+                        1,
+                        Arrays.asList(
+                                new DocumentTypeSnapshot.DocumentTypeEntry(
+                                        "category", "expired", "documentType1", expiredAt)),
+                        Arrays.asList(
+                                new DocumentTypeSnapshot.MetadataEntry(
+                                        "documentType1", Collections.emptyList(), expiredAt)));
+        Files.write(path, MAPPER.writeValueAsBytes(file));
+        DocumentTypeSnapshot snapshot = new DocumentTypeSnapshot(path, MAX_AGE_MILLIS);
+
+        // act
+        snapshot.load();
+        snapshot.putDocumentTypeId(Arrays.asList("category", "current"), "documentType2");
+        snapshot.flush();
+
+        // assert
+        assertEquals(
+                Collections.singleton(Arrays.asList("category", "current")),
+                snapshot.getDocumentTypeIds().keySet());
+        DocumentTypeSnapshot.SnapshotFile saved =
+                MAPPER.readValue(Files.readAllBytes(path), DocumentTypeSnapshot.SnapshotFile.class);
+        List<DocumentTypeSnapshot.DocumentTypeEntry> documentTypes = saved.getDocumentTypes();
+        assertEquals(1, documentTypes.size());
+        assertEquals("documentType2", documentTypes.get(0).getId());
+        assertEquals(0, saved.getMetadata().size());
+    }
+}
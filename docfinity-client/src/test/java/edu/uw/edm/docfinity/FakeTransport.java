@@ -0,0 +1,77 @@
+package edu.uw.edm.docfinity;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/** Transport that records the requests it is given and answers them with a handler. */
+class FakeTransport implements DocFinityTransport {
+    // Each async request has its own thread, so that a slow request does not delay the others.
+    private static final ExecutorService EXECUTOR =
+            Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).build());
+
+    private final Handler handler;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Response>> futures = new CopyOnWriteArrayList<>();
+
+    FakeTransport(Handler handler) {
+        this.handler = handler;
+    }
+
+    /** Returns a response with a status code and a text body. */
+    static Response respond(Request request, int code, String body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code < 400 ? "OK" : "Error")
+                .body(ResponseBody.create(body, MediaType.parse("text/plain")))
+                .build();
+    }
+
+    /** Returns the requests sent, in the order they were received. */
+    List<Request> getRequests() {
+        return requests;
+    }
+
+    /** Returns the futures of the requests sent with executeAsync, in the order they were sent. */
+    List<CompletableFuture<Response>> getFutures() {
+        return futures;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        requests.add(request);
+        return handler.handle(request);
+    }
+
+    @Override
+    public CompletableFuture<Response> executeAsync(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        futures.add(future);
+        CompletableFuture.runAsync(
+                () -> {
+                    try {
+                        future.complete(execute(request));
+                    } catch (IOException | RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                },
+                EXECUTOR);
+        return future;
+    }
+
+    /** Answers a request. */
+    interface Handler {
+        Response handle(Request request) throws IOException;
+    }
+}
@@ -0,0 +1,160 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import edu.uw.edm.docfinity.models.DocumentIndexingDTO;
+import edu.uw.edm.docfinity.models.DocumentTypeDTOSearchResult;
+import edu.uw.edm.docfinity.models.MetadataDTO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+public class IndexingProcessorTest {
+    private DocFinityClient client;
+
+    @Before
+    public void setupDependencies() throws Exception {
+        DocFinityService mockService = mock(DocFinityService.class);
+        when(mockService.getDocumentTypes(any(), any()))
+                .thenReturn(DocumentTypeDTOSearchResult.from("documentTypeId"));
+        when(mockService.getDocumentMetadata(anyString(), anyString()))
+                .thenReturn(Arrays.asList(new MetadataDTO("111", "Field")));
+        when(mockService.getDocumentIndexingData(anyString()))
+                .thenAnswer(
+                        i -> {
+                            DocumentIndexingDTO dto = new DocumentIndexingDTO();
+                            dto.setIndexingMetadata(new ArrayList<>());
+                            return dto;
+                        });
+
+        // Reindex calls complete in random order.
+        when(mockService.reindexDocuments(any()))
+                .thenAnswer(
+                        i -> {
+                            Thread.sleep(ThreadLocalRandom.current().nextInt(5));
+                            return Arrays.asList(i.getArguments()[0]);
+                        });
+
+        client = new DocFinityClient(mockService);
+    }
+
+    @Test
+    public void shouldEmitResultsInReceivedOrderIfOrdered() throws Exception {
+        // arrange
+        IndexingProcessor<IndexDocumentArgs> processor = IndexingProcessor.reindex(client, 4, true);
+        TestPublisher publisher = new TestPublisher(50);
+        TestSubscriber subscriber = new TestSubscriber(Long.MAX_VALUE);
+
+        // act
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+
+        // assert
+        assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+        assertNull(subscriber.error.get());
+        assertEquals(50, subscriber.ids.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("document" + i, subscriber.ids.get(i));
+        }
+    }
+
+    @Test
+    public void shouldNotRequestMoreThanConcurrencyBeyondDownstreamDemand() throws Exception {
+        // arrange
+        IndexingProcessor<IndexDocumentArgs> processor = IndexingProcessor.reindex(client, 4, false);
+        TestPublisher publisher = new TestPublisher(100);
+        TestSubscriber subscriber = new TestSubscriber(3);
+
+        // act
+        publisher.subscribe(processor);
+        processor.subscribe(subscriber);
+        Thread.sleep(500);
+
+        // assert
+        assertEquals(3, subscriber.ids.size());
+        assertEquals(7, publisher.emitted);
+    }
+
+    /** Publishes reindex arguments as they are requested. */
+    private static class TestPublisher implements Publisher<IndexDocumentArgs> {
+        private final int count;
+        private volatile int emitted;
+        private boolean completed;
+
+        TestPublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super IndexDocumentArgs> subscriber) {
+            subscriber.onSubscribe(
+                    new Subscription() {
+                        @Override
+                        public synchronized void request(long n) {
+                            for (long i = 0; i < n && emitted < count; i++) {
+                                IndexDocumentArgs args =
+                                        new IndexDocumentArgs("document" + emitted++)
+                                                .withDocumentType("category", "documentType")
+                                                .withMetadata(
+                                                        Arrays.asList(
+                                                                DocumentField.fromSingleValue("Field", "Value")));
+                                subscriber.onNext(args);
+                            }
+                            if (emitted == count && !completed) {
+                                completed = true;
+                                subscriber.onComplete();
+                            }
+                        }
+
+                        @Override
+                        public void cancel() {}
+                    });
+        }
+    }
+
+    /** Records the ids of the results. */
+    private static class TestSubscriber implements Subscriber<IndexDocumentResult> {
+        private final long demand;
+        private final List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        TestSubscriber(long demand) {
+            this.demand = demand;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.request(demand);
+        }
+
+        @Override
+        public void onNext(IndexDocumentResult result) {
+            ids.add(result.getId());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+}
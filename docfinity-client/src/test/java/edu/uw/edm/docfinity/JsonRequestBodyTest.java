@@ -0,0 +1,43 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import okhttp3.MediaType;
+import okio.Buffer;
+import org.junit.Test;
+
+public class JsonRequestBodyTest {
+    private static final MediaType MEDIA_TYPE_JSON = MediaType.parse("application/json");
+
+    private static byte[] write(JsonRequestBody body) throws Exception {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return buffer.readByteArray();
+    }
+
+    @Test
+    public void onWriteTwice_shouldWriteSameJsonWithContentLength() throws Exception {
+        // arrange
+        // Multi-byte characters make the length in bytes differ from the length of the String.
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("documentIds", Arrays.asList("doc1", "doc2"));
+        value.put("name", "R\u00e9sum\u00e9 \u6771\u4eac");
+        JsonRequestBody body = new JsonRequestBody(value, MEDIA_TYPE_JSON);
+
+        // act
+        byte[] first = write(body);
+        byte[] second = write(body);
+
+        // assert
+        assertArrayEquals(first, second);
+        assertEquals(first.length, body.contentLength());
+        assertEquals(
+                "{\"documentIds\":[\"doc1\",\"doc2\"],\"name\":\"R\u00e9sum\u00e9 \u6771\u4eac\"}",
+                new String(first, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,167 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import org.junit.Test;
+
+public class LoadBalancingTransportTest {
+    private static final String BASE_URL = "http://docfinity.test/docfinity/";
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final int REQUESTS = 40;
+
+    private final Request request =
+            new Request.Builder().url(BASE_URL + "webservices/rest/documentType").build();
+
+    // Hosts of the nodes that respond with 503.
+    private final Set<String> failingNodes = ConcurrentHashMap.newKeySet();
+    private final FakeTransport transport =
+            new FakeTransport(
+                    request ->
+                            FakeTransport.respond(
+                                    request,
+                                    failingNodes.contains(request.url().host()) ? 503 : 200,
+                                    ""));
+
+    private LoadBalancingTransport buildBalancer(long ejectionMillis) {
+        return new LoadBalancingTransport(
+                transport,
+                HttpUrl.parse(BASE_URL),
+                Arrays.asList(
+                        HttpUrl.parse("http://node-a:8080/docfinity/"),
+                        HttpUrl.parse("http://node-b:8080/docfinity/")),
+                LoadBalancingStrategyEnum.LEAST_OUTSTANDING_REQUESTS,
+                FAILURE_THRESHOLD,
+                ejectionMillis);
+    }
+
+    private void send(LoadBalancingTransport balancer, Request request, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            balancer.execute(request).close();
+        }
+    }
+
+    private long countRequestsTo(String host) {
+        return transport.getRequests().stream().filter(r -> r.url().host().equals(host)).count();
+    }
+
+    @Test
+    public void onRequest_shouldSendToNodeWithPathOfBaseUrl() throws Exception {
+        // arrange
+        LoadBalancingTransport balancer = buildBalancer(60_000);
+
+        // act
+        send(balancer, request, 1);
+
+        // assert
+        HttpUrl sent = transport.getRequests().get(0).url();
+        assertTrue(sent.host().startsWith("node-"));
+        assertEquals(8080, sent.port());
+        assertEquals("/docfinity/webservices/rest/documentType", sent.encodedPath());
+    }
+
+    @Test
+    public void onConsecutiveFailures_shouldEjectNode() throws Exception {
+        // arrange
+        LoadBalancingTransport balancer = buildBalancer(60_000);
+        failingNodes.add("node-a");
+
+        // act
+        send(balancer, request, REQUESTS);
+
+        // assert
+        assertEquals(FAILURE_THRESHOLD, countRequestsTo("node-a"));
+        assertEquals(REQUESTS - FAILURE_THRESHOLD, countRequestsTo("node-b"));
+    }
+
+    @Test
+    public void afterEjection_shouldEjectAgainOnFirstFailure() throws Exception {
+        // arrange
+        LoadBalancingTransport balancer = buildBalancer(100);
+        failingNodes.add("node-a");
+        send(balancer, request, REQUESTS);
+        Thread.sleep(200);
+
+        // act
+        send(balancer, request, REQUESTS);
+
+        // assert
+        assertEquals(FAILURE_THRESHOLD + 1, countRequestsTo("node-a"));
+    }
+
+    @Test
+    public void afterEjection_shouldReadmitNodeOnSuccess() throws Exception {
+        // arrange
+        LoadBalancingTransport balancer = buildBalancer(100);
+        failingNodes.add("node-a");
+        send(balancer, request, REQUESTS);
+        failingNodes.clear();
+        Thread.sleep(200);
+
+        // act
+        send(balancer, request, REQUESTS);
+
+        // assert
+        assertTrue(countRequestsTo("node-a") > FAILURE_THRESHOLD + 1);
+    }
+
+    @Test
+    public void onAllNodesEjected_shouldSendToNodeThatComesBackFirst() throws Exception {
+        // arrange
+        LoadBalancingTransport balancer = buildBalancer(60_000);
+        failingNodes.add("node-a");
+        send(balancer, request, REQUESTS);
+        failingNodes.add("node-b");
+        send(balancer, request, FAILURE_THRESHOLD);
+        transport.getRequests().clear();
+
+        // act
+        send(balancer, request, 1);
+
+        // assert
+        assertEquals(1, countRequestsTo("node-a"));
+    }
+
+    @Test
+    public void onAffinity_shouldSendRequestsWithKeyToSameNode() throws Exception {
+        // arrange
+        LoadBalancingTransport balancer = buildBalancer(60_000);
+        Request upload = LoadBalancingTransport.withAffinity(request, "upload123");
+        Request document = LoadBalancingTransport.withAffinity(request, "document123");
+
+        // act
+        send(balancer, upload, 1);
+        balancer.linkAffinity("document123", "upload123");
+        send(balancer, upload, REQUESTS);
+        send(balancer, document, REQUESTS);
+
+        // assert
+        Set<String> hosts =
+                transport.getRequests().stream()
+                        .map(r -> r.url().host())
+                        .collect(Collectors.toSet());
+        assertEquals(1, hosts.size());
+    }
+
+    @Test
+    public void onAffinityToEjectedNode_shouldMoveKeyToAnotherNode() throws Exception {
+        // arrange
+        LoadBalancingTransport balancer = buildBalancer(60_000);
+        Request upload = LoadBalancingTransport.withAffinity(request, "upload123");
+        send(balancer, upload, 1);
+        String firstHost = transport.getRequests().get(0).url().host();
+        failingNodes.add(firstHost);
+
+        // act
+        send(balancer, upload, FAILURE_THRESHOLD + REQUESTS);
+
+        // assert
+        assertEquals(FAILURE_THRESHOLD + 1, countRequestsTo(firstHost));
+    }
+}
@@ -0,0 +1,160 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OrphanReaperTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldDeleteQueuedDocumentsInBatches() throws Exception {
+        // arrange
+        DocFinityService mockService = mock(DocFinityService.class);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(
+                        i -> {
+                            // Hold the first delete so the next documents are batched.
+                            started.countDown();
+                            release.await(10, TimeUnit.SECONDS);
+                            return null;
+                        })
+                .when(mockService)
+                .deleteDocuments("doc1");
+        Path path = folder.getRoot().toPath().resolve("orphans.log");
+
+        // act
+        try (OrphanReaper reaper = new OrphanReaper(mockService, path, 2)) {
+            reaper.enqueue("doc1");
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            reaper.enqueue("doc2");
+            reaper.enqueue("doc3");
+            reaper.enqueue("doc4");
+            release.countDown();
+
+            // assert
+            assertTrue(reaper.awaitEmpty(10, TimeUnit.SECONDS));
+        }
+        verify(mockService).deleteDocuments("doc1");
+        verify(mockService).deleteDocuments("doc2", "doc3");
+        verify(mockService).deleteDocuments("doc4");
+        verifyNoMoreInteractions(mockService);
+    }
+
+    @Test
+    public void onDocumentFailingAlone_shouldDeleteDocumentsQueuedAfterIt() throws Exception {
+        // arrange
+        Path path = folder.getRoot().toPath().resolve("orphans.log");
+        Files.write(path, "QUEUED\tdoc1\nQUEUED\tdoc2\n".getBytes(StandardCharsets.UTF_8));
+
+        DocFinityService mockService = mock(DocFinityService.class);
+        CountDownLatch deleted = new CountDownLatch(1);
+        doThrow(new DocFinityStatusException(500))
+                .when(mockService)
+                .deleteDocuments("doc1", "doc2");
+        doThrow(new DocFinityStatusException(500)).when(mockService).deleteDocuments("doc1");
+        doAnswer(
+                        i -> {
+                            deleted.countDown();
+                            return null;
+                        })
+                .when(mockService)
+                .deleteDocuments("doc2");
+
+        // act
+        OrphanReaper reaper = new OrphanReaper(mockService, path, 2);
+        try {
+            assertTrue(deleted.await(10, TimeUnit.SECONDS));
+        } finally {
+            reaper.close();
+        }
+
+        // assert
+        assertTrue(reaper.isQueued("doc1"));
+        assertFalse(reaper.isQueued("doc2"));
+        verify(mockService).deleteDocuments("doc1");
+    }
+
+    @Test
+    public void onFailedBatch_shouldDeleteDocumentsAloneAndDropRejectedOnes() throws Exception {
+        // arrange
+        Path path = folder.getRoot().toPath().resolve("orphans.log");
+        Files.write(path, "QUEUED\tdoc1\nQUEUED\tdoc2\n".getBytes(StandardCharsets.UTF_8));
+
+        DocFinityService mockService = mock(DocFinityService.class);
+        doThrow(new DocFinityStatusException(500))
+                .when(mockService)
+                .deleteDocuments("doc1", "doc2");
+        doThrow(new DocFinityStatusException(404)).when(mockService).deleteDocuments("doc1");
+
+        // act
+        try (OrphanReaper reaper = new OrphanReaper(mockService, path)) {
+            // assert
+            assertTrue(reaper.awaitEmpty(10, TimeUnit.SECONDS));
+        }
+        verify(mockService).deleteDocuments("doc1", "doc2");
+        verify(mockService).deleteDocuments("doc1");
+        verify(mockService).deleteDocuments("doc2");
+
+        try (OrphanReaper reaper = new OrphanReaper(mock(DocFinityService.class), path)) {
+            assertEquals(0, reaper.size());
+        }
+    }
+
+    @Test
+    public void onServiceFailure_shouldKeepDocumentsQueued() throws Exception {
+        // arrange
+        Path path = folder.getRoot().toPath().resolve("orphans.log");
+        Files.write(path, "QUEUED\tdoc1\nQUEUED\tdoc2\n".getBytes(StandardCharsets.UTF_8));
+
+        DocFinityService mockService = mock(DocFinityService.class);
+        doThrow(new DocFinityStatusException(503)).when(mockService).deleteDocuments(any());
+
+        // act
+        try (OrphanReaper reaper = new OrphanReaper(mockService, path)) {
+            verify(mockService, timeout(5000)).deleteDocuments("doc1");
+
+            // assert
+            assertFalse(reaper.awaitEmpty(100, TimeUnit.MILLISECONDS));
+            assertEquals(2, reaper.size());
+        }
+
+        // A failure that may succeed later stops deleting the documents one by one.
+        verify(mockService, never()).deleteDocuments("doc2");
+    }
+
+    @Test
+    public void onOpen_shouldDeleteDocumentsQueuedByPreviousRun() throws Exception {
+        // arrange
+        DocFinityService failingService = mock(DocFinityService.class);
+        doThrow(new IOException("Test Error")).when(failingService).deleteDocuments(any());
+        Path path = folder.getRoot().toPath().resolve("orphans.log");
+        try (OrphanReaper reaper = new OrphanReaper(failingService, path)) {
+            reaper.enqueue("doc1");
+        }
+
+        // act
+        DocFinityService mockService = mock(DocFinityService.class);
+        try (OrphanReaper reaper = new OrphanReaper(mockService, path)) {
+            // assert
+            assertTrue(reaper.awaitEmpty(10, TimeUnit.SECONDS));
+            verify(mockService).deleteDocuments("doc1");
+        }
+
+        try (OrphanReaper reaper = new OrphanReaper(mockService, path)) {
+            assertEquals(0, reaper.size());
+        }
+    }
+}
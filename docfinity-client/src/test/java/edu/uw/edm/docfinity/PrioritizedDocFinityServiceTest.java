@@ -0,0 +1,242 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrioritizedDocFinityServiceTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    // Requests started by the service, and permits that let the started requests finish. Requests
+    // with a document id starting with 'fast' finish without a permit.
+    private final BlockingQueue<String> started = new LinkedBlockingQueue<>();
+    private final Semaphore finish = new Semaphore(0);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private DocFinityService mockService;
+
+    @Before
+    public void setUp() throws Exception {
+        mockService = mock(DocFinityService.class);
+        when(mockService.getDocumentIndexingData(any()))
+                .thenAnswer(
+                        i -> {
+                            String documentId = i.getArgument(0);
+                            started.add(documentId);
+                            if (!documentId.startsWith("fast")) {
+                                Uninterruptibles.tryAcquireUninterruptibly(
+                                        finish, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                            }
+                            return null;
+                        });
+    }
+
+    @After
+    public void tearDown() {
+        finish.release(1000);
+        executor.shutdownNow();
+    }
+
+    private Future<?> submit(
+            PrioritizedDocFinityService service, RequestPriorityEnum priority, String documentId) {
+        return executor.submit(
+                () -> {
+                    try (RequestPriorityContext.Scope scope = RequestPriorityContext.enter(priority)) {
+                        return service.getDocumentIndexingData(documentId);
+                    }
+                });
+    }
+
+    private String nextStarted() throws InterruptedException {
+        String documentId = started.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue("Expected a request to start.", documentId != null);
+        return documentId;
+    }
+
+    /**
+    * Lets the running request finish, and returns the priority of the request that is sent in its
+    * place, ie. 'low' for 'low3'.
+    */
+    private String finishNext() throws InterruptedException {
+        finish.release();
+        return nextStarted().replaceAll("[0-9]+$", "");
+    }
+
+    private static void awaitQueued(
+            PrioritizedDocFinityService service, RequestPriorityEnum priority, int count)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (service.getQueuedRequests(priority) != count) {
+            assertTrue(
+                    String.format("Expected %d queued %s requests.", count, priority),
+                    System.nanoTime() - deadline < 0);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitIdle(PrioritizedDocFinityService service) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (service.getInFlightRequests() != 0) {
+            assertTrue("Expected no requests in flight.", System.nanoTime() - deadline < 0);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void onLowPrioritySaturation_shouldSendHighPriorityWithReservedCapacity()
+            throws Exception {
+        // arrange
+        PrioritizedDocFinityService service =
+                new PrioritizedDocFinityService(mockService, 4).withReservedCapacity(1);
+        for (int i = 0; i < 4; i++) {
+            submit(service, RequestPriorityEnum.LOW, "low" + i);
+        }
+        for (int i = 0; i < 3; i++) {
+            nextStarted();
+        }
+        awaitQueued(service, RequestPriorityEnum.LOW, 1);
+
+        // act
+        submit(service, RequestPriorityEnum.HIGH, "high");
+
+        // assert
+        assertEquals("high", nextStarted());
+        assertEquals(4, service.getInFlightRequests());
+        assertEquals(1, service.getQueuedRequests(RequestPriorityEnum.LOW));
+    }
+
+    @Test
+    public void onContention_shouldSendRequestsByWeight() throws Exception {
+        // arrange
+        PrioritizedDocFinityService service =
+                new PrioritizedDocFinityService(mockService, 1)
+                        .withReservedCapacity(0)
+                        .withWeight(RequestPriorityEnum.HIGH, 3)
+                        .withWeight(RequestPriorityEnum.LOW, 1);
+        submit(service, RequestPriorityEnum.NORMAL, "normal");
+        nextStarted();
+        for (int i = 0; i < 10; i++) {
+            submit(service, RequestPriorityEnum.LOW, "low" + i);
+        }
+        awaitQueued(service, RequestPriorityEnum.LOW, 10);
+        for (int i = 0; i < 10; i++) {
+            submit(service, RequestPriorityEnum.HIGH, "high" + i);
+        }
+        awaitQueued(service, RequestPriorityEnum.HIGH, 10);
+
+        // act
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            order.add(finishNext());
+        }
+
+        // assert
+        assertEquals(
+                Arrays.asList("high", "low", "high", "high", "high", "low", "high", "high"),
+                order);
+    }
+
+    @Test
+    public void onInterruptRacingGrant_shouldNotLoseCapacity() throws Exception {
+        // arrange
+        PrioritizedDocFinityService service =
+                new PrioritizedDocFinityService(mockService, 1).withReservedCapacity(0);
+
+        for (int i = 0; i < 200; i++) {
+            submit(service, RequestPriorityEnum.NORMAL, "hold" + i);
+            nextStarted();
+            Future<?> waiter = submit(service, RequestPriorityEnum.NORMAL, "fast-waiter" + i);
+            awaitQueued(service, RequestPriorityEnum.NORMAL, 1);
+
+            // act
+            // The waiter is interrupted before, during or after the capacity is granted to it, with
+            // a delay that is too short to sleep.
+            finish.release();
+            long interruptAt = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(i % 50);
+            while (System.nanoTime() - interruptAt < 0) {
+                // Spins until the delay is over.
+            }
+            waiter.cancel(true);
+
+            // assert
+            submit(service, RequestPriorityEnum.NORMAL, "fast-next" + i)
+                    .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            awaitIdle(service);
+            started.clear();
+        }
+        assertEquals(0, service.getQueuedRequests(RequestPriorityEnum.NORMAL));
+    }
+
+    @Test
+    public void onInterruptedWaiter_shouldRemoveItFromQueue() throws Exception {
+        // arrange
+        PrioritizedDocFinityService service =
+                new PrioritizedDocFinityService(mockService, 1).withReservedCapacity(0);
+        submit(service, RequestPriorityEnum.NORMAL, "hold");
+        nextStarted();
+        Future<?> waiter = submit(service, RequestPriorityEnum.NORMAL, "waiter");
+        submit(service, RequestPriorityEnum.NORMAL, "next");
+        awaitQueued(service, RequestPriorityEnum.NORMAL, 2);
+
+        // act
+        waiter.cancel(true);
+        awaitQueued(service, RequestPriorityEnum.NORMAL, 1);
+
+        // assert
+        assertEquals("next", finishNext());
+        assertEquals(1, service.getInFlightRequests());
+    }
+
+    @Test
+    public void onIdleClass_shouldNotAccrueTurns() throws Exception {
+        // arrange
+        PrioritizedDocFinityService service =
+                new PrioritizedDocFinityService(mockService, 1)
+                        .withReservedCapacity(0)
+                        .withWeight(RequestPriorityEnum.NORMAL, 1)
+                        .withWeight(RequestPriorityEnum.LOW, 1);
+        submit(service, RequestPriorityEnum.HIGH, "hold");
+        nextStarted();
+        for (int i = 0; i < 10; i++) {
+            submit(service, RequestPriorityEnum.LOW, "low" + i);
+        }
+        awaitQueued(service, RequestPriorityEnum.LOW, 10);
+
+        // LOW requests are sent alone for a while, NORMAL is idle.
+        for (int i = 0; i < 5; i++) {
+            finishNext();
+        }
+        for (int i = 0; i < 5; i++) {
+            submit(service, RequestPriorityEnum.NORMAL, "normal" + i);
+        }
+        awaitQueued(service, RequestPriorityEnum.NORMAL, 5);
+
+        // act
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            order.add(finishNext());
+        }
+
+        // assert
+        // With equal weights, the classes take turns instead of NORMAL catching up on its idle time.
+        assertEquals(
+                Arrays.asList(
+                        "normal", "normal", "low", "normal", "low", "normal", "low", "normal",
+                        "low", "low"),
+                order);
+    }
+}
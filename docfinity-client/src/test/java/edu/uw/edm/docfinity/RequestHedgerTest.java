@@ -0,0 +1,170 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Test;
+
+public class RequestHedgerTest {
+    private static final DocFinityEndpointEnum ENDPOINT = DocFinityEndpointEnum.DOCUMENT_TYPES;
+    private static final long MIN_DELAY_MILLIS = 50;
+    private static final long SLOW_MILLIS = 1000;
+    private static final int WARM_UP_REQUESTS = 32;
+
+    private final Request request = new Request.Builder().url("http://docfinity.test/").build();
+    private final HedgingMetrics metrics = new HedgingMetrics();
+
+    /** Answers the requests in order with a delay and status code each, then fast 200s. */
+    private static FakeTransport buildTransport(long[] delays, int[] codes) {
+        AtomicInteger calls = new AtomicInteger();
+        return new FakeTransport(
+                request -> {
+                    int call = calls.getAndIncrement() - WARM_UP_REQUESTS;
+                    if (call < 0 || call >= delays.length) {
+                        return FakeTransport.respond(request, 200, "fast");
+                    }
+
+                    try {
+                        Thread.sleep(delays[call]);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return FakeTransport.respond(request, codes[call], "call " + call);
+                });
+    }
+
+    private RequestHedger buildHedger(FakeTransport transport, double budgetRatio) throws Exception {
+        RequestHedger hedger =
+                new RequestHedger(
+                        transport,
+                        Collections.singleton(ENDPOINT),
+                        0.5,
+                        MIN_DELAY_MILLIS,
+                        budgetRatio,
+                        metrics);
+
+        // Fast responses, so the delay of hedges is the minimum delay.
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            hedger.execute(ENDPOINT, request).close();
+        }
+        return hedger;
+    }
+
+    @Test
+    public void onResponseBeforeDelay_shouldNotHedge() throws Exception {
+        // arrange
+        FakeTransport transport = buildTransport(new long[] {10}, new int[] {200});
+        RequestHedger hedger = buildHedger(transport, 0.1);
+
+        // act
+        try (Response response = hedger.execute(ENDPOINT, request)) {
+            // assert
+            assertEquals("call 0", response.body().string());
+        }
+        assertEquals(WARM_UP_REQUESTS + 1, transport.getRequests().size());
+        assertEquals(0, metrics.getHedges());
+    }
+
+    @Test
+    public void onLateResponse_shouldReturnHedgeAndCancelOriginal() throws Exception {
+        // arrange
+        FakeTransport transport = buildTransport(new long[] {SLOW_MILLIS, 0}, new int[] {200, 200});
+        RequestHedger hedger = buildHedger(transport, 0.1);
+        long start = System.nanoTime();
+
+        // act
+        try (Response response = hedger.execute(ENDPOINT, request)) {
+            // assert
+            assertEquals("call 1", response.body().string());
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(SLOW_MILLIS));
+        assertEquals(1, metrics.getHedges());
+        assertEquals(1, metrics.getHedgeWins());
+
+        CompletableFuture<Response> original =
+                transport.getFutures().get(transport.getFutures().size() - 2);
+        assertTrue(original.isCancelled());
+    }
+
+    @Test
+    public void onHedgeWithUnsuccessfulStatus_shouldWaitForOriginal() throws Exception {
+        // arrange
+        FakeTransport transport =
+                buildTransport(new long[] {2 * MIN_DELAY_MILLIS, 0}, new int[] {200, 503});
+        RequestHedger hedger = buildHedger(transport, 0.1);
+
+        // act
+        try (Response response = hedger.execute(ENDPOINT, request)) {
+            // assert
+            assertEquals(200, response.code());
+            assertEquals("call 0", response.body().string());
+        }
+        assertEquals(0, metrics.getHedgeWins());
+    }
+
+    @Test
+    public void onBothUnsuccessful_shouldReturnLastResponse() throws Exception {
+        // arrange
+        FakeTransport transport =
+                buildTransport(new long[] {2 * MIN_DELAY_MILLIS, 0}, new int[] {500, 503});
+        RequestHedger hedger = buildHedger(transport, 0.1);
+
+        // act
+        try (Response response = hedger.execute(ENDPOINT, request)) {
+            // assert
+            assertEquals(500, response.code());
+        }
+    }
+
+    @Test
+    public void onSpentBudget_shouldNotHedge() throws Exception {
+        // arrange
+        long[] delays = new long[11];
+        int[] codes = new int[11];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = 2 * MIN_DELAY_MILLIS;
+            codes[i] = 200;
+        }
+        FakeTransport transport = buildTransport(delays, codes);
+
+        // Without budget ratio, only the initial tokens of the budget are spent.
+        RequestHedger hedger = buildHedger(transport, 0);
+
+        // act
+        for (int i = 0; i < delays.length; i++) {
+            hedger.execute(ENDPOINT, request).close();
+        }
+
+        // assert
+        assertEquals(10, metrics.getHedges());
+        assertEquals(1, metrics.getHedgesOverBudget());
+    }
+
+    @Test
+    public void onHedge_shouldSendRequestWithoutAffinity() throws Exception {
+        // arrange
+        FakeTransport transport = buildTransport(new long[] {SLOW_MILLIS, 0}, new int[] {200, 200});
+        RequestHedger hedger = buildHedger(transport, 0.1);
+        Request withAffinity = LoadBalancingTransport.withAffinity(request, "document123");
+
+        // act
+        hedger.execute(ENDPOINT, withAffinity).close();
+
+        // assert
+        int count = transport.getRequests().size();
+        Request original = transport.getRequests().get(count - 2);
+        Request hedge = transport.getRequests().get(count - 1);
+        assertNotNull(original.tag(LoadBalancingTransport.Affinity.class));
+        assertNull(hedge.tag(LoadBalancingTransport.Affinity.class));
+        assertFalse(transport.getFutures().get(count - 1).isCancelled());
+    }
+}
@@ -0,0 +1,54 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class UploadMemoryBudgetTest {
+    @Test
+    public void shouldReportBytesOfUploadsInFlight() throws Exception {
+        // arrange
+        UploadMemoryBudget budget = new UploadMemoryBudget(10_000);
+
+        // act
+        try (UploadMemoryBudget.Permit first = budget.acquire("file1.pdf", 3_000);
+                UploadMemoryBudget.Permit second = budget.acquire("file2.pdf", 5_000)) {
+            // assert
+            assertEquals(8_000, budget.getInFlightBytes());
+        }
+        assertEquals(0, budget.getInFlightBytes());
+    }
+
+    @Test
+    public void shouldRejectUploadWhenBudgetIsExhausted() throws Exception {
+        // arrange
+        UploadMemoryBudget budget =
+                new UploadMemoryBudget(10_000).withMaxWait(0, TimeUnit.MILLISECONDS);
+
+        try (UploadMemoryBudget.Permit permit = budget.acquire("file1.pdf", 8_000)) {
+            // act
+            budget.acquire("file2.pdf", 5_000);
+            fail("Expected upload to be rejected.");
+        } catch (IOException e) {
+            // assert
+            assertEquals(1, budget.getRejectedUploads());
+        }
+    }
+
+    @Test
+    public void shouldUploadDocumentLargerThanBudgetAlone() throws Exception {
+        // arrange
+        UploadMemoryBudget budget =
+                new UploadMemoryBudget(10_000).withMaxWait(0, TimeUnit.MILLISECONDS);
+
+        // act
+        try (UploadMemoryBudget.Permit permit = budget.acquire("large.pdf", 50_000)) {
+            // assert
+            assertEquals(50_000, budget.getInFlightBytes());
+        }
+        assertEquals(0, budget.getInFlightBytes());
+    }
+}
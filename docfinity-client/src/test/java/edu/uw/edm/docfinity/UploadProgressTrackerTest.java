@@ -0,0 +1,71 @@
+package edu.uw.edm.docfinity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class UploadProgressTrackerTest {
+    private static final long TOTAL_BYTES = 100;
+
+    // Bytes written of each notification.
+    private final List<Long> notifications = new ArrayList<>();
+    private final UploadProgressListener listener =
+            (name, bytesWritten, totalBytes, bytesPerSecond) -> notifications.add(bytesWritten);
+
+    @Test
+    public void onUpdatesWithinInterval_shouldOnlyNotifyCompletion() {
+        // arrange
+        UploadProgressTracker tracker =
+                new UploadProgressTracker(
+                        "test-file.txt", TOTAL_BYTES, listener, TimeUnit.HOURS.toNanos(1), null);
+
+        // act
+        for (long bytesWritten = 10; bytesWritten <= TOTAL_BYTES; bytesWritten += 10) {
+            tracker.update(bytesWritten, 10);
+        }
+
+        // assert
+        assertEquals(Arrays.asList(TOTAL_BYTES), notifications);
+    }
+
+    @Test
+    public void onUpdatesAfterInterval_shouldNotifyEachUpdate() throws Exception {
+        // arrange
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(20);
+        UploadProgressTracker tracker =
+                new UploadProgressTracker("test-file.txt", TOTAL_BYTES, listener, intervalNanos, null);
+
+        // act
+        Thread.sleep(30);
+        tracker.update(10, 10);
+        tracker.update(20, 10);
+        Thread.sleep(30);
+        tracker.update(30, 10);
+
+        // assert
+        assertEquals(Arrays.asList(10L, 30L), notifications);
+    }
+
+    @Test
+    public void onChunkSentAgain_shouldReportPositionAndMeterBytesSentAgain() {
+        // arrange
+        UploadThroughputMeter meter = new UploadThroughputMeter();
+        UploadProgressTracker tracker =
+                new UploadProgressTracker("test-file.txt", TOTAL_BYTES, listener, 0, meter);
+
+        // act
+        // The second chunk (50 to 100) fails after 30 bytes and is sent again.
+        tracker.update(50, 50);
+        tracker.update(80, 30);
+        tracker.update(60, 10);
+        tracker.update(100, 40);
+
+        // assert
+        assertEquals(Arrays.asList(50L, 80L, 60L, 100L), notifications);
+        assertEquals(130, meter.getBytesSent());
+    }
+}